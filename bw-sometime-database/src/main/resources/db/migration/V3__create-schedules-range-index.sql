@@ -0,0 +1,6 @@
+-- Supports the overlap query in SpringJDBCAvailableScheduleDaoImpl
+-- (owner_id = ? and end_time > ? and start_time < ?).
+-- The block_unique constraint (schedules_unique_idx on oracle) already provides
+-- (owner_id, start_time, end_time); leading with end_time lets the range scan
+-- skip rows that ended before the requested window.
+create index schedules_owner_end_idx on schedules (owner_id, end_time, start_time);
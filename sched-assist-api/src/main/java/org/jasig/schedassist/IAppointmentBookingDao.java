@@ -0,0 +1,57 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jasig.schedassist;
+
+import net.fortuna.ical4j.model.component.VEvent;
+
+import org.jasig.schedassist.model.AvailableBlock;
+import org.jasig.schedassist.model.IScheduleOwner;
+import org.jasig.schedassist.model.IScheduleVisitor;
+
+/**
+ * Optional companion to {@link ICalendarDataDao} for calendar systems that can book an appointment
+ * in two round trips: one lookup that serves as both {@link ICalendarDataDao#getExistingAppointment(IScheduleOwner, AvailableBlock)}
+ * and {@link ICalendarDataDao#checkForConflicts(IScheduleOwner, AvailableBlock)}, and one conditional create
+ * that fails, rather than creating a duplicate, if another appointment for the same block was created in the meantime.
+ */
+public interface IAppointmentBookingDao {
+
+	/**
+	 * 
+	 * @param owner
+	 * @param block
+	 * @return the existing scheduling assistant appointment for the block, or null if there is none and nothing conflicts with the block
+	 * @throws ConflictExistsException if there is no existing appointment, and another event in the owner's schedule conflicts with the block
+	 */
+	VEvent getExistingAppointmentOrCheckForConflicts(IScheduleOwner owner, AvailableBlock block) throws ConflictExistsException;
+
+	/**
+	 * Create an appointment, as {@link ICalendarDataDao#createAppointment(IScheduleVisitor, IScheduleOwner, AvailableBlock, String)}, 
+	 * unless an appointment for the same owner and block already exists.
+	 * 
+	 * @param visitor
+	 * @param owner
+	 * @param block the target {@link AvailableBlock}
+	 * @param eventDescription text that should be added to the DESCRIPTION property of the event
+	 * @return the newly created event
+	 * @throws ConflictExistsException if an appointment for the block already exists
+	 */
+	VEvent createAppointmentIfAbsent(IScheduleVisitor visitor, IScheduleOwner owner, AvailableBlock block, String eventDescription) throws ConflictExistsException;
+}
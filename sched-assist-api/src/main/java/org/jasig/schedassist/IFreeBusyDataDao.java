@@ -0,0 +1,46 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jasig.schedassist;
+
+import java.util.Date;
+
+import net.fortuna.ical4j.model.PeriodList;
+
+import org.jasig.schedassist.model.ICalendarAccount;
+
+/**
+ * Optional companion to {@link ICalendarDataDao} for calendar systems that can report
+ * busy time directly, without the cost of transferring and parsing the full calendar data.
+ * 
+ * Busy time only suffices where the details of the events don't matter, such as conflicts
+ * in a visitor's own calendar.
+ */
+public interface IFreeBusyDataDao {
+
+	/**
+	 * Retrieve the busy periods for the {@link ICalendarAccount} between the specified dates.
+	 * 
+	 * @param calendarAccount
+	 * @param startDate
+	 * @param endDate
+	 * @return the busy periods, or null if busy time is not available for the account and the caller should use {@link ICalendarDataDao#getCalendar(ICalendarAccount, Date, Date)}
+	 */
+	PeriodList getBusyPeriods(ICalendarAccount calendarAccount, Date startDate, Date endDate);
+}
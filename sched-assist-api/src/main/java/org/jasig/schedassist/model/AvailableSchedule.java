@@ -24,41 +24,89 @@ import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
+import org.apache.commons.lang.Validate;
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 
 /**
  * Container for a {@link SortedSet} of {@link AvailableBlock}s.
  * 
+ * The schedule can alternatively be backed by an {@link AvailableSlotBitmap}; in that case
+ * the {@link SortedSet} is only materialized (via {@link AvailableSlotBitmap#combine()}) when 
+ * {@link #getAvailableBlocks()} is called, and adds/removes operate on the minutes covered by the
+ * blocks rather than on block equality.
+ * 
  * @author Nicholas Blair, nblair@doit.wisc.edu
  * @version $Id: AvailableSchedule.java 2515 2010-09-09 18:23:35Z npblair $
  */
 public class AvailableSchedule {
 	
-	private SortedSet<AvailableBlock> availableBlocks = new TreeSet<AvailableBlock>();
+	private SortedSet<AvailableBlock> availableBlocks;
+	private final AvailableSlotBitmap slotBitmap;
 	
 	/**
 	 * 
 	 * @param availableBlocks
 	 */
 	public AvailableSchedule(Set<AvailableBlock> availableBlocks) {
-		this.availableBlocks.addAll(availableBlocks);
+		this.availableBlocks = new TreeSet<AvailableBlock>(availableBlocks);
+		this.slotBitmap = null;
+	}
+	
+	/**
+	 * 
+	 * @param slotBitmap the backing store for this schedule (not copied)
+	 */
+	public AvailableSchedule(AvailableSlotBitmap slotBitmap) {
+		Validate.notNull(slotBitmap, "slotBitmap cannot be null");
+		this.slotBitmap = slotBitmap;
 	}
 	
 	/**
+	 * If this schedule is backed by an {@link AvailableSlotBitmap}, the returned set
+	 * is built on first call and discarded by {@link #addAvailableBlocks(Set)} and
+	 * {@link #removeAvailableBlocks(Set)}; changes to it are not reflected in the bitmap.
+	 * 
 	 * @return the availableBlocks
 	 */
 	public SortedSet<AvailableBlock> getAvailableBlocks() {
+		if(this.availableBlocks == null) {
+			this.availableBlocks = this.slotBitmap.combine();
+		}
 		return availableBlocks;
 	}
 	
+	/**
+	 * 
+	 * @return true if this schedule is backed by an {@link AvailableSlotBitmap}
+	 */
+	public boolean isSlotBitmapBacked() {
+		return this.slotBitmap != null;
+	}
+	
+	/**
+	 * 
+	 * @return a new {@link AvailableSlotBitmap} containing the minutes covered by this schedule
+	 */
+	public AvailableSlotBitmap toSlotBitmap() {
+		if(this.slotBitmap != null) {
+			return new AvailableSlotBitmap(this.slotBitmap);
+		}
+		return AvailableSlotBitmap.valueOf(this.availableBlocks);
+	}
+	
 	/**
 	 * Add all of the supplied availableBlocks to this schedule.
 	 * 
 	 * @param availableBlocks
 	 */
 	public void addAvailableBlocks(final Set<AvailableBlock> availableBlocks) {
-		this.availableBlocks.addAll(availableBlocks);
+		if(this.slotBitmap != null) {
+			this.slotBitmap.addAll(availableBlocks);
+			this.availableBlocks = null;
+		} else {
+			this.availableBlocks.addAll(availableBlocks);
+		}
 	}
 	
 	/**
@@ -67,7 +115,12 @@ public class AvailableSchedule {
 	 * @param blocksToRemove
 	 */
 	public void removeAvailableBlocks(Set<AvailableBlock> blocksToRemove) {
-		this.availableBlocks.removeAll(blocksToRemove);
+		if(this.slotBitmap != null) {
+			this.slotBitmap.removeAll(blocksToRemove);
+			this.availableBlocks = null;
+		} else {
+			this.availableBlocks.removeAll(blocksToRemove);
+		}
 	}
 	
 	/**
@@ -75,6 +128,9 @@ public class AvailableSchedule {
 	 * @return true if the internal set of blocks is empty
 	 */
 	public boolean isEmpty() {
+		if(this.slotBitmap != null) {
+			return this.slotBitmap.isEmpty();
+		}
 		return this.availableBlocks.isEmpty();
 	}
 	
@@ -85,6 +141,8 @@ public class AvailableSchedule {
 	public Date getScheduleStartTime() {
 		if(isEmpty()) {
 			return null;
+		} else if(this.slotBitmap != null) {
+			return this.slotBitmap.getStartTime();
 		} else {
 			return this.availableBlocks.first().getStartTime();
 		}
@@ -97,6 +155,8 @@ public class AvailableSchedule {
 	public Date getScheduleEndTime() {
 		if(isEmpty()) {
 			return null;
+		} else if(this.slotBitmap != null) {
+			return this.slotBitmap.getEndTime();
 		} else {
 			return this.availableBlocks.last().getEndTime();
 		}
@@ -111,7 +171,7 @@ public class AvailableSchedule {
 		}
 		AvailableSchedule rhs = (AvailableSchedule) object;
 		return new EqualsBuilder()
-			.append(this.availableBlocks, rhs.availableBlocks)
+			.append(this.getAvailableBlocks(), rhs.getAvailableBlocks())
 			.isEquals();
 	}
 	/**
@@ -119,7 +179,7 @@ public class AvailableSchedule {
 	 */
 	public int hashCode() {
 		return new HashCodeBuilder(875004871, 1021420287)
-			.append(this.availableBlocks)
+			.append(this.getAvailableBlocks())
 			.toHashCode();
 	}
 	
@@ -0,0 +1,793 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jasig.schedassist.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.commons.lang.Validate;
+import org.apache.commons.lang.builder.EqualsBuilder;
+import org.apache.commons.lang.builder.HashCodeBuilder;
+
+/**
+ * Compact representation of availability at one minute resolution.
+ *
+ * Each day is stored as a bitmap of {@link #SLOTS_PER_DAY} bits (one per minute) packed into a
+ * long[]; a set bit means the minute is available. Days are aligned on UTC midnight, so every
+ * day has exactly the same number of slots regardless of daylight savings transitions in the
+ * default time zone. Visitor limit and meeting location are kept in a per-day side array of
+ * indexes into an attribute table; the side array is only allocated for days that contain
+ * slots with a visitor limit other than 1 or a non-null meeting location.
+ *
+ * Adding, removing, subsetting and conflict checks operate on whole words rather than on
+ * {@link AvailableBlock} instances; {@link AvailableBlock}s are only created by {@link #combine()}
+ * and {@link #expand(int)}.
+ *
+ * Since the bitmap records which minutes are available rather than which blocks were added,
+ * overlapping or adjacent blocks with the same visitor limit and meeting location are merged.
+ * The visitorsAttending field of {@link AvailableBlock} is not recorded.
+ *
+ * Instances are not thread safe.
+ */
+public final class AvailableSlotBitmap {
+
+	/**
+	 * Number of slots (minutes) in each day.
+	 */
+	public static final int SLOTS_PER_DAY = 24 * 60;
+	static final int WORDS_PER_DAY = (SLOTS_PER_DAY + Long.SIZE - 1) / Long.SIZE;
+	private static final long MILLISECONDS_PER_MINUTE = 60 * 1000L;
+	private static final SlotAttributes DEFAULT_ATTRIBUTES = new SlotAttributes(1, null);
+
+	private final TreeMap<Long, DaySlots> days = new TreeMap<Long, DaySlots>();
+	private final List<SlotAttributes> attributeTable = new ArrayList<SlotAttributes>();
+	private final Map<SlotAttributes, Integer> attributeIndexes = new HashMap<SlotAttributes, Integer>();
+
+	/**
+	 * Create an empty bitmap.
+	 */
+	public AvailableSlotBitmap() {
+		attributeTable.add(DEFAULT_ATTRIBUTES);
+		attributeIndexes.put(DEFAULT_ATTRIBUTES, 0);
+	}
+
+	/**
+	 * Copy constructor.
+	 *
+	 * @param source
+	 */
+	public AvailableSlotBitmap(AvailableSlotBitmap source) {
+		Validate.notNull(source, "source cannot be null");
+		this.attributeTable.addAll(source.attributeTable);
+		this.attributeIndexes.putAll(source.attributeIndexes);
+		for(Map.Entry<Long, DaySlots> entry : source.days.entrySet()) {
+			this.days.put(entry.getKey(), new DaySlots(entry.getValue()));
+		}
+	}
+
+	/**
+	 *
+	 * @param blocks
+	 * @return a new bitmap containing every minute covered by the blocks argument
+	 */
+	public static AvailableSlotBitmap valueOf(Collection<AvailableBlock> blocks) {
+		AvailableSlotBitmap result = new AvailableSlotBitmap();
+		result.addAll(blocks);
+		return result;
+	}
+
+	/**
+	 * Mark every minute covered by the block as available, with the block's visitor limit and meeting location.
+	 *
+	 * @param block
+	 */
+	public void add(AvailableBlock block) {
+		Validate.notNull(block, "block cannot be null");
+		int attributeIndex = indexOf(new SlotAttributes(block.getVisitorLimit(), block.getMeetingLocation()));
+		long startMinute = toMinute(block.getStartTime());
+		long endMinute = toMinute(block.getEndTime());
+
+		long day = dayOf(startMinute);
+		while(startMinute < endMinute) {
+			long dayStart = day * SLOTS_PER_DAY;
+			int from = (int) (startMinute - dayStart);
+			int to = (int) Math.min(endMinute - dayStart, SLOTS_PER_DAY);
+			DaySlots slots = days.get(day);
+			if(slots == null) {
+				slots = new DaySlots();
+				days.put(day, slots);
+			}
+			slots.set(from, to, attributeIndex);
+			startMinute = dayStart + to;
+			day++;
+		}
+	}
+
+	/**
+	 *
+	 * @see #add(AvailableBlock)
+	 * @param blocks
+	 */
+	public void addAll(Collection<AvailableBlock> blocks) {
+		for(AvailableBlock block : blocks) {
+			add(block);
+		}
+	}
+
+	/**
+	 * Mark every minute covered by the block as unavailable.
+	 * The visitor limit and meeting location of the argument are ignored.
+	 *
+	 * @param block
+	 */
+	public void remove(AvailableBlock block) {
+		Validate.notNull(block, "block cannot be null");
+		clear(toMinute(block.getStartTime()), toMinute(block.getEndTime()));
+	}
+
+	/**
+	 *
+	 * @see #remove(AvailableBlock)
+	 * @param blocks
+	 */
+	public void removeAll(Collection<AvailableBlock> blocks) {
+		for(AvailableBlock block : blocks) {
+			remove(block);
+		}
+	}
+
+	/**
+	 * Add every available minute in the argument to this bitmap.
+	 * Minutes available in both take the visitor limit and meeting location from the argument.
+	 *
+	 * @param other
+	 */
+	public void union(AvailableSlotBitmap other) {
+		int [] remap = new int[other.attributeTable.size()];
+		for(int i = 0; i < remap.length; i++) {
+			remap[i] = indexOf(other.attributeTable.get(i));
+		}
+		for(Map.Entry<Long, DaySlots> entry : other.days.entrySet()) {
+			DaySlots mine = days.get(entry.getKey());
+			if(mine == null) {
+				mine = new DaySlots();
+				days.put(entry.getKey(), mine);
+			}
+			mine.or(entry.getValue(), remap);
+		}
+	}
+
+	/**
+	 * Remove every available minute in the argument from this bitmap.
+	 *
+	 * @param other
+	 */
+	public void subtract(AvailableSlotBitmap other) {
+		for(Map.Entry<Long, DaySlots> entry : other.days.entrySet()) {
+			DaySlots mine = days.get(entry.getKey());
+			if(mine != null) {
+				mine.andNot(entry.getValue());
+				if(mine.isEmpty()) {
+					days.remove(entry.getKey());
+				}
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return true if no minutes are available
+	 */
+	public boolean isEmpty() {
+		return days.isEmpty();
+	}
+
+	/**
+	 *
+	 * @return the number of available minutes
+	 */
+	public long countSlots() {
+		long count = 0;
+		for(DaySlots slots : days.values()) {
+			count += slots.cardinality();
+		}
+		return count;
+	}
+
+	/**
+	 *
+	 * @return the start of the first available minute, or null if {@link #isEmpty()}
+	 */
+	public Date getStartTime() {
+		if(isEmpty()) {
+			return null;
+		}
+		Map.Entry<Long, DaySlots> first = days.firstEntry();
+		return toDate(first.getKey() * SLOTS_PER_DAY + first.getValue().nextSetBit(0));
+	}
+
+	/**
+	 *
+	 * @return the end of the last available minute, or null if {@link #isEmpty()}
+	 */
+	public Date getEndTime() {
+		if(isEmpty()) {
+			return null;
+		}
+		Map.Entry<Long, DaySlots> last = days.lastEntry();
+		return toDate(last.getKey() * SLOTS_PER_DAY + last.getValue().previousSetBit(SLOTS_PER_DAY - 1) + 1);
+	}
+
+	/**
+	 *
+	 * @param block
+	 * @return true if every minute between the start and end of the block is available
+	 */
+	public boolean contains(AvailableBlock block) {
+		return contains(block.getStartTime(), block.getEndTime());
+	}
+
+	/**
+	 *
+	 * @param startTime
+	 * @param endTime
+	 * @return true if every minute between startTime (inclusive) and endTime (exclusive) is available
+	 */
+	public boolean contains(Date startTime, Date endTime) {
+		long startMinute = toMinute(startTime);
+		long endMinute = toMinute(endTime);
+		if(startMinute >= endMinute) {
+			return false;
+		}
+		long day = dayOf(startMinute);
+		while(startMinute < endMinute) {
+			long dayStart = day * SLOTS_PER_DAY;
+			int from = (int) (startMinute - dayStart);
+			int to = (int) Math.min(endMinute - dayStart, SLOTS_PER_DAY);
+			DaySlots slots = days.get(day);
+			if(slots == null || !slots.allSet(from, to)) {
+				return false;
+			}
+			startMinute = dayStart + to;
+			day++;
+		}
+		return true;
+	}
+
+	/**
+	 *
+	 * @param block
+	 * @return true if any minute between the start and end of the block is available
+	 */
+	public boolean overlaps(AvailableBlock block) {
+		return overlaps(block.getStartTime(), block.getEndTime());
+	}
+
+	/**
+	 *
+	 * @param startTime
+	 * @param endTime
+	 * @return true if any minute between startTime (inclusive) and endTime (exclusive) is available
+	 */
+	public boolean overlaps(Date startTime, Date endTime) {
+		long startMinute = toMinute(startTime);
+		long endMinute = toMinute(endTime);
+		if(startMinute >= endMinute) {
+			return false;
+		}
+		SortedMap<Long, DaySlots> range = days.subMap(dayOf(startMinute), true, dayOf(endMinute - 1), true);
+		for(Map.Entry<Long, DaySlots> entry : range.entrySet()) {
+			long dayStart = entry.getKey() * SLOTS_PER_DAY;
+			int from = (int) Math.max(startMinute - dayStart, 0);
+			int to = (int) Math.min(endMinute - dayStart, SLOTS_PER_DAY);
+			if(entry.getValue().anySet(from, to)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 *
+	 * @param startTime
+	 * @param endTime
+	 * @return a new bitmap containing only the available minutes between startTime (inclusive) and endTime (exclusive)
+	 */
+	public AvailableSlotBitmap subset(Date startTime, Date endTime) {
+		AvailableSlotBitmap result = new AvailableSlotBitmap();
+		result.attributeTable.clear();
+		result.attributeTable.addAll(this.attributeTable);
+		result.attributeIndexes.putAll(this.attributeIndexes);
+
+		long startMinute = toMinute(startTime);
+		long endMinute = toMinute(endTime);
+		if(startMinute >= endMinute) {
+			return result;
+		}
+		SortedMap<Long, DaySlots> range = days.subMap(dayOf(startMinute), true, dayOf(endMinute - 1), true);
+		for(Map.Entry<Long, DaySlots> entry : range.entrySet()) {
+			long dayStart = entry.getKey() * SLOTS_PER_DAY;
+			int from = (int) Math.max(startMinute - dayStart, 0);
+			int to = (int) Math.min(endMinute - dayStart, SLOTS_PER_DAY);
+			DaySlots copy = new DaySlots(entry.getValue());
+			copy.clear(0, from);
+			copy.clear(to, SLOTS_PER_DAY);
+			if(!copy.isEmpty()) {
+				result.days.put(entry.getKey(), copy);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Equivalent to {@link AvailableBlockBuilder#combine(SortedSet)} on the 1 minute expansion of this bitmap.
+	 *
+	 * @return the largest possible {@link AvailableBlock}s covering the available minutes; adjacent minutes are
+	 * only combined if they share the same visitor limit and meeting location
+	 */
+	public SortedSet<AvailableBlock> combine() {
+		SortedSet<AvailableBlock> result = new TreeSet<AvailableBlock>();
+		for(SlotRun run : runs()) {
+			SlotAttributes attributes = attributeTable.get(run.attributeIndex);
+			result.add(new AvailableBlock(toDate(run.startMinute), toDate(run.endMinute), attributes.visitorLimit, attributes.meetingLocation));
+		}
+		return result;
+	}
+
+	/**
+	 * Equivalent to {@link AvailableBlockBuilder#expand(java.util.Set, int)} on the result of {@link #combine()}.
+	 *
+	 * @param meetingLengthMinutes
+	 * @return consecutive {@link AvailableBlock}s of meetingLengthMinutes duration
+	 */
+	public SortedSet<AvailableBlock> expand(final int meetingLengthMinutes) {
+		Validate.isTrue(meetingLengthMinutes > 0, "meetingLengthMinutes must be greater than 0");
+		SortedSet<AvailableBlock> result = new TreeSet<AvailableBlock>();
+		for(SlotRun run : runs()) {
+			SlotAttributes attributes = attributeTable.get(run.attributeIndex);
+			for(long start = run.startMinute; run.endMinute - start >= meetingLengthMinutes; start += meetingLengthMinutes) {
+				result.add(new AvailableBlock(toDate(start), toDate(start + meetingLengthMinutes), attributes.visitorLimit, attributes.meetingLocation));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Walk the days in order and collect the maximal runs of available minutes that share
+	 * the same attributes, joining runs that continue across midnight.
+	 *
+	 * @return the runs in chronological order
+	 */
+	List<SlotRun> runs() {
+		List<SlotRun> result = new ArrayList<SlotRun>();
+		SlotRun current = null;
+		for(Map.Entry<Long, DaySlots> entry : days.entrySet()) {
+			long dayStart = entry.getKey() * SLOTS_PER_DAY;
+			DaySlots slots = entry.getValue();
+			int from = slots.nextSetBit(0);
+			while(from >= 0) {
+				int to = slots.nextClearBit(from);
+				int index = from;
+				while(index < to) {
+					int attributeIndex = slots.attributeAt(index);
+					int runEnd = slots.attributeRunEnd(index, to);
+					if(current != null && current.endMinute == dayStart + index && current.attributeIndex == attributeIndex) {
+						current.endMinute = dayStart + runEnd;
+					} else {
+						current = new SlotRun(dayStart + index, dayStart + runEnd, attributeIndex);
+						result.add(current);
+					}
+					index = runEnd;
+				}
+				from = slots.nextSetBit(to);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Mark the minutes between startMinute (inclusive) and endMinute (exclusive) unavailable.
+	 *
+	 * @param startMinute
+	 * @param endMinute
+	 */
+	private void clear(long startMinute, long endMinute) {
+		if(startMinute >= endMinute) {
+			return;
+		}
+		SortedMap<Long, DaySlots> range = days.subMap(dayOf(startMinute), true, dayOf(endMinute - 1), true);
+		for(Iterator<Map.Entry<Long, DaySlots>> i = range.entrySet().iterator(); i.hasNext();) {
+			Map.Entry<Long, DaySlots> entry = i.next();
+			long dayStart = entry.getKey() * SLOTS_PER_DAY;
+			int from = (int) Math.max(startMinute - dayStart, 0);
+			int to = (int) Math.min(endMinute - dayStart, SLOTS_PER_DAY);
+			DaySlots slots = entry.getValue();
+			slots.clear(from, to);
+			if(slots.isEmpty()) {
+				i.remove();
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param attributes
+	 * @return the index of the attributes in the attribute table, adding them if not yet present
+	 */
+	private int indexOf(SlotAttributes attributes) {
+		Integer index = attributeIndexes.get(attributes);
+		if(index == null) {
+			if(attributeTable.size() > Character.MAX_VALUE) {
+				throw new IllegalStateException("too many distinct visitorLimit/meetingLocation combinations");
+			}
+			index = attributeTable.size();
+			attributeTable.add(attributes);
+			attributeIndexes.put(attributes, index);
+		}
+		return index;
+	}
+
+	/**
+	 *
+	 * @param date
+	 * @return the number of whole minutes since the epoch
+	 */
+	static long toMinute(Date date) {
+		return Math.floorDiv(date.getTime(), MILLISECONDS_PER_MINUTE);
+	}
+
+	/**
+	 *
+	 * @param minute
+	 * @return the {@link Date} for the minute since the epoch
+	 */
+	static Date toDate(long minute) {
+		return new Date(minute * MILLISECONDS_PER_MINUTE);
+	}
+
+	/**
+	 *
+	 * @param minute
+	 * @return the number of whole UTC days since the epoch
+	 */
+	static long dayOf(long minute) {
+		return Math.floorDiv(minute, SLOTS_PER_DAY);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object object) {
+		if (!(object instanceof AvailableSlotBitmap)) {
+			return false;
+		}
+		AvailableSlotBitmap rhs = (AvailableSlotBitmap) object;
+		List<SlotRun> left = this.runs();
+		List<SlotRun> right = rhs.runs();
+		if(left.size() != right.size()) {
+			return false;
+		}
+		for(int i = 0; i < left.size(); i++) {
+			SlotRun l = left.get(i);
+			SlotRun r = right.get(i);
+			if(l.startMinute != r.startMinute || l.endMinute != r.endMinute ||
+					!this.attributeTable.get(l.attributeIndex).equals(rhs.attributeTable.get(r.attributeIndex))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		HashCodeBuilder builder = new HashCodeBuilder(1338946427, 416531471);
+		for(SlotRun run : runs()) {
+			builder.append(run.startMinute).append(run.endMinute).append(attributeTable.get(run.attributeIndex));
+		}
+		return builder.toHashCode();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "AvailableSlotBitmap [days=" + days.size() + ", slots=" + countSlots() + "]";
+	}
+
+	/**
+	 * A maximal run of available minutes sharing the same attributes.
+	 */
+	static final class SlotRun {
+		final long startMinute;
+		long endMinute;
+		final int attributeIndex;
+
+		SlotRun(long startMinute, long endMinute, int attributeIndex) {
+			this.startMinute = startMinute;
+			this.endMinute = endMinute;
+			this.attributeIndex = attributeIndex;
+		}
+	}
+
+	/**
+	 * Visitor limit and meeting location pair.
+	 */
+	static final class SlotAttributes {
+		final int visitorLimit;
+		final String meetingLocation;
+
+		SlotAttributes(int visitorLimit, String meetingLocation) {
+			this.visitorLimit = visitorLimit;
+			this.meetingLocation = meetingLocation;
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (!(object instanceof SlotAttributes)) {
+				return false;
+			}
+			SlotAttributes rhs = (SlotAttributes) object;
+			return new EqualsBuilder()
+				.append(this.visitorLimit, rhs.visitorLimit)
+				.append(this.meetingLocation, rhs.meetingLocation)
+				.isEquals();
+		}
+
+		@Override
+		public int hashCode() {
+			return new HashCodeBuilder(-1702366447, 1190315883)
+				.append(this.visitorLimit)
+				.append(this.meetingLocation)
+				.toHashCode();
+		}
+	}
+
+	/**
+	 * The slots for a single day.
+	 * Bits at or beyond {@link AvailableSlotBitmap#SLOTS_PER_DAY} are never set.
+	 */
+	static final class DaySlots {
+		private final long [] words;
+		/**
+		 * Index into the attribute table for each slot; null when every slot uses index 0.
+		 */
+		private char [] attributes;
+
+		DaySlots() {
+			this.words = new long[WORDS_PER_DAY];
+		}
+
+		DaySlots(DaySlots source) {
+			this.words = source.words.clone();
+			this.attributes = source.attributes == null ? null : source.attributes.clone();
+		}
+
+		void set(int from, int to, int attributeIndex) {
+			if(from >= to) {
+				return;
+			}
+			applyRange(from, to, true);
+			if(attributeIndex != 0 && attributes == null) {
+				attributes = new char[SLOTS_PER_DAY];
+			}
+			if(attributes != null) {
+				Arrays.fill(attributes, from, to, (char) attributeIndex);
+			}
+		}
+
+		void clear(int from, int to) {
+			if(from >= to) {
+				return;
+			}
+			applyRange(from, to, false);
+			if(attributes != null) {
+				Arrays.fill(attributes, from, to, (char) 0);
+			}
+		}
+
+		void or(DaySlots other, int [] attributeRemap) {
+			for(int i = 0; i < WORDS_PER_DAY; i++) {
+				this.words[i] |= other.words[i];
+			}
+			boolean remapped = false;
+			for(int i = 0; i < attributeRemap.length && !remapped; i++) {
+				remapped = attributeRemap[i] != 0;
+			}
+			if(other.attributes == null && !remapped) {
+				if(this.attributes != null) {
+					for(int slot = other.nextSetBit(0); slot >= 0; slot = other.nextSetBit(slot + 1)) {
+						this.attributes[slot] = 0;
+					}
+				}
+				return;
+			}
+			if(this.attributes == null) {
+				this.attributes = new char[SLOTS_PER_DAY];
+			}
+			for(int slot = other.nextSetBit(0); slot >= 0; slot = other.nextSetBit(slot + 1)) {
+				this.attributes[slot] = (char) attributeRemap[other.attributeAt(slot)];
+			}
+		}
+
+		void andNot(DaySlots other) {
+			for(int i = 0; i < WORDS_PER_DAY; i++) {
+				this.words[i] &= ~other.words[i];
+			}
+			if(this.attributes != null) {
+				for(int slot = other.nextSetBit(0); slot >= 0; slot = other.nextSetBit(slot + 1)) {
+					this.attributes[slot] = 0;
+				}
+			}
+		}
+
+		boolean isEmpty() {
+			for(long word : words) {
+				if(word != 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		int cardinality() {
+			int count = 0;
+			for(long word : words) {
+				count += Long.bitCount(word);
+			}
+			return count;
+		}
+
+		int attributeAt(int slot) {
+			return attributes == null ? 0 : attributes[slot];
+		}
+
+		/**
+		 *
+		 * @param from
+		 * @param limit
+		 * @return the first slot after from (and no later than limit) with a different attribute index
+		 */
+		int attributeRunEnd(int from, int limit) {
+			if(attributes == null) {
+				return limit;
+			}
+			char value = attributes[from];
+			int index = from + 1;
+			while(index < limit && attributes[index] == value) {
+				index++;
+			}
+			return index;
+		}
+
+		boolean allSet(int from, int to) {
+			return nextClearBit(from) >= to;
+		}
+
+		boolean anySet(int from, int to) {
+			int next = nextSetBit(from);
+			return next >= 0 && next < to;
+		}
+
+		/**
+		 *
+		 * @param from
+		 * @return the index of the first set bit at or after from, or -1 if none
+		 */
+		int nextSetBit(int from) {
+			if(from >= SLOTS_PER_DAY) {
+				return -1;
+			}
+			int wordIndex = from >>> 6;
+			long word = words[wordIndex] & (-1L << from);
+			while(true) {
+				if(word != 0) {
+					return (wordIndex * Long.SIZE) + Long.numberOfTrailingZeros(word);
+				}
+				if(++wordIndex == WORDS_PER_DAY) {
+					return -1;
+				}
+				word = words[wordIndex];
+			}
+		}
+
+		/**
+		 *
+		 * @param from
+		 * @return the index of the first clear bit at or after from, capped at {@link AvailableSlotBitmap#SLOTS_PER_DAY}
+		 */
+		int nextClearBit(int from) {
+			if(from >= SLOTS_PER_DAY) {
+				return SLOTS_PER_DAY;
+			}
+			int wordIndex = from >>> 6;
+			long word = ~words[wordIndex] & (-1L << from);
+			while(true) {
+				if(word != 0) {
+					return Math.min((wordIndex * Long.SIZE) + Long.numberOfTrailingZeros(word), SLOTS_PER_DAY);
+				}
+				if(++wordIndex == WORDS_PER_DAY) {
+					return SLOTS_PER_DAY;
+				}
+				word = ~words[wordIndex];
+			}
+		}
+
+		/**
+		 *
+		 * @param from
+		 * @return the index of the last set bit at or before from, or -1 if none
+		 */
+		int previousSetBit(int from) {
+			int wordIndex = from >>> 6;
+			long word = words[wordIndex] & (-1L >>> -(from + 1));
+			while(true) {
+				if(word != 0) {
+					return (wordIndex + 1) * Long.SIZE - 1 - Long.numberOfLeadingZeros(word);
+				}
+				if(wordIndex-- == 0) {
+					return -1;
+				}
+				word = words[wordIndex];
+			}
+		}
+
+		private void applyRange(int from, int to, boolean value) {
+			int startWord = from >>> 6;
+			int endWord = (to - 1) >>> 6;
+			long firstMask = -1L << from;
+			long lastMask = -1L >>> -to;
+			if(startWord == endWord) {
+				setBits(startWord, firstMask & lastMask, value);
+			} else {
+				setBits(startWord, firstMask, value);
+				for(int i = startWord + 1; i < endWord; i++) {
+					words[i] = value ? -1L : 0L;
+				}
+				setBits(endWord, lastMask, value);
+			}
+		}
+
+		private void setBits(int wordIndex, long mask, boolean value) {
+			if(value) {
+				words[wordIndex] |= mask;
+			} else {
+				words[wordIndex] &= ~mask;
+			}
+		}
+	}
+}
@@ -103,6 +103,8 @@ public class DefaultEventUtilsImpl implements IEventUtils {
 	private final IAffiliationSource affiliationSource;
 	private String eventClassForPersonOwners = Clazz.CONFIDENTIAL.getValue();
 	private String eventClassForResourceOwners = Clazz.PUBLIC.getValue();
+	private RecurrenceCache recurrenceCache;
+	private final boolean attendeeMatchingOverridden = isAttendeeMatchingOverridden();
 
 	/**
 	 * Default constructor, sets the {@link IAffiliationSource} to the 
@@ -148,6 +150,20 @@ public class DefaultEventUtilsImpl implements IEventUtils {
 	public void setEventClassForResourceOwners(String eventClassForResourceOwners) {
 		this.eventClassForResourceOwners = eventClassForResourceOwners;
 	}
+	/**
+	 * @return the recurrenceCache, may be null
+	 */
+	public RecurrenceCache getRecurrenceCache() {
+		return recurrenceCache;
+	}
+	/**
+	 * Set to null (the default) to expand recurrences on every call to {@link #calculateRecurrence(VEvent, Date, Date)}.
+	 * 
+	 * @param recurrenceCache the recurrenceCache to set
+	 */
+	public void setRecurrenceCache(RecurrenceCache recurrenceCache) {
+		this.recurrenceCache = recurrenceCache;
+	}
 	/*
 	 * (non-Javadoc)
 	 * @see org.jasig.schedassist.model.IEventUtils#attendeeMatchesPerson(net.fortuna.ical4j.model.Property, org.jasig.schedassist.model.ICalendarAccount)
@@ -457,6 +473,84 @@ public class DefaultEventUtilsImpl implements IEventUtils {
 	}
 
 
+	/*
+	 * (non-Javadoc)
+	 * @see org.jasig.schedassist.model.IEventUtils#willEventCauseConflict(org.jasig.schedassist.model.ICalendarAccount, org.jasig.schedassist.model.EventDigest)
+	 */
+	@Override
+	public boolean willEventCauseConflict(ICalendarAccount calendarAccount, EventDigest event) {
+		if(null == event || null == calendarAccount) {
+			return false;
+		}
+		if(attendeeMatchingOverridden) {
+			return willEventCauseConflict(calendarAccount, event.getEvent());
+		}
+		// check to see if the owner an attendee and has ACCEPTED
+		long identity = EventDigest.identityOf(calendarAccount);
+		for(int i = 0; i < event.getAttendeeCount(); i++) {
+			if(event.getAttendeeIdentity(i) == identity && attendeeMatchesPerson(event.getAttendee(i), calendarAccount)) {
+				return PartStat.ACCEPTED.equals(event.getAttendeePartStat(i));
+			}
+		}
+		// otherwise the calendarAccount might be the organizer
+		return isAttendingAsOwner(event, calendarAccount);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.jasig.schedassist.model.IEventUtils#isAttendingAsVisitor(org.jasig.schedassist.model.EventDigest, org.jasig.schedassist.model.ICalendarAccount)
+	 */
+	@Override
+	public boolean isAttendingAsVisitor(EventDigest event, ICalendarAccount proposedVisitor) {
+		if(attendeeMatchingOverridden) {
+			return isAttendingAsVisitor(event.getEvent(), proposedVisitor);
+		}
+		// only test the appointment if it's marked as an available appointment
+		long identity = EventDigest.identityOf(proposedVisitor);
+		if(event.isAvailableAppointment() && identity != 0) {
+			for(int i = 0; i < event.getAttendeeCount(); i++) {
+				if(event.getAttendeeRole(i) == EventDigest.ROLE_VISITOR && event.getAttendeeIdentity(i) == identity
+						&& attendeeMatchesPerson(event.getAttendee(i), proposedVisitor)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.jasig.schedassist.model.IEventUtils#isAttendingAsOwner(org.jasig.schedassist.model.EventDigest, org.jasig.schedassist.model.ICalendarAccount)
+	 */
+	@Override
+	public boolean isAttendingAsOwner(EventDigest event, ICalendarAccount proposedOwner) {
+		if(attendeeMatchingOverridden) {
+			return isAttendingAsOwner(event.getEvent(), proposedOwner);
+		}
+		// only test the appointment if it's marked as an available appointment
+		if(event.isAvailableAppointment()) {
+			return event.getOrganizerIdentity() != 0 && event.getOrganizerIdentity() == EventDigest.identityOf(proposedOwner)
+					&& attendeeMatchesPerson(event.getOrganizer(), proposedOwner);
+		}
+		return false;
+	}
+
+	/**
+	 * The {@link EventDigest} checks compare identity hashes before calling 
+	 * {@link #attendeeMatchesPerson(Property, ICalendarAccount)}, which is only valid for this class's implementation.
+	 * 
+	 * @return true if a subclass overrides {@link #attendeeMatchesPerson(Property, ICalendarAccount)}
+	 */
+	private boolean isAttendeeMatchingOverridden() {
+		try {
+			return getClass().getMethod("attendeeMatchesPerson", Property.class, ICalendarAccount.class)
+					.getDeclaringClass() != DefaultEventUtilsImpl.class;
+		} catch (NoSuchMethodException e) {
+			return true;
+		}
+	}
+
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.jasig.schedassist.model.IEventUtils#convertScheduleForReflection(org.jasig.schedassist.model.AvailableSchedule)
@@ -653,25 +747,43 @@ public class DefaultEventUtilsImpl implements IEventUtils {
 	@Override
 	public PeriodList calculateRecurrence(VEvent event,
 			Date startBoundary, Date endBoundary) {
+		final RecurrenceCache cache = this.recurrenceCache;
+		final String cacheKey = cache == null ? null : RecurrenceCache.keyFor(event);
+		if(cacheKey != null) {
+			PeriodList cached = cache.get(cacheKey, startBoundary, endBoundary);
+			if(cached != null) {
+				return cached;
+			}
+		}
+		
 		Period period = new Period(new DateTime(startBoundary), new DateTime(endBoundary));
 		PeriodList periodList = event.calculateRecurrenceSet(period);
 		PeriodList results = new PeriodList();
+		RecurrenceCache.Expansion expansion = null;
+		if(cacheKey != null) {
+			expansion = new RecurrenceCache.Expansion(startBoundary, endBoundary, periodList.size());
+		}
 		for(Object o: periodList) {
 			Period p = (Period) o;
 			
+			Period result = p;
 			if(isAllDayPeriod(p)) {
 				// this period is broken
 				// the Periods returned by ical4j's calculateRecurrenceSet have range start/ends that are off by the system default's timezone offset
 				TimeZone systemTimezone = java.util.TimeZone.getDefault();
 
 				int offset = systemTimezone.getOffset(p.getStart().getTime());
-				Period fixed = new Period(
+				result = new Period(
 						new DateTime(DateUtils.addMilliseconds(p.getRangeStart(), -offset)), 
 						new DateTime(DateUtils.addMilliseconds(p.getRangeEnd(), -offset)));
-				results.add(fixed);
-			} else {
-				results.add(p);
 			}
+			results.add(result);
+			if(expansion != null) {
+				expansion.add(p, result);
+			}
+		}
+		if(expansion != null) {
+			cache.put(cacheKey, expansion);
 		}
 		return results;
 	}
@@ -0,0 +1,382 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jasig.schedassist.model;
+
+import java.nio.charset.StandardCharsets;
+
+import net.fortuna.ical4j.model.Parameter;
+import net.fortuna.ical4j.model.Property;
+import net.fortuna.ical4j.model.PropertyList;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.parameter.Cn;
+import net.fortuna.ical4j.model.parameter.PartStat;
+import net.fortuna.ical4j.model.property.DtEnd;
+import net.fortuna.ical4j.model.property.DtStart;
+import net.fortuna.ical4j.model.property.Status;
+import net.fortuna.ical4j.model.property.Transp;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+/**
+ * Compact, immutable projection of the parts of a {@link VEvent} that {@link IVisibleScheduleBuilder}s
+ * and conflict checks inspect.
+ *
+ * An {@link EventDigest} is computed once per event with {@link #of(VEvent)}; afterwards the start and end are
+ * epoch milliseconds, the STATUS, TRANSP and Scheduling Assistant marker are flags, and the ORGANIZER and
+ * ATTENDEEs are reduced to 64 bit hashes of their common name and address (see {@link #identityOf(ICalendarAccount)}),
+ * so repeated checks against the same event do not walk its property and parameter lists again.
+ * The hashes only narrow the search: the digest keeps the event and its ORGANIZER and ATTENDEE properties,
+ * so a hash match can be confirmed against the actual values.
+ */
+public final class EventDigest {
+
+	/**
+	 * Role code for an attendee without a recognized {@link AppointmentRole}.
+	 */
+	public static final byte ROLE_NONE = 0;
+	/**
+	 * Role code for an attendee with {@link AppointmentRole#OWNER}.
+	 */
+	public static final byte ROLE_OWNER = 1;
+	/**
+	 * Role code for an attendee with {@link AppointmentRole#VISITOR}.
+	 */
+	public static final byte ROLE_VISITOR = 2;
+
+	private static final PartStat [] PARTSTATS = { PartStat.ACCEPTED, PartStat.DECLINED, PartStat.TENTATIVE,
+		PartStat.NEEDS_ACTION, PartStat.DELEGATED, PartStat.COMPLETED, PartStat.IN_PROCESS };
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final VEvent event;
+	private final boolean timed;
+	private final long startTime;
+	private final long endTime;
+	private final boolean recurring;
+	private final boolean availableAppointment;
+	private final boolean cancelled;
+	private final boolean opaque;
+	private final Integer visitorLimit;
+	private final int visitorCount;
+	private final Property organizer;
+	private final long organizerIdentity;
+	private final Property [] attendees;
+	private final long [] attendeeIdentities;
+	private final byte [] attendeeRoles;
+	private final PartStat [] attendeePartStats;
+
+	/**
+	 *
+	 * @param event
+	 */
+	private EventDigest(VEvent event) {
+		this.event = event;
+		DtStart dtStart = event.getStartDate();
+		this.timed = dtStart != null && dtStart.getDate() != null;
+		if(timed) {
+			this.startTime = dtStart.getDate().getTime();
+			DtEnd dtEnd = event.getEndDate(true);
+			this.endTime = dtEnd != null ? dtEnd.getDate().getTime() : startTime;
+		} else {
+			this.startTime = 0;
+			this.endTime = 0;
+		}
+		this.recurring = event.getProperty(Property.RRULE) != null || event.getProperty(Property.RDATE) != null;
+		this.availableAppointment = event.getProperties().contains(SchedulingAssistantAppointment.TRUE);
+
+		Property status = event.getProperty(Property.STATUS);
+		this.cancelled = status != null && Status.VEVENT_CANCELLED.getValue().equals(status.getValue());
+		Property transp = event.getProperty(Property.TRANSP);
+		this.opaque = transp == null || Transp.OPAQUE.getValue().equals(transp.getValue());
+
+		Property limit = event.getProperty(VisitorLimit.VISITOR_LIMIT);
+		this.visitorLimit = limit != null ? Integer.valueOf(limit.getValue()) : null;
+		this.organizer = event.getProperty(Property.ORGANIZER);
+		this.organizerIdentity = identityOfAttendee(organizer);
+
+		PropertyList attendeeList = event.getProperties(Property.ATTENDEE);
+		int size = attendeeList.size();
+		this.attendees = new Property[size];
+		this.attendeeIdentities = new long[size];
+		this.attendeeRoles = new byte[size];
+		this.attendeePartStats = new PartStat[size];
+		int visitors = 0;
+		for(int i = 0; i < size; i++) {
+			Property attendee = (Property) attendeeList.get(i);
+			attendees[i] = attendee;
+			attendeeIdentities[i] = identityOfAttendee(attendee);
+			attendeeRoles[i] = roleOf(attendee.getParameter(AppointmentRole.APPOINTMENT_ROLE));
+			attendeePartStats[i] = canonical(attendee.getParameter(Parameter.PARTSTAT));
+			if(attendeeRoles[i] == ROLE_VISITOR) {
+				visitors++;
+			}
+		}
+		this.visitorCount = visitors;
+	}
+
+	/**
+	 *
+	 * @param event
+	 * @return the {@link EventDigest} for the event
+	 * @throws IllegalArgumentException if the event is null
+	 */
+	public static EventDigest of(VEvent event) {
+		if(event == null) {
+			throw new IllegalArgumentException("event cannot be null");
+		}
+		return new EventDigest(event);
+	}
+
+	/**
+	 *
+	 * @param calendarAccount
+	 * @return the identity hash of the account's display name and mailto address, or 0 if the account is null
+	 */
+	public static long identityOf(ICalendarAccount calendarAccount) {
+		if(calendarAccount == null) {
+			return 0;
+		}
+		return identityOf(calendarAccount.getDisplayName(),
+				DefaultEventUtilsImpl.emailToURI(calendarAccount.getEmailAddress()).toString());
+	}
+
+	/**
+	 * Attendees and organizers without a CN never match an {@link ICalendarAccount}, so they get identity 0.
+	 *
+	 * @param attendee
+	 * @return the identity hash of the attendee's CN and value
+	 */
+	static long identityOfAttendee(Property attendee) {
+		if(attendee == null) {
+			return 0;
+		}
+		Parameter cn = attendee.getParameter(Cn.CN);
+		if(cn == null) {
+			return 0;
+		}
+		return identityOf(cn.getValue(), attendee.getValue());
+	}
+
+	/**
+	 * 64 bit FNV-1a hash; never returns 0.
+	 *
+	 * @param commonName
+	 * @param address
+	 * @return the identity hash of the common name and address
+	 */
+	static long identityOf(String commonName, String address) {
+		long hash = FNV_OFFSET_BASIS;
+		hash = hash(hash, String.valueOf(commonName));
+		// separator, so ("ab", "c") and ("a", "bc") differ
+		hash *= FNV_PRIME;
+		hash = hash(hash, String.valueOf(address));
+		return hash == 0 ? 1 : hash;
+	}
+
+	/**
+	 *
+	 * @param hash
+	 * @param value
+	 * @return the hash updated with the UTF-8 bytes of value
+	 */
+	private static long hash(long hash, String value) {
+		for(byte b : value.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= (b & 0xff);
+			hash *= FNV_PRIME;
+		}
+		return hash;
+	}
+
+	/**
+	 *
+	 * @param role
+	 * @return the role code for the {@link AppointmentRole} parameter
+	 */
+	private static byte roleOf(Parameter role) {
+		if(role == null) {
+			return ROLE_NONE;
+		}
+		if(AppointmentRole.Value.VISITOR.name().equals(role.getValue())) {
+			return ROLE_VISITOR;
+		}
+		if(AppointmentRole.Value.OWNER.name().equals(role.getValue())) {
+			return ROLE_OWNER;
+		}
+		return ROLE_NONE;
+	}
+
+	/**
+	 *
+	 * @param partStat
+	 * @return the shared {@link PartStat} constant equal to the parameter, the parameter itself if there is none, or null
+	 */
+	private static PartStat canonical(Parameter partStat) {
+		if(partStat == null) {
+			return null;
+		}
+		for(PartStat constant : PARTSTATS) {
+			if(constant.equals(partStat)) {
+				return constant;
+			}
+		}
+		return partStat instanceof PartStat ? (PartStat) partStat : new PartStat(partStat.getValue());
+	}
+
+	/**
+	 *
+	 * @param identity
+	 * @return the index of the first attendee with the identity, or -1
+	 */
+	public int indexOfAttendee(long identity) {
+		if(identity == 0) {
+			return -1;
+		}
+		for(int i = 0; i < attendeeIdentities.length; i++) {
+			if(attendeeIdentities[i] == identity) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	/**
+	 * @return the {@link VEvent} this digest was computed from
+	 */
+	public VEvent getEvent() {
+		return event;
+	}
+	/**
+	 * @return true if the event has a DTSTART
+	 */
+	public boolean isTimed() {
+		return timed;
+	}
+	/**
+	 * @return the DTSTART in epoch milliseconds
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+	/**
+	 * @return the DTEND (or DTSTART plus DURATION) in epoch milliseconds
+	 */
+	public long getEndTime() {
+		return endTime;
+	}
+	/**
+	 * @return true if the event recurs (either by RRULE or RDATE)
+	 */
+	public boolean isRecurring() {
+		return recurring;
+	}
+	/**
+	 * @return true if the event is marked with {@link SchedulingAssistantAppointment#TRUE}
+	 */
+	public boolean isAvailableAppointment() {
+		return availableAppointment;
+	}
+	/**
+	 * @return true if the STATUS of the event is CANCELLED
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+	/**
+	 * @return true if the event has no TRANSP or it is OPAQUE
+	 */
+	public boolean isOpaque() {
+		return opaque;
+	}
+	/**
+	 * @return the value of the {@link VisitorLimit}, or null if not set
+	 */
+	public Integer getVisitorLimit() {
+		return visitorLimit;
+	}
+	/**
+	 * @return the number of attendees with {@link AppointmentRole#VISITOR}
+	 */
+	public int getVisitorCount() {
+		return visitorCount;
+	}
+	/**
+	 * @return the ORGANIZER, or null if there is none
+	 */
+	public Property getOrganizer() {
+		return organizer;
+	}
+	/**
+	 * @return the identity hash of the ORGANIZER, or 0 if there is none
+	 */
+	public long getOrganizerIdentity() {
+		return organizerIdentity;
+	}
+	/**
+	 * @return the number of ATTENDEEs
+	 */
+	public int getAttendeeCount() {
+		return attendeeIdentities.length;
+	}
+	/**
+	 * @param index
+	 * @return the ATTENDEE property
+	 */
+	public Property getAttendee(int index) {
+		return attendees[index];
+	}
+	/**
+	 * @param index
+	 * @return the identity hash of the attendee
+	 */
+	public long getAttendeeIdentity(int index) {
+		return attendeeIdentities[index];
+	}
+	/**
+	 * @param index
+	 * @return the role code of the attendee
+	 */
+	public byte getAttendeeRole(int index) {
+		return attendeeRoles[index];
+	}
+	/**
+	 * @param index
+	 * @return the {@link PartStat} of the attendee, or null if not set
+	 */
+	public PartStat getAttendeePartStat(int index) {
+		return attendeePartStats[index];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this)
+			.append("startTime", startTime)
+			.append("endTime", endTime)
+			.append("recurring", recurring)
+			.append("availableAppointment", availableAppointment)
+			.append("cancelled", cancelled)
+			.append("opaque", opaque)
+			.append("visitorLimit", visitorLimit)
+			.append("attendees", attendeeIdentities.length)
+			.toString();
+	}
+}
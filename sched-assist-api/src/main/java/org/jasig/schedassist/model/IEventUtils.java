@@ -150,6 +150,40 @@ public interface IEventUtils {
 	 * @return true if proposedOwner is in the {@link VEvent}'s attendee list as an {@link IScheduleOwner}
 	 */
 	boolean isAttendingAsOwner(VEvent event, ICalendarAccount proposedOwner);
+
+	/**
+	 * Equivalent of {@link #willEventCauseConflict(ICalendarAccount, VEvent)} for an {@link EventDigest}.
+	 * The default implementation checks the digest's {@link VEvent}.
+	 * 
+	 * @param calendarAccount
+	 * @param event the digest of an event, including non-scheduling assistant appointments
+	 * @return true if the event will cause a conflict for the {@link ICalendarAccount}
+	 */
+	default boolean willEventCauseConflict(ICalendarAccount calendarAccount, EventDigest event) {
+		return event != null && willEventCauseConflict(calendarAccount, event.getEvent());
+	}
+	/**
+	 * Equivalent of {@link #isAttendingAsVisitor(VEvent, ICalendarAccount)} for an {@link EventDigest}.
+	 * The default implementation checks the digest's {@link VEvent}.
+	 * 
+	 * @param event
+	 * @param proposedVisitor
+	 * @return true if proposedVisitor is in the event's attendee list as an {@link IScheduleVisitor}
+	 */
+	default boolean isAttendingAsVisitor(EventDigest event, ICalendarAccount proposedVisitor) {
+		return isAttendingAsVisitor(event.getEvent(), proposedVisitor);
+	}
+	/**
+	 * Equivalent of {@link #isAttendingAsOwner(VEvent, ICalendarAccount)} for an {@link EventDigest}.
+	 * The default implementation checks the digest's {@link VEvent}.
+	 * 
+	 * @param event
+	 * @param proposedOwner
+	 * @return true if proposedOwner is the organizer of the event
+	 */
+	default boolean isAttendingAsOwner(EventDigest event, ICalendarAccount proposedOwner) {
+		return isAttendingAsOwner(event.getEvent(), proposedOwner);
+	}
 	
 	/**
 	 * Convert the {@link AvailableSchedule} into an iCalendar {@link Calendar}
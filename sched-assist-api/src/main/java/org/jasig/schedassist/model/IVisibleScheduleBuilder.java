@@ -22,6 +22,7 @@ package org.jasig.schedassist.model;
 import java.util.Date;
 
 import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.PeriodList;
 
 /**
  * Interface defining operations for calculating {@link VisibleSchedule}s.
@@ -80,4 +81,19 @@ public interface IVisibleScheduleBuilder {
 	 */
 	VisibleSchedule calculateVisitorConflicts(Date startTime, Date endTime, Calendar calendar, 
 			AvailableSchedule schedule, MeetingDurations meetingDurations, IScheduleVisitor visitor);
+	
+	/**
+	 * Variant of {@link #calculateVisitorConflicts(Date, Date, Calendar, AvailableSchedule, MeetingDurations, IScheduleVisitor)}
+	 * for when only the {@link IScheduleVisitor}'s busy time is known (e.g. from a free busy query); every
+	 * block overlapping one of the busy periods is BUSY.
+	 * 
+	 * @param startTime
+	 * @param endTime
+	 * @param busyPeriods
+	 * @param schedule
+	 * @param meetingDurations
+	 * @return an appropriate {@link VisibleSchedule}
+	 */
+	VisibleSchedule calculateVisitorConflicts(Date startTime, Date endTime, PeriodList busyPeriods, 
+			AvailableSchedule schedule, MeetingDurations meetingDurations);
 }
\ No newline at end of file
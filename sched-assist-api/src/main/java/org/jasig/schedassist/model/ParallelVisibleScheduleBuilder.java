@@ -0,0 +1,264 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jasig.schedassist.model;
+
+import java.util.Date;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.PeriodList;
+
+import org.apache.commons.lang.Validate;
+import org.apache.commons.lang.time.DateUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * {@link IVisibleScheduleBuilder} that splits the requested window into chunks of whole days,
+ * computes the {@link VisibleSchedule} for each chunk with the delegate {@link IVisibleScheduleBuilder}
+ * on a {@link ForkJoinPool}, and merges the results.
+ *
+ * Each chunk is given the {@link AvailableBlock}s that overlap it and the full {@link Calendar}; since
+ * the blocks in a {@link VisibleSchedule} are only affected by the events that overlap them, the merged
+ * result is the same as computing the whole window at once.
+ * Windows no longer than sequentialThresholdDays are passed straight to the delegate.
+ */
+public class ParallelVisibleScheduleBuilder implements IVisibleScheduleBuilder {
+
+	private static Log LOG = LogFactory.getLog(ParallelVisibleScheduleBuilder.class);
+
+	private final IVisibleScheduleBuilder delegate;
+	private int chunkDays = 7;
+	private int sequentialThresholdDays = 14;
+	private volatile ForkJoinPool pool;
+
+	/**
+	 * Uses a {@link ForkJoinPool} with parallelism equal to the number of available processors.
+	 *
+	 * @param delegate the builder used to compute each chunk
+	 */
+	public ParallelVisibleScheduleBuilder(IVisibleScheduleBuilder delegate) {
+		this(delegate, Runtime.getRuntime().availableProcessors());
+	}
+	/**
+	 *
+	 * @param delegate the builder used to compute each chunk
+	 * @param parallelism the parallelism of the {@link ForkJoinPool}
+	 */
+	public ParallelVisibleScheduleBuilder(IVisibleScheduleBuilder delegate, int parallelism) {
+		Validate.notNull(delegate, "delegate cannot be null");
+		this.delegate = delegate;
+		this.pool = new ForkJoinPool(parallelism);
+	}
+
+	/**
+	 * @param parallelism the parallelism of the {@link ForkJoinPool} to set
+	 */
+	public void setParallelism(int parallelism) {
+		ForkJoinPool previous = this.pool;
+		this.pool = new ForkJoinPool(parallelism);
+		previous.shutdown();
+	}
+	/**
+	 * @param chunkDays the number of days computed by each task
+	 */
+	public void setChunkDays(int chunkDays) {
+		Validate.isTrue(chunkDays > 0, "chunkDays must be greater than 0");
+		this.chunkDays = chunkDays;
+	}
+	/**
+	 * @param sequentialThresholdDays windows of this many days or fewer are computed on the calling thread
+	 */
+	public void setSequentialThresholdDays(int sequentialThresholdDays) {
+		this.sequentialThresholdDays = sequentialThresholdDays;
+	}
+	/**
+	 * Shut down the {@link ForkJoinPool}.
+	 */
+	public void shutdown() {
+		this.pool.shutdown();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.jasig.schedassist.model.IVisibleScheduleBuilder#calculateVisibleSchedule(java.util.Date, java.util.Date, net.fortuna.ical4j.model.Calendar, org.jasig.schedassist.model.AvailableSchedule, org.jasig.schedassist.model.IScheduleOwner)
+	 */
+	@Override
+	public VisibleSchedule calculateVisibleSchedule(final Date startTime, final Date endTime,
+			final Calendar calendar, final AvailableSchedule schedule, final IScheduleOwner owner) {
+		if(isSequential(startTime, endTime, schedule)) {
+			return delegate.calculateVisibleSchedule(startTime, endTime, calendar, schedule, owner);
+		}
+		return pool.invoke(new ChunkTask(startTime, endTime, schedule.getAvailableBlocks(), new Chunk() {
+			@Override
+			public VisibleSchedule calculate(Date chunkStart, Date chunkEnd, AvailableSchedule chunkSchedule) {
+				return delegate.calculateVisibleSchedule(chunkStart, chunkEnd, calendar, chunkSchedule, owner);
+			}
+		}));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.jasig.schedassist.model.IVisibleScheduleBuilder#calculateVisibleSchedule(java.util.Date, java.util.Date, net.fortuna.ical4j.model.Calendar, org.jasig.schedassist.model.AvailableSchedule, org.jasig.schedassist.model.IScheduleOwner, org.jasig.schedassist.model.IScheduleVisitor)
+	 */
+	@Override
+	public VisibleSchedule calculateVisibleSchedule(final Date startTime, final Date endTime,
+			final Calendar calendar, final AvailableSchedule schedule, final IScheduleOwner owner, final IScheduleVisitor visitor) {
+		if(isSequential(startTime, endTime, schedule)) {
+			return delegate.calculateVisibleSchedule(startTime, endTime, calendar, schedule, owner, visitor);
+		}
+		return pool.invoke(new ChunkTask(startTime, endTime, schedule.getAvailableBlocks(), new Chunk() {
+			@Override
+			public VisibleSchedule calculate(Date chunkStart, Date chunkEnd, AvailableSchedule chunkSchedule) {
+				return delegate.calculateVisibleSchedule(chunkStart, chunkEnd, calendar, chunkSchedule, owner, visitor);
+			}
+		}));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.jasig.schedassist.model.IVisibleScheduleBuilder#calculateVisitorConflicts(java.util.Date, java.util.Date, net.fortuna.ical4j.model.Calendar, org.jasig.schedassist.model.AvailableSchedule, org.jasig.schedassist.model.MeetingDurations, org.jasig.schedassist.model.IScheduleVisitor)
+	 */
+	@Override
+	public VisibleSchedule calculateVisitorConflicts(final Date startTime, final Date endTime,
+			final Calendar calendar, final AvailableSchedule schedule, final MeetingDurations meetingDurations, final IScheduleVisitor visitor) {
+		if(isSequential(startTime, endTime, schedule)) {
+			return delegate.calculateVisitorConflicts(startTime, endTime, calendar, schedule, meetingDurations, visitor);
+		}
+		return pool.invoke(new ChunkTask(startTime, endTime, schedule.getAvailableBlocks(), new Chunk() {
+			@Override
+			public VisibleSchedule calculate(Date chunkStart, Date chunkEnd, AvailableSchedule chunkSchedule) {
+				return delegate.calculateVisitorConflicts(chunkStart, chunkEnd, calendar, chunkSchedule, meetingDurations, visitor);
+			}
+		}));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.jasig.schedassist.model.IVisibleScheduleBuilder#calculateVisitorConflicts(java.util.Date, java.util.Date, net.fortuna.ical4j.model.PeriodList, org.jasig.schedassist.model.AvailableSchedule, org.jasig.schedassist.model.MeetingDurations)
+	 */
+	@Override
+	public VisibleSchedule calculateVisitorConflicts(Date startTime, Date endTime,
+			PeriodList busyPeriods, AvailableSchedule schedule, MeetingDurations meetingDurations) {
+		// no events to expand or inspect, not worth splitting
+		return delegate.calculateVisitorConflicts(startTime, endTime, busyPeriods, schedule, meetingDurations);
+	}
+
+	/**
+	 * Invalid arguments are left to the delegate to reject.
+	 *
+	 * @param startTime
+	 * @param endTime
+	 * @param schedule
+	 * @return true if the window should be computed by the delegate on the calling thread
+	 */
+	boolean isSequential(Date startTime, Date endTime, AvailableSchedule schedule) {
+		if(startTime == null || endTime == null || schedule == null || !endTime.after(startTime)) {
+			return true;
+		}
+		return !DateUtils.addDays(startTime, sequentialThresholdDays).before(endTime);
+	}
+
+	/**
+	 * Computes the {@link VisibleSchedule} for a single chunk with the delegate.
+	 */
+	interface Chunk {
+		/**
+		 *
+		 * @param chunkStart
+		 * @param chunkEnd
+		 * @param chunkSchedule the blocks of the schedule that overlap the chunk
+		 * @return the {@link VisibleSchedule} for the chunk
+		 */
+		VisibleSchedule calculate(Date chunkStart, Date chunkEnd, AvailableSchedule chunkSchedule);
+	}
+
+	/**
+	 * Splits its window on a chunk boundary until it is no longer than chunkDays, then
+	 * computes the chunk and merges the results on the way back up.
+	 */
+	private final class ChunkTask extends RecursiveTask<VisibleSchedule> {
+		private static final long serialVersionUID = 1L;
+		private final Date chunkStart;
+		private final Date chunkEnd;
+		private final SortedSet<AvailableBlock> blocks;
+		private final Chunk chunk;
+
+		/**
+		 *
+		 * @param chunkStart
+		 * @param chunkEnd
+		 * @param blocks
+		 * @param chunk
+		 */
+		ChunkTask(Date chunkStart, Date chunkEnd, SortedSet<AvailableBlock> blocks, Chunk chunk) {
+			this.chunkStart = chunkStart;
+			this.chunkEnd = chunkEnd;
+			this.blocks = blocks;
+			this.chunk = chunk;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.util.concurrent.RecursiveTask#compute()
+		 */
+		@Override
+		protected VisibleSchedule compute() {
+			Date firstDay = DateUtils.truncate(chunkStart, java.util.Calendar.DATE);
+			if(!DateUtils.addDays(firstDay, chunkDays).before(chunkEnd)) {
+				if(LOG.isDebugEnabled()) {
+					LOG.debug("computing chunk " + chunkStart + " to " + chunkEnd);
+				}
+				return chunk.calculate(chunkStart, chunkEnd, new AvailableSchedule(overlapping()));
+			}
+			// split on the chunk boundary closest to the middle of the window
+			int days = (int) ((chunkEnd.getTime() - chunkStart.getTime()) / DateUtils.MILLIS_PER_DAY);
+			Date split = DateUtils.addDays(firstDay, Math.max(1, days / chunkDays / 2) * chunkDays);
+
+			ChunkTask left = new ChunkTask(chunkStart, split, blocks, chunk);
+			ChunkTask right = new ChunkTask(split, chunkEnd, blocks, chunk);
+			left.fork();
+			VisibleSchedule result = right.compute();
+			result.merge(left.join());
+			return result;
+		}
+
+		/**
+		 * Blocks are kept whole so they expand to the same meeting slots as in the full schedule.
+		 *
+		 * @return the blocks that overlap this chunk
+		 */
+		private SortedSet<AvailableBlock> overlapping() {
+			SortedSet<AvailableBlock> result = new TreeSet<AvailableBlock>();
+			for(AvailableBlock block : blocks) {
+				if(!block.getStartTime().before(chunkEnd)) {
+					break;
+				}
+				if(block.getEndTime().after(chunkStart)) {
+					result.add(block);
+				}
+			}
+			return result;
+		}
+	}
+}
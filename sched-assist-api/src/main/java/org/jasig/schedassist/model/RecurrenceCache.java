@@ -0,0 +1,236 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jasig.schedassist.model;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+import net.fortuna.ical4j.model.DateTime;
+import net.fortuna.ical4j.model.Period;
+import net.fortuna.ical4j.model.PeriodList;
+import net.fortuna.ical4j.model.Property;
+import net.fortuna.ical4j.model.component.VEvent;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Bounded, least recently used cache of recurrence expansions for {@link DefaultEventUtilsImpl#calculateRecurrence(VEvent, Date, Date)}.
+ *
+ * Entries are keyed on the event's UID, SEQUENCE and LAST-MODIFIED along with the text of every property that
+ * affects the recurrence set, so an edited event never matches a stale entry.
+ * Each entry stores the periods as epoch milliseconds for the range they were computed for; a request
+ * for a narrower range is answered by clipping the stored periods.
+ */
+public class RecurrenceCache {
+
+	private static final String [] RECURRENCE_PROPERTIES = { Property.DTSTART, Property.DTEND, Property.DURATION,
+		Property.RRULE, Property.RDATE, Property.EXDATE, Property.EXRULE, Property.RECURRENCE_ID };
+
+	private final Map<String, Expansion> entries;
+	private long hits;
+	private long misses;
+
+	/**
+	 *
+	 * @param maxEntries the maximum number of events to keep expansions for
+	 */
+	public RecurrenceCache(final int maxEntries) {
+		Validate.isTrue(maxEntries > 0, "maxEntries must be greater than 0");
+		this.entries = new LinkedHashMap<String, Expansion>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Expansion> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 *
+	 * @param event
+	 * @return the cache key for the event, or null if the event has no UID
+	 */
+	static String keyFor(final VEvent event) {
+		Property uid = event.getProperty(Property.UID);
+		if(uid == null) {
+			return null;
+		}
+		StringBuilder key = new StringBuilder(uid.getValue());
+		appendValue(key, event.getProperty(Property.SEQUENCE));
+		appendValue(key, event.getProperty(Property.LAST_MODIFIED));
+		// all day periods are corrected by the default time zone's offset
+		key.append('|').append(TimeZone.getDefault().getID());
+		for(String name : RECURRENCE_PROPERTIES) {
+			for(Object o : event.getProperties(name)) {
+				key.append('|').append(o.toString());
+			}
+		}
+		return key.toString();
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @param property
+	 */
+	private static void appendValue(StringBuilder key, Property property) {
+		key.append('|');
+		if(property != null) {
+			key.append(property.getValue());
+		}
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @param startBoundary
+	 * @param endBoundary
+	 * @return the periods within the boundaries, or null if there is no entry covering them
+	 */
+	PeriodList get(final String key, final Date startBoundary, final Date endBoundary) {
+		Expansion expansion;
+		synchronized (entries) {
+			expansion = entries.get(key);
+			if(expansion != null && expansion.covers(startBoundary.getTime(), endBoundary.getTime())) {
+				hits++;
+			} else {
+				misses++;
+				return null;
+			}
+		}
+		return expansion.clip(startBoundary.getTime(), endBoundary.getTime());
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @param expansion
+	 */
+	void put(final String key, final Expansion expansion) {
+		synchronized (entries) {
+			entries.put(key, expansion);
+		}
+	}
+
+	/**
+	 * Remove all entries.
+	 */
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+	/**
+	 * @return the number of events with cached expansions
+	 */
+	public int getSize() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+	/**
+	 * @return the number of requests answered from the cache
+	 */
+	public long getHits() {
+		synchronized (entries) {
+			return hits;
+		}
+	}
+	/**
+	 * @return the number of requests that had to be expanded
+	 */
+	public long getMisses() {
+		synchronized (entries) {
+			return misses;
+		}
+	}
+
+	/**
+	 * The recurrence set of one event for one range.
+	 * For each period, the instance times that ical4j compared with the range are stored alongside the
+	 * (possibly corrected) times that are returned, so clipping selects the same periods ical4j would.
+	 */
+	static final class Expansion {
+		private final long rangeStart;
+		private final long rangeEnd;
+		private final long [] instanceStarts;
+		private final long [] instanceEnds;
+		private final long [] periodStarts;
+		private final long [] periodEnds;
+		private int size;
+
+		/**
+		 *
+		 * @param startBoundary
+		 * @param endBoundary
+		 * @param capacity
+		 */
+		Expansion(Date startBoundary, Date endBoundary, int capacity) {
+			this.rangeStart = startBoundary.getTime();
+			this.rangeEnd = endBoundary.getTime();
+			this.instanceStarts = new long[capacity];
+			this.instanceEnds = new long[capacity];
+			this.periodStarts = new long[capacity];
+			this.periodEnds = new long[capacity];
+		}
+
+		/**
+		 *
+		 * @param instance the period returned by ical4j
+		 * @param period the period returned to the caller
+		 */
+		void add(Period instance, Period period) {
+			instanceStarts[size] = instance.getStart().getTime();
+			instanceEnds[size] = instance.getEnd().getTime();
+			periodStarts[size] = period.getStart().getTime();
+			periodEnds[size] = period.getEnd().getTime();
+			size++;
+		}
+
+		/**
+		 *
+		 * @param start
+		 * @param end
+		 * @return true if this expansion was computed for a range that includes start and end
+		 */
+		boolean covers(long start, long end) {
+			return rangeStart <= start && end <= rangeEnd;
+		}
+
+		/**
+		 * ical4j includes instances that touch either boundary of the range.
+		 *
+		 * @param start
+		 * @param end
+		 * @return the periods of the instances that overlap start and end
+		 */
+		PeriodList clip(long start, long end) {
+			PeriodList results = new PeriodList();
+			for(int i = 0; i < size; i++) {
+				if(instanceStarts[i] <= end && instanceEnds[i] >= start) {
+					results.add(new Period(new DateTime(periodStarts[i]), new DateTime(periodEnds[i])));
+				}
+			}
+			return results;
+		}
+	}
+}
@@ -0,0 +1,335 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jasig.schedassist.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.SortedMap;
+
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.Component;
+import net.fortuna.ical4j.model.ComponentList;
+import net.fortuna.ical4j.model.Period;
+import net.fortuna.ical4j.model.PeriodList;
+import net.fortuna.ical4j.model.component.VEvent;
+
+import org.apache.commons.lang.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * {@link VisibleScheduleBuilder} that avoids the per event conflict search of
+ * {@link VisibleSchedule#setBusyBlock(AvailableBlock)}.
+ *
+ * All event instances are first collected into an array of (start, end, status) intervals, which is sorted
+ * and merged with the sorted "FREE" blocks in a single pass to find the blocks each instance overlaps.
+ * Only the overlapped blocks that {@link VisibleSchedule#locateConflicting(AvailableBlock)} would also return
+ * (an overlap of a minute or more, within the days the instance spans) are treated as conflicts.
+ * The instances are then applied in calendar order, so the result is the same as {@link VisibleScheduleBuilder}'s;
+ * the cost is linear in the number of blocks and event instances rather than a day-range scan per event.
+ *
+ * Instances that do not line up with the blocks and render as "ATTENDING" replace the overlapping blocks with a new one;
+ * once that happens, later non-matching instances fall back to the {@link VisibleSchedule} conflict search.
+ */
+public class SweepLineVisibleScheduleBuilder extends VisibleScheduleBuilder {
+
+	private static Log LOG = LogFactory.getLog(SweepLineVisibleScheduleBuilder.class);
+
+	/**
+	 * Default Constructor, will set the eventUtils field to {@link DefaultEventUtilsImpl}.
+	 */
+	public SweepLineVisibleScheduleBuilder() {
+		super();
+	}
+	/**
+	 * @param eventUtils
+	 */
+	public SweepLineVisibleScheduleBuilder(IEventUtils eventUtils) {
+		super(eventUtils);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.jasig.schedassist.model.VisibleScheduleBuilder#calculateVisibleSchedule(java.util.Date, java.util.Date, net.fortuna.ical4j.model.Calendar, org.jasig.schedassist.model.AvailableSchedule, org.jasig.schedassist.model.IScheduleOwner, org.jasig.schedassist.model.IScheduleVisitor)
+	 */
+	@Override
+	public VisibleSchedule calculateVisibleSchedule(final Date startTime, final Date endTime,
+			final Calendar calendar, final AvailableSchedule schedule, final IScheduleOwner owner, final IScheduleVisitor visitor) {
+		Validate.notNull(startTime, "startTime cannot be null");
+		Validate.notNull(endTime, "endTime cannot be null");
+		Validate.notNull(calendar, "calendar cannot be null");
+		Validate.notNull(schedule, "available schedule cannot be null");
+		Validate.notNull(owner, "owner cannot be null");
+
+		ICalendarAccount visitorCalendarAccount = null;
+		if(visitor != null) {
+			visitorCalendarAccount = visitor.getCalendarAccount();
+		}
+		if(endTime.before(startTime)) {
+			throw new IllegalArgumentException("cannot pass end time (" + endTime +") that is before start time (" + startTime + ")");
+		}
+		LOG.debug("startTime: " + startTime + "; endTime: " + endTime);
+
+		VisibleSchedule visibleSchedule = createFreeVisibleSchedule(startTime, endTime, schedule, owner.getPreferredMeetingDurations());
+
+		final IEventUtils eventUtils = getEventUtils();
+		List<EventInstance> instances = new ArrayList<EventInstance>();
+		ComponentList events = calendar.getComponents(Component.VEVENT);
+		for(Object component : events) {
+			VEvent event = (VEvent) component;
+			EventDigest digest = EventDigest.of(event);
+			if(!eventUtils.willEventCauseConflict(owner.getCalendarAccount(), digest)) {
+				if(LOG.isDebugEnabled()) {
+					LOG.debug("event will not cause conflict, skipping: " + event);
+				}
+				continue;
+			}
+
+			AvailableStatus status = determineEventStatus(digest, owner.getCalendarAccount(), visitorCalendarAccount, true);
+			if(digest.isRecurring()) {
+				PeriodList recurrenceList = eventUtils.calculateRecurrence(event, startTime, endTime);
+				for(Object o : recurrenceList) {
+					Period period = (Period) o;
+					addInstance(instances, digest, status, period.getStart(), period.getEnd());
+				}
+			} else {
+				addInstance(instances, digest, status, new Date(digest.getStartTime()), new Date(digest.getEndTime()));
+			}
+		}
+
+		applyInstances(visibleSchedule, instances);
+		return visibleSchedule;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.jasig.schedassist.model.VisibleScheduleBuilder#calculateVisibleScheduleNoAttendingCheck(java.util.Date, java.util.Date, net.fortuna.ical4j.model.Calendar, org.jasig.schedassist.model.AvailableSchedule, org.jasig.schedassist.model.MeetingDurations, org.jasig.schedassist.model.ICalendarAccount)
+	 */
+	@Override
+	protected VisibleSchedule calculateVisibleScheduleNoAttendingCheck(Date startTime,
+			Date endTime, Calendar calendar, AvailableSchedule schedule, MeetingDurations meetingDurations, ICalendarAccount calendarAccount) {
+		Validate.notNull(startTime, "startTime cannot be null");
+		Validate.notNull(endTime, "endTime cannot be null");
+		Validate.notNull(calendar, "calendar cannot be null");
+		Validate.notNull(meetingDurations, "MeetingDurations argument cannot be null");
+		Validate.notNull(schedule, "AvailableSchedule argument cannot be null");
+		Validate.notNull(calendarAccount, "calendarAccount cannot be null");
+
+		if(endTime.before(startTime)) {
+			throw new IllegalArgumentException("cannot pass end time (" + endTime +") that is before start time (" + startTime + ")");
+		}
+		LOG.debug("startTime: " + startTime + "; endTime: " + endTime);
+
+		VisibleSchedule visibleSchedule = createFreeVisibleSchedule(startTime, endTime, schedule, meetingDurations);
+
+		final IEventUtils eventUtils = getEventUtils();
+		List<EventInstance> instances = new ArrayList<EventInstance>();
+		ComponentList events = calendar.getComponents(Component.VEVENT);
+		for(Object component : events) {
+			VEvent event = (VEvent) component;
+			EventDigest digest = EventDigest.of(event);
+			if(!eventUtils.willEventCauseConflict(calendarAccount, digest)) {
+				if(LOG.isDebugEnabled()) {
+					LOG.debug("event will not cause conflict, skipping: " + event);
+				}
+				continue;
+			}
+
+			AvailableStatus status = determineEventStatus(digest, calendarAccount, null, false);
+			// whether event is recurring or not, check block on start/end
+			addInstance(instances, digest, status, new Date(digest.getStartTime()), new Date(digest.getEndTime()));
+			if(digest.isRecurring()) {
+				PeriodList recurrenceList = eventUtils.calculateRecurrence(event, startTime, endTime);
+				for(Object o : recurrenceList) {
+					Period period = (Period) o;
+					addInstance(instances, digest, status, period.getStart(), period.getEnd());
+				}
+			}
+		}
+
+		applyInstances(visibleSchedule, instances);
+		return visibleSchedule;
+	}
+
+	/**
+	 *
+	 * @param instances
+	 * @param event
+	 * @param status
+	 * @param eventInstanceStartDate
+	 * @param eventInstanceEndDate
+	 */
+	private void addInstance(List<EventInstance> instances, EventDigest event, AvailableStatus status,
+			Date eventInstanceStartDate, Date eventInstanceEndDate) {
+		AvailableBlock eventBlock = AvailableBlockBuilder.createBlock(eventInstanceStartDate, eventInstanceEndDate, safeVisitorLimit(event));
+		if(AvailableStatus.FREE.equals(status)) {
+			eventBlock.setVisitorsAttending(event.getVisitorCount());
+		}
+		instances.add(new EventInstance(eventBlock, status));
+	}
+
+	/**
+	 * Locate the blocks overlapped by each instance with a single sweep, then apply the instances
+	 * to the {@link VisibleSchedule} in their original order.
+	 *
+	 * @param visibleSchedule a {@link VisibleSchedule} containing only "FREE" blocks
+	 * @param instances the event instances, in calendar order
+	 */
+	void applyInstances(VisibleSchedule visibleSchedule, List<EventInstance> instances) {
+		if(instances.isEmpty()) {
+			return;
+		}
+		final AvailableBlock[] blocks = visibleSchedule.getBlockMap().keySet().toArray(new AvailableBlock[0]);
+		final int blockCount = blocks.length;
+		final long [] blockStarts = new long[blockCount];
+		final long [] blockEnds = new long[blockCount];
+		boolean disjoint = true;
+		for(int i = 0; i < blockCount; i++) {
+			blockStarts[i] = blocks[i].getStartTime().getTime();
+			blockEnds[i] = blocks[i].getEndTime().getTime();
+			if(i > 0 && blockStarts[i] < blockEnds[i - 1]) {
+				disjoint = false;
+			}
+		}
+		if(!disjoint) {
+			// the sweep relies on block end times being sorted; only possible with an overlapping AvailableSchedule
+			LOG.debug("available blocks overlap, applying event instances individually");
+			for(EventInstance instance : instances) {
+				applyWithConflictSearch(visibleSchedule, instance);
+			}
+			return;
+		}
+
+		EventInstance [] sorted = instances.toArray(new EventInstance[instances.size()]);
+		Arrays.sort(sorted, START_ORDER);
+		int first = 0;
+		for(EventInstance instance : sorted) {
+			// instances are visited in start order, so blocks ending before this one starts can never overlap again
+			while(first < blockCount && blockEnds[first] <= instance.start) {
+				first++;
+			}
+			int last = first;
+			while(last < blockCount && blockStarts[last] < instance.end) {
+				last++;
+			}
+			instance.firstBlock = first;
+			instance.lastBlock = last;
+		}
+
+		boolean replaced = false;
+		for(EventInstance instance : instances) {
+			final AvailableBlock eventBlock = instance.block;
+			if(AvailableStatus.FREE.equals(instance.status)) {
+				visibleSchedule.overwriteFreeBlockOnlyIfPresent(eventBlock);
+			} else if(visibleSchedule.containsBlock(eventBlock)) {
+				visibleSchedule.putBlock(eventBlock, instance.status);
+			} else if(replaced) {
+				// blocks have been replaced by attending instances, the sweep results are no longer complete
+				applyWithConflictSearch(visibleSchedule, instance);
+			} else if(AvailableStatus.ATTENDING.equals(instance.status)) {
+				List<AvailableBlock> conflicting = locateConflicting(visibleSchedule, blocks, instance);
+				if(!conflicting.isEmpty()) {
+					for(AvailableBlock conflict : conflicting) {
+						visibleSchedule.removeBlock(conflict);
+					}
+					visibleSchedule.putBlock(eventBlock, AvailableStatus.ATTENDING);
+					replaced = true;
+				}
+			} else {
+				for(AvailableBlock conflict : locateConflicting(visibleSchedule, blocks, instance)) {
+					visibleSchedule.putBlock(conflict, AvailableStatus.BUSY);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @param visibleSchedule
+	 * @param blocks
+	 * @param instance
+	 * @return the blocks overlapped by the instance that {@link VisibleSchedule#locateConflicting(AvailableBlock)} would return
+	 */
+	private List<AvailableBlock> locateConflicting(VisibleSchedule visibleSchedule, AvailableBlock[] blocks, EventInstance instance) {
+		List<AvailableBlock> conflicting = new ArrayList<AvailableBlock>();
+		if(instance.lastBlock > instance.firstBlock) {
+			SortedMap<AvailableBlock, AvailableStatus> searchRange = visibleSchedule.conflictSearchRange(instance.block);
+			for(int i = instance.firstBlock; i < instance.lastBlock; i++) {
+				if(searchRange.containsKey(blocks[i]) && VisibleSchedule.conflicts(blocks[i], instance.block)) {
+					conflicting.add(blocks[i]);
+				}
+			}
+		}
+		return conflicting;
+	}
+
+	/**
+	 *
+	 * @param visibleSchedule
+	 * @param instance
+	 */
+	private void applyWithConflictSearch(VisibleSchedule visibleSchedule, EventInstance instance) {
+		if(AvailableStatus.ATTENDING.equals(instance.status)) {
+			visibleSchedule.setAttendingBlock(instance.block);
+		} else if(AvailableStatus.FREE.equals(instance.status)) {
+			visibleSchedule.overwriteFreeBlockOnlyIfPresent(instance.block);
+		} else {
+			visibleSchedule.setBusyBlock(instance.block);
+		}
+	}
+
+	private static final Comparator<EventInstance> START_ORDER = new Comparator<EventInstance>() {
+		@Override
+		public int compare(EventInstance o1, EventInstance o2) {
+			if(o1.start != o2.start) {
+				return o1.start < o2.start ? -1 : 1;
+			}
+			return o1.end < o2.end ? -1 : (o1.end == o2.end ? 0 : 1);
+		}
+	};
+
+	/**
+	 * A single event instance as a (start, end, status) interval, along with the range of
+	 * "FREE" block indices it overlaps.
+	 */
+	static final class EventInstance {
+		private final AvailableBlock block;
+		private final AvailableStatus status;
+		private final long start;
+		private final long end;
+		private int firstBlock;
+		private int lastBlock;
+
+		/**
+		 *
+		 * @param block
+		 * @param status
+		 */
+		EventInstance(AvailableBlock block, AvailableStatus status) {
+			this.block = block;
+			this.status = status;
+			this.start = block.getStartTime().getTime();
+			this.end = block.getEndTime().getTime();
+		}
+	}
+}
@@ -162,6 +162,45 @@ public class VisibleSchedule implements Serializable {
 			setAttendingBlock(block);
 		}
 	}
+	/**
+	 *
+	 * @param block
+	 * @return true if the block is stored as a key in this instance
+	 */
+	boolean containsBlock(final AvailableBlock block) {
+		return this.blockMap.containsKey(block);
+	}
+	/**
+	 * Store the status for the block without any conflict checks.
+	 * If an equivalent key is already present, the existing key is retained.
+	 *
+	 * @param block
+	 * @param status
+	 */
+	void putBlock(final AvailableBlock block, final AvailableStatus status) {
+		this.blockMap.put(block, status);
+	}
+	/**
+	 *
+	 * @param block
+	 */
+	void removeBlock(final AvailableBlock block) {
+		this.blockMap.remove(block);
+	}
+	/**
+	 * Store all of the blocks from the other instance in this one.
+	 * If a block is present in both with different status, {@link AvailableStatus#BUSY} wins.
+	 *
+	 * @param other
+	 */
+	void merge(final VisibleSchedule other) {
+		for(Entry<AvailableBlock, AvailableStatus> entry : other.blockMap.entrySet()) {
+			AvailableStatus existing = this.blockMap.get(entry.getKey());
+			if(existing == null || AvailableStatus.BUSY.equals(entry.getValue())) {
+				this.blockMap.put(entry.getKey(), entry.getValue());
+			}
+		}
+	}
 
 	/**
 	 * @return a defensive copy of the whole map
@@ -333,6 +372,23 @@ public class VisibleSchedule implements Serializable {
 	protected Set<AvailableBlock> locateConflicting(final AvailableBlock conflict) {
 		Set<AvailableBlock> conflictingKeys = new HashSet<AvailableBlock>();
 		
+		SortedMap<AvailableBlock, AvailableStatus> subMap = conflictSearchRange(conflict);
+		LOG.debug("subset of blockMap size: " + subMap.size());
+		
+		for(AvailableBlock mapKey: subMap.keySet()) {
+			if(conflicts(mapKey, conflict)) {
+				conflictingKeys.add(mapKey);
+			}
+		}
+		
+		return conflictingKeys;
+	}
+	/**
+	 * 
+	 * @param conflict
+	 * @return the view of the blocks on the days the argument spans, which {@link #locateConflicting(AvailableBlock)} searches
+	 */
+	SortedMap<AvailableBlock, AvailableStatus> conflictSearchRange(final AvailableBlock conflict) {
 		Date conflictDayStart = DateUtils.truncate(conflict.getStartTime(), java.util.Calendar.DATE);
 		Date conflictDayEnd = DateUtils.addDays(DateUtils.truncate(conflict.getEndTime(), java.util.Calendar.DATE), 1);
 		conflictDayEnd = DateUtils.addMinutes(conflictDayEnd, -1);
@@ -344,26 +400,28 @@ public class VisibleSchedule implements Serializable {
 		AvailableBlock rangeEnd = AvailableBlockBuilder.createBlockEndsAt(conflictDayEnd, meetingDurations.getMinLength());
 		LOG.debug("rangeEnd: " + rangeStart);
 		
-		SortedMap<AvailableBlock, AvailableStatus> subMap = blockMap.subMap(rangeStart, rangeEnd);
-		LOG.debug("subset of blockMap size: " + subMap.size());
-		
-		for(AvailableBlock mapKey: subMap.keySet()) {
-			// all the AvailableBlock keys in the map have start/endtimes truncated to the minute
-			// shift the key slightly forward (10 seconds) so that conflicts that start or end on the
-			// same minute as a key does don't result in false positives
-			Date minuteWithinBlock = DateUtils.addSeconds(mapKey.getStartTime(), 10);
-			boolean shortCircuit = true;
-			while(shortCircuit && CommonDateOperations.equalsOrBefore(minuteWithinBlock, mapKey.getEndTime())) {
-				if(minuteWithinBlock.before(conflict.getEndTime()) 
-						&& minuteWithinBlock.after(conflict.getStartTime())) {
-					conflictingKeys.add(mapKey);
-					shortCircuit = false;
-				}
-				minuteWithinBlock = DateUtils.addMinutes(minuteWithinBlock, 1);
+		return blockMap.subMap(rangeStart, rangeEnd);
+	}
+	/**
+	 * A conflict is defined as any overlap of 1 minute or more.
+	 * 
+	 * @param mapKey a block in this instance
+	 * @param conflict
+	 * @return true if the block argument conflicts with the mapKey
+	 */
+	static boolean conflicts(final AvailableBlock mapKey, final AvailableBlock conflict) {
+		// all the AvailableBlock keys in the map have start/endtimes truncated to the minute
+		// shift the key slightly forward (10 seconds) so that conflicts that start or end on the
+		// same minute as a key does don't result in false positives
+		Date minuteWithinBlock = DateUtils.addSeconds(mapKey.getStartTime(), 10);
+		while(CommonDateOperations.equalsOrBefore(minuteWithinBlock, mapKey.getEndTime())) {
+			if(minuteWithinBlock.before(conflict.getEndTime()) 
+					&& minuteWithinBlock.after(conflict.getStartTime())) {
+				return true;
 			}
+			minuteWithinBlock = DateUtils.addMinutes(minuteWithinBlock, 1);
 		}
-		
-		return conflictingKeys;
+		return false;
 	}
 	/**
 	 * Iterate through the blockMap and return a count of
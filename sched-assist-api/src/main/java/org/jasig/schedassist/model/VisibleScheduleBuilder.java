@@ -27,7 +27,6 @@ import net.fortuna.ical4j.model.Component;
 import net.fortuna.ical4j.model.ComponentList;
 import net.fortuna.ical4j.model.Period;
 import net.fortuna.ical4j.model.PeriodList;
-import net.fortuna.ical4j.model.Property;
 import net.fortuna.ical4j.model.component.VEvent;
 
 import org.apache.commons.lang.Validate;
@@ -71,6 +70,12 @@ public class VisibleScheduleBuilder implements IVisibleScheduleBuilder {
 	public void setEventUtils(IEventUtils eventUtils) {
 		this.eventUtils = eventUtils;
 	}
+	/**
+	 * @return the eventUtils
+	 */
+	protected IEventUtils getEventUtils() {
+		return eventUtils;
+	}
 	
 	/*
 	 * (non-Javadoc)
@@ -91,6 +96,30 @@ public class VisibleScheduleBuilder implements IVisibleScheduleBuilder {
 			MeetingDurations meetingDurations, IScheduleVisitor visitor) {
 		return calculateVisibleScheduleNoAttendingCheck(startTime, endTime, calendar, schedule, meetingDurations, visitor.getCalendarAccount());
 	}
+	/*
+	 * (non-Javadoc)
+	 * @see org.jasig.schedassist.model.IVisibleScheduleBuilder#calculateVisitorConflicts(java.util.Date, java.util.Date, net.fortuna.ical4j.model.PeriodList, org.jasig.schedassist.model.AvailableSchedule, org.jasig.schedassist.model.MeetingDurations)
+	 */
+	@Override
+	public VisibleSchedule calculateVisitorConflicts(Date startTime,
+			Date endTime, PeriodList busyPeriods, AvailableSchedule schedule,
+			MeetingDurations meetingDurations) {
+		Validate.notNull(startTime, "startTime cannot be null");
+		Validate.notNull(endTime, "endTime cannot be null");
+		Validate.notNull(busyPeriods, "busyPeriods cannot be null");
+		Validate.notNull(meetingDurations, "MeetingDurations argument cannot be null");
+		Validate.notNull(schedule, "AvailableSchedule argument cannot be null");
+
+		if(endTime.before(startTime)) {
+			throw new IllegalArgumentException("cannot pass end time (" + endTime +") that is before start time (" + startTime + ")");
+		}
+		VisibleSchedule visibleSchedule = createFreeVisibleSchedule(startTime, endTime, schedule, meetingDurations);
+		for(Object o : busyPeriods) {
+			Period period = (Period) o;
+			visibleSchedule.setBusyBlock(AvailableBlockBuilder.createBlock(period.getStart(), period.getEnd()));
+		}
+		return visibleSchedule;
+	}
 	/*
 	 * (non-Javadoc)
 	 * @see org.jasig.schedassist.model.IVisibleScheduleBuilder#calculateVisibleSchedule(java.util.Date, java.util.Date, net.fortuna.ical4j.model.Calendar, org.jasig.schedassist.model.AvailableSchedule, org.jasig.schedassist.model.IScheduleOwner, org.jasig.schedassist.model.IScheduleVisitor)
@@ -113,29 +142,16 @@ public class VisibleScheduleBuilder implements IVisibleScheduleBuilder {
 		}
 		LOG.debug("startTime: " + startTime + "; endTime: " + endTime);
 
-		final MeetingDurations durations = owner.getPreferredMeetingDurations();
-		
-		// expand the passed in schedule's availableBlocks
-		SortedSet<AvailableBlock> availableBlocks = AvailableBlockBuilder.expand(schedule.getAvailableBlocks(), durations.getMinLength());
-
-		// create endpoints for the subset of availableBlocks
-		AvailableBlock availabilityStartBlock = AvailableBlockBuilder.createPreferredMinimumDurationBlock(startTime, durations);
-		AvailableBlock availabilityEndBlock = AvailableBlockBuilder.createPreferredMinimumDurationBlock(endTime, durations);
-
-		// trim the availableBlocks set to within startTime/endTime
-		availableBlocks = availableBlocks.subSet(availabilityStartBlock, availabilityEndBlock);
-		
-		// construct our return value
-		VisibleSchedule visibleSchedule = new VisibleSchedule(durations);
-		// add the trimmed availableSchedule to the visibleSchedule as "FREE" blocks
-		visibleSchedule.addFreeBlocks(availableBlocks);
+		// construct our return value with the trimmed availableSchedule as "FREE" blocks
+		VisibleSchedule visibleSchedule = createFreeVisibleSchedule(startTime, endTime, schedule, owner.getPreferredMeetingDurations());
 		
 		// now iterate through the schedule and construct blocks to overwrite in the visibleSchedul
 		ComponentList events = calendar.getComponents(Component.VEVENT);
 		for(Object component : events) {
 			VEvent event = (VEvent) component;
+			EventDigest digest = EventDigest.of(event);
 
-			boolean causesConflict = this.eventUtils.willEventCauseConflict(owner.getCalendarAccount(), event);
+			boolean causesConflict = this.eventUtils.willEventCauseConflict(owner.getCalendarAccount(), digest);
 			if(!causesConflict) {
 				if(LOG.isDebugEnabled()) {
 					LOG.debug("event will not cause conflict, skipping: " + event);
@@ -145,18 +161,18 @@ public class VisibleScheduleBuilder implements IVisibleScheduleBuilder {
 
 			// if we reach this point, this event is not skippable,
 			// it's going to be either BUSY, FREE with visitors, or ATTENDING
-			if(eventUtils.isEventRecurring(event)) {
+			if(digest.isRecurring()) {
 				// expand the recurrence rules
 				PeriodList recurrenceList = this.eventUtils.calculateRecurrence(event, startTime, endTime);
 				for(Object o : recurrenceList) {
 					Period period = (Period) o;
-					mutateAppropriateBlockInVisibleSchedule(visibleSchedule, event, owner.getCalendarAccount(), visitorCalendarAccount, period.getStart(), period.getEnd(), true);
+					mutateAppropriateBlockInVisibleSchedule(visibleSchedule, digest, owner.getCalendarAccount(), visitorCalendarAccount, period.getStart(), period.getEnd(), true);
 				}
 			} else {	
 				// event is not recurring, just check block on start/end
-				Date startDate = event.getStartDate().getDate();
-				Date endDate = event.getEndDate(true).getDate();
-				mutateAppropriateBlockInVisibleSchedule(visibleSchedule, event, owner.getCalendarAccount(), visitorCalendarAccount, startDate, endDate, true);
+				Date startDate = new Date(digest.getStartTime());
+				Date endDate = new Date(digest.getEndTime());
+				mutateAppropriateBlockInVisibleSchedule(visibleSchedule, digest, owner.getCalendarAccount(), visitorCalendarAccount, startDate, endDate, true);
 			}
 		}
 		
@@ -187,27 +203,16 @@ public class VisibleScheduleBuilder implements IVisibleScheduleBuilder {
 		}
 		LOG.debug("startTime: " + startTime + "; endTime: " + endTime);
 		
-		// expand the passed in schedule's availableBlocks
-		SortedSet<AvailableBlock> availableBlocks = AvailableBlockBuilder.expand(schedule.getAvailableBlocks(), meetingDurations.getMinLength());
-
-		// create endpoints for the subset of availableBlocks
-		AvailableBlock availabilityStartBlock = AvailableBlockBuilder.createPreferredMinimumDurationBlock(startTime, meetingDurations);
-		AvailableBlock availabilityEndBlock = AvailableBlockBuilder.createPreferredMinimumDurationBlock(endTime, meetingDurations);
-
-		// trim the availableBlocks set to within startTime/endTime
-		availableBlocks = availableBlocks.subSet(availabilityStartBlock, availabilityEndBlock);
-		
-		// construct our return value
-		VisibleSchedule visibleSchedule = new VisibleSchedule(meetingDurations);
-		// add the trimmed availableSchedule to the visibleSchedule as "FREE" blocks
-		visibleSchedule.addFreeBlocks(availableBlocks);
+		// construct our return value with the trimmed availableSchedule as "FREE" blocks
+		VisibleSchedule visibleSchedule = createFreeVisibleSchedule(startTime, endTime, schedule, meetingDurations);
 		
 		// now iterate through the schedule and construct blocks to overwrite in the visibleSchedul
 		ComponentList events = calendar.getComponents(Component.VEVENT);
 		for(Object component : events) {
 			VEvent event = (VEvent) component;
+			EventDigest digest = EventDigest.of(event);
 
-			boolean causesConflict = this.eventUtils.willEventCauseConflict(calendarAccount, event);
+			boolean causesConflict = this.eventUtils.willEventCauseConflict(calendarAccount, digest);
 			if(!causesConflict) {
 				if(LOG.isDebugEnabled()) {
 					LOG.debug("event will not cause conflict, skipping: " + event);
@@ -218,16 +223,16 @@ public class VisibleScheduleBuilder implements IVisibleScheduleBuilder {
 			// if we reach this point, this event is not skippable,
 			// it's going to be either BUSY, FREE with visitors, or ATTENDING
 			// whether event is recurring or not, check block on start/end
-			Date startDate = event.getStartDate().getDate();
-			Date endDate = event.getEndDate(true).getDate();
-			mutateAppropriateBlockInVisibleSchedule(visibleSchedule, event, calendarAccount, null, startDate, endDate, false);
+			Date startDate = new Date(digest.getStartTime());
+			Date endDate = new Date(digest.getEndTime());
+			mutateAppropriateBlockInVisibleSchedule(visibleSchedule, digest, calendarAccount, null, startDate, endDate, false);
 						
-			if(eventUtils.isEventRecurring(event)) {
+			if(digest.isRecurring()) {
 				// expand the recurrence rules
 				PeriodList recurrenceList = this.eventUtils.calculateRecurrence(event, startTime, endTime);
 				for(Object o : recurrenceList) {
 					Period period = (Period) o;
-					mutateAppropriateBlockInVisibleSchedule(visibleSchedule, event, calendarAccount, null, period.getStart(), period.getEnd(), false);
+					mutateAppropriateBlockInVisibleSchedule(visibleSchedule, digest, calendarAccount, null, period.getStart(), period.getEnd(), false);
 				}
 			} 
 		}
@@ -237,7 +242,33 @@ public class VisibleScheduleBuilder implements IVisibleScheduleBuilder {
 	}
 	
 	/**
-	 * Mutative method to alter the {@link VisibleSchedule} in an appropriate fashion according to the {@link VEvent}'s properties.
+	 * Expand the {@link AvailableSchedule} to the minimum meeting length, trim it to startTime/endTime
+	 * and store the result in a new {@link VisibleSchedule} as "FREE" blocks.
+	 * 
+	 * @param startTime
+	 * @param endTime
+	 * @param schedule
+	 * @param meetingDurations
+	 * @return a {@link VisibleSchedule} containing only "FREE" blocks
+	 */
+	protected VisibleSchedule createFreeVisibleSchedule(Date startTime, Date endTime, AvailableSchedule schedule, MeetingDurations meetingDurations) {
+		// expand the passed in schedule's availableBlocks
+		SortedSet<AvailableBlock> availableBlocks = AvailableBlockBuilder.expand(schedule.getAvailableBlocks(), meetingDurations.getMinLength());
+
+		// create endpoints for the subset of availableBlocks
+		AvailableBlock availabilityStartBlock = AvailableBlockBuilder.createPreferredMinimumDurationBlock(startTime, meetingDurations);
+		AvailableBlock availabilityEndBlock = AvailableBlockBuilder.createPreferredMinimumDurationBlock(endTime, meetingDurations);
+
+		// trim the availableBlocks set to within startTime/endTime
+		availableBlocks = availableBlocks.subSet(availabilityStartBlock, availabilityEndBlock);
+		
+		VisibleSchedule visibleSchedule = new VisibleSchedule(meetingDurations);
+		visibleSchedule.addFreeBlocks(availableBlocks);
+		return visibleSchedule;
+	}
+	
+	/**
+	 * Mutative method to alter the {@link VisibleSchedule} in an appropriate fashion according to the event's {@link EventDigest}.
 	 * 
 	 * @param visibleSchedule
 	 * @param event
@@ -247,38 +278,61 @@ public class VisibleScheduleBuilder implements IVisibleScheduleBuilder {
 	 * @param eventInstanceEndDate
 	 * @param performAttendingCheck
 	 */
-	void mutateAppropriateBlockInVisibleSchedule(VisibleSchedule visibleSchedule, VEvent event,
+	void mutateAppropriateBlockInVisibleSchedule(VisibleSchedule visibleSchedule, EventDigest event,
 			ICalendarAccount owner, ICalendarAccount visitor, Date eventInstanceStartDate, Date eventInstanceEndDate, boolean performAttendingCheck) {
 		int visitorLimit = safeVisitorLimit(event);
 		final AvailableBlock eventBlock = AvailableBlockBuilder.createBlock(eventInstanceStartDate, eventInstanceEndDate, visitorLimit);
+		switch(determineEventStatus(event, owner, visitor, performAttendingCheck)) {
+		case ATTENDING:
+			visibleSchedule.setAttendingBlock(eventBlock);
+			break;
+		case FREE:
+			// visitor count is less than limit - this is still free
+			// amend the block to represent current visitor count 
+			eventBlock.setVisitorsAttending(event.getVisitorCount());
+			visibleSchedule.overwriteFreeBlockOnlyIfPresent(eventBlock);
+			break;
+		default:
+			visibleSchedule.setBusyBlock(eventBlock);
+		}
+	}
+	
+	/**
+	 * Determine the effect every instance of the event has on the {@link VisibleSchedule}:
+	 * <ul>
+	 * <li>{@link AvailableStatus#ATTENDING}: the visitor is already attending the appointment</li>
+	 * <li>{@link AvailableStatus#FREE}: the event is an available appointment for the owner with room for more visitors; 
+	 * only an exactly matching block is overwritten</li>
+	 * <li>{@link AvailableStatus#BUSY}: anything else</li>
+	 * </ul>
+	 * 
+	 * @param event
+	 * @param owner
+	 * @param visitor
+	 * @param performAttendingCheck
+	 * @return the {@link AvailableStatus} the event's instances should be applied with
+	 */
+	AvailableStatus determineEventStatus(EventDigest event, ICalendarAccount owner, ICalendarAccount visitor, boolean performAttendingCheck) {
 		// test to see if this appointment is an available appointment
-		Property availableEventMarker = event.getProperty(SchedulingAssistantAppointment.AVAILABLE_APPOINTMENT);
-		if(null == availableEventMarker || !SchedulingAssistantAppointment.TRUE.equals(availableEventMarker)) {
+		if(!event.isAvailableAppointment()) {
 			// non available appointments will ALWAYS simply be busy
-			visibleSchedule.setBusyBlock(eventBlock);
-		} else {
-			// the event is an available appointment
-			// first test if it's an ATTENDING match
-			if(performAttendingCheck && null != visitor && this.eventUtils.isAttendingAsOwner(event, owner) && this.eventUtils.isAttendingAsVisitor(event, visitor)) {
-				visibleSchedule.setAttendingBlock(eventBlock);
-			} else if (this.eventUtils.isAttendingAsOwner(event, owner)) {
-				// not an attending match, check visitorLimit exceeded
-				int availableVisitorCount = this.eventUtils.getScheduleVisitorCount(event);
-				if(availableVisitorCount >= visitorLimit) {
-					// busy
-					visibleSchedule.setBusyBlock(eventBlock);
-				} else {
-					// visitor count is less than limit - this is still free
-					// amend the block to represent current visitor count 
-					eventBlock.setVisitorsAttending(availableVisitorCount);
-					visibleSchedule.overwriteFreeBlockOnlyIfPresent(eventBlock);
-				}
-			} else {
-				// the event is an available appointment, but does not match attending criteria and should
-				// be considered busy
-				visibleSchedule.setBusyBlock(eventBlock);
+			return AvailableStatus.BUSY;
+		}
+		// the event is an available appointment
+		// first test if it's an ATTENDING match
+		if(performAttendingCheck && null != visitor && this.eventUtils.isAttendingAsOwner(event, owner) && this.eventUtils.isAttendingAsVisitor(event, visitor)) {
+			return AvailableStatus.ATTENDING;
+		} else if (this.eventUtils.isAttendingAsOwner(event, owner)) {
+			// not an attending match, check visitorLimit exceeded
+			int availableVisitorCount = event.getVisitorCount();
+			if(availableVisitorCount >= safeVisitorLimit(event)) {
+				return AvailableStatus.BUSY;
 			}
+			return AvailableStatus.FREE;
 		}
+		// the event is an available appointment, but does not match attending criteria and should
+		// be considered busy
+		return AvailableStatus.BUSY;
 	}
 
 	/**
@@ -288,8 +342,8 @@ public class VisibleScheduleBuilder implements IVisibleScheduleBuilder {
 	 * @param event
 	 * @return the value of the {@link VisitorLimit}, or 1 if not set.
 	 */
-	int safeVisitorLimit(VEvent event) {
-		Integer visitorLimit = eventUtils.getEventVisitorLimit(event);
+	int safeVisitorLimit(EventDigest event) {
+		Integer visitorLimit = event.getVisitorLimit();
 		if(visitorLimit == null) {
 			return 1;
 		}
@@ -0,0 +1,236 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jasig.schedassist.model;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.SortedSet;
+import java.util.TimeZone;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test bench for {@link AvailableSlotBitmap}.
+ */
+public class AvailableSlotBitmapTest {
+
+	@Before
+	public void setDefaultTimeZone() {
+		TimeZone.setDefault(TimeZone.getTimeZone("America/Chicago"));
+	}
+
+	/**
+	 * Verify combine returns the same blocks as {@link AvailableBlockBuilder#combine(SortedSet)} on
+	 * the 1 minute expansion, including visitorLimit and meetingLocation boundaries.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testCombineMatchesAvailableBlockBuilder() throws Exception {
+		SortedSet<AvailableBlock> blocks = AvailableBlockBuilder.createBlocks("9:00 AM", "11:00 AM", "MWF", makeDate("20100830"), makeDate("20101217"));
+		blocks.addAll(AvailableBlockBuilder.createBlocks("11:00 AM", "12:00 PM", "MWF", makeDate("20100830"), makeDate("20101217"), 2));
+		blocks.addAll(AvailableBlockBuilder.createBlocks("1:00 PM", "3:00 PM", "TR", makeDate("20100830"), makeDate("20101217"), 1, "Room 100"));
+		blocks.addAll(AvailableBlockBuilder.createBlocks("3:00 PM", "4:00 PM", "TR", makeDate("20100830"), makeDate("20101217")));
+
+		AvailableSlotBitmap bitmap = AvailableSlotBitmap.valueOf(blocks);
+		SortedSet<AvailableBlock> expected = AvailableBlockBuilder.combine(AvailableBlockBuilder.expand(blocks, 1));
+		SortedSet<AvailableBlock> actual = bitmap.combine();
+		assertBlocksEqual(expected, actual);
+
+		Assert.assertEquals(expected.first().getStartTime(), bitmap.getStartTime());
+		Assert.assertEquals(expected.last().getEndTime(), bitmap.getEndTime());
+	}
+
+	/**
+	 * Verify expand returns the same blocks as {@link AvailableBlockBuilder#expand(java.util.Set, int)}.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testExpandMatchesAvailableBlockBuilder() throws Exception {
+		SortedSet<AvailableBlock> blocks = AvailableBlockBuilder.createBlocks("9:00 AM", "11:10 AM", "MWF", makeDate("20100830"), makeDate("20100917"));
+		blocks.addAll(AvailableBlockBuilder.createBlocks("1:00 PM", "2:00 PM", "MWF", makeDate("20100830"), makeDate("20100917"), 3));
+		AvailableSlotBitmap bitmap = AvailableSlotBitmap.valueOf(blocks);
+
+		for(int meetingLength : new int[] { 1, 15, 20, 30, 45 }) {
+			SortedSet<AvailableBlock> expected = AvailableBlockBuilder.expand(blocks, meetingLength);
+			assertBlocksEqual(expected, bitmap.expand(meetingLength));
+		}
+	}
+
+	/**
+	 * Blocks that span midnight (and days with daylight savings transitions) are stored across 2 days
+	 * and must come back out as a single block.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSpanMidnightAndDaylightSavings() throws Exception {
+		AvailableSlotBitmap bitmap = new AvailableSlotBitmap();
+		AvailableBlock overnight = AvailableBlockBuilder.createBlock("20101106-2000", "20101107-0900");
+		bitmap.add(overnight);
+		SortedSet<AvailableBlock> combined = bitmap.combine();
+		Assert.assertEquals(1, combined.size());
+		Assert.assertEquals(overnight, combined.first());
+		Assert.assertEquals(overnight.getDurationInMinutes(), bitmap.countSlots());
+
+		bitmap.remove(AvailableBlockBuilder.createBlock("20101106-2300", "20101107-0100"));
+		combined = bitmap.combine();
+		Assert.assertEquals(2, combined.size());
+		Assert.assertEquals(AvailableBlockBuilder.createBlock("20101106-2000", "20101106-2300"), combined.first());
+		Assert.assertEquals(AvailableBlockBuilder.createBlock("20101107-0100", "20101107-0900"), combined.last());
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testAddRemoveContainsOverlaps() throws Exception {
+		AvailableSlotBitmap bitmap = new AvailableSlotBitmap();
+		Assert.assertTrue(bitmap.isEmpty());
+		Assert.assertNull(bitmap.getStartTime());
+		Assert.assertNull(bitmap.getEndTime());
+
+		bitmap.add(AvailableBlockBuilder.createBlock("20100901-0900", "20100901-1200"));
+		bitmap.add(AvailableBlockBuilder.createBlock("20100901-1100", "20100901-1300"));
+		Assert.assertEquals(1, bitmap.combine().size());
+		Assert.assertEquals(240, bitmap.countSlots());
+
+		Assert.assertTrue(bitmap.contains(AvailableBlockBuilder.createBlock("20100901-0900", "20100901-1300")));
+		Assert.assertTrue(bitmap.contains(AvailableBlockBuilder.createBlock("20100901-1030", "20100901-1100")));
+		Assert.assertFalse(bitmap.contains(AvailableBlockBuilder.createBlock("20100901-1230", "20100901-1330")));
+		Assert.assertTrue(bitmap.overlaps(AvailableBlockBuilder.createBlock("20100901-1230", "20100901-1330")));
+		Assert.assertFalse(bitmap.overlaps(AvailableBlockBuilder.createBlock("20100901-1300", "20100901-1330")));
+		Assert.assertFalse(bitmap.overlaps(AvailableBlockBuilder.createBlock("20100901-0800", "20100901-0900")));
+
+		bitmap.remove(AvailableBlockBuilder.createBlock("20100901-1000", "20100901-1030"));
+		SortedSet<AvailableBlock> combined = bitmap.combine();
+		Assert.assertEquals(2, combined.size());
+		Assert.assertFalse(bitmap.contains(AvailableBlockBuilder.createBlock("20100901-0900", "20100901-1300")));
+		Assert.assertFalse(bitmap.overlaps(AvailableBlockBuilder.createBlock("20100901-1000", "20100901-1030")));
+
+		bitmap.remove(AvailableBlockBuilder.createBlock("20100901-0000", "20100902-0000"));
+		Assert.assertTrue(bitmap.isEmpty());
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testVisitorLimitAndLocationOverwrite() throws Exception {
+		AvailableSlotBitmap bitmap = new AvailableSlotBitmap();
+		bitmap.add(AvailableBlockBuilder.createBlock("20100901-0900", "20100901-1200"));
+		bitmap.add(AvailableBlockBuilder.createBlock("20100901-1000", "20100901-1100", 5, "Library"));
+
+		SortedSet<AvailableBlock> combined = bitmap.combine();
+		Assert.assertEquals(3, combined.size());
+		Iterator<AvailableBlock> i = combined.iterator();
+		AvailableBlock first = i.next();
+		AvailableBlock second = i.next();
+		AvailableBlock third = i.next();
+		Assert.assertEquals(1, first.getVisitorLimit());
+		Assert.assertNull(first.getMeetingLocation());
+		Assert.assertEquals(5, second.getVisitorLimit());
+		Assert.assertEquals("Library", second.getMeetingLocation());
+		Assert.assertEquals(AvailableBlockBuilder.createBlock("20100901-1000", "20100901-1100"), second);
+		Assert.assertEquals(1, third.getVisitorLimit());
+
+		// overwrite with default attributes restores a single block
+		bitmap.add(AvailableBlockBuilder.createBlock("20100901-1000", "20100901-1100"));
+		Assert.assertEquals(1, bitmap.combine().size());
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSubsetUnionSubtract() throws Exception {
+		SortedSet<AvailableBlock> blocks = AvailableBlockBuilder.createBlocks("9:00 AM", "5:00 PM", "MTWRF", makeDate("20100830"), makeDate("20100910"), 2, "Office");
+		AvailableSlotBitmap bitmap = AvailableSlotBitmap.valueOf(blocks);
+
+		AvailableSlotBitmap subset = bitmap.subset(CommonDateOperations.parseDateTimePhrase("20100901-1200"),
+				CommonDateOperations.parseDateTimePhrase("20100903-1000"));
+		SortedSet<AvailableBlock> combined = subset.combine();
+		Assert.assertEquals(3, combined.size());
+		Assert.assertEquals(AvailableBlockBuilder.createBlock("20100901-1200", "20100901-1700"), combined.first());
+		Assert.assertEquals(AvailableBlockBuilder.createBlock("20100903-0900", "20100903-1000"), combined.last());
+		Assert.assertEquals(2, combined.first().getVisitorLimit());
+		Assert.assertEquals("Office", combined.last().getMeetingLocation());
+
+		AvailableSlotBitmap copy = new AvailableSlotBitmap(bitmap);
+		Assert.assertEquals(bitmap, copy);
+		Assert.assertEquals(bitmap.hashCode(), copy.hashCode());
+		copy.subtract(subset);
+		Assert.assertFalse(bitmap.equals(copy));
+		Assert.assertEquals(bitmap.countSlots() - subset.countSlots(), copy.countSlots());
+		Assert.assertFalse(copy.overlaps(subset.getStartTime(), subset.getEndTime()));
+
+		copy.union(subset);
+		Assert.assertEquals(bitmap, copy);
+		assertBlocksEqual(bitmap.combine(), copy.combine());
+	}
+
+	/**
+	 * Verify {@link AvailableSchedule} backed by an {@link AvailableSlotBitmap}.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testBitmapBackedAvailableSchedule() throws Exception {
+		SortedSet<AvailableBlock> blocks = AvailableBlockBuilder.createBlocks("9:00 AM", "11:00 AM", "MWF", makeDate("20100830"), makeDate("20100910"));
+		AvailableSchedule schedule = new AvailableSchedule(AvailableSlotBitmap.valueOf(blocks));
+		Assert.assertTrue(schedule.isSlotBitmapBacked());
+		Assert.assertFalse(schedule.isEmpty());
+		Assert.assertEquals(blocks.first().getStartTime(), schedule.getScheduleStartTime());
+		Assert.assertEquals(blocks.last().getEndTime(), schedule.getScheduleEndTime());
+		Assert.assertEquals(new AvailableSchedule(blocks), schedule);
+
+		schedule.removeAvailableBlocks(AvailableBlockBuilder.createBlocks("9:00 AM", "9:30 AM", "M", makeDate("20100830"), makeDate("20100830")));
+		Assert.assertEquals(6, schedule.getAvailableBlocks().size());
+		Assert.assertEquals(AvailableBlockBuilder.createBlock("20100830-0930", "20100830-1100"), schedule.getAvailableBlocks().first());
+
+		schedule.addAvailableBlocks(AvailableBlockBuilder.createBlocks("8:00 AM", "10:00 AM", "M", makeDate("20100830"), makeDate("20100830")));
+		Assert.assertEquals(AvailableBlockBuilder.createBlock("20100830-0800", "20100830-1100"), schedule.getAvailableBlocks().first());
+
+		Assert.assertEquals(schedule.toSlotBitmap(), AvailableSlotBitmap.valueOf(schedule.getAvailableBlocks()));
+	}
+
+	private void assertBlocksEqual(SortedSet<AvailableBlock> expected, SortedSet<AvailableBlock> actual) {
+		Assert.assertEquals(expected.size(), actual.size());
+		Iterator<AvailableBlock> e = expected.iterator();
+		Iterator<AvailableBlock> a = actual.iterator();
+		while(e.hasNext()) {
+			AvailableBlock left = e.next();
+			AvailableBlock right = a.next();
+			Assert.assertEquals(left, right);
+			Assert.assertEquals(left.getVisitorLimit(), right.getVisitorLimit());
+			Assert.assertEquals(left.getMeetingLocation(), right.getMeetingLocation());
+		}
+	}
+
+	private Date makeDate(String datePhrase) throws Exception {
+		return CommonDateOperations.parseDatePhrase(datePhrase);
+	}
+}
@@ -0,0 +1,203 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jasig.schedassist.model;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import net.fortuna.ical4j.model.DateTime;
+import net.fortuna.ical4j.model.ParameterList;
+import net.fortuna.ical4j.model.Recur;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.parameter.Cn;
+import net.fortuna.ical4j.model.parameter.PartStat;
+import net.fortuna.ical4j.model.property.Attendee;
+import net.fortuna.ical4j.model.property.RRule;
+import net.fortuna.ical4j.model.property.Status;
+import net.fortuna.ical4j.model.property.Transp;
+
+import org.jasig.schedassist.NullAffiliationSourceImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link EventDigest}.
+ */
+public class EventDigestTest {
+
+	private final DefaultEventUtilsImpl eventUtils = new DefaultEventUtilsImpl(new NullAffiliationSourceImpl());
+
+	/**
+	 * The digest based checks must agree with the {@link VEvent} based checks for owners,
+	 * visitors and strangers, on appointments and plain events.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testMatchesEventChecks() throws Exception {
+		MockCalendarAccount ownerAccount = account("Some Owner", "someowner@wisc.edu");
+		MockScheduleOwner owner = new MockScheduleOwner(ownerAccount, 1);
+		MockCalendarAccount visitorAccount = account("Some Visitor", "somevisitor@wisc.edu");
+		MockScheduleVisitor visitor = new MockScheduleVisitor(visitorAccount);
+		// same address, different name
+		MockCalendarAccount impostor = account("Other Visitor", "somevisitor@wisc.edu");
+		MockCalendarAccount stranger = account("Nobody", "nobody@wisc.edu");
+
+		Date start = CommonDateOperations.parseDateTimePhrase("20110103-0900");
+		Date end = CommonDateOperations.parseDateTimePhrase("20110103-0930");
+		List<VEvent> events = new ArrayList<VEvent>();
+		events.add(eventUtils.constructAvailableAppointment(AvailableBlockBuilder.createBlock(start, end, 3), owner, visitor, "appointment"));
+
+		VEvent accepted = new VEvent(new DateTime(start), new DateTime(end), "accepted");
+		accepted.getProperties().add(attendee(ownerAccount, PartStat.ACCEPTED));
+		accepted.getProperties().add(attendee(visitorAccount, PartStat.DECLINED));
+		events.add(accepted);
+
+		VEvent noPartStat = new VEvent(new DateTime(start), new DateTime(end), "no partstat");
+		noPartStat.getProperties().add(attendee(visitorAccount, null));
+		events.add(noPartStat);
+
+		VEvent noCn = new VEvent(new DateTime(start), new DateTime(end), "no cn");
+		noCn.getProperties().add(new Attendee("mailto:" + ownerAccount.getEmailAddress()));
+		events.add(noCn);
+
+		for(VEvent event : events) {
+			EventDigest digest = EventDigest.of(event);
+			Assert.assertEquals(event.getStartDate().getDate().getTime(), digest.getStartTime());
+			Assert.assertEquals(event.getEndDate(true).getDate().getTime(), digest.getEndTime());
+			Assert.assertEquals(eventUtils.getScheduleVisitorCount(event), digest.getVisitorCount());
+			Assert.assertEquals(eventUtils.getEventVisitorLimit(event), digest.getVisitorLimit());
+			Assert.assertEquals(eventUtils.isEventRecurring(event), digest.isRecurring());
+			for(ICalendarAccount account : new ICalendarAccount[] { ownerAccount, visitorAccount, impostor, stranger }) {
+				Assert.assertEquals(eventUtils.willEventCauseConflict(account, event), eventUtils.willEventCauseConflict(account, digest));
+				Assert.assertEquals(eventUtils.isAttendingAsOwner(event, account), eventUtils.isAttendingAsOwner(digest, account));
+				Assert.assertEquals(eventUtils.isAttendingAsVisitor(event, account), eventUtils.isAttendingAsVisitor(digest, account));
+			}
+		}
+
+		EventDigest appointment = EventDigest.of(events.get(0));
+		Assert.assertTrue(appointment.isAvailableAppointment());
+		Assert.assertTrue(eventUtils.isAttendingAsOwner(appointment, ownerAccount));
+		Assert.assertTrue(eventUtils.isAttendingAsVisitor(appointment, visitorAccount));
+		Assert.assertFalse(eventUtils.isAttendingAsVisitor(appointment, impostor));
+		Assert.assertEquals(Integer.valueOf(3), appointment.getVisitorLimit());
+		Assert.assertEquals(1, appointment.getVisitorCount());
+		Assert.assertTrue(eventUtils.willEventCauseConflict(ownerAccount, EventDigest.of(accepted)));
+		Assert.assertFalse(eventUtils.willEventCauseConflict(visitorAccount, EventDigest.of(accepted)));
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFlags() throws Exception {
+		VEvent event = new VEvent(new DateTime(CommonDateOperations.parseDateTimePhrase("20110103-0900")),
+				new DateTime(CommonDateOperations.parseDateTimePhrase("20110103-1000")), "flags");
+		EventDigest digest = EventDigest.of(event);
+		Assert.assertTrue(digest.isTimed());
+		Assert.assertTrue(digest.isOpaque());
+		Assert.assertFalse(digest.isCancelled());
+		Assert.assertFalse(digest.isRecurring());
+		Assert.assertFalse(digest.isAvailableAppointment());
+		Assert.assertNull(digest.getVisitorLimit());
+		Assert.assertEquals(0, digest.getOrganizerIdentity());
+
+		event.getProperties().add(Transp.TRANSPARENT);
+		event.getProperties().add(Status.VEVENT_CANCELLED);
+		event.getProperties().add(new RRule(new Recur("FREQ=DAILY;COUNT=3")));
+		digest = EventDigest.of(event);
+		Assert.assertFalse(digest.isOpaque());
+		Assert.assertTrue(digest.isCancelled());
+		Assert.assertTrue(digest.isRecurring());
+	}
+
+	/**
+	 * A subclass that overrides {@link DefaultEventUtilsImpl#attendeeMatchesPerson(net.fortuna.ical4j.model.Property, ICalendarAccount)}
+	 * gets the same answers from the digest based checks.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testAttendeeMatchesPersonOverride() throws Exception {
+		DefaultEventUtilsImpl addressOnly = new DefaultEventUtilsImpl(new NullAffiliationSourceImpl()) {
+			@Override
+			public boolean attendeeMatchesPerson(net.fortuna.ical4j.model.Property attendee, ICalendarAccount calendarAccount) {
+				return attendee != null && attendee.getValue().equalsIgnoreCase("mailto:" + calendarAccount.getEmailAddress());
+			}
+		};
+		MockCalendarAccount ownerAccount = account("Some Owner", "someowner@wisc.edu");
+		MockCalendarAccount visitorAccount = account("Some Visitor", "somevisitor@wisc.edu");
+		// same address, different name
+		MockCalendarAccount renamed = account("Renamed Visitor", "somevisitor@wisc.edu");
+		Date start = CommonDateOperations.parseDateTimePhrase("20110103-0900");
+		Date end = CommonDateOperations.parseDateTimePhrase("20110103-0930");
+		VEvent appointment = addressOnly.constructAvailableAppointment(AvailableBlockBuilder.createBlock(start, end, 3),
+				new MockScheduleOwner(ownerAccount, 1), new MockScheduleVisitor(visitorAccount), "appointment");
+		EventDigest digest = EventDigest.of(appointment);
+
+		Assert.assertTrue(addressOnly.isAttendingAsVisitor(appointment, renamed));
+		Assert.assertTrue(addressOnly.isAttendingAsVisitor(digest, renamed));
+		Assert.assertEquals(addressOnly.willEventCauseConflict(renamed, appointment), addressOnly.willEventCauseConflict(renamed, digest));
+		Assert.assertTrue(addressOnly.isAttendingAsOwner(digest, account("Renamed Owner", "someowner@wisc.edu")));
+		Assert.assertFalse(eventUtils.isAttendingAsVisitor(digest, renamed));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testIdentity() {
+		Assert.assertEquals(EventDigest.identityOf(account("Some Owner", "someowner@wisc.edu")),
+				EventDigest.identityOf("Some Owner", "mailto:someowner@wisc.edu"));
+		Assert.assertFalse(EventDigest.identityOf("ab", "c") == EventDigest.identityOf("a", "bc"));
+		Assert.assertEquals(0, EventDigest.identityOf((ICalendarAccount) null));
+	}
+
+	/**
+	 *
+	 * @param displayName
+	 * @param emailAddress
+	 * @return a {@link MockCalendarAccount}
+	 */
+	private MockCalendarAccount account(String displayName, String emailAddress) {
+		MockCalendarAccount account = new MockCalendarAccount();
+		account.setDisplayName(displayName);
+		account.setEmailAddress(emailAddress);
+		return account;
+	}
+
+	/**
+	 *
+	 * @param account
+	 * @param partStat
+	 * @return an attendee for the account
+	 * @throws Exception
+	 */
+	private Attendee attendee(ICalendarAccount account, PartStat partStat) throws Exception {
+		ParameterList parameterList = new ParameterList();
+		if(partStat != null) {
+			parameterList.add(partStat);
+		}
+		parameterList.add(new Cn(account.getDisplayName()));
+		return new Attendee(parameterList, "mailto:" + account.getEmailAddress());
+	}
+}
@@ -0,0 +1,162 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jasig.schedassist.model;
+
+import java.net.URISyntaxException;
+import java.util.Date;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import junit.framework.Assert;
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.ComponentList;
+import net.fortuna.ical4j.model.DateTime;
+import net.fortuna.ical4j.model.ParameterList;
+import net.fortuna.ical4j.model.Recur;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.parameter.Cn;
+import net.fortuna.ical4j.model.parameter.PartStat;
+import net.fortuna.ical4j.model.property.Attendee;
+import net.fortuna.ical4j.model.property.RRule;
+
+import org.apache.commons.lang.time.DateUtils;
+import org.jasig.schedassist.NullAffiliationSourceImpl;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ParallelVisibleScheduleBuilder}.
+ */
+public class ParallelVisibleScheduleBuilderTest {
+
+	private final DefaultEventUtilsImpl eventUtils = new DefaultEventUtilsImpl(new NullAffiliationSourceImpl());
+
+	/**
+	 * A 10 week window with weekly recurring meetings, misaligned events and appointments
+	 * must render the same in 3 day chunks as it does in one pass.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testChunkedMatchesSequential() throws Exception {
+		MockCalendarAccount ownerAccount = new MockCalendarAccount();
+		ownerAccount.setEmailAddress("someowner@wisc.edu");
+		ownerAccount.setDisplayName("Some Owner");
+		MockScheduleOwner owner = new MockScheduleOwner(ownerAccount, 1);
+		owner.setPreference(Preferences.DURATIONS, MeetingDurations.THIRTY.getKey());
+
+		MockCalendarAccount visitorAccount = new MockCalendarAccount();
+		visitorAccount.setEmailAddress("somevisitor@wisc.edu");
+		visitorAccount.setDisplayName("Some Visitor");
+		MockScheduleVisitor visitor = new MockScheduleVisitor(visitorAccount);
+
+		Date start = CommonDateOperations.parseDateTimePhrase("20110103-1000");
+		Date end = CommonDateOperations.parseDatePhrase("20110314");
+		SortedSet<AvailableBlock> blocks = AvailableBlockBuilder.createBlocks("8:00 AM", "5:00 PM", "MTWRF",
+				CommonDateOperations.parseDatePhrase("20110103"), end, 1, null);
+		AvailableSchedule schedule = new AvailableSchedule(blocks);
+
+		Random random = new Random(20110103L);
+		ComponentList components = new ComponentList();
+		for(int i = 0; i < 5; i++) {
+			// weekly meeting, starting before the window
+			Date meetingStart = DateUtils.addMinutes(CommonDateOperations.parseDatePhrase("20101227"), (i * 24 + 9) * 60 + 15 * i);
+			VEvent meeting = busyEvent(ownerAccount, meetingStart, DateUtils.addMinutes(meetingStart, 50));
+			meeting.getProperties().add(new RRule(new Recur(Recur.WEEKLY, 20)));
+			components.add(meeting);
+		}
+		for(Date day = start; day.before(end); day = DateUtils.addDays(day, 1)) {
+			for(int i = 0; i < 3; i++) {
+				Date eventStart = DateUtils.addMinutes(DateUtils.truncate(day, java.util.Calendar.DATE), 7 * 60 + random.nextInt(10 * 60));
+				Date eventEnd = DateUtils.addMinutes(eventStart, 5 + random.nextInt(120));
+				if(random.nextInt(5) == 0) {
+					AvailableBlock block = AvailableBlockBuilder.createBlock(eventStart, eventEnd, 1);
+					components.add(eventUtils.constructAvailableAppointment(block, owner, visitor, "attending"));
+				} else {
+					components.add(busyEvent(ownerAccount, eventStart, eventEnd));
+				}
+			}
+		}
+		Calendar calendar = new Calendar(components);
+
+		VisibleScheduleBuilder sequential = new VisibleScheduleBuilder(eventUtils);
+		ParallelVisibleScheduleBuilder parallel = new ParallelVisibleScheduleBuilder(new VisibleScheduleBuilder(eventUtils), 4);
+		parallel.setChunkDays(3);
+		parallel.setSequentialThresholdDays(0);
+		try {
+			assertSameSchedule(sequential.calculateVisibleSchedule(start, end, calendar, schedule, owner, visitor),
+					parallel.calculateVisibleSchedule(start, end, calendar, schedule, owner, visitor));
+			assertSameSchedule(sequential.calculateVisibleSchedule(start, end, calendar, schedule, owner),
+					parallel.calculateVisibleSchedule(start, end, calendar, schedule, owner));
+			assertSameSchedule(sequential.calculateVisitorConflicts(start, end, calendar, schedule, MeetingDurations.THIRTY, visitor),
+					parallel.calculateVisitorConflicts(start, end, calendar, schedule, MeetingDurations.THIRTY, visitor));
+		} finally {
+			parallel.shutdown();
+		}
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSequentialThreshold() throws Exception {
+		ParallelVisibleScheduleBuilder builder = new ParallelVisibleScheduleBuilder(new VisibleScheduleBuilder(eventUtils), 2);
+		try {
+			AvailableSchedule schedule = new AvailableSchedule(new TreeSet<AvailableBlock>());
+			Date start = CommonDateOperations.parseDatePhrase("20110103");
+			Assert.assertTrue(builder.isSequential(start, DateUtils.addDays(start, 14), schedule));
+			Assert.assertFalse(builder.isSequential(start, DateUtils.addDays(start, 15), schedule));
+			Assert.assertTrue(builder.isSequential(start, start, schedule));
+			builder.setSequentialThresholdDays(28);
+			Assert.assertTrue(builder.isSequential(start, DateUtils.addDays(start, 15), schedule));
+		} finally {
+			builder.shutdown();
+		}
+	}
+
+	/**
+	 *
+	 * @param ownerAccount
+	 * @param eventStart
+	 * @param eventEnd
+	 * @return an event the owner has accepted
+	 * @throws URISyntaxException
+	 */
+	private VEvent busyEvent(ICalendarAccount ownerAccount, Date eventStart, Date eventEnd) throws URISyntaxException {
+		VEvent event = new VEvent(new DateTime(eventStart), new DateTime(eventEnd), "busy");
+		ParameterList parameterList = new ParameterList();
+		parameterList.add(PartStat.ACCEPTED);
+		parameterList.add(new Cn(ownerAccount.getDisplayName()));
+		event.getProperties().add(new Attendee(parameterList, "mailto:" + ownerAccount.getEmailAddress()));
+		return event;
+	}
+
+	/**
+	 *
+	 * @param expected
+	 * @param actual
+	 */
+	private void assertSameSchedule(VisibleSchedule expected, VisibleSchedule actual) {
+		Assert.assertTrue(expected.getBusyCount() > 0);
+		Assert.assertTrue(expected.getFreeCount() > 0);
+		Assert.assertEquals(expected.getBlockMap(), actual.getBlockMap());
+	}
+}
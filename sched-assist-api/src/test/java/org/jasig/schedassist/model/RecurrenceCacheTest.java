@@ -0,0 +1,170 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jasig.schedassist.model;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import net.fortuna.ical4j.model.DateTime;
+import net.fortuna.ical4j.model.Period;
+import net.fortuna.ical4j.model.PeriodList;
+import net.fortuna.ical4j.model.Recur;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.property.RRule;
+import net.fortuna.ical4j.model.property.Sequence;
+import net.fortuna.ical4j.model.property.Uid;
+
+import org.apache.commons.lang.time.DateUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link RecurrenceCache}.
+ */
+public class RecurrenceCacheTest {
+
+	private final DefaultEventUtilsImpl uncached = new DefaultEventUtilsImpl();
+
+	/**
+	 * Narrower ranges, including ones that start or end exactly on an instance boundary,
+	 * must return the same periods as an uncached expansion.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testClippedMatchesUncached() throws Exception {
+		VEvent weekly = new VEvent(new DateTime(CommonDateOperations.parseDateTimePhrase("20110103-0900")),
+				new DateTime(CommonDateOperations.parseDateTimePhrase("20110103-1000")), "weekly");
+		weekly.getProperties().add(new Uid("weekly"));
+		weekly.getProperties().add(new RRule(new Recur("FREQ=WEEKLY;BYDAY=MO,WE;COUNT=30")));
+		VEvent allDay = new VEvent(new net.fortuna.ical4j.model.Date("20110103"), new net.fortuna.ical4j.model.Date("20110104"), "all day");
+		allDay.getProperties().add(new Uid("allday"));
+		allDay.getProperties().add(new RRule(new Recur("FREQ=DAILY;COUNT=60")));
+
+		DefaultEventUtilsImpl cached = new DefaultEventUtilsImpl();
+		cached.setRecurrenceCache(new RecurrenceCache(10));
+
+		Date start = CommonDateOperations.parseDatePhrase("20110101");
+		Date end = CommonDateOperations.parseDatePhrase("20110401");
+		for(VEvent event : new VEvent[] { weekly, allDay }) {
+			assertSamePeriods(uncached.calculateRecurrence(event, start, end), cached.calculateRecurrence(event, start, end));
+			String [][] ranges = {
+					{ "20110105-0900", "20110112-0900" },
+					{ "20110105-1000", "20110112-1000" },
+					{ "20110105-0959", "20110110-0901" },
+					{ "20110106-0000", "20110107-0000" },
+					{ "20110131-1800", "20110302-0600" }
+			};
+			for(String [] range : ranges) {
+				Date rangeStart = CommonDateOperations.parseDateTimePhrase(range[0]);
+				Date rangeEnd = CommonDateOperations.parseDateTimePhrase(range[1]);
+				assertSamePeriods(uncached.calculateRecurrence(event, rangeStart, rangeEnd), cached.calculateRecurrence(event, rangeStart, rangeEnd));
+			}
+		}
+		Assert.assertEquals(2, cached.getRecurrenceCache().getMisses());
+		Assert.assertEquals(10, cached.getRecurrenceCache().getHits());
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testWiderRangeAndChangedEvent() throws Exception {
+		VEvent weekly = new VEvent(new DateTime(CommonDateOperations.parseDateTimePhrase("20110103-0900")),
+				new DateTime(CommonDateOperations.parseDateTimePhrase("20110103-1000")), "weekly");
+		weekly.getProperties().add(new Uid("weekly"));
+		weekly.getProperties().add(new RRule(new Recur("FREQ=WEEKLY;COUNT=30")));
+
+		RecurrenceCache cache = new RecurrenceCache(10);
+		DefaultEventUtilsImpl cached = new DefaultEventUtilsImpl();
+		cached.setRecurrenceCache(cache);
+
+		Date start = CommonDateOperations.parseDatePhrase("20110101");
+		Date end = CommonDateOperations.parseDatePhrase("20110201");
+		Assert.assertEquals(5, cached.calculateRecurrence(weekly, start, end).size());
+		// wider range is not covered
+		Assert.assertEquals(9, cached.calculateRecurrence(weekly, start, DateUtils.addMonths(end, 1)).size());
+		Assert.assertEquals(0, cache.getHits());
+		Assert.assertEquals(5, cached.calculateRecurrence(weekly, start, end).size());
+		Assert.assertEquals(1, cache.getHits());
+
+		// a new SEQUENCE and RRULE must not be answered from the old entry
+		weekly.getProperties().remove(weekly.getProperty(RRule.RRULE));
+		weekly.getProperties().add(new RRule(new Recur("FREQ=WEEKLY;COUNT=2")));
+		weekly.getProperties().add(new Sequence(1));
+		Assert.assertEquals(2, cached.calculateRecurrence(weekly, start, end).size());
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(2, cache.getSize());
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testBounded() throws Exception {
+		RecurrenceCache cache = new RecurrenceCache(3);
+		DefaultEventUtilsImpl cached = new DefaultEventUtilsImpl();
+		cached.setRecurrenceCache(cache);
+		Date start = CommonDateOperations.parseDatePhrase("20110101");
+		Date end = CommonDateOperations.parseDatePhrase("20110201");
+		for(int i = 0; i < 5; i++) {
+			VEvent event = new VEvent(new DateTime(CommonDateOperations.parseDateTimePhrase("20110103-0900")),
+					new DateTime(CommonDateOperations.parseDateTimePhrase("20110103-1000")), "event " + i);
+			event.getProperties().add(new Uid("event" + i));
+			event.getProperties().add(new RRule(new Recur("FREQ=DAILY;COUNT=10")));
+			cached.calculateRecurrence(event, start, end);
+		}
+		Assert.assertEquals(3, cache.getSize());
+
+		// no UID, not cached
+		VEvent noUid = new VEvent(new DateTime(CommonDateOperations.parseDateTimePhrase("20110103-0900")),
+				new DateTime(CommonDateOperations.parseDateTimePhrase("20110103-1000")), "no uid");
+		noUid.getProperties().add(new RRule(new Recur("FREQ=DAILY;COUNT=10")));
+		Assert.assertEquals(10, cached.calculateRecurrence(noUid, start, end).size());
+		Assert.assertEquals(5, cache.getMisses());
+	}
+
+	/**
+	 *
+	 * @param expected
+	 * @param actual
+	 */
+	private void assertSamePeriods(PeriodList expected, PeriodList actual) {
+		Assert.assertEquals(toMillis(expected), toMillis(actual));
+	}
+
+	/**
+	 *
+	 * @param periods
+	 * @return start and end of each period in epoch milliseconds
+	 */
+	private List<Long> toMillis(PeriodList periods) {
+		List<Long> result = new ArrayList<Long>();
+		for(Object o : periods) {
+			Period period = (Period) o;
+			result.add(period.getStart().getTime());
+			result.add(period.getEnd().getTime());
+		}
+		return result;
+	}
+}
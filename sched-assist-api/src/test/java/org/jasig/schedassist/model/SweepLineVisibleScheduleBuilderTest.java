@@ -0,0 +1,220 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jasig.schedassist.model;
+
+import java.net.URISyntaxException;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+import junit.framework.Assert;
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.ComponentList;
+import net.fortuna.ical4j.model.DateTime;
+import net.fortuna.ical4j.model.ParameterList;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.parameter.Cn;
+import net.fortuna.ical4j.model.parameter.PartStat;
+import net.fortuna.ical4j.model.property.Attendee;
+
+import org.apache.commons.lang.time.DateUtils;
+import org.jasig.schedassist.NullAffiliationSourceImpl;
+import org.junit.Test;
+
+/**
+ * Runs the {@link VisibleScheduleBuilderTest} suite against {@link SweepLineVisibleScheduleBuilder},
+ * and compares both builders on dense calendars.
+ */
+public class SweepLineVisibleScheduleBuilderTest extends VisibleScheduleBuilderTest {
+
+	/**
+	 *
+	 * @throws ParseException
+	 */
+	public SweepLineVisibleScheduleBuilderTest() throws ParseException {
+		super();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.jasig.schedassist.model.VisibleScheduleBuilderTest#createBuilder(org.jasig.schedassist.model.IEventUtils)
+	 */
+	@Override
+	protected VisibleScheduleBuilder createBuilder(IEventUtils eventUtils) {
+		return new SweepLineVisibleScheduleBuilder(eventUtils);
+	}
+
+	/**
+	 * Many misaligned busy events, group appointments and attending appointments over 4 weeks
+	 * must render identically with both builders.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testDenseCalendarMatchesDefaultBuilder() throws Exception {
+		DefaultEventUtilsImpl eventUtils = new DefaultEventUtilsImpl(new NullAffiliationSourceImpl());
+
+		MockCalendarAccount ownerAccount = new MockCalendarAccount();
+		ownerAccount.setEmailAddress("someowner@wisc.edu");
+		ownerAccount.setDisplayName("Some Owner");
+		MockScheduleOwner owner = new MockScheduleOwner(ownerAccount, 1);
+		owner.setPreference(Preferences.DURATIONS, MeetingDurations.FIFTEEN.getKey());
+
+		MockCalendarAccount visitorAccount = new MockCalendarAccount();
+		visitorAccount.setEmailAddress("somevisitor@wisc.edu");
+		visitorAccount.setDisplayName("Some Visitor");
+		MockScheduleVisitor visitor = new MockScheduleVisitor(visitorAccount);
+		MockCalendarAccount otherAccount = new MockCalendarAccount();
+		otherAccount.setEmailAddress("othervisitor@wisc.edu");
+		otherAccount.setDisplayName("Other Visitor");
+		MockScheduleVisitor otherVisitor = new MockScheduleVisitor(otherAccount);
+
+		Date start = CommonDateOperations.parseDatePhrase("20110103");
+		Date end = CommonDateOperations.parseDatePhrase("20110131");
+		SortedSet<AvailableBlock> blocks = AvailableBlockBuilder.createBlocks("8:00 AM", "5:00 PM", "MTWRF", start, end, 2, null);
+		AvailableSchedule schedule = new AvailableSchedule(blocks);
+
+		Random random = new Random(20110103L);
+		ComponentList components = new ComponentList();
+		for(Date day = start; day.before(end); day = DateUtils.addDays(day, 1)) {
+			for(int i = 0; i < 8; i++) {
+				Date eventStart = DateUtils.addMinutes(day, 7 * 60 + random.nextInt(10 * 60));
+				Date eventEnd = DateUtils.addMinutes(eventStart, 5 + random.nextInt(90));
+				int kind = random.nextInt(4);
+				if(kind == 0) {
+					// aligned group appointment with a free spot
+					Date aligned = DateUtils.addMinutes(day, 8 * 60 + 15 * random.nextInt(32));
+					AvailableBlock block = AvailableBlockBuilder.createBlock(aligned, DateUtils.addMinutes(aligned, 15), 2);
+					components.add(eventUtils.constructAvailableAppointment(block, owner, otherVisitor, "group"));
+				} else if(kind == 1 && random.nextInt(4) == 0) {
+					// misaligned appointment the visitor is attending
+					AvailableBlock block = AvailableBlockBuilder.createBlock(eventStart, eventEnd, 1);
+					components.add(eventUtils.constructAvailableAppointment(block, owner, visitor, "attending"));
+				} else {
+					DateTime dtStart = new DateTime(eventStart);
+					DateTime dtEnd = new DateTime(eventEnd);
+					VEvent busy = new VEvent(dtStart, dtEnd, "busy");
+					ParameterList parameterList = new ParameterList();
+					parameterList.add(PartStat.ACCEPTED);
+					parameterList.add(new Cn(ownerAccount.getDisplayName()));
+					busy.getProperties().add(new Attendee(parameterList, "mailto:" + ownerAccount.getEmailAddress()));
+					components.add(busy);
+				}
+			}
+		}
+		Calendar calendar = new Calendar(components);
+
+		VisibleScheduleBuilder control = new VisibleScheduleBuilder(eventUtils);
+		VisibleScheduleBuilder sweep = new SweepLineVisibleScheduleBuilder(eventUtils);
+
+		assertSameSchedule(control.calculateVisibleSchedule(start, end, calendar, schedule, owner, visitor),
+				sweep.calculateVisibleSchedule(start, end, calendar, schedule, owner, visitor));
+		assertSameSchedule(control.calculateVisibleSchedule(start, end, calendar, schedule, owner),
+				sweep.calculateVisibleSchedule(start, end, calendar, schedule, owner));
+	}
+
+	/**
+	 * Events that overlap blocks by less than a minute, or by seconds at either end, must conflict with exactly
+	 * the blocks that {@link VisibleSchedule#locateConflicting(AvailableBlock)} finds.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSubMinuteOverlapsMatchDefaultBuilder() throws Exception {
+		DefaultEventUtilsImpl eventUtils = new DefaultEventUtilsImpl(new NullAffiliationSourceImpl());
+
+		MockCalendarAccount ownerAccount = new MockCalendarAccount();
+		ownerAccount.setEmailAddress("someowner@wisc.edu");
+		ownerAccount.setDisplayName("Some Owner");
+		MockScheduleOwner owner = new MockScheduleOwner(ownerAccount, 1);
+		owner.setPreference(Preferences.DURATIONS, MeetingDurations.FIFTEEN.getKey());
+
+		MockCalendarAccount visitorAccount = new MockCalendarAccount();
+		visitorAccount.setEmailAddress("somevisitor@wisc.edu");
+		visitorAccount.setDisplayName("Some Visitor");
+		MockScheduleVisitor visitor = new MockScheduleVisitor(visitorAccount);
+
+		Date start = CommonDateOperations.parseDatePhrase("20110103");
+		Date end = CommonDateOperations.parseDatePhrase("20110117");
+		SortedSet<AvailableBlock> blocks = AvailableBlockBuilder.createBlocks("8:00 AM", "5:00 PM", "MTWRF", start, end, 1, null);
+		AvailableSchedule schedule = new AvailableSchedule(blocks);
+
+		Random random = new Random(20110117L);
+		ComponentList components = new ComponentList();
+		for(Date day = start; day.before(end); day = DateUtils.addDays(day, 1)) {
+			// ends 5 seconds into the 9:00 block, starts 5 seconds before the end of the 8:30 block
+			components.add(createBusyEvent(ownerAccount, DateUtils.addSeconds(day, 8 * 3600 + 44 * 60 + 55), DateUtils.addSeconds(day, 9 * 3600 + 5)));
+			// within the last minute of the 10:00 block, before its probe
+			components.add(createBusyEvent(ownerAccount, DateUtils.addSeconds(day, 10 * 3600 + 14 * 60 + 20), DateUtils.addSeconds(day, 10 * 3600 + 15 * 60)));
+			// 30 seconds at the start of the 11:00 block, covering its probe
+			components.add(createBusyEvent(ownerAccount, DateUtils.addSeconds(day, 11 * 3600), DateUtils.addSeconds(day, 11 * 3600 + 30)));
+			for(int i = 0; i < 6; i++) {
+				Date eventStart = DateUtils.addSeconds(day, 12 * 3600 + random.nextInt(5 * 3600));
+				Date eventEnd = DateUtils.addSeconds(eventStart, 1 + random.nextInt(1800));
+				components.add(createBusyEvent(ownerAccount, eventStart, eventEnd));
+			}
+		}
+		Calendar calendar = new Calendar(components);
+
+		VisibleScheduleBuilder control = new VisibleScheduleBuilder(eventUtils);
+		VisibleScheduleBuilder sweep = new SweepLineVisibleScheduleBuilder(eventUtils);
+
+		assertSameSchedule(control.calculateVisibleSchedule(start, end, calendar, schedule, owner, visitor),
+				sweep.calculateVisibleSchedule(start, end, calendar, schedule, owner, visitor));
+		assertSameSchedule(control.calculateVisibleSchedule(start, end, calendar, schedule, owner),
+				sweep.calculateVisibleSchedule(start, end, calendar, schedule, owner));
+	}
+
+	/**
+	 *
+	 * @param ownerAccount
+	 * @param eventStart
+	 * @param eventEnd
+	 * @return an event the owner has accepted
+	 * @throws URISyntaxException
+	 */
+	private VEvent createBusyEvent(MockCalendarAccount ownerAccount, Date eventStart, Date eventEnd) throws URISyntaxException {
+		VEvent busy = new VEvent(new DateTime(eventStart), new DateTime(eventEnd), "busy");
+		ParameterList parameterList = new ParameterList();
+		parameterList.add(PartStat.ACCEPTED);
+		parameterList.add(new Cn(ownerAccount.getDisplayName()));
+		busy.getProperties().add(new Attendee(parameterList, "mailto:" + ownerAccount.getEmailAddress()));
+		return busy;
+	}
+
+	/**
+	 *
+	 * @param expected
+	 * @param actual
+	 */
+	private void assertSameSchedule(VisibleSchedule expected, VisibleSchedule actual) {
+		SortedMap<AvailableBlock, AvailableStatus> expectedMap = expected.getBlockMap();
+		SortedMap<AvailableBlock, AvailableStatus> actualMap = actual.getBlockMap();
+		Assert.assertEquals(expectedMap, actualMap);
+		Assert.assertTrue(expected.getBusyCount() > 0);
+		Assert.assertTrue(expected.getFreeCount() > 0);
+		for(AvailableBlock block : expectedMap.keySet()) {
+			AvailableBlock other = actualMap.tailMap(block).firstKey();
+			Assert.assertEquals(block.getVisitorsAttending(), other.getVisitorsAttending());
+		}
+	}
+}
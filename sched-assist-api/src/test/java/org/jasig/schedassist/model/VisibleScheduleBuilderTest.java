@@ -40,6 +40,8 @@ import net.fortuna.ical4j.model.Component;
 import net.fortuna.ical4j.model.ComponentList;
 import net.fortuna.ical4j.model.DateTime;
 import net.fortuna.ical4j.model.ParameterList;
+import net.fortuna.ical4j.model.Period;
+import net.fortuna.ical4j.model.PeriodList;
 import net.fortuna.ical4j.model.Recur;
 import net.fortuna.ical4j.model.TimeZoneRegistry;
 import net.fortuna.ical4j.model.TimeZoneRegistryFactory;
@@ -70,7 +72,7 @@ public class VisibleScheduleBuilderTest {
 	private Log LOG = LogFactory.getLog(this.getClass());
 
 	private DefaultEventUtilsImpl eventUtils = new DefaultEventUtilsImpl(new NullAffiliationSourceImpl());
-	private VisibleScheduleBuilder builder = new VisibleScheduleBuilder(eventUtils);
+	private VisibleScheduleBuilder builder = createBuilder(eventUtils);
 
 	static {
 		// Many of the values in the assertions expect America/Chicago
@@ -88,6 +90,15 @@ public class VisibleScheduleBuilderTest {
 		americaChicago = registry.getTimeZone("America/Chicago");
 	}
 
+	/**
+	 * 
+	 * @param eventUtils
+	 * @return the {@link VisibleScheduleBuilder} under test
+	 */
+	protected VisibleScheduleBuilder createBuilder(IEventUtils eventUtils) {
+		return new VisibleScheduleBuilder(eventUtils);
+	}
+
 	/**
 	 * Assert empty calendar and empty Advising Schedule throw no errors
 	 * @throws Exception
@@ -962,6 +973,39 @@ public class VisibleScheduleBuilderTest {
 		Assert.assertTrue(busyBlocks.contains(AvailableBlockBuilder.createBlock(makeDateTime("20101119-1341"), makeDateTime("20101119-1358"))));
 		Assert.assertTrue(busyBlocks.contains(AvailableBlockBuilder.createBlock(makeDateTime("20101119-1358"), makeDateTime("20101119-1415"))));
 	}
+	/**
+	 * Busy periods (e.g. from a free busy query) mark every overlapping block busy.
+	 * 
+	 * @throws ParseException
+	 * @throws InputFormatException
+	 */
+	@Test
+	public void testVisitorConflictsBusyPeriods() throws ParseException, InputFormatException {
+		Date startTime = makeDateTime("20101118-0000");
+		Date endTime = makeDateTime("20101121-0000");
+		
+		SortedSet<AvailableBlock> blocks = AvailableBlockBuilder.createBlocks("10:00 AM", "3:00 PM", "F", startTime, endTime,
+				1,
+				null);
+		AvailableSchedule schedule = new AvailableSchedule(blocks);
+		
+		PeriodList busyPeriods = new PeriodList(true);
+		busyPeriods.add(new Period(new DateTime(makeDateTime("20101119-1330")), new DateTime(makeDateTime("20101119-1400"))));
+		// outside of the schedule
+		busyPeriods.add(new Period(new DateTime(makeDateTime("20101119-0800")), new DateTime(makeDateTime("20101119-0900"))));
+		
+		VisibleSchedule visibleSchedule = this.builder.calculateVisitorConflicts(startTime, endTime, busyPeriods, schedule, MeetingDurations.fromKey("17"));
+		
+		Assert.assertEquals(3, visibleSchedule.getBusyCount());
+		List<AvailableBlock> busyBlocks = visibleSchedule.getBusyList();
+		Assert.assertTrue(busyBlocks.contains(AvailableBlockBuilder.createBlock(makeDateTime("20101119-1324"), makeDateTime("20101119-1341"))));
+		Assert.assertTrue(busyBlocks.contains(AvailableBlockBuilder.createBlock(makeDateTime("20101119-1341"), makeDateTime("20101119-1358"))));
+		Assert.assertTrue(busyBlocks.contains(AvailableBlockBuilder.createBlock(makeDateTime("20101119-1358"), makeDateTime("20101119-1415"))));
+		
+		VisibleSchedule noConflicts = this.builder.calculateVisitorConflicts(startTime, endTime, new PeriodList(true), schedule, MeetingDurations.fromKey("17"));
+		Assert.assertEquals(0, noConflicts.getBusyCount());
+		Assert.assertEquals(visibleSchedule.getSize(), noConflicts.getFreeCount());
+	}
 	/**
 	 * helper method to create java.util.Date objects from a String
 	 * 
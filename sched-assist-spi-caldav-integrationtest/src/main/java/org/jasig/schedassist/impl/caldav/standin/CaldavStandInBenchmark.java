@@ -0,0 +1,245 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.jasig.schedassist.impl.caldav.standin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.fortuna.ical4j.model.component.VEvent;
+
+import org.apache.commons.lang.time.DateUtils;
+import org.apache.http.HttpHost;
+import org.apache.http.auth.AuthScope;
+import org.jasig.schedassist.ConflictExistsException;
+import org.jasig.schedassist.NullAffiliationSourceImpl;
+import org.jasig.schedassist.impl.caldav.CaldavCalendarDataDaoImpl;
+import org.jasig.schedassist.impl.caldav.CaldavConnectionManager;
+import org.jasig.schedassist.impl.caldav.CaldavEventUtilsImpl;
+import org.jasig.schedassist.impl.caldav.DefaultCaldavDialectImpl;
+import org.jasig.schedassist.impl.caldav.DefaultCredentialsProviderFactoryImpl;
+import org.jasig.schedassist.impl.caldav.SchemeRegistryProvider;
+import org.jasig.schedassist.model.AvailableBlock;
+import org.jasig.schedassist.model.AvailableBlockBuilder;
+import org.jasig.schedassist.model.mock.MockCalendarAccount;
+import org.jasig.schedassist.model.mock.MockScheduleOwner;
+import org.jasig.schedassist.model.mock.MockScheduleVisitor;
+
+/**
+ * Measures the throughput and latency of {@link CaldavCalendarDataDaoImpl} against a {@link CaldavStandInServer}
+ * seeded by a {@link SyntheticEventGenerator}.
+ * 
+ * Each worker thread repeatedly picks an owner and a day in the seeded range, then either reads the owner's calendar
+ * for the day (with a free-busy-query if 'benchmark.freeBusy' is true), or books and cancels an appointment in a random
+ * block of the day, 'benchmark.writePercent' percent of the time. Configured with system properties:
+ * <pre>
+ * benchmark.threads (16), benchmark.seconds (30), benchmark.owners (100), benchmark.days (28),
+ * benchmark.latencyMillis (20), benchmark.jitterMillis (30), benchmark.errorRate (0),
+ * benchmark.maxConnections (20), benchmark.writePercent (10), benchmark.freeBusy (false), benchmark.seed (1)
+ * </pre>
+ * Run with, for example:
+ * <pre>
+ * java -Dbenchmark.threads=64 -Dbenchmark.maxConnections=32 -cp ... org.jasig.schedassist.impl.caldav.standin.CaldavStandInBenchmark
+ * </pre>
+ */
+public final class CaldavStandInBenchmark {
+
+	private static final String ACCOUNT_HOME_PREFIX = "/ucaldav/user/";
+	private static final String ACCOUNT_HOME_SUFFIX = "/calendar/";
+
+	private CaldavStandInBenchmark() {
+	}
+
+	/**
+	 * 
+	 * @param args ignored
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		final int threads = Integer.getInteger("benchmark.threads", 16);
+		final int seconds = Integer.getInteger("benchmark.seconds", 30);
+		final int owners = Integer.getInteger("benchmark.owners", 100);
+		final int days = Integer.getInteger("benchmark.days", 28);
+		final int maxConnections = Integer.getInteger("benchmark.maxConnections", 20);
+		final int writePercent = Integer.getInteger("benchmark.writePercent", 10);
+		final long seed = Long.getLong("benchmark.seed", 1L);
+		final boolean freeBusy = Boolean.getBoolean("benchmark.freeBusy");
+
+		CaldavStandInServer server = new CaldavStandInServer(0);
+		server.setThreads(Math.max(threads, maxConnections));
+		server.setLatencyMillis(Long.getLong("benchmark.latencyMillis", 20L));
+		server.setJitterMillis(Long.getLong("benchmark.jitterMillis", 30L));
+		server.setErrorRate(Double.parseDouble(System.getProperty("benchmark.errorRate", "0")));
+		server.setRandomSeed(seed);
+		server.start();
+
+		final Date start = DateUtils.truncate(new Date(), java.util.Calendar.DATE);
+		final List<MockScheduleOwner> ownerList = new ArrayList<MockScheduleOwner>();
+		SyntheticEventGenerator generator = new SyntheticEventGenerator(seed);
+		int events = 0;
+		for(int i = 0; i < owners; i++) {
+			MockCalendarAccount account = createAccount("owner" + i);
+			ownerList.add(new MockScheduleOwner(account, i));
+			events += generator.populate(server, ACCOUNT_HOME_PREFIX + account.getUsername() + ACCOUNT_HOME_SUFFIX, start, days);
+		}
+		final MockScheduleVisitor visitor = new MockScheduleVisitor(createAccount("visitor"));
+		System.out.println("seeded " + events + " events for " + owners + " owners over " + days + " days");
+
+		CaldavConnectionManager connectionManager = new CaldavConnectionManager(
+				SchemeRegistryProvider.createSocketFactoryRegistry("http", false), -1);
+		connectionManager.setMaxTotal(maxConnections);
+		connectionManager.setDefaultMaxPerRoute(maxConnections);
+		connectionManager.afterPropertiesSet();
+		final CaldavCalendarDataDaoImpl calendarDataDao = createCalendarDataDao(server, connectionManager, freeBusy);
+
+		final long deadline = System.currentTimeMillis() + seconds * 1000L;
+		final AtomicLong errors = new AtomicLong();
+		final long [][] latencies = new long[threads][];
+		List<Thread> workers = new ArrayList<Thread>();
+		for(int t = 0; t < threads; t++) {
+			final int index = t;
+			final Random random = new Random(seed + t);
+			Thread worker = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					long [] samples = new long[1024];
+					int count = 0;
+					while(System.currentTimeMillis() < deadline) {
+						MockScheduleOwner owner = ownerList.get(random.nextInt(ownerList.size()));
+						Date day = DateUtils.addDays(start, random.nextInt(days));
+						long begin = System.nanoTime();
+						try {
+							if(random.nextInt(100) < writePercent) {
+								Date blockStart = DateUtils.addMinutes(day, 8 * 60 + 30 * random.nextInt(18));
+								AvailableBlock block = AvailableBlockBuilder.createBlock(blockStart, DateUtils.addMinutes(blockStart, 30));
+								try {
+									VEvent appointment = calendarDataDao.createAppointmentIfAbsent(visitor, owner, block, "benchmark");
+									calendarDataDao.cancelAppointment(visitor, owner, appointment);
+								} catch (ConflictExistsException e) {
+									// another worker holds the block
+								}
+							} else if(freeBusy) {
+								calendarDataDao.getBusyPeriods(owner.getCalendarAccount(), day, DateUtils.addDays(day, 1));
+							} else {
+								calendarDataDao.getCalendar(owner.getCalendarAccount(), day, DateUtils.addDays(day, 1));
+							}
+						} catch (RuntimeException e) {
+							errors.incrementAndGet();
+						}
+						if(count == samples.length) {
+							samples = Arrays.copyOf(samples, count * 2);
+						}
+						samples[count++] = System.nanoTime() - begin;
+					}
+					latencies[index] = Arrays.copyOf(samples, count);
+				}
+			}, "benchmark-" + t);
+			workers.add(worker);
+			worker.start();
+		}
+		for(Thread worker : workers) {
+			worker.join();
+		}
+
+		long [] all = new long[0];
+		for(long [] samples : latencies) {
+			int offset = all.length;
+			all = Arrays.copyOf(all, offset + samples.length);
+			System.arraycopy(samples, 0, all, offset, samples.length);
+		}
+		Arrays.sort(all);
+		System.out.println(String.format("%d operations in %d s: %.1f ops/s, %d errors, %d CalDAV requests (%d injected errors)",
+				all.length, seconds, all.length / (double) seconds, errors.get(), server.getRequestCount(), server.getInjectedErrors()));
+		System.out.println(String.format("latency ms: p50 %.1f, p90 %.1f, p99 %.1f, max %.1f",
+				percentile(all, 50), percentile(all, 90), percentile(all, 99), percentile(all, 100)));
+		System.out.println("connection lease timeouts: " + connectionManager.getLeaseTimeouts() + ", lease waits: " + connectionManager.getLeaseWaitHistogram());
+
+		calendarDataDao.destroy();
+		connectionManager.destroy();
+		server.stop();
+	}
+
+	/**
+	 * Wire a {@link CaldavCalendarDataDaoImpl} to the server with the default dialect.
+	 * 
+	 * @param server a started server
+	 * @param connectionManager
+	 * @param freeBusyQuerySupported
+	 * @return the dao, initialized
+	 * @throws Exception
+	 */
+	public static CaldavCalendarDataDaoImpl createCalendarDataDao(CaldavStandInServer server, CaldavConnectionManager connectionManager,
+			boolean freeBusyQuerySupported) throws Exception {
+		CaldavEventUtilsImpl eventUtils = new CaldavEventUtilsImpl(new NullAffiliationSourceImpl());
+		DefaultCaldavDialectImpl dialect = new DefaultCaldavDialectImpl();
+		dialect.setCaldavHost(server.getBaseUri());
+		dialect.setAccountHomePrefix(ACCOUNT_HOME_PREFIX);
+		dialect.setAccountHomeSuffix(ACCOUNT_HOME_SUFFIX);
+		dialect.setEventUtils(eventUtils);
+		dialect.setFreeBusyQuerySupported(freeBusyQuerySupported);
+
+		AuthScope authScope = new AuthScope("localhost", server.getPort());
+		DefaultCredentialsProviderFactoryImpl credentialsProviderFactory = new DefaultCredentialsProviderFactoryImpl();
+		credentialsProviderFactory.setCaldavAdminUsername("admin");
+		credentialsProviderFactory.setCaldavAdminPassword("admin");
+		credentialsProviderFactory.setAuthScope(authScope);
+
+		CaldavCalendarDataDaoImpl calendarDataDao = new CaldavCalendarDataDaoImpl();
+		calendarDataDao.setHttpClient(connectionManager.createHttpClient());
+		calendarDataDao.setHttpHost(new HttpHost("localhost", server.getPort()));
+		calendarDataDao.setCaldavAdminAuthScope(authScope);
+		calendarDataDao.setCredentialsProviderFactory(credentialsProviderFactory);
+		calendarDataDao.setCaldavDialect(dialect);
+		calendarDataDao.setEventUtils(eventUtils);
+		calendarDataDao.afterPropertiesSet();
+		return calendarDataDao;
+	}
+	/**
+	 * 
+	 * @param username
+	 * @return an account whose calendar home is under {@link #ACCOUNT_HOME_PREFIX}
+	 */
+	public static MockCalendarAccount createAccount(String username) {
+		MockCalendarAccount account = new MockCalendarAccount();
+		account.setUsername(username);
+		account.setCalendarUniqueId(username);
+		account.setDisplayName(username);
+		account.setEmailAddress(username + "@example.org");
+		account.setAttributeValue("uid", username);
+		return account;
+	}
+	/**
+	 * 
+	 * @param sorted latencies in nanoseconds, sorted
+	 * @param percentile
+	 * @return the latency at the percentile in milliseconds
+	 */
+	static double percentile(long [] sorted, int percentile) {
+		if(sorted.length == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+		return sorted[Math.max(0, index)] / 1000000.0;
+	}
+}
@@ -0,0 +1,700 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.jasig.schedassist.impl.caldav.standin;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import net.fortuna.ical4j.data.CalendarBuilder;
+import net.fortuna.ical4j.data.ParserException;
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.property.DtEnd;
+import net.fortuna.ical4j.model.property.Status;
+import net.fortuna.ical4j.model.property.Transp;
+
+import org.apache.commons.lang.StringEscapeUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process stand-in for a CalDAV server, for load and latency testing of
+ * {@link org.jasig.schedassist.impl.caldav.CaldavCalendarDataDaoImpl} without a remote server.
+ * 
+ * Supports the requests the Scheduling Assistant issues with the default dialect:
+ * <ul>
+ * <li>REPORT calendar-query with a time-range, returning the calendar-data and ETag of each overlapping resource</li>
+ * <li>REPORT free-busy-query, returning the opaque, non-cancelled events in the range as a VFREEBUSY</li>
+ * <li>REPORT calendar-multiget</li>
+ * <li>GET, and PUT and DELETE honoring If-Match and If-None-Match: *</li>
+ * </ul>
+ * Other REPORTs (e.g. sync-collection) are rejected with 403, which the Scheduling Assistant treats as unsupported.
+ * Collections are created implicitly by the first PUT; a REPORT against an unknown collection returns no resources.
+ * Recurrence rules are not expanded, each resource occupies the span of its first VEVENT.
+ * No authentication is required.
+ * 
+ * Each request is delayed by {@link #setLatencyMillis(long)} plus a uniformly distributed {@link #setJitterMillis(long)},
+ * then fails with {@link #setErrorStatus(int)} with probability {@link #setErrorRate(double)}. These may be changed
+ * while the server is running.
+ */
+public class CaldavStandInServer {
+
+	private static final String DATE_FORMAT = "yyyyMMdd'T'HHmmss'Z'";
+	private static final String WEBDAV_NS = "DAV:";
+	private static final String CALDAV_NS = "urn:ietf:params:xml:ns:caldav";
+	private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+	protected final Log log = LogFactory.getLog(this.getClass());
+	private final ConcurrentMap<String, ConcurrentMap<String, Resource>> collections = new ConcurrentHashMap<String, ConcurrentMap<String, Resource>>();
+	private final AtomicLong etagSequence = new AtomicLong();
+	private final AtomicLong requestCount = new AtomicLong();
+	private final AtomicLong injectedErrors = new AtomicLong();
+	private final int port;
+	private int threads = 50;
+	private volatile long latencyMillis = 0;
+	private volatile long jitterMillis = 0;
+	private volatile double errorRate = 0;
+	private volatile int errorStatus = 503;
+	private Random random = new Random();
+	private HttpServer server;
+	private ExecutorService executor;
+
+	/**
+	 * 
+	 * @param port the port to listen on, or 0 for any free port
+	 */
+	public CaldavStandInServer(int port) {
+		this.port = port;
+	}
+	/**
+	 * @param threads the number of threads handling requests; each is occupied for the latency of its request
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+	/**
+	 * @param latencyMillis the delay added to every request
+	 */
+	public void setLatencyMillis(long latencyMillis) {
+		this.latencyMillis = latencyMillis;
+	}
+	/**
+	 * @param jitterMillis the maximum additional, uniformly distributed, delay added to every request
+	 */
+	public void setJitterMillis(long jitterMillis) {
+		this.jitterMillis = jitterMillis;
+	}
+	/**
+	 * @param errorRate the probability, between 0 and 1, that a request fails with the {@link #setErrorStatus(int)}
+	 */
+	public void setErrorRate(double errorRate) {
+		Validate.isTrue(errorRate >= 0 && errorRate <= 1, "errorRate must be between 0 and 1");
+		this.errorRate = errorRate;
+	}
+	/**
+	 * @param errorStatus the status code of injected errors
+	 */
+	public void setErrorStatus(int errorStatus) {
+		this.errorStatus = errorStatus;
+	}
+	/**
+	 * @param seed the seed for the jitter and error injection, for repeatable runs
+	 */
+	public void setRandomSeed(long seed) {
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Start listening.
+	 * 
+	 * @throws IOException if the port cannot be bound
+	 */
+	public synchronized void start() throws IOException {
+		Validate.isTrue(server == null, "already started");
+		final AtomicInteger threadCount = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "caldavStandIn-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.server = HttpServer.create(new InetSocketAddress("localhost", port), threads);
+		this.server.setExecutor(executor);
+		this.server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					service(exchange);
+				} catch (RuntimeException e) {
+					log.error("failed to handle " + exchange.getRequestMethod() + " " + exchange.getRequestURI(), e);
+					send(exchange, 500, null, null);
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+		this.server.start();
+		log.info("CalDAV stand-in listening on " + getBaseUri());
+	}
+	/**
+	 * Stop listening. The stored resources are kept for a later {@link #start()}.
+	 */
+	public synchronized void stop() {
+		if(server != null) {
+			server.stop(0);
+			server = null;
+		}
+		if(executor != null) {
+			executor.shutdownNow();
+			try {
+				executor.awaitTermination(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			executor = null;
+		}
+	}
+	/**
+	 * @return the port the server is listening on
+	 */
+	public int getPort() {
+		Validate.notNull(server, "not started");
+		return server.getAddress().getPort();
+	}
+	/**
+	 * @return the base URI of the server, suitable for the 'caldav.host' property
+	 */
+	public String getBaseUri() {
+		return "http://localhost:" + getPort();
+	}
+
+	/**
+	 * Store the iCalendar data at the href, bypassing latency and error injection.
+	 * 
+	 * @param href the path of the resource, e.g. /ucaldav/user/owner/calendar/1234.ics
+	 * @param icalendar
+	 * @return the ETag of the stored resource
+	 * @throws IllegalArgumentException if the data is not a calendar with a VEVENT
+	 */
+	public String put(String href, String icalendar) {
+		Resource resource = parse(icalendar);
+		Validate.notNull(resource, "not a calendar with a VEVENT: " + icalendar);
+		getCollection(collectionOf(href)).put(href, resource);
+		return resource.etag;
+	}
+	/**
+	 * 
+	 * @param href
+	 * @return the iCalendar data at the href, or null
+	 */
+	public String get(String href) {
+		Resource resource = getCollection(collectionOf(href)).get(href);
+		return resource == null ? null : resource.data;
+	}
+	/**
+	 * 
+	 * @param collection the path of the collection, e.g. /ucaldav/user/owner/calendar/
+	 * @return the number of resources in the collection
+	 */
+	public int size(String collection) {
+		ConcurrentMap<String, Resource> resources = collections.get(collection);
+		return resources == null ? 0 : resources.size();
+	}
+	/**
+	 * Remove all resources.
+	 */
+	public void clear() {
+		collections.clear();
+	}
+	/**
+	 * @return the number of requests received since startup
+	 */
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+	/**
+	 * @return the number of requests failed by error injection since startup
+	 */
+	public long getInjectedErrors() {
+		return injectedErrors.get();
+	}
+
+	/**
+	 * Apply latency and error injection, then dispatch on the request method.
+	 * 
+	 * @param exchange
+	 * @throws IOException
+	 */
+	protected void service(HttpExchange exchange) throws IOException {
+		requestCount.incrementAndGet();
+		final byte [] body = readFully(exchange.getRequestBody());
+		if(!delay()) {
+			send(exchange, 503, null, null);
+			return;
+		}
+		if(injectError()) {
+			injectedErrors.incrementAndGet();
+			send(exchange, errorStatus, null, null);
+			return;
+		}
+		final String method = exchange.getRequestMethod();
+		final String path = exchange.getRequestURI().getRawPath();
+		if("REPORT".equals(method)) {
+			report(exchange, path, body);
+		} else if("GET".equals(method)) {
+			Resource resource = getCollection(collectionOf(path)).get(path);
+			if(resource == null) {
+				send(exchange, 404, null, null);
+			} else {
+				exchange.getResponseHeaders().set("ETag", resource.etag);
+				send(exchange, 200, "text/calendar; charset=utf-8", resource.data);
+			}
+		} else if("PUT".equals(method)) {
+			put(exchange, path, new String(body, StandardCharsets.UTF_8));
+		} else if("DELETE".equals(method)) {
+			delete(exchange, path);
+		} else {
+			send(exchange, 405, null, null);
+		}
+	}
+	/**
+	 * 
+	 * @param exchange
+	 * @param path
+	 * @param icalendar
+	 * @throws IOException
+	 */
+	protected void put(HttpExchange exchange, String path, String icalendar) throws IOException {
+		final Resource resource = parse(icalendar);
+		if(resource == null) {
+			send(exchange, 400, null, null);
+			return;
+		}
+		final ConcurrentMap<String, Resource> collection = getCollection(collectionOf(path));
+		final String ifMatch = exchange.getRequestHeaders().getFirst("If-Match");
+		final boolean ifNoneMatch = "*".equals(StringUtils.trim(exchange.getRequestHeaders().getFirst("If-None-Match")));
+		final boolean created;
+		if(ifNoneMatch) {
+			if(collection.putIfAbsent(path, resource) != null) {
+				send(exchange, 412, null, null);
+				return;
+			}
+			created = true;
+		} else if(ifMatch != null) {
+			Resource current = collection.get(path);
+			if(current == null || !current.etag.equals(ifMatch.trim()) || !collection.replace(path, current, resource)) {
+				send(exchange, 412, null, null);
+				return;
+			}
+			created = false;
+		} else {
+			created = collection.put(path, resource) == null;
+		}
+		exchange.getResponseHeaders().set("ETag", resource.etag);
+		send(exchange, created ? 201 : 204, null, null);
+	}
+	/**
+	 * 
+	 * @param exchange
+	 * @param path
+	 * @throws IOException
+	 */
+	protected void delete(HttpExchange exchange, String path) throws IOException {
+		final ConcurrentMap<String, Resource> collection = getCollection(collectionOf(path));
+		final Resource current = collection.get(path);
+		if(current == null) {
+			send(exchange, 404, null, null);
+			return;
+		}
+		final String ifMatch = exchange.getRequestHeaders().getFirst("If-Match");
+		if(ifMatch != null && !current.etag.equals(ifMatch.trim())) {
+			send(exchange, 412, null, null);
+			return;
+		}
+		if(!collection.remove(path, current)) {
+			// changed or removed concurrently
+			send(exchange, ifMatch != null ? 412 : 404, null, null);
+			return;
+		}
+		send(exchange, 204, null, null);
+	}
+	/**
+	 * 
+	 * @param exchange
+	 * @param path the collection
+	 * @param body
+	 * @throws IOException
+	 */
+	protected void report(HttpExchange exchange, String path, byte [] body) throws IOException {
+		final ReportRequest request;
+		try {
+			request = ReportRequest.parse(body);
+		} catch (XMLStreamException e) {
+			log.debug("unparseable REPORT body", e);
+			send(exchange, 400, null, null);
+			return;
+		}
+		final ConcurrentMap<String, Resource> collection = collections.get(path);
+		final List<Map.Entry<String, Resource>> matches = new ArrayList<Map.Entry<String, Resource>>();
+		if("calendar-query".equals(request.type)) {
+			if(collection != null) {
+				for(Map.Entry<String, Resource> entry : collection.entrySet()) {
+					if(entry.getValue().overlaps(request.start, request.end)) {
+						matches.add(entry);
+					}
+				}
+			}
+			send(exchange, 207, "text/xml; charset=utf-8", multistatus(matches));
+		} else if("calendar-multiget".equals(request.type)) {
+			for(String href : request.hrefs) {
+				Resource resource = collection == null ? null : collection.get(href);
+				if(resource != null) {
+					matches.add(new AbstractMap.SimpleImmutableEntry<String, Resource>(href, resource));
+				}
+			}
+			send(exchange, 207, "text/xml; charset=utf-8", multistatus(matches));
+		} else if("free-busy-query".equals(request.type)) {
+			send(exchange, 200, "text/calendar; charset=utf-8", freeBusy(collection, request.start, request.end));
+		} else {
+			send(exchange, 403, null, null);
+		}
+	}
+	/**
+	 * 
+	 * @param resources
+	 * @return a DAV:multistatus with the ETag and calendar-data of each resource
+	 */
+	protected String multistatus(List<Map.Entry<String, Resource>> resources) {
+		StringBuilder content = new StringBuilder();
+		content.append("<?xml version=\"1.0\" encoding=\"utf-8\" ?>");
+		content.append("<D:multistatus xmlns:D=\"DAV:\" xmlns:C=\"urn:ietf:params:xml:ns:caldav\">");
+		for(Map.Entry<String, Resource> entry : resources) {
+			content.append("<D:response><D:href>").append(StringEscapeUtils.escapeXml(entry.getKey())).append("</D:href>");
+			content.append("<D:propstat><D:prop>");
+			content.append("<D:getetag>").append(StringEscapeUtils.escapeXml(entry.getValue().etag)).append("</D:getetag>");
+			content.append("<C:calendar-data>").append(StringEscapeUtils.escapeXml(entry.getValue().data)).append("</C:calendar-data>");
+			content.append("</D:prop><D:status>HTTP/1.1 200 OK</D:status></D:propstat></D:response>");
+		}
+		content.append("</D:multistatus>");
+		return content.toString();
+	}
+	/**
+	 * 
+	 * @param collection
+	 * @param start
+	 * @param end
+	 * @return a VCALENDAR with a VFREEBUSY of the opaque, non-cancelled events in the range
+	 */
+	protected String freeBusy(ConcurrentMap<String, Resource> collection, long start, long end) {
+		StringBuilder content = new StringBuilder();
+		content.append("BEGIN:VCALENDAR\r\nVERSION:2.0\r\nPRODID:-//jasig.org//CalDAV Stand-in//EN\r\n");
+		content.append("BEGIN:VFREEBUSY\r\n");
+		content.append("DTSTAMP:").append(formatDateTime(System.currentTimeMillis())).append("\r\n");
+		content.append("DTSTART:").append(formatDateTime(start)).append("\r\n");
+		content.append("DTEND:").append(formatDateTime(end)).append("\r\n");
+		if(collection != null) {
+			for(Resource resource : collection.values()) {
+				if(resource.busy && resource.overlaps(start, end)) {
+					content.append("FREEBUSY;FBTYPE=BUSY:")
+						.append(formatDateTime(Math.max(start, resource.start))).append('/')
+						.append(formatDateTime(Math.min(end, resource.end))).append("\r\n");
+				}
+			}
+		}
+		content.append("END:VFREEBUSY\r\nEND:VCALENDAR\r\n");
+		return content.toString();
+	}
+
+	/**
+	 * Sleep for the configured latency and jitter.
+	 * 
+	 * @return false if interrupted
+	 */
+	private boolean delay() {
+		long millis = latencyMillis;
+		long jitter = jitterMillis;
+		if(jitter > 0) {
+			synchronized (random) {
+				millis += (long) (random.nextDouble() * (jitter + 1));
+			}
+		}
+		if(millis > 0) {
+			try {
+				Thread.sleep(millis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return true;
+	}
+	/**
+	 * 
+	 * @return true if the request should fail
+	 */
+	private boolean injectError() {
+		double rate = errorRate;
+		if(rate <= 0) {
+			return false;
+		}
+		synchronized (random) {
+			return random.nextDouble() < rate;
+		}
+	}
+	/**
+	 * 
+	 * @param collection
+	 * @return the resources of the collection, created if necessary
+	 */
+	private ConcurrentMap<String, Resource> getCollection(String collection) {
+		ConcurrentMap<String, Resource> resources = collections.get(collection);
+		if(resources == null) {
+			ConcurrentMap<String, Resource> created = new ConcurrentHashMap<String, Resource>();
+			resources = collections.putIfAbsent(collection, created);
+			if(resources == null) {
+				resources = created;
+			}
+		}
+		return resources;
+	}
+	/**
+	 * 
+	 * @param icalendar
+	 * @return the {@link Resource} for the data, or null if it is not a calendar with a VEVENT
+	 */
+	private Resource parse(String icalendar) {
+		Calendar calendar;
+		try {
+			calendar = new CalendarBuilder().build(new StringReader(icalendar));
+		} catch (ParserException e) {
+			log.debug("unparseable calendar data", e);
+			return null;
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		List<?> events = calendar.getComponents(VEvent.VEVENT);
+		if(events.isEmpty()) {
+			return null;
+		}
+		VEvent event = (VEvent) events.get(0);
+		if(event.getStartDate() == null) {
+			return null;
+		}
+		long start = event.getStartDate().getDate().getTime();
+		DtEnd dtEnd = event.getEndDate(true);
+		long end = dtEnd == null ? start : dtEnd.getDate().getTime();
+		boolean busy = !Transp.TRANSPARENT.equals(event.getTransparency()) && !Status.VEVENT_CANCELLED.equals(event.getStatus());
+		return new Resource(icalendar, "\"" + etagSequence.incrementAndGet() + "\"", start, end, busy);
+	}
+
+	/**
+	 * 
+	 * @param href
+	 * @return the path of the collection containing the href
+	 */
+	static String collectionOf(String href) {
+		return href.substring(0, href.lastIndexOf('/') + 1);
+	}
+	/**
+	 * 
+	 * @param millis
+	 * @return the time in the UTC form used by CalDAV
+	 */
+	static String formatDateTime(long millis) {
+		SimpleDateFormat df = new SimpleDateFormat(DATE_FORMAT);
+		df.setTimeZone(TimeZone.getTimeZone("UTC"));
+		return df.format(new Date(millis));
+	}
+	/**
+	 * 
+	 * @param value
+	 * @return the time of the UTC form used by CalDAV
+	 * @throws IllegalArgumentException if the value is not in that form
+	 */
+	static long parseDateTime(String value) {
+		SimpleDateFormat df = new SimpleDateFormat(DATE_FORMAT);
+		df.setTimeZone(TimeZone.getTimeZone("UTC"));
+		try {
+			return df.parse(value).getTime();
+		} catch (ParseException e) {
+			throw new IllegalArgumentException("invalid date-time " + value, e);
+		}
+	}
+	/**
+	 * 
+	 * @param exchange
+	 * @param status
+	 * @param contentType
+	 * @param content the response body, or null for none
+	 * @throws IOException
+	 */
+	private static void send(HttpExchange exchange, int status, String contentType, String content) throws IOException {
+		if(content == null) {
+			exchange.sendResponseHeaders(status, -1);
+			return;
+		}
+		byte [] bytes = content.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(bytes);
+		out.flush();
+	}
+	/**
+	 * 
+	 * @param in
+	 * @return the remaining bytes of the stream
+	 * @throws IOException
+	 */
+	private static byte [] readFully(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte [] buffer = new byte[4096];
+		for(int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * A stored calendar resource.
+	 */
+	static final class Resource {
+		private final String data;
+		private final String etag;
+		private final long start;
+		private final long end;
+		private final boolean busy;
+		/**
+		 * @param data
+		 * @param etag
+		 * @param start
+		 * @param end
+		 * @param busy
+		 */
+		Resource(String data, String etag, long start, long end, boolean busy) {
+			this.data = data;
+			this.etag = etag;
+			this.start = start;
+			this.end = end;
+			this.busy = busy;
+		}
+		/**
+		 * Overlap as defined for VEVENTs by RFC 4791 section 9.9.
+		 * 
+		 * @param rangeStart
+		 * @param rangeEnd
+		 * @return true if the resource overlaps the range
+		 */
+		boolean overlaps(long rangeStart, long rangeEnd) {
+			if(end > start) {
+				return start < rangeEnd && end > rangeStart;
+			}
+			return start >= rangeStart && start < rangeEnd;
+		}
+	}
+
+	/**
+	 * The parts of a REPORT request body the stand-in acts on.
+	 */
+	static final class ReportRequest {
+		private String type;
+		private long start = Long.MIN_VALUE;
+		private long end = Long.MAX_VALUE;
+		private final List<String> hrefs = new ArrayList<String>();
+
+		/**
+		 * 
+		 * @param body
+		 * @return the parsed request
+		 * @throws XMLStreamException
+		 */
+		static ReportRequest parse(byte [] body) throws XMLStreamException {
+			ReportRequest request = new ReportRequest();
+			XMLStreamReader parser = XML_INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(body));
+			try {
+				for (int eventType = parser.next(); eventType != XMLStreamConstants.END_DOCUMENT; eventType = parser.next()) {
+					if(eventType != XMLStreamConstants.START_ELEMENT) {
+						continue;
+					}
+					QName name = parser.getName();
+					if(request.type == null) {
+						request.type = name.getLocalPart();
+					} else if(CALDAV_NS.equals(name.getNamespaceURI()) && "time-range".equals(name.getLocalPart())) {
+						String start = parser.getAttributeValue(null, "start");
+						String end = parser.getAttributeValue(null, "end");
+						if(start != null) {
+							request.start = parseDateTime(start);
+						}
+						if(end != null) {
+							request.end = parseDateTime(end);
+						}
+					} else if(WEBDAV_NS.equals(name.getNamespaceURI()) && "href".equals(name.getLocalPart())) {
+						URI href = URI.create(StringUtils.trim(parser.getElementText()));
+						request.hrefs.add(href.isAbsolute() ? href.getRawPath() : href.toString());
+					}
+				}
+			} catch (IllegalArgumentException e) {
+				throw new XMLStreamException(e.getMessage(), e);
+			} finally {
+				parser.close();
+			}
+			return request;
+		}
+	}
+}
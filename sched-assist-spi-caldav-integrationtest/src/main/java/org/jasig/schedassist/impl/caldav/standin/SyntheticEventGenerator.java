@@ -0,0 +1,173 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.jasig.schedassist.impl.caldav.standin;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.UUID;
+
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.DateTime;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.property.CalScale;
+import net.fortuna.ical4j.model.property.ProdId;
+import net.fortuna.ical4j.model.property.Status;
+import net.fortuna.ical4j.model.property.Transp;
+import net.fortuna.ical4j.model.property.Uid;
+import net.fortuna.ical4j.model.property.Version;
+
+import org.apache.commons.lang.Validate;
+import org.apache.commons.lang.time.DateUtils;
+
+/**
+ * Generates repeatable, synthetic calendars to seed a {@link CaldavStandInServer}.
+ * 
+ * Each weekday gets between 0 and {@link #setMaxEventsPerDay(int)} events, starting on the half hour between
+ * {@link #setFirstHour(int)} and {@link #setLastHour(int)} UTC and lasting 30, 60 or 90 minutes. A fraction of the
+ * events are transparent or cancelled, so they show in calendar-query results but not as busy time.
+ * The same seed always generates the same events.
+ */
+public class SyntheticEventGenerator {
+
+	private static final ProdId PROD_ID = new ProdId("-//jasig.org//Synthetic Event Generator//EN");
+	private final Random random;
+	private int maxEventsPerDay = 6;
+	private int firstHour = 8;
+	private int lastHour = 17;
+	private double transparentRate = 0.1;
+	private double cancelledRate = 0.05;
+
+	/**
+	 * 
+	 * @param seed
+	 */
+	public SyntheticEventGenerator(long seed) {
+		this.random = new Random(seed);
+	}
+	/**
+	 * @param maxEventsPerDay the maximum number of events on a weekday
+	 */
+	public void setMaxEventsPerDay(int maxEventsPerDay) {
+		this.maxEventsPerDay = maxEventsPerDay;
+	}
+	/**
+	 * @param firstHour the earliest hour, UTC, an event starts
+	 */
+	public void setFirstHour(int firstHour) {
+		this.firstHour = firstHour;
+	}
+	/**
+	 * @param lastHour the hour, UTC, by which every event starts
+	 */
+	public void setLastHour(int lastHour) {
+		this.lastHour = lastHour;
+	}
+	/**
+	 * @param transparentRate the fraction of events that are TRANSPARENT
+	 */
+	public void setTransparentRate(double transparentRate) {
+		this.transparentRate = transparentRate;
+	}
+	/**
+	 * @param cancelledRate the fraction of events that are CANCELLED
+	 */
+	public void setCancelledRate(double cancelledRate) {
+		this.cancelledRate = cancelledRate;
+	}
+
+	/**
+	 * 
+	 * @param start the first day, UTC; the time of day is ignored
+	 * @param days
+	 * @return a calendar for each generated event
+	 */
+	public List<Calendar> generate(Date start, int days) {
+		Validate.isTrue(lastHour > firstHour, "lastHour must be after firstHour");
+		List<Calendar> result = new ArrayList<Calendar>();
+		java.util.Calendar day = java.util.Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+		day.setTime(start);
+		day.set(java.util.Calendar.HOUR_OF_DAY, 0);
+		day.set(java.util.Calendar.MINUTE, 0);
+		day.set(java.util.Calendar.SECOND, 0);
+		day.set(java.util.Calendar.MILLISECOND, 0);
+		for(int i = 0; i < days; i++, day.add(java.util.Calendar.DATE, 1)) {
+			int dayOfWeek = day.get(java.util.Calendar.DAY_OF_WEEK);
+			if(dayOfWeek == java.util.Calendar.SATURDAY || dayOfWeek == java.util.Calendar.SUNDAY) {
+				continue;
+			}
+			int events = random.nextInt(maxEventsPerDay + 1);
+			for(int j = 0; j < events; j++) {
+				int slot = random.nextInt((lastHour - firstHour) * 2);
+				Date eventStart = DateUtils.addMinutes(day.getTime(), firstHour * 60 + slot * 30);
+				Date eventEnd = DateUtils.addMinutes(eventStart, 30 * (1 + random.nextInt(3)));
+				result.add(createCalendar(eventStart, eventEnd));
+			}
+		}
+		return result;
+	}
+	/**
+	 * Generate events and store them in the collection.
+	 * 
+	 * @param server
+	 * @param collection the path of the collection, e.g. /ucaldav/user/owner/calendar/
+	 * @param start the first day, UTC; the time of day is ignored
+	 * @param days
+	 * @return the number of events stored
+	 */
+	public int populate(CaldavStandInServer server, String collection, Date start, int days) {
+		List<Calendar> calendars = generate(start, days);
+		for(Calendar calendar : calendars) {
+			VEvent event = (VEvent) calendar.getComponent(VEvent.VEVENT);
+			server.put(collection + event.getUid().getValue() + ".ics", calendar.toString());
+		}
+		return calendars.size();
+	}
+
+	/**
+	 * 
+	 * @param start
+	 * @param end
+	 * @return a calendar with a single event between the dates
+	 */
+	protected Calendar createCalendar(Date start, Date end) {
+		DateTime dtStart = new DateTime(start);
+		dtStart.setUtc(true);
+		DateTime dtEnd = new DateTime(end);
+		dtEnd.setUtc(true);
+		VEvent event = new VEvent(dtStart, dtEnd, "Synthetic event");
+		event.getProperties().add(new Uid(new UUID(random.nextLong(), random.nextLong()).toString()));
+		double kind = random.nextDouble();
+		if(kind < transparentRate) {
+			event.getProperties().add(Transp.TRANSPARENT);
+		} else if(kind < transparentRate + cancelledRate) {
+			event.getProperties().add(Status.VEVENT_CANCELLED);
+		}
+		Calendar calendar = new Calendar();
+		calendar.getProperties().add(PROD_ID);
+		calendar.getProperties().add(Version.VERSION_2_0);
+		calendar.getProperties().add(CalScale.GREGORIAN);
+		calendar.getComponents().add(event);
+		return calendar;
+	}
+}
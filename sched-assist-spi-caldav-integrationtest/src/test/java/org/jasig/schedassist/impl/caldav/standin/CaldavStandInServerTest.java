@@ -0,0 +1,224 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.jasig.schedassist.impl.caldav.standin;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.PeriodList;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.property.Status;
+import net.fortuna.ical4j.model.property.Transp;
+
+import org.jasig.schedassist.ConflictExistsException;
+import org.jasig.schedassist.impl.caldav.CaldavCalendarDataDaoImpl;
+import org.jasig.schedassist.impl.caldav.CaldavConnectionManager;
+import org.jasig.schedassist.impl.caldav.CaldavDataAccessException;
+import org.jasig.schedassist.impl.caldav.CaldavRequestGuard;
+import org.jasig.schedassist.impl.caldav.SchemeRegistryProvider;
+import org.jasig.schedassist.model.AvailableBlock;
+import org.jasig.schedassist.model.AvailableBlockBuilder;
+import org.jasig.schedassist.model.CommonDateOperations;
+import org.jasig.schedassist.model.mock.MockCalendarAccount;
+import org.jasig.schedassist.model.mock.MockScheduleOwner;
+import org.jasig.schedassist.model.mock.MockScheduleVisitor;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CaldavStandInServer}, through {@link CaldavCalendarDataDaoImpl}.
+ */
+public class CaldavStandInServerTest {
+
+	private static final String OWNER_HOME = "/ucaldav/user/owner/calendar/";
+	private CaldavStandInServer server;
+	private CaldavConnectionManager connectionManager;
+	private CaldavCalendarDataDaoImpl calendarDataDao;
+	private MockScheduleOwner owner;
+	private MockScheduleVisitor visitor;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new CaldavStandInServer(0);
+		server.setThreads(4);
+		server.start();
+		connectionManager = new CaldavConnectionManager(SchemeRegistryProvider.createSocketFactoryRegistry("http", false), -1);
+		calendarDataDao = CaldavStandInBenchmark.createCalendarDataDao(server, connectionManager, true);
+		owner = new MockScheduleOwner(CaldavStandInBenchmark.createAccount("owner"), 1);
+		visitor = new MockScheduleVisitor(CaldavStandInBenchmark.createAccount("visitor"));
+	}
+	@After
+	public void tearDown() {
+		calendarDataDao.destroy();
+		connectionManager.destroy();
+		server.stop();
+	}
+
+	/**
+	 * calendar-query and free-busy-query see the generated events in the range.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testQueries() throws Exception {
+		SyntheticEventGenerator generator = new SyntheticEventGenerator(42L);
+		List<Calendar> generated = generator.generate(utc("20110502"), 5);
+		int busy = 0;
+		for(Calendar calendar : generated) {
+			VEvent event = (VEvent) calendar.getComponent(VEvent.VEVENT);
+			server.put(OWNER_HOME + event.getUid().getValue() + ".ics", calendar.toString());
+			if(!Transp.TRANSPARENT.equals(event.getTransparency()) && !Status.VEVENT_CANCELLED.equals(event.getStatus())) {
+				busy++;
+			}
+		}
+		Assert.assertTrue(busy > 0);
+		Assert.assertEquals(generated.size(), server.size(OWNER_HOME));
+
+		Calendar result = calendarDataDao.getCalendar(owner.getCalendarAccount(),
+				utc("20110502"), utc("20110507"));
+		// getCalendar is not pre-scanned, so the cancelled and transparent events are included
+		Assert.assertEquals(generated.size(), result.getComponents(VEvent.VEVENT).size());
+		Assert.assertEquals(0, calendarDataDao.getCalendar(owner.getCalendarAccount(),
+				utc("20110601"), utc("20110602")).getComponents(VEvent.VEVENT).size());
+
+		PeriodList busyPeriods = calendarDataDao.getBusyPeriods(owner.getCalendarAccount(),
+				utc("20110502"), utc("20110507"));
+		Assert.assertNotNull(busyPeriods);
+		Assert.assertFalse(busyPeriods.isEmpty());
+	}
+
+	/**
+	 * PUT with If-None-Match: * rejects a second appointment for the block, DELETE removes it.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testBookAndCancel() throws Exception {
+		AvailableBlock block = AvailableBlockBuilder.createBlock("20110502-1500", "20110502-1530");
+		VEvent appointment = calendarDataDao.createAppointmentIfAbsent(visitor, owner, block, "stand-in");
+		Assert.assertNotNull(appointment);
+		Assert.assertEquals(1, server.size(OWNER_HOME));
+		try {
+			calendarDataDao.createAppointmentIfAbsent(visitor, owner, block, "stand-in");
+			Assert.fail("expected ConflictExistsException");
+		} catch (ConflictExistsException e) {
+			// success
+		}
+		Assert.assertNotNull(calendarDataDao.getExistingAppointment(owner, block));
+
+		calendarDataDao.cancelAppointment(visitor, owner, appointment);
+		Assert.assertEquals(0, server.size(OWNER_HOME));
+		Assert.assertNull(calendarDataDao.getExistingAppointment(owner, block));
+	}
+
+	/**
+	 * Injected errors surface as {@link CaldavDataAccessException}s.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testErrorInjection() throws Exception {
+		server.setErrorRate(1.0);
+		MockCalendarAccount account = CaldavStandInBenchmark.createAccount("owner");
+		try {
+			calendarDataDao.getCalendar(account, CommonDateOperations.parseDatePhrase("20110502"), CommonDateOperations.parseDatePhrase("20110503"));
+			Assert.fail("expected CaldavDataAccessException");
+		} catch (CaldavDataAccessException e) {
+			// success
+		}
+		Assert.assertEquals(1, server.getInjectedErrors());
+
+		server.setErrorRate(0);
+		Assert.assertNotNull(calendarDataDao.getCalendar(account, CommonDateOperations.parseDatePhrase("20110502"), CommonDateOperations.parseDatePhrase("20110503")));
+	}
+
+	/**
+	 * A slow server is cut off at the read deadline, and a failing one trips the circuit breaker.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testRequestGuard() throws Exception {
+		CaldavRequestGuard requestGuard = new CaldavRequestGuard();
+		requestGuard.setReadDeadlineMillis(500);
+		requestGuard.setSlidingWindowSize(2);
+		requestGuard.setMinimumCalls(2);
+		requestGuard.setFailureRateThreshold(100);
+		requestGuard.afterPropertiesSet();
+		// warm up before deadlines apply
+		Assert.assertNotNull(calendarDataDao.getCalendar(owner.getCalendarAccount(), utc("20110502"), utc("20110503")));
+		calendarDataDao.setRequestGuard(requestGuard);
+		try {
+			server.setLatencyMillis(3000);
+			long start = System.currentTimeMillis();
+			try {
+				calendarDataDao.getCalendar(owner.getCalendarAccount(), utc("20110502"), utc("20110503"));
+				Assert.fail("expected CaldavDataAccessException");
+			} catch (CaldavDataAccessException e) {
+				// success
+			}
+			Assert.assertTrue(System.currentTimeMillis() - start < 3000);
+			Assert.assertEquals(1, requestGuard.getDeadlinesExceeded());
+			Assert.assertFalse(Thread.currentThread().isInterrupted());
+			Assert.assertEquals("CLOSED", requestGuard.getState());
+
+			server.setLatencyMillis(0);
+			server.setErrorRate(1.0);
+			try {
+				calendarDataDao.getCalendar(owner.getCalendarAccount(), utc("20110502"), utc("20110503"));
+				Assert.fail("expected CaldavDataAccessException");
+			} catch (CaldavDataAccessException e) {
+				// success
+			}
+			Assert.assertEquals("OPEN", requestGuard.getState());
+			long requests = server.getRequestCount();
+			try {
+				calendarDataDao.getCalendar(owner.getCalendarAccount(), utc("20110502"), utc("20110503"));
+				Assert.fail("expected CaldavDataAccessException");
+			} catch (CaldavDataAccessException e) {
+				// success
+			}
+			Assert.assertEquals(requests, server.getRequestCount());
+			Assert.assertEquals(1, requestGuard.getCircuitRejections());
+		} finally {
+			requestGuard.destroy();
+		}
+	}
+
+	/**
+	 * The generator lays out days in UTC.
+	 * 
+	 * @param value yyyyMMdd
+	 * @return midnight UTC on the day
+	 * @throws ParseException
+	 */
+	private static Date utc(String value) throws ParseException {
+		SimpleDateFormat df = new SimpleDateFormat("yyyyMMdd");
+		df.setTimeZone(TimeZone.getTimeZone("UTC"));
+		return df.parse(value);
+	}
+}
@@ -0,0 +1,155 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.jasig.schedassist.impl.caldav;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Bounded, least recently used index from the UID of a Scheduling Assistant appointment in an account's
+ * calendar home to the href and ETag of the resource holding it.
+ *
+ * {@link CaldavCalendarDataDaoImpl} fills the index when it stores appointments and from the calendar data it retrieves,
+ * so that cancelling, joining or leaving an appointment can address the resource directly instead of searching
+ * the owner's calendar with a calendar-query REPORT. Entries may be stale; conditional requests on the ETag detect that,
+ * and callers remove the entry and fall back to the search.
+ */
+public class AppointmentIndex {
+
+	private final Map<String, Entry> entries;
+
+	/**
+	 *
+	 * @param maxEntries the maximum number of appointments to keep
+	 */
+	public AppointmentIndex(final int maxEntries) {
+		Validate.isTrue(maxEntries > 0, "maxEntries must be greater than 0");
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 *
+	 * @param accountHome the calendar home of the account
+	 * @param uid the UID of the appointment
+	 * @return the {@link Entry} for the appointment, or null if not indexed
+	 */
+	public Entry get(String accountHome, String uid) {
+		synchronized (entries) {
+			return entries.get(key(accountHome, uid));
+		}
+	}
+	/**
+	 *
+	 * @param accountHome the calendar home of the account
+	 * @param uid the UID of the appointment
+	 * @param href the href of the resource, as a path or absolute URI; only the path is kept
+	 * @param etag the ETag of the resource
+	 */
+	public void put(String accountHome, String uid, String href, String etag) {
+		Validate.notNull(href, "href cannot be null");
+		Validate.notNull(etag, "etag cannot be null");
+		Entry entry = new Entry(SyncCollectionCalendarCache.normalizeHref(href), etag);
+		synchronized (entries) {
+			entries.put(key(accountHome, uid), entry);
+		}
+	}
+	/**
+	 *
+	 * @param accountHome the calendar home of the account
+	 * @param uid the UID of the appointment
+	 */
+	public void remove(String accountHome, String uid) {
+		synchronized (entries) {
+			entries.remove(key(accountHome, uid));
+		}
+	}
+	/**
+	 * Remove all entries.
+	 */
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+	/**
+	 * @return the number of indexed appointments
+	 */
+	public int getSize() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 *
+	 * @param accountHome
+	 * @param uid
+	 * @return the key for the uid within the account home
+	 */
+	private static String key(String accountHome, String uid) {
+		// the same UID is used for the appointment in the owner's and the visitor's calendar
+		return accountHome + " " + uid;
+	}
+
+	/**
+	 * The href and ETag of an indexed appointment.
+	 */
+	public static final class Entry {
+		private final String href;
+		private final String etag;
+
+		/**
+		 * @param href
+		 * @param etag
+		 */
+		Entry(String href, String etag) {
+			this.href = href;
+			this.etag = etag;
+		}
+		/**
+		 * @return the path of the resource
+		 */
+		public String getHref() {
+			return href;
+		}
+		/**
+		 * @return the ETag of the resource when indexed
+		 */
+		public String getEtag() {
+			return etag;
+		}
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "Entry [href=" + href + ", etag=" + etag + "]";
+		}
+	}
+}
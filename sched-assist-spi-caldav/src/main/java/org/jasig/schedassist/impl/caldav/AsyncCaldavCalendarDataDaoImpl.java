@@ -0,0 +1,582 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.jasig.schedassist.impl.caldav;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.ComponentList;
+import net.fortuna.ical4j.model.PeriodList;
+import net.fortuna.ical4j.model.Property;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.property.Attendee;
+import net.fortuna.ical4j.model.property.Uid;
+
+import org.apache.commons.lang.time.DateUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.nio.client.HttpAsyncClient;
+import org.jasig.schedassist.ConflictExistsException;
+import org.jasig.schedassist.SchedulingException;
+import org.jasig.schedassist.impl.caching.RequestMemo;
+import org.jasig.schedassist.impl.caldav.xml.ReportResponseHandlerImpl;
+import org.jasig.schedassist.model.AppointmentRole;
+import org.jasig.schedassist.model.AvailableBlock;
+import org.jasig.schedassist.model.ICalendarAccount;
+import org.jasig.schedassist.model.IScheduleOwner;
+import org.jasig.schedassist.model.IScheduleVisitor;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+/**
+ * {@link AsyncCalendarDataDao} implementation that talks to the CalDAV server with a non-blocking {@link HttpAsyncClient}.
+ * 
+ * The {@link CaldavDialect}, {@link HttpMethodInterceptor}, credentials and {@link SyncCollectionCalendarCache}
+ * are those of the {@link CaldavCalendarDataDaoImpl} this instance is configured with, so both issue
+ * identical requests and agree on the results. Requests are executed on the {@link HttpAsyncClient}'s I/O threads;
+ * response bodies are parsed, and follow up requests are prepared, on the completion {@link Executor}.
+ * 
+ * Purging declined attendees (see {@link CaldavCalendarDataDaoImpl#isGetCalendarPerformsPurgeDeclinedAttendees()})
+ * is delegated to the {@link CaldavCalendarDataDaoImpl}; without a {@link DeclinedAttendeeSweeper} it blocks a completion thread.
+ * 
+ * Completed writes update the {@link CaldavCalendarDataDaoImpl}'s {@link SyncCollectionCalendarCache} and {@link AppointmentIndex}
+ * as its own writes do. The {@link RequestMemo} is bound to the calling thread, so the write methods invalidate it
+ * for the accounts involved when they are called, before the request is sent.
+ */
+public class AsyncCaldavCalendarDataDaoImpl implements AsyncCalendarDataDao, InitializingBean, DisposableBean {
+
+	private static final BasicHeader DEPTH_HEADER = new BasicHeader("Depth", "1");
+	protected final Log log = LogFactory.getLog(this.getClass());
+	private CaldavCalendarDataDaoImpl calendarDataDao;
+	private HttpAsyncClient httpAsyncClient;
+	private CloseableHttpAsyncClient ownedHttpAsyncClient;
+	private Executor executor;
+	private ExecutorService ownedExecutor;
+	private int completionThreads = 4;
+	private int connectionTimeout = 5000;
+	private int soTimeout = 5000;
+	private int maxConnectionsPerHost = 20;
+	private int maxTotalConnections = 200;
+	private final ReportResponseHandlerImpl reportResponseHandler = new ReportResponseHandlerImpl();
+
+	/**
+	 * @param calendarDataDao the dao providing the dialect, method interceptor, credentials and cache
+	 */
+	@Autowired
+	public void setCalendarDataDao(CaldavCalendarDataDaoImpl calendarDataDao) {
+		this.calendarDataDao = calendarDataDao;
+	}
+	/**
+	 * Optional; by default a client is created from the caldav.http.* properties in {@link #afterPropertiesSet()}.
+	 * A client set here must already be started.
+	 * 
+	 * @param httpAsyncClient
+	 */
+	public void setHttpAsyncClient(HttpAsyncClient httpAsyncClient) {
+		this.httpAsyncClient = httpAsyncClient;
+	}
+	/**
+	 * Optional; by default a fixed pool of {@link #setCompletionThreads(int)} threads is created.
+	 * 
+	 * @param executor the {@link Executor} to parse responses on
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+	/**
+	 * @param completionThreads the size of the default completion {@link Executor}
+	 */
+	@Value("${caldav.async.completionThreads:4}")
+	public void setCompletionThreads(int completionThreads) {
+		this.completionThreads = completionThreads;
+	}
+	/**
+	 * @param connectionTimeout in milliseconds
+	 */
+	@Value("${caldav.http.connectionTimeout:5000}")
+	public void setConnectionTimeout(int connectionTimeout) {
+		this.connectionTimeout = connectionTimeout;
+	}
+	/**
+	 * @param soTimeout in milliseconds
+	 */
+	@Value("${caldav.http.soTimeout:5000}")
+	public void setSoTimeout(int soTimeout) {
+		this.soTimeout = soTimeout;
+	}
+	/**
+	 * @param maxConnectionsPerHost
+	 */
+	@Value("${caldav.http.defaultMaxConnectionsPerHost:20}")
+	public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+		this.maxConnectionsPerHost = maxConnectionsPerHost;
+	}
+	/**
+	 * @param maxTotalConnections
+	 */
+	@Value("${caldav.http.maxTotalConnections:200}")
+	public void setMaxTotalConnections(int maxTotalConnections) {
+		this.maxTotalConnections = maxTotalConnections;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
+	 */
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		if(calendarDataDao == null) {
+			throw new IllegalStateException("calendarDataDao is required");
+		}
+		if(httpAsyncClient == null) {
+			RequestConfig requestConfig = RequestConfig.custom()
+					.setConnectTimeout(connectionTimeout)
+					.setSocketTimeout(soTimeout)
+					.build();
+			HttpAsyncClientBuilder builder = HttpAsyncClients.custom()
+					.setDefaultRequestConfig(requestConfig)
+					.setMaxConnPerRoute(maxConnectionsPerHost)
+					.setMaxConnTotal(maxTotalConnections);
+			if(calendarDataDao.isPreemptiveAuthenticationEnabled()) {
+				builder.addInterceptorFirst(new PreemptiveAuthInterceptor(calendarDataDao.getCaldavAdminAuthScope()));
+			}
+			this.ownedHttpAsyncClient = builder.build();
+			this.ownedHttpAsyncClient.start();
+			this.httpAsyncClient = ownedHttpAsyncClient;
+		}
+		if(executor == null) {
+			this.ownedExecutor = Executors.newFixedThreadPool(completionThreads);
+			this.executor = ownedExecutor;
+		}
+	}
+	/* (non-Javadoc)
+	 * @see org.springframework.beans.factory.DisposableBean#destroy()
+	 */
+	@Override
+	public void destroy() throws Exception {
+		if(ownedHttpAsyncClient != null) {
+			ownedHttpAsyncClient.close();
+		}
+		if(ownedExecutor != null) {
+			ownedExecutor.shutdown();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.jasig.schedassist.impl.caldav.AsyncCalendarDataDao#getCalendar(org.jasig.schedassist.model.ICalendarAccount, java.util.Date, java.util.Date)
+	 */
+	@Override
+	public CompletableFuture<Calendar> getCalendar(final ICalendarAccount calendarAccount,
+			final Date startDate, final Date endDate) {
+		return getCalendarsInternal(calendarAccount, startDate, endDate)
+				.thenApply(calendars -> calendarDataDao.consolidate(calendars));
+	}
+	/* (non-Javadoc)
+	 * @see org.jasig.schedassist.impl.caldav.AsyncCalendarDataDao#getExistingAppointment(org.jasig.schedassist.model.IScheduleOwner, org.jasig.schedassist.model.AvailableBlock)
+	 */
+	@Override
+	public CompletableFuture<VEvent> getExistingAppointment(final IScheduleOwner owner,
+			final AvailableBlock block) {
+		return getExistingAppointmentInternal(owner, block.getStartTime(), block.getEndTime())
+				.thenApply(calendarWithUri -> {
+					if(null != calendarWithUri) {
+						ComponentList componentList = calendarWithUri.getCalendar().getComponents(VEvent.VEVENT);
+						return (VEvent) componentList.get(0);
+					} else {
+						return null;
+					}
+				});
+	}
+	/* (non-Javadoc)
+	 * @see org.jasig.schedassist.impl.caldav.AsyncCalendarDataDao#createAppointment(org.jasig.schedassist.model.IScheduleVisitor, org.jasig.schedassist.model.IScheduleOwner, org.jasig.schedassist.model.AvailableBlock, java.lang.String)
+	 */
+	@Override
+	public CompletableFuture<VEvent> createAppointment(final IScheduleVisitor visitor,
+			final IScheduleOwner owner, final AvailableBlock block, final String eventDescription) {
+		final VEvent event = calendarDataDao.getEventUtils().constructAvailableAppointment(
+				block,
+				owner,
+				visitor,
+				eventDescription);
+		final ICalendarAccount eventOwner = owner.getCalendarAccount();
+		final String uri = calendarDataDao.generateEventUri(eventOwner, event);
+		final HttpPut method = calendarDataDao.constructPutMethod(uri, event);
+		method.addHeader(CaldavCalendarDataDaoImpl.IF_NONE_MATCH_HEADER);
+		RequestMemo.invalidate(eventOwner);
+
+		return execute(method, eventOwner).thenApplyAsync(response -> {
+			final int statusCode = response.getStatusLine().getStatusCode();
+			if(log.isDebugEnabled()) {
+				log.debug("createAppointment status code: " + statusCode);
+			}
+			if(statusCode == HttpStatus.SC_OK || statusCode == HttpStatus.SC_CREATED) {
+				calendarDataDao.updateCachedCalendar(eventOwner, uri, calendarDataDao.copyForCache(event), response);
+				calendarDataDao.indexStoredAppointment(eventOwner, uri, event, response);
+				return event;
+			}
+			throw new CaldavDataAccessException(
+					format("createAppointment for %s, %s, %s failed with unexpected status code: %d",
+							visitor, owner, block, statusCode));
+		}, executor);
+	}
+	/* (non-Javadoc)
+	 * @see org.jasig.schedassist.impl.caldav.AsyncCalendarDataDao#cancelAppointment(org.jasig.schedassist.model.IScheduleVisitor, org.jasig.schedassist.model.IScheduleOwner, net.fortuna.ical4j.model.component.VEvent)
+	 */
+	@Override
+	public CompletableFuture<Void> cancelAppointment(final IScheduleVisitor visitor,
+			final IScheduleOwner owner, final VEvent appointment) {
+		final Date startTime = appointment.getStartDate().getDate();
+		final Date endTime = appointment.getEndDate(true).getDate();
+		RequestMemo.invalidate(owner.getCalendarAccount(), visitor.getCalendarAccount());
+
+		return getExistingAppointmentInternal(owner, startTime, endTime).thenCompose(calendarWithURI -> {
+			if(null == calendarWithURI) {
+				log.warn("cannot cancelAppointment for " + owner + ", no matching appointment found (" + appointment + ")");
+				return CompletableFuture.completedFuture(null);
+			}
+			final VEvent event = calendarDataDao.extractSchedulingAssistantAppointment(calendarWithURI);
+			final Uid eventUid = event.getUid();
+			CompletableFuture<Void> result = deleteCalendar(calendarWithURI, owner.getCalendarAccount());
+			if(calendarDataDao.isCancelUpdatesVisitorCalendar()) {
+				result = result.thenCompose(v -> deleteVisitorAppointment(visitor, startTime, endTime, eventUid, "cancelAppointment"));
+			}
+			return result;
+		});
+	}
+	/* (non-Javadoc)
+	 * @see org.jasig.schedassist.impl.caldav.AsyncCalendarDataDao#joinAppointment(org.jasig.schedassist.model.IScheduleVisitor, org.jasig.schedassist.model.IScheduleOwner, net.fortuna.ical4j.model.component.VEvent)
+	 */
+	@Override
+	public CompletableFuture<VEvent> joinAppointment(final IScheduleVisitor visitor,
+			final IScheduleOwner owner, final VEvent appointment) {
+		final Date startTime = appointment.getStartDate().getDate();
+		final Date endTime = appointment.getEndDate(true).getDate();
+		RequestMemo.invalidate(owner.getCalendarAccount());
+
+		return getExistingAppointmentInternal(owner, startTime, endTime).thenCompose(calendarWithURI -> {
+			if(null == calendarWithURI) {
+				log.warn("cannot joinAppointment for " + owner + ", no matching appointment found (" + appointment + ")");
+				return CompletableFuture.<VEvent>failedFuture(new SchedulingException("joinAppointment failed for " + visitor + " and " + owner + ", no matching appointment found"));
+			}
+			final VEvent event = calendarDataDao.extractSchedulingAssistantAppointment(calendarWithURI);
+			Attendee attendee = calendarDataDao.getEventUtils().constructSchedulingAssistantAttendee(visitor.getCalendarAccount(), AppointmentRole.VISITOR);
+			event.getProperties().add(attendee);
+			return putExistingEvent(owner.getCalendarAccount(), calendarWithURI, event).thenApply(statusCode -> {
+				log.debug("joinAppointment status code: " + statusCode);
+				if(CaldavCalendarDataDaoImpl.isSuccessfulPut(statusCode)) {
+					return event;
+				} else if (statusCode == HttpStatus.SC_PRECONDITION_FAILED) {
+					// event changed in the interim, fail fast
+					throw new CompletionException(new SchedulingException("joinAppointment failed for " + visitor + " and " + owner + ", appointment was altered"));
+				} else {
+					throw new CaldavDataAccessException("joinAppointment for " + visitor + ", " + owner + ", " + startTime + " failed with unexpected status code: " + statusCode);
+				}
+			});
+		});
+	}
+	/* (non-Javadoc)
+	 * @see org.jasig.schedassist.impl.caldav.AsyncCalendarDataDao#leaveAppointment(org.jasig.schedassist.model.IScheduleVisitor, org.jasig.schedassist.model.IScheduleOwner, net.fortuna.ical4j.model.component.VEvent)
+	 */
+	@Override
+	public CompletableFuture<VEvent> leaveAppointment(final IScheduleVisitor visitor,
+			final IScheduleOwner owner, final VEvent appointment) {
+		final Date startTime = appointment.getStartDate().getDate();
+		final Date endTime = appointment.getEndDate(true).getDate();
+		RequestMemo.invalidate(owner.getCalendarAccount(), visitor.getCalendarAccount());
+
+		return getExistingAppointmentInternal(owner, startTime, endTime).thenCompose(calendarWithURI -> {
+			if(null == calendarWithURI) {
+				log.warn("cannot leaveAppointment for " + owner + ", no matching appointment found (" + appointment + ")");
+				return CompletableFuture.<VEvent>failedFuture(new SchedulingException("leaveAppointment failed for " + visitor + " and " + owner + ", no matching appointment found"));
+			}
+			final VEvent event = calendarDataDao.extractSchedulingAssistantAppointment(calendarWithURI);
+			final Uid eventUid = event.getUid();
+			Property attendee = calendarDataDao.getEventUtils().getAttendeeForUserFromEvent(event, visitor.getCalendarAccount());
+			event.getProperties().remove(attendee);
+			CompletableFuture<Void> result = putExistingEvent(owner.getCalendarAccount(), calendarWithURI, event).thenAccept(statusCode -> {
+				log.debug("leaveAppointment status code: " + statusCode);
+				if(CaldavCalendarDataDaoImpl.isSuccessfulPut(statusCode)) {
+					log.debug("leaveAppointment owner calendar update successful");
+				} else if (statusCode == HttpStatus.SC_PRECONDITION_FAILED) {
+					// event changed in the interim, fail fast
+					throw new CompletionException(new SchedulingException("leaveAppointment failed for " + visitor + " and " + owner + ", appointment was altered"));
+				} else {
+					throw new CaldavDataAccessException("leaveAppointment for " + visitor + ", " + owner + ", " + startTime + " failed with unexpected status code: " + statusCode);
+				}
+			});
+			if(calendarDataDao.isCancelUpdatesVisitorCalendar()) {
+				result = result.thenCompose(v -> deleteVisitorAppointment(visitor, startTime, endTime, eventUid, "leaveAppointment"));
+			}
+			return result.thenApply(v -> event);
+		});
+	}
+	/* (non-Javadoc)
+	 * @see org.jasig.schedassist.impl.caldav.AsyncCalendarDataDao#checkForConflicts(org.jasig.schedassist.model.IScheduleOwner, org.jasig.schedassist.model.AvailableBlock)
+	 */
+	@Override
+	public CompletableFuture<Void> checkForConflicts(final IScheduleOwner owner, final AvailableBlock block) {
+		// use a start and end time slightly smaller than the block to avoid events that start/end on the edge of the block
+		final Date start = DateUtils.addSeconds(block.getStartTime(), 1);
+		final Date end = DateUtils.addSeconds(block.getEndTime(), -1);
+		final ICalendarAccount calendarAccount = owner.getCalendarAccount();
+		return getBusyPeriods(calendarAccount, start, end).thenCompose(busyPeriods -> {
+			if(busyPeriods != null) {
+				if(!busyPeriods.isEmpty()) {
+					if(log.isDebugEnabled()) {
+						log.debug("conflict detected for " + owner + " at block " + block + ", busy periods: " + busyPeriods);
+					}
+					return CompletableFuture.<Void>failedFuture(new ConflictExistsException("an appointment already exists for " + block));
+				}
+				return CompletableFuture.<Void>completedFuture(null);
+			}
+			return getCalendarsInternal(calendarAccount, start, end).thenAccept(calendars -> {
+				VEvent conflict = calendarDataDao.findConflict(calendars, calendarAccount);
+				if(conflict != null) {
+					if(log.isDebugEnabled()) {
+						log.debug("conflict detected for " + owner + " at block " + block + ", event: " + conflict);
+					}
+					throw new CompletionException(new ConflictExistsException("an appointment already exists for " + block));
+				}
+			});
+		});
+	}
+
+	/**
+	 * Asynchronous counterpart of {@link CaldavCalendarDataDaoImpl#getBusyPeriods(ICalendarAccount, Date, Date)}.
+	 * 
+	 * @param calendarAccount
+	 * @param startDate
+	 * @param endDate
+	 * @return the busy periods, or null if the server can't provide them
+	 */
+	protected CompletableFuture<PeriodList> getBusyPeriods(final ICalendarAccount calendarAccount,
+			final Date startDate, final Date endDate) {
+		final CaldavDialect caldavDialect = calendarDataDao.getCaldavDialect();
+		if(!caldavDialect.isFreeBusyQuerySupported()) {
+			return CompletableFuture.completedFuture(null);
+		}
+		final ReportMethod method = new ReportMethod(caldavDialect.getCalendarAccountHome(calendarAccount));
+		method.setEntity(caldavDialect.generateFreeBusyQueryRequestEntity(startDate, endDate));
+		method.addHeader(DEPTH_HEADER);
+		return execute(method, calendarAccount).thenApplyAsync(response -> {
+			final int statusCode = response.getStatusLine().getStatusCode();
+			log.debug("getBusyPeriods status code: " + statusCode);
+			if(statusCode != HttpStatus.SC_OK) {
+				log.warn("getBusyPeriods for " + calendarAccount + " failed with status code " + statusCode + ", falling back to calendar data");
+				return null;
+			}
+			try {
+				return calendarDataDao.extractBusyPeriods(response.getEntity().getContent());
+			} catch (IOException e) {
+				log.error("an IOException occurred in getBusyPeriods for " + calendarAccount + ", " + startDate + ", " + endDate);
+				throw new CaldavDataAccessException(e);
+			}
+		}, executor);
+	}
+	/**
+	 * Asynchronous counterpart of {@link CaldavCalendarDataDaoImpl#getCalendarsInternal(ICalendarAccount, Date, Date, boolean)}
+	 * that always issues a calendar-query REPORT.
+	 * 
+	 * @param calendarAccount to query
+	 * @param startDate of range
+	 * @param endDate of range
+	 * @return calendar with uri
+	 */
+	protected CompletableFuture<List<CalendarWithURI>> getCalendarsInternal(final ICalendarAccount calendarAccount,
+			final Date startDate, final Date endDate) {
+		final CaldavDialect caldavDialect = calendarDataDao.getCaldavDialect();
+		final ReportMethod method = new ReportMethod(caldavDialect.getCalendarAccountHome(calendarAccount));
+		method.setEntity(caldavDialect.generateGetCalendarRequestEntity(startDate, endDate));
+		method.addHeader(DEPTH_HEADER);
+		return execute(method, calendarAccount).thenApplyAsync(response -> {
+			final int statusCode = response.getStatusLine().getStatusCode();
+			log.debug("getCalendarsInternal status code: " + statusCode);
+			if(statusCode != HttpStatus.SC_OK && statusCode != HttpStatus.SC_MULTI_STATUS) {
+				throw new CaldavDataAccessException("unexpected status code: " + statusCode);
+			}
+			final List<CalendarWithURI> calendars;
+			try {
+				calendars = reportResponseHandler.extractCalendars(response.getEntity().getContent());
+			} catch (IOException e) {
+				log.error("an IOException occurred in getCalendarsInternal for " + calendarAccount + ", " + startDate + ", " + endDate);
+				throw new CaldavDataAccessException(e);
+			}
+			return calendarDataDao.handleDeclinedAttendees(calendars, calendarAccount);
+		}, executor);
+	}
+	/**
+	 * 
+	 * @param owner
+	 * @param startTime
+	 * @param endTime
+	 * @return the owner's appointment for the times, or null
+	 * @see CaldavCalendarDataDaoImpl#findExistingAppointment(List, IScheduleOwner, Date, Date)
+	 */
+	protected CompletableFuture<CalendarWithURI> getExistingAppointmentInternal(final IScheduleOwner owner,
+			final Date startTime, final Date endTime) {
+		return getCalendarsInternal(owner.getCalendarAccount(), startTime, endTime)
+				.thenApply(calendars -> calendarDataDao.findExistingAppointment(calendars, owner, startTime, endTime));
+	}
+	/**
+	 * Delete the visitor's copy of the appointment, if one can be found.
+	 * 
+	 * @param visitor
+	 * @param startTime
+	 * @param endTime
+	 * @param eventUid
+	 * @param operation the name of the calling operation, for logging
+	 * @return a future that completes when the visitor's copy has been deleted
+	 */
+	protected CompletableFuture<Void> deleteVisitorAppointment(final IScheduleVisitor visitor,
+			final Date startTime, final Date endTime, final Uid eventUid, final String operation) {
+		return getCalendarsInternal(visitor.getCalendarAccount(), startTime, endTime).thenCompose(calendars -> {
+			CalendarWithURI visitorCalendarWithURI = calendarDataDao.findCancelledAppointment(calendars, startTime, endTime, eventUid);
+			if(visitorCalendarWithURI == null) {
+				log.warn(operation + " unable to locate event in schedule for visitor " + visitor + " with uid " + eventUid);
+				return CompletableFuture.completedFuture(null);
+			}
+			return deleteCalendar(visitorCalendarWithURI, visitor.getCalendarAccount());
+		});
+	}
+	/**
+	 * 
+	 * @param calendarWithURI
+	 * @param calendarAccount
+	 * @return a future that completes when the calendar has been deleted
+	 */
+	protected CompletableFuture<Void> deleteCalendar(final CalendarWithURI calendarWithURI, final ICalendarAccount calendarAccount) {
+		URI uri = calendarDataDao.getCaldavDialect().resolveCalendarURI(calendarWithURI);
+		HttpDelete method = new HttpDelete(uri.toString());
+		return execute(method, calendarAccount).thenApply(response -> {
+			final int statusCode = response.getStatusLine().getStatusCode();
+			log.debug("deleteCalendar status code: " + statusCode);
+			if(statusCode == HttpStatus.SC_NO_CONTENT) {
+				calendarDataDao.evictCachedCalendar(calendarAccount, calendarWithURI.getUri());
+				calendarDataDao.unindexAppointment(calendarAccount, calendarWithURI.getCalendar());
+				return null;
+			}
+			throw new CaldavDataAccessException("deleteCalendar for " + calendarAccount + ", " + calendarWithURI +" failed with unexpected status code: " + statusCode);
+		});
+	}
+	/**
+	 * Replace the event stored in the existing resource using CalDAV PUT, with If-Match on its ETag.
+	 * 
+	 * @param eventOwner
+	 * @param existing
+	 * @param event
+	 * @return the status code of the response
+	 */
+	protected CompletableFuture<Integer> putExistingEvent(final ICalendarAccount eventOwner, final CalendarWithURI existing, final VEvent event) {
+		final String uri = calendarDataDao.getCaldavDialect().resolveCalendarURI(existing).toString();
+		final String etag = existing.getEtag();
+		final HttpPut method = calendarDataDao.constructPutMethod(uri, event);
+		method.addHeader(CaldavCalendarDataDaoImpl.IF_MATCH_HEADER, etag);
+		return execute(method, eventOwner).thenApplyAsync(response -> {
+			final int statusCode = response.getStatusLine().getStatusCode();
+			if(CaldavCalendarDataDaoImpl.isSuccessfulPut(statusCode)) {
+				calendarDataDao.updateCachedCalendar(eventOwner, uri, calendarDataDao.copyForCache(event), response);
+				calendarDataDao.indexStoredAppointment(eventOwner, uri, event, response);
+			} else {
+				calendarDataDao.evictCachedCalendar(eventOwner, uri);
+				calendarDataDao.indexStoredAppointment(eventOwner, uri, event, null);
+			}
+			return statusCode;
+		}, executor);
+	}
+	/**
+	 * Execute the method on behalf of the account, after the {@link HttpMethodInterceptor} has been applied.
+	 * The response body is buffered in memory, so it may be read on any thread.
+	 * Requests are subject to the circuit breaker of the {@link CaldavCalendarDataDaoImpl}'s {@link CaldavRequestGuard}, if present;
+	 * its bulkheads and deadlines, which bound blocked threads, do not apply.
+	 * 
+	 * @param method
+	 * @param calendarAccount
+	 * @return a future that completes with the response, or exceptionally with a {@link CaldavDataAccessException}
+	 */
+	protected CompletableFuture<HttpResponse> execute(final HttpRequest method, final ICalendarAccount calendarAccount) {
+		if(log.isDebugEnabled()) {
+			log.debug("executing " + calendarDataDao.methodToString(method) + " for " + calendarAccount);
+		}
+		final HttpRequest toExecute = calendarDataDao.getMethodInterceptor().doWithMethod(method, calendarAccount);
+		final CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+		final CaldavRequestGuard requestGuard = calendarDataDao.getRequestGuard();
+		final long permit;
+		if(requestGuard != null) {
+			try {
+				permit = requestGuard.acquireCircuitPermission(toExecute);
+			} catch (CaldavDataAccessException e) {
+				result.completeExceptionally(e);
+				return result;
+			}
+		} else {
+			permit = 0;
+		}
+		final long start = System.currentTimeMillis();
+		httpAsyncClient.execute(calendarDataDao.getHttpHost(), toExecute, calendarDataDao.constructHttpContext(calendarAccount),
+				new FutureCallback<HttpResponse>() {
+			@Override
+			public void completed(HttpResponse response) {
+				if(requestGuard != null) {
+					requestGuard.recordOutcome(permit, response.getStatusLine().getStatusCode() >= 500, System.currentTimeMillis() - start);
+				}
+				result.complete(response);
+			}
+			@Override
+			public void failed(Exception e) {
+				if(requestGuard != null) {
+					requestGuard.recordOutcome(permit, true, System.currentTimeMillis() - start);
+				}
+				log.error("an exception occurred executing " + calendarDataDao.methodToString(method) + " for " + calendarAccount, e);
+				result.completeExceptionally(new CaldavDataAccessException(e));
+			}
+			@Override
+			public void cancelled() {
+				if(requestGuard != null) {
+					requestGuard.releaseTrial(permit);
+				}
+				result.cancel(false);
+			}
+		});
+		return result;
+	}
+}
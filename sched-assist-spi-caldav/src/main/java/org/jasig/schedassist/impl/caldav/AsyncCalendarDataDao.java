@@ -0,0 +1,114 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jasig.schedassist.impl.caldav;
+
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.component.VEvent;
+
+import org.jasig.schedassist.ConflictExistsException;
+import org.jasig.schedassist.ICalendarDataDao;
+import org.jasig.schedassist.SchedulingException;
+import org.jasig.schedassist.model.AvailableBlock;
+import org.jasig.schedassist.model.ICalendarAccount;
+import org.jasig.schedassist.model.IScheduleOwner;
+import org.jasig.schedassist.model.IScheduleVisitor;
+
+/**
+ * Non-blocking counterpart of {@link ICalendarDataDao}.
+ * 
+ * Each method returns immediately; the {@link CompletableFuture} completes once the calendar
+ * server has responded. Failures complete the future exceptionally with the exception the
+ * corresponding {@link ICalendarDataDao} method would throw (e.g. {@link SchedulingException},
+ * {@link ConflictExistsException} or a {@link CaldavDataAccessException}).
+ */
+public interface AsyncCalendarDataDao {
+
+	/**
+	 * 
+	 * @param calendarAccount
+	 * @param startDate
+	 * @param endDate
+	 * @return the corresponding {@link Calendar} data
+	 * @see ICalendarDataDao#getCalendar(ICalendarAccount, Date, Date)
+	 */
+	CompletableFuture<Calendar> getCalendar(ICalendarAccount calendarAccount, Date startDate, Date endDate);
+	
+	/**
+	 * 
+	 * @param owner
+	 * @param block
+	 * @return the existing scheduling assistant appointment, or null if none found
+	 * @see ICalendarDataDao#getExistingAppointment(IScheduleOwner, AvailableBlock)
+	 */
+	CompletableFuture<VEvent> getExistingAppointment(IScheduleOwner owner, AvailableBlock block);
+	
+	/**
+	 * 
+	 * @param visitor
+	 * @param owner
+	 * @param block
+	 * @param eventDescription
+	 * @return the newly created event
+	 * @see ICalendarDataDao#createAppointment(IScheduleVisitor, IScheduleOwner, AvailableBlock, String)
+	 */
+	CompletableFuture<VEvent> createAppointment(IScheduleVisitor visitor, IScheduleOwner owner, AvailableBlock block, String eventDescription);
+	
+	/**
+	 * 
+	 * @param visitor
+	 * @param owner
+	 * @param event
+	 * @return a future that completes when the appointment has been cancelled
+	 * @see ICalendarDataDao#cancelAppointment(IScheduleVisitor, IScheduleOwner, VEvent)
+	 */
+	CompletableFuture<Void> cancelAppointment(IScheduleVisitor visitor, IScheduleOwner owner, VEvent event);
+	
+	/**
+	 * 
+	 * @param visitor
+	 * @param owner
+	 * @param appointment
+	 * @return the updated event
+	 * @see ICalendarDataDao#joinAppointment(IScheduleVisitor, IScheduleOwner, VEvent)
+	 */
+	CompletableFuture<VEvent> joinAppointment(IScheduleVisitor visitor, IScheduleOwner owner, VEvent appointment);
+	
+	/**
+	 * 
+	 * @param visitor
+	 * @param owner
+	 * @param appointment
+	 * @return the updated event
+	 * @see ICalendarDataDao#leaveAppointment(IScheduleVisitor, IScheduleOwner, VEvent)
+	 */
+	CompletableFuture<VEvent> leaveAppointment(IScheduleVisitor visitor, IScheduleOwner owner, VEvent appointment);
+	
+	/**
+	 * 
+	 * @param owner
+	 * @param block
+	 * @return a future that completes normally if there is no conflict, or exceptionally with a {@link ConflictExistsException}
+	 * @see ICalendarDataDao#checkForConflicts(IScheduleOwner, AvailableBlock)
+	 */
+	CompletableFuture<Void> checkForConflicts(IScheduleOwner owner, AvailableBlock block);
+}
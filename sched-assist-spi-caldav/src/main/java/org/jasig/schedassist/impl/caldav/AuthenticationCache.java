@@ -0,0 +1,205 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.jasig.schedassist.impl.caldav;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.Validate;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.auth.AuthScheme;
+import org.apache.http.client.AuthCache;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.client.BasicAuthCache;
+import org.jasig.schedassist.model.ICalendarAccount;
+
+/**
+ * Bounded, expiring cache of the authentication state (the {@link AuthCache}, holding the negotiated
+ * {@link AuthScheme} and, for digest, its nonce) for each {@link ICalendarAccount}.
+ *
+ * {@link CaldavCalendarDataDaoImpl} places the account's {@link AuthCache} in each request's context with
+ * {@link HttpClientContext#setAuthCache(AuthCache)}. The HttpClient stores the scheme that answered a 401 challenge
+ * there, and authenticates later requests for the same account preemptively with it, instead of sending each request
+ * unauthenticated first. Entries older than the time to live are discarded, so nonces the server has expired are not
+ * reused indefinitely.
+ */
+public class AuthenticationCache {
+
+	private final Map<String, AccountAuthCache> authCaches;
+	private final long timeToLiveMillis;
+	private final AtomicLong challengesAvoided = new AtomicLong();
+	private final AtomicLong challengesAnswered = new AtomicLong();
+	private final AtomicLong authenticationFailures = new AtomicLong();
+
+	/**
+	 *
+	 * @param maxAccounts the maximum number of accounts to keep authentication state for
+	 * @param timeToLiveSeconds how long to keep the authentication state of an account
+	 */
+	public AuthenticationCache(final int maxAccounts, final long timeToLiveSeconds) {
+		Validate.isTrue(maxAccounts > 0, "maxAccounts must be greater than 0");
+		Validate.isTrue(timeToLiveSeconds > 0, "timeToLiveSeconds must be greater than 0");
+		this.timeToLiveMillis = timeToLiveSeconds * 1000L;
+		this.authCaches = new LinkedHashMap<String, AccountAuthCache>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, AccountAuthCache> eldest) {
+				return size() > maxAccounts;
+			}
+		};
+	}
+
+	/**
+	 *
+	 * @param calendarAccount
+	 * @return the {@link AuthCache} for the account, created if absent or expired
+	 */
+	public AuthCache getAuthCache(ICalendarAccount calendarAccount) {
+		final String key = accountKey(calendarAccount);
+		final long now = System.currentTimeMillis();
+		synchronized (authCaches) {
+			AccountAuthCache authCache = authCaches.get(key);
+			if(authCache == null || now - authCache.created > timeToLiveMillis) {
+				authCache = new AccountAuthCache(now);
+				authCaches.put(key, authCache);
+			}
+			return authCache;
+		}
+	}
+	/**
+	 *
+	 * @param authCache the {@link AuthCache} from {@link #getAuthCache(ICalendarAccount)}, may be null
+	 * @return true if the {@link AuthCache} holds a scheme, so the next request will be authenticated preemptively
+	 */
+	public boolean isPrimed(AuthCache authCache) {
+		return authCache instanceof AccountAuthCache && !((AccountAuthCache) authCache).hosts.isEmpty();
+	}
+	/**
+	 * Update the counters for a completed request. A request whose final response is still a 401 clears the {@link AuthCache}.
+	 *
+	 * @param authCache the {@link AuthCache} from the request's context, may be null
+	 * @param primed the result of {@link #isPrimed(AuthCache)} before the request was executed
+	 * @param response
+	 */
+	public void recordResponse(AuthCache authCache, boolean primed, HttpResponse response) {
+		if(!(authCache instanceof AccountAuthCache)) {
+			return;
+		}
+		if(response.getStatusLine().getStatusCode() == HttpStatus.SC_UNAUTHORIZED
+				|| response.getStatusLine().getStatusCode() == HttpStatus.SC_PROXY_AUTHENTICATION_REQUIRED) {
+			authenticationFailures.incrementAndGet();
+			authCache.clear();
+		} else if(primed) {
+			challengesAvoided.incrementAndGet();
+		} else if(isPrimed(authCache)) {
+			challengesAnswered.incrementAndGet();
+		}
+	}
+	/**
+	 * Discard the authentication state of all accounts.
+	 */
+	public void clear() {
+		synchronized (authCaches) {
+			authCaches.clear();
+		}
+	}
+	/**
+	 * @return the number of accounts with authentication state
+	 */
+	public int getSize() {
+		synchronized (authCaches) {
+			return authCaches.size();
+		}
+	}
+	/**
+	 * @return the number of requests that were authenticated with cached state, saving a 401 challenge round trip
+	 */
+	public long getChallengesAvoided() {
+		return challengesAvoided.get();
+	}
+	/**
+	 * @return the number of requests that had to answer a 401 challenge, after which the state was cached
+	 */
+	public long getChallengesAnswered() {
+		return challengesAnswered.get();
+	}
+	/**
+	 * @return the number of requests that failed authentication
+	 */
+	public long getAuthenticationFailures() {
+		return authenticationFailures.get();
+	}
+
+	/**
+	 *
+	 * @param calendarAccount
+	 * @return the key for the account
+	 */
+	static String accountKey(ICalendarAccount calendarAccount) {
+		String key = calendarAccount.getCalendarUniqueId();
+		return key != null ? key : calendarAccount.getUsername();
+	}
+
+	/**
+	 * {@link BasicAuthCache} that tracks whether it holds any schemes.
+	 */
+	static final class AccountAuthCache extends BasicAuthCache {
+		private final long created;
+		private final Set<HttpHost> hosts = Collections.newSetFromMap(new ConcurrentHashMap<HttpHost, Boolean>());
+
+		/**
+		 * @param created
+		 */
+		AccountAuthCache(long created) {
+			this.created = created;
+		}
+		/* (non-Javadoc)
+		 * @see org.apache.http.impl.client.BasicAuthCache#put(org.apache.http.HttpHost, org.apache.http.auth.AuthScheme)
+		 */
+		@Override
+		public void put(HttpHost host, AuthScheme authScheme) {
+			super.put(host, authScheme);
+			hosts.add(host);
+		}
+		/* (non-Javadoc)
+		 * @see org.apache.http.impl.client.BasicAuthCache#remove(org.apache.http.HttpHost)
+		 */
+		@Override
+		public void remove(HttpHost host) {
+			super.remove(host);
+			hosts.remove(host);
+		}
+		/* (non-Javadoc)
+		 * @see org.apache.http.impl.client.BasicAuthCache#clear()
+		 */
+		@Override
+		public void clear() {
+			super.clear();
+			hosts.clear();
+		}
+	}
+}
@@ -19,17 +19,25 @@
 
 package org.jasig.schedassist.impl.caldav;
 
+import net.fortuna.ical4j.data.CalendarBuilder;
 import net.fortuna.ical4j.data.ParserException;
 import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.Component;
 import net.fortuna.ical4j.model.ComponentList;
 import net.fortuna.ical4j.model.DateTime;
 import net.fortuna.ical4j.model.Parameter;
+import net.fortuna.ical4j.model.Period;
+import net.fortuna.ical4j.model.PeriodList;
 import net.fortuna.ical4j.model.Property;
 import net.fortuna.ical4j.model.PropertyList;
 import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.component.VFreeBusy;
 import net.fortuna.ical4j.model.component.VTimeZone;
+import net.fortuna.ical4j.model.parameter.FbType;
 import net.fortuna.ical4j.model.parameter.PartStat;
 import net.fortuna.ical4j.model.property.Attendee;
+import net.fortuna.ical4j.model.property.DtEnd;
+import net.fortuna.ical4j.model.property.FreeBusy;
 import net.fortuna.ical4j.model.property.Status;
 import net.fortuna.ical4j.model.property.Uid;
 import net.fortuna.ical4j.model.property.Version;
@@ -48,23 +56,33 @@ import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.auth.AuthScheme;
 import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.AuthState;
+import org.apache.http.client.AuthCache;
+import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPut;
-import org.apache.http.client.protocol.ClientContext;
+import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.impl.auth.BasicScheme;
 import org.apache.http.impl.auth.DigestScheme;
-import org.apache.http.impl.client.AbstractHttpClient;
 import org.apache.http.message.BasicHeader;
-import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
 import org.jasig.schedassist.ConflictExistsException;
+import org.jasig.schedassist.IAppointmentBookingDao;
 import org.jasig.schedassist.ICalendarDataDao;
+import org.jasig.schedassist.IFreeBusyDataDao;
 import org.jasig.schedassist.NullAffiliationSourceImpl;
 import org.jasig.schedassist.SchedulingException;
+import org.jasig.schedassist.impl.caldav.SyncCollectionCalendarCache.CalendarCollection;
+import org.jasig.schedassist.impl.caching.RequestMemo;
+import org.jasig.schedassist.impl.caldav.xml.CalendarDataPreScan;
 import org.jasig.schedassist.impl.caldav.xml.ReportResponseHandlerImpl;
+import org.jasig.schedassist.impl.caldav.xml.SharedTimeZoneRegistry;
+import org.jasig.schedassist.impl.caldav.xml.SyncCollectionResponse;
+import org.jasig.schedassist.impl.caldav.xml.SyncCollectionResponseHandlerImpl;
 import org.jasig.schedassist.impl.events.AutomaticAppointmentCancellationEvent;
 import org.jasig.schedassist.impl.events.AutomaticAppointmentCancellationEvent.Reason;
 import org.jasig.schedassist.impl.events.AutomaticAttendeeRemovalEvent;
@@ -81,6 +99,7 @@ import org.jasig.schedassist.model.IScheduleOwner;
 import org.jasig.schedassist.model.IScheduleVisitor;
 import org.jasig.schedassist.model.SchedulingAssistantAppointment;
 import org.jasig.schedassist.model.VisitorLimit;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -90,13 +109,26 @@ import org.springframework.stereotype.Service;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import static java.lang.String.format;
 
@@ -122,18 +154,50 @@ import static java.lang.String.format;
  * 
  * Lastly this instance constructs a {@link NoopHttpMethodInterceptorImpl} instance; if you need to
  * override the {@link HttpMethodInterceptor} a setter is provided ({@link #setMethodInterceptor(HttpMethodInterceptor)}).
+ * 
+ * If a {@link SyncCollectionCalendarCache} is provided and the {@link CaldavDialect} reports sync-collection support,
+ * reads are served from the cache after bringing it up to date with a DAV:sync-collection REPORT (RFC 6578); only new and
+ * changed resources are downloaded, with calendar-multiget REPORTs. Writes made through this instance update the cache directly.
+ * 
+ * If the {@link CaldavDialect} reports free-busy-query support, {@link #getBusyPeriods(ICalendarAccount, Date, Date)} and
+ * {@link #checkForConflicts(IScheduleOwner, AvailableBlock)} use a CALDAV:free-busy-query REPORT instead of retrieving the calendar data.
+ * 
+ * If an {@link AppointmentIndex} is provided, the href and ETag of each appointment stored or retrieved is indexed by UID;
+ * {@link #cancelAppointment(IScheduleVisitor, IScheduleOwner, VEvent)} then deletes the indexed resource with If-Match, and
+ * {@link #joinAppointment(IScheduleVisitor, IScheduleOwner, VEvent)} and {@link #leaveAppointment(IScheduleVisitor, IScheduleOwner, VEvent)}
+ * GET it, rather than searching the owner's calendar. Index misses and stale entries fall back to the search.
+ * 
+ * If an {@link AuthenticationCache} is provided, the authentication state negotiated for an account is reused by later
+ * requests for the same account, avoiding a 401 challenge round trip per request.
+ * 
+ * {@link #getExistingAppointmentOrCheckForConflicts(IScheduleOwner, AvailableBlock)} finds the existing appointment and any conflict
+ * with one calendar-query REPORT. {@link #createAppointmentIfAbsent(IScheduleVisitor, IScheduleOwner, AvailableBlock, String)} stores the 
+ * appointment at an href derived from the owner and block (see {@link #generateBookingUri(IScheduleOwner, AvailableBlock)}) with
+ * If-None-Match: *, so the server rejects a second appointment for the same block. The appointment keeps the random UID
+ * from {@link IEventUtils#constructAvailableAppointment(AvailableBlock, IScheduleOwner, IScheduleVisitor, String)}.
+ * 
+ * With reflection enabled, {@link #reflectAvailableSchedule(IScheduleOwner, AvailableSchedule)} only issues the PUTs and DELETEs
+ * needed to turn the stored reflections into the desired ones (see {@link ReflectionDiff}), up to reflectionConcurrency at a time.
+ * 
+ * If a {@link CaldavRequestGuard} is provided, every request is subject to its read or write deadline and bulkhead, and
+ * requests fail fast with a {@link CaldavDataAccessException} while its circuit breaker is open.
  *
  * @author Nicholas Blair, nblair@doit.wisc.edu
  * @version $Id: CaldavCalendarDataDaoImpl.java 50 2011-05-05 21:07:25Z nblair $
  */
 @Service("caldavCalendarDataDao")
-public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, InitializingBean {
+public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, IFreeBusyDataDao, IAppointmentBookingDao, InitializingBean, DisposableBean {
 
 	static final Header IF_NONE_MATCH_HEADER = new BasicHeader("If-None-Match", "*");
 	static final Header ICALENDAR_CONTENT_TYPE_HEADER = new BasicHeader("Content-Type", "text/calendar");
 	static final String IF_MATCH_HEADER = "If-Match";
 
 	private static final Header DEPTH_HEADER = new BasicHeader("Depth", "1");
+	private static final Header DEPTH_ZERO_HEADER = new BasicHeader("Depth", "0");
+	/**
+	 * Upper bound on the consecutive sync-collection REPORTs for a truncated result in a single read.
+	 */
+	private static final int MAX_SYNC_COLLECTION_ROUNDS = 10;
 	protected final Log log = LogFactory.getLog(this.getClass());
 	private HttpClient httpClient;
 	private CredentialsProviderFactory credentialsProviderFactory;
@@ -148,7 +212,21 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 	private boolean preemptiveAuthenticationEnabled = false;
 	private boolean getCalendarPerformsPurgeDeclinedAttendees = true;
 	private AuthScheme preemptiveAuthenticationScheme;
+	private PreemptiveAuthInterceptor preemptiveAuthInterceptor;
 	private ApplicationEventPublisher applicationEventPublisher;
+	private final ReportResponseHandlerImpl reportResponseHandler = new ReportResponseHandlerImpl();
+	private final SyncCollectionResponseHandlerImpl syncCollectionResponseHandler = new SyncCollectionResponseHandlerImpl();
+	private SyncCollectionCalendarCache calendarCache;
+	private int syncCollectionMultigetSize = 100;
+	private boolean incrementalReflection = true;
+	private int reflectionConcurrency = 4;
+	private ExecutorService reflectionExecutor;
+	private AppointmentIndex appointmentIndex;
+	private AuthenticationCache authenticationCache;
+	private boolean preScanCalendarData = true;
+	private final CalendarDataPreScan calendarDataPreScan = new CalendarDataPreScan();
+	private DeclinedAttendeeSweeper declinedAttendeeSweeper;
+	private CaldavRequestGuard requestGuard;
 
 	/**
 	 * @param httpClient the httpClient to set
@@ -291,6 +369,9 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 		return preemptiveAuthenticationEnabled;
 	}
 	/**
+	 * Preemptive authentication requires an {@link HttpClient} built with HttpClientBuilder (see
+	 * {@link CaldavConnectionManager#createHttpClient()}), which uses the target {@link AuthState} it finds in the context.
+	 * 
 	 * @param preemptiveAuthenticationEnabled the preemptiveAuthenticationEnabled to set
 	 */
 	@Value("${caldav.preemptiveAuthenticationEnabled:false}")
@@ -300,6 +381,9 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 	}
 	
 	/**
+	 * When a {@link DeclinedAttendeeSweeper} is configured, reads only queue appointments with declined attendees
+	 * for it, and the purge happens in the background.
+	 * 
 	 * @return the getCalendarPerformsPurgeDeclinedAttendees
 	 */
 	public boolean isGetCalendarPerformsPurgeDeclinedAttendees() {
@@ -313,6 +397,139 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 			boolean getCalendarPerformsPurgeDeclinedAttendees) {
 		this.getCalendarPerformsPurgeDeclinedAttendees = getCalendarPerformsPurgeDeclinedAttendees;
 	}
+	/**
+	 * @return the declinedAttendeeSweeper, or null if declined attendees are purged during reads
+	 */
+	public DeclinedAttendeeSweeper getDeclinedAttendeeSweeper() {
+		return declinedAttendeeSweeper;
+	}
+	/**
+	 * @param declinedAttendeeSweeper the declinedAttendeeSweeper to set
+	 */
+	@Autowired(required=false)
+	public void setDeclinedAttendeeSweeper(DeclinedAttendeeSweeper declinedAttendeeSweeper) {
+		this.declinedAttendeeSweeper = declinedAttendeeSweeper;
+	}
+	/**
+	 * @param requestGuard the deadlines, bulkheads and circuit breaker for requests to the CalDAV server (optional)
+	 */
+	@Autowired(required=false)
+	public void setRequestGuard(CaldavRequestGuard requestGuard) {
+		this.requestGuard = requestGuard;
+	}
+	/**
+	 * @return the {@link CaldavRequestGuard}, or null
+	 */
+	CaldavRequestGuard getRequestGuard() {
+		return requestGuard;
+	}
+	/**
+	 * @return the calendarCache
+	 */
+	public SyncCollectionCalendarCache getCalendarCache() {
+		return calendarCache;
+	}
+	/**
+	 * @param calendarCache the calendarCache to set
+	 */
+	@Autowired(required=false)
+	public void setCalendarCache(SyncCollectionCalendarCache calendarCache) {
+		this.calendarCache = calendarCache;
+	}
+	/**
+	 * @return the syncCollectionMultigetSize
+	 */
+	public int getSyncCollectionMultigetSize() {
+		return syncCollectionMultigetSize;
+	}
+	/**
+	 * @param syncCollectionMultigetSize the maximum number of resources to request in a single calendar-multiget REPORT
+	 */
+	@Value("${caldav.syncCollection.multigetSize:100}")
+	public void setSyncCollectionMultigetSize(int syncCollectionMultigetSize) {
+		Validate.isTrue(syncCollectionMultigetSize > 0, "syncCollectionMultigetSize must be greater than 0");
+		this.syncCollectionMultigetSize = syncCollectionMultigetSize;
+	}
+	/**
+	 * @return the authenticationCache
+	 */
+	public AuthenticationCache getAuthenticationCache() {
+		return authenticationCache;
+	}
+	/**
+	 * @param authenticationCache the authenticationCache to set
+	 */
+	@Autowired(required=false)
+	public void setAuthenticationCache(AuthenticationCache authenticationCache) {
+		this.authenticationCache = authenticationCache;
+	}
+	/**
+	 * @return the appointmentIndex
+	 */
+	public AppointmentIndex getAppointmentIndex() {
+		return appointmentIndex;
+	}
+	/**
+	 * @param appointmentIndex the appointmentIndex to set
+	 */
+	@Autowired(required=false)
+	public void setAppointmentIndex(AppointmentIndex appointmentIndex) {
+		this.appointmentIndex = appointmentIndex;
+	}
+	/**
+	 * @return the incrementalReflection
+	 */
+	public boolean isIncrementalReflection() {
+		return incrementalReflection;
+	}
+	/**
+	 * If true (the default), {@link #reflectAvailableSchedule(IScheduleOwner, AvailableSchedule)} only stores the reflections
+	 * that differ from those already stored (see {@link ReflectionDiff}); if false, all stored reflections are purged and stored again.
+	 * 
+	 * @param incrementalReflection the incrementalReflection to set
+	 */
+	@Value("${caldav.incrementalReflection:true}")
+	public void setIncrementalReflection(boolean incrementalReflection) {
+		this.incrementalReflection = incrementalReflection;
+	}
+	/**
+	 * @return the preScanCalendarData
+	 */
+	public boolean isPreScanCalendarData() {
+		return preScanCalendarData;
+	}
+	/**
+	 * If true (the default), {@link #checkForConflicts(IScheduleOwner, AvailableBlock)}
+	 * drops the events that cannot cause a conflict before parsing them (see {@link CalendarDataPreScan}).
+	 * {@link #getCalendar(ICalendarAccount, Date, Date)} always parses the complete calendar-data.
+	 * Only applies when the {@link IEventUtils} is a {@link CaldavEventUtilsImpl}, as the pre-scan mirrors its conflict check.
+	 * 
+	 * @param preScanCalendarData the preScanCalendarData to set
+	 */
+	@Value("${caldav.preScanCalendarData:true}")
+	public void setPreScanCalendarData(boolean preScanCalendarData) {
+		this.preScanCalendarData = preScanCalendarData;
+	}
+	/**
+	 * @return the {@link CalendarDataPreScan}, for its statistics
+	 */
+	public CalendarDataPreScan getCalendarDataPreScan() {
+		return calendarDataPreScan;
+	}
+	/**
+	 * @return the reflectionConcurrency
+	 */
+	public int getReflectionConcurrency() {
+		return reflectionConcurrency;
+	}
+	/**
+	 * @param reflectionConcurrency the maximum number of reflection PUTs and DELETEs in flight at once, across all owners
+	 */
+	@Value("${caldav.reflectionConcurrency:4}")
+	public void setReflectionConcurrency(int reflectionConcurrency) {
+		Validate.isTrue(reflectionConcurrency > 0, "reflectionConcurrency must be greater than 0");
+		this.reflectionConcurrency = reflectionConcurrency;
+	}
 	/**
 	 * 
 	 * @param scheme
@@ -333,10 +550,30 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 	@Override
 	public void afterPropertiesSet() throws Exception {
 		if(isPreemptiveAuthenticationEnabled()) {
-			// addRequestInterceptor method not visible on the HttpClient interface
-			((AbstractHttpClient) this.httpClient).addRequestInterceptor(new PreemptiveAuthInterceptor(caldavAdminAuthScope), 0);
+			// applied to each request by executeUnguarded, as interceptors cannot be added to a built HttpClient
+			this.preemptiveAuthInterceptor = new PreemptiveAuthInterceptor(caldavAdminAuthScope);
 			this.preemptiveAuthenticationScheme = identifyScheme(caldavAdminAuthScope.getScheme());
 		}
+		if(reflectionEnabled && incrementalReflection && reflectionConcurrency > 1) {
+			final AtomicInteger threadCount = new AtomicInteger();
+			this.reflectionExecutor = Executors.newFixedThreadPool(reflectionConcurrency, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "caldavCalendarDataDao-reflection-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+	}
+	/* (non-Javadoc)
+	 * @see org.springframework.beans.factory.DisposableBean#destroy()
+	 */
+	@Override
+	public void destroy() {
+		if(this.reflectionExecutor != null) {
+			this.reflectionExecutor.shutdownNow();
+		}
 	}
 	/* (non-Javadoc)
 	 * @see org.jasig.schedassist.ICalendarDataDao#getCalendar(org.jasig.schedassist.model.ICalendarAccount, java.util.Date, java.util.Date)
@@ -344,7 +581,7 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 	@Override
 	public Calendar getCalendar(ICalendarAccount calendarAccount,
 			Date startDate, Date endDate) {
-		List<CalendarWithURI> calendars = getCalendarsInternal(calendarAccount, startDate, endDate);
+		List<CalendarWithURI> calendars = getCalendarsInternal(calendarAccount, startDate, endDate, true);
 		Calendar result = consolidate(calendars);
 		return result;
 	}
@@ -396,6 +633,77 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 		} 
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see org.jasig.schedassist.IAppointmentBookingDao#getExistingAppointmentOrCheckForConflicts(org.jasig.schedassist.model.IScheduleOwner, org.jasig.schedassist.model.AvailableBlock)
+	 */
+	@Override
+	public VEvent getExistingAppointmentOrCheckForConflicts(IScheduleOwner owner, AvailableBlock block) throws ConflictExistsException {
+		// a calendar-query, rather than a free-busy-query or sync-collection, so one REPORT answers both questions
+		// use a start and end time slightly smaller than the block to avoid events that start/end on the edge of the block, as checkForConflicts does
+		Date start = DateUtils.addSeconds(block.getStartTime(), 1);
+		Date end = DateUtils.addSeconds(block.getEndTime(), -1);
+		List<CalendarWithURI> calendars = getCalendarsInternal(owner.getCalendarAccount(), start, end, false);
+		if(declinedAttendeeSweeper != null && isGetCalendarPerformsPurgeDeclinedAttendees()) {
+			// don't wait for the sweep: a declined appointment would be reported as a conflict, and hold the block's booking href
+			calendars = purgeDeclinedAttendees(calendars, owner.getCalendarAccount());
+		}
+		CalendarWithURI existing = findExistingAppointment(calendars, owner, block.getStartTime(), block.getEndTime());
+		if(existing != null) {
+			return extractSchedulingAssistantAppointment(existing);
+		}
+		VEvent conflict = findConflict(calendars, owner.getCalendarAccount());
+		if(conflict != null) {
+			if(log.isDebugEnabled()) {
+				log.debug("conflict detected for " + owner + " at block " + block + ", event: " + conflict);
+			}
+			throw new ConflictExistsException("an appointment already exists for " + block);
+		}
+		return null;
+	}
+	/*
+	 * (non-Javadoc)
+	 * @see org.jasig.schedassist.IAppointmentBookingDao#createAppointmentIfAbsent(org.jasig.schedassist.model.IScheduleVisitor, org.jasig.schedassist.model.IScheduleOwner, org.jasig.schedassist.model.AvailableBlock, java.lang.String)
+	 */
+	@Override
+	public VEvent createAppointmentIfAbsent(IScheduleVisitor visitor, IScheduleOwner owner, AvailableBlock block,
+			String eventDescription) throws ConflictExistsException {
+		final VEvent event = this.eventUtils.constructAvailableAppointment(block, owner, visitor, eventDescription);
+
+		try {
+			// putNewEvent sends If-None-Match: *
+			final int statusCode = putNewEvent(owner.getCalendarAccount(), generateBookingUri(owner, block), event);
+			if (log.isDebugEnabled()) {
+				log.debug("createAppointmentIfAbsent status code: " + statusCode);
+			}
+			if (isSuccessfulPut(statusCode)) {
+				return event;
+			} else if (statusCode == HttpStatus.SC_PRECONDITION_FAILED) {
+				throw new ConflictExistsException("an appointment already exists for " + block);
+			}
+			throw new CaldavDataAccessException(
+					String.format("createAppointmentIfAbsent for %s, %s, %s failed with unexpected status code: %d",
+							visitor, owner, block, statusCode));
+		} catch (final IOException e) {
+			log.error("an IOException occurred in createAppointmentIfAbsent for " + owner + ", " + visitor + ", " + block);
+			throw new CaldavDataAccessException(e);
+		}
+	}
+	/**
+	 * The href of an appointment created by {@link #createAppointmentIfAbsent(IScheduleVisitor, IScheduleOwner, AvailableBlock, String)}
+	 * is named by a name based UUID of the owner's account home and the block's start and end, so every attempt to book the same block 
+	 * stores to the same resource. A cancelled appointment's href is reused if the block is booked again; the UID is not.
+	 * 
+	 * @param owner
+	 * @param block
+	 * @return the href for an appointment in the block
+	 */
+	protected String generateBookingUri(IScheduleOwner owner, AvailableBlock block) {
+		String accountHome = this.caldavDialect.getCalendarAccountHome(owner.getCalendarAccount());
+		String name = accountHome + " " + block.getStartTime().getTime() + " " + block.getEndTime().getTime();
+		return generateEventUri(owner.getCalendarAccount(), UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8)).toString());
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.jasig.schedassist.ICalendarDataDao#cancelAppointment(org.jasig.schedassist.model.IScheduleVisitor, org.jasig.schedassist.model.IScheduleOwner, net.fortuna.ical4j.model.component.VEvent)
@@ -405,30 +713,35 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 		Date startTime = appointment.getStartDate().getDate();
 		Date endTime = appointment.getEndDate(true).getDate();
 
-		// first locate event/calendar in owner's account
-		CalendarWithURI calendarWithURI = getExistingAppointmentInternal(owner, startTime, endTime);
-		if(null != calendarWithURI) {
+		Uid eventUid;
+		if(deleteIndexedAppointment(owner.getCalendarAccount(), appointment)) {
+			eventUid = appointment.getUid();
+		} else {
+			// first locate event/calendar in owner's account
+			CalendarWithURI calendarWithURI = getExistingAppointmentInternal(owner, startTime, endTime);
+			if(null == calendarWithURI) {
+				log.warn("cannot cancelAppointment for " + owner + ", no matching appointment found (" + appointment + ")");
+				return;
+			}
 			VEvent event = extractSchedulingAssistantAppointment(calendarWithURI);
-			Uid eventUid = event.getUid();
+			eventUid = event.getUid();
 
 			int status = deleteCalendar(calendarWithURI, owner.getCalendarAccount());
 			if(log.isDebugEnabled()) {
 				log.debug("cancelAppointment status code " + status + " for " + owner + ", " + eventUid);
 			}
+		}
 
-			if(cancelUpdatesVisitorCalendar) {
-				CalendarWithURI visitorCalendarWithURI = getExistingAppointmentInternalForVisitor(visitor, startTime, endTime, eventUid);
-				if(visitorCalendarWithURI != null) {
-					status = deleteCalendar(visitorCalendarWithURI, visitor.getCalendarAccount());
-					if(log.isDebugEnabled()) {
-						log.debug("cancelAppointment status code " + status + " for " + visitor + ", " + eventUid);
-					}
-				} else {
-					log.warn("cancelAppointment unable to locate event in schedule for visitor " + visitor + " with uid " + eventUid);
+		if(cancelUpdatesVisitorCalendar) {
+			CalendarWithURI visitorCalendarWithURI = getExistingAppointmentInternalForVisitor(visitor, startTime, endTime, eventUid);
+			if(visitorCalendarWithURI != null) {
+				int status = deleteCalendar(visitorCalendarWithURI, visitor.getCalendarAccount());
+				if(log.isDebugEnabled()) {
+					log.debug("cancelAppointment status code " + status + " for " + visitor + ", " + eventUid);
 				}
+			} else {
+				log.warn("cancelAppointment unable to locate event in schedule for visitor " + visitor + " with uid " + eventUid);
 			}
-		} else {
-			log.warn("cannot cancelAppointment for " + owner + ", no matching appointment found (" + appointment + ")");
 		}
 	}
 
@@ -442,16 +755,76 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 	 */
 	protected HttpContext constructHttpContext(ICalendarAccount calendarAccount) {
 		CredentialsProvider credentialsProvider = this.credentialsProviderFactory.getCredentialsProvider(calendarAccount);
-		HttpContext context = new BasicHttpContext();
+		HttpClientContext context = HttpClientContext.create();
 		if(isPreemptiveAuthenticationEnabled()) {
 			if(preemptiveAuthenticationScheme == null) {
 				throw new IllegalStateException("preemptiveAuthentication is enabled, but the preemptiveAuthenticationScheme is null. Was afterPropertiesSet invoked?");
 			}
 			context.setAttribute(PreemptiveAuthInterceptor.PREEMPTIVE_AUTH, preemptiveAuthenticationScheme);
 		}
-		context.setAttribute(ClientContext.CREDS_PROVIDER, credentialsProvider);
+		context.setCredentialsProvider(credentialsProvider);
+		if(authenticationCache != null) {
+			context.setAuthCache(authenticationCache.getAuthCache(calendarAccount));
+		}
 		return context;
 	}
+	/**
+	 * Execute the request against the {@link HttpHost} with the {@link HttpClient}, within the deadline, bulkhead
+	 * and circuit breaker of the {@link CaldavRequestGuard} if present.
+	 * 
+	 * @param request
+	 * @param context from {@link #constructHttpContext(ICalendarAccount)}
+	 * @return the response
+	 * @throws IOException
+	 * @throws CaldavDataAccessException if the {@link CaldavRequestGuard} rejects the request
+	 */
+	protected HttpResponse execute(final HttpRequest request, final HttpContext context) throws IOException {
+		if(requestGuard == null) {
+			return executeUnguarded(request, context);
+		}
+		return requestGuard.execute(request, () -> executeUnguarded(request, context));
+	}
+	/**
+	 * Execute the request against the {@link HttpHost} with the {@link HttpClient}, updating the
+	 * {@link AuthenticationCache} counters if present.
+	 * 
+	 * @param request
+	 * @param context from {@link #constructHttpContext(ICalendarAccount)}
+	 * @return the response
+	 * @throws IOException
+	 */
+	private HttpResponse executeUnguarded(HttpRequest request, HttpContext context) throws IOException {
+		if(preemptiveAuthInterceptor != null) {
+			preemptAuthentication(request, context);
+		}
+		if(authenticationCache == null) {
+			return this.httpClient.execute(httpHost, request, context);
+		}
+		final AuthCache authCache = HttpClientContext.adapt(context).getAuthCache();
+		final boolean primed = authenticationCache.isPrimed(authCache);
+		HttpResponse response = this.httpClient.execute(httpHost, request, context);
+		authenticationCache.recordResponse(authCache, primed, response);
+		return response;
+	}
+	/**
+	 * Set the scheme and credentials of the context's target {@link AuthState} with the {@link PreemptiveAuthInterceptor};
+	 * the HttpClient uses the {@link AuthState} it finds in the context rather than creating its own.
+	 * 
+	 * @param request
+	 * @param context from {@link #constructHttpContext(ICalendarAccount)}
+	 * @throws IOException if no credentials are available for the caldavAdminAuthScope
+	 */
+	private void preemptAuthentication(HttpRequest request, HttpContext context) throws IOException {
+		final HttpClientContext clientContext = HttpClientContext.adapt(context);
+		if(clientContext.getTargetAuthState() == null) {
+			clientContext.setAttribute(HttpClientContext.TARGET_AUTH_STATE, new AuthState());
+		}
+		try {
+			preemptiveAuthInterceptor.process(request, clientContext);
+		} catch (HttpException e) {
+			throw new ClientProtocolException(e);
+		}
+	}
 	/**
 	 * 
 	 * @param calendarWithURI
@@ -459,6 +832,7 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 	 * @return
 	 */
 	protected int deleteCalendar(CalendarWithURI calendarWithURI, ICalendarAccount calendarAccount) {
+		RequestMemo.invalidate(calendarAccount);
 		URI uri = this.caldavDialect.resolveCalendarURI(calendarWithURI);
 		HttpDelete method = new HttpDelete(uri.toString());
 		if(log.isDebugEnabled()) {
@@ -469,11 +843,13 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 
 		HttpEntity entity = null;
 		try {
-			HttpResponse response = this.httpClient.execute(httpHost, toExecute, context);
+			HttpResponse response = execute(toExecute, context);
 			entity = response.getEntity();
 			int statusCode = response.getStatusLine().getStatusCode();
 			log.debug("deleteCalendar status code: " + statusCode);
 			if(statusCode == HttpStatus.SC_NO_CONTENT) {
+				evictCachedCalendar(calendarAccount, calendarWithURI.getUri());
+				unindexAppointment(calendarAccount, calendarWithURI.getCalendar());
 				return statusCode;
 			} else {
 				throw new CaldavDataAccessException("deleteCalendar for " + calendarAccount + ", " + calendarWithURI +" failed with unexpected status code: " + statusCode);
@@ -496,14 +872,14 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 		Date startTime = appointment.getStartDate().getDate();
 		Date endTime = appointment.getEndDate(true).getDate();
 
-		CalendarWithURI calendarWithURI = getExistingAppointmentInternal(owner, startTime, endTime);
+		CalendarWithURI calendarWithURI = getExistingAppointmentInternal(owner, appointment);
 		if(null != calendarWithURI) {
 			VEvent event = extractSchedulingAssistantAppointment(calendarWithURI);
 
 			Attendee attendee = this.eventUtils.constructSchedulingAssistantAttendee(visitor.getCalendarAccount(), AppointmentRole.VISITOR);
 			event.getProperties().add(attendee);
 			try {
-				int statusCode = putExistingEvent(owner.getCalendarAccount(), event, calendarWithURI.getEtag());
+				int statusCode = putExistingEvent(owner.getCalendarAccount(), calendarWithURI, event);
 				log.debug("joinAppointment status code: " + statusCode);
 				if(statusCode == HttpStatus.SC_OK || statusCode == HttpStatus.SC_CREATED || statusCode == HttpStatus.SC_NO_CONTENT) {
 					return event;
@@ -533,14 +909,14 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 		Date startTime = appointment.getStartDate().getDate();
 		Date endTime = appointment.getEndDate(true).getDate();
 
-		CalendarWithURI calendarWithURI = getExistingAppointmentInternal(owner, startTime, endTime);
+		CalendarWithURI calendarWithURI = getExistingAppointmentInternal(owner, appointment);
 		if(null != calendarWithURI) {
 			VEvent event = extractSchedulingAssistantAppointment(calendarWithURI);
 			Uid eventUid = event.getUid();
 			Property attendee = this.eventUtils.getAttendeeForUserFromEvent(event, visitor.getCalendarAccount());
 			event.getProperties().remove(attendee);
 			try {
-				int statusCode = putExistingEvent(owner.getCalendarAccount(), event, calendarWithURI.getEtag());
+				int statusCode = putExistingEvent(owner.getCalendarAccount(), calendarWithURI, event);
 				log.debug("leaveAppointment status code: " + statusCode);
 				if(statusCode == HttpStatus.SC_OK || statusCode == HttpStatus.SC_CREATED || statusCode == HttpStatus.SC_NO_CONTENT) {
 					log.debug("leaveAppointment owner calendar update successful");
@@ -582,19 +958,120 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 		// use a start and end time slightly smaller than the block to avoid events that start/end on the edge of the block
 		Date start = DateUtils.addSeconds(block.getStartTime(), 1);
 		Date end = DateUtils.addSeconds(block.getEndTime(), -1);
-		List<CalendarWithURI> calendars = getCalendarsInternal(owner.getCalendarAccount(), start, end);
+		PeriodList busyPeriods = getBusyPeriods(owner.getCalendarAccount(), start, end);
+		if(busyPeriods != null) {
+			if(!busyPeriods.isEmpty()) {
+				if(log.isDebugEnabled()) {
+					log.debug("conflict detected for " + owner + " at block " + block + ", busy periods: " + busyPeriods);
+				}
+				throw new ConflictExistsException("an appointment already exists for " + block);
+			}
+			return;
+		}
+		List<CalendarWithURI> calendars = getCalendarsInternal(owner.getCalendarAccount(), start, end, true, getConflictPreScan());
+		VEvent conflict = findConflict(calendars, owner.getCalendarAccount());
+		if(conflict != null) {
+			if(log.isDebugEnabled()) {
+				log.debug("conflict detected for " + owner + " at block " + block + ", event: " + conflict);
+			}
+			throw new ConflictExistsException("an appointment already exists for " + block);
+		}
+	}
+	/**
+	 * 
+	 * @param calendars
+	 * @param calendarAccount
+	 * @return the first event in the calendars that will cause a conflict for the account, or null
+	 */
+	VEvent findConflict(List<CalendarWithURI> calendars, ICalendarAccount calendarAccount) {
 		for(CalendarWithURI calendar: calendars) {
 			ComponentList events = calendar.getCalendar().getComponents(VEvent.VEVENT);
 			for(Object component : events) {
 				VEvent event = (VEvent) component;
-				if(this.eventUtils.willEventCauseConflict(owner.getCalendarAccount(), event)) {
-					if(log.isDebugEnabled()) {
-						log.debug("conflict detected for " + owner + " at block " + block + ", event: " + event);
-					}
-					throw new ConflictExistsException("an appointment already exists for " + block);
+				if(this.eventUtils.willEventCauseConflict(calendarAccount, event)) {
+					return event;
 				} 
 			}
 		}
+		return null;
+	}
+	/**
+	 * 
+	 * @return the {@link CalendarDataPreScan} for calendars that are only used for conflict checks, or null if it does not apply
+	 */
+	protected CalendarDataPreScan getConflictPreScan() {
+		if(preScanCalendarData && this.eventUtils instanceof CaldavEventUtilsImpl) {
+			return calendarDataPreScan;
+		}
+		return null;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.jasig.schedassist.IFreeBusyDataDao#getBusyPeriods(org.jasig.schedassist.model.ICalendarAccount, java.util.Date, java.util.Date)
+	 */
+	@Override
+	public PeriodList getBusyPeriods(final ICalendarAccount calendarAccount,
+			final Date startDate, final Date endDate) {
+		if(!caldavDialect.isFreeBusyQuerySupported()) {
+			return null;
+		}
+		final String accountUri = this.caldavDialect.getCalendarAccountHome(calendarAccount);
+		final ReportMethod method = new ReportMethod(accountUri);
+		method.setEntity(caldavDialect.generateFreeBusyQueryRequestEntity(startDate, endDate));
+		method.addHeader(DEPTH_HEADER);
+		if(log.isDebugEnabled()) {
+			log.debug("getBusyPeriods executing " + methodToString(method) + " for " + calendarAccount + ", start " + startDate + ", end " + endDate);
+		}
+		final HttpRequest toExecute = methodInterceptor.doWithMethod(method, calendarAccount);
+		final HttpContext context = constructHttpContext(calendarAccount);
+
+		HttpEntity entity = null;
+		try {
+			final HttpResponse response = execute(toExecute, context);
+			entity = response.getEntity();
+			final int statusCode = response.getStatusLine().getStatusCode();
+			log.debug("getBusyPeriods status code: " + statusCode);
+			if(statusCode == HttpStatus.SC_OK) {
+				return extractBusyPeriods(entity.getContent());
+			} else {
+				log.warn("getBusyPeriods for " + calendarAccount + " failed with status code " + statusCode + ", falling back to calendar data");
+				return null;
+			}
+		} catch (IOException e) {
+			log.error("an IOException occurred in getBusyPeriods for " + calendarAccount + ", " + startDate + ", " + endDate);
+			throw new CaldavDataAccessException(e);
+		} finally {
+			quietlyConsume(entity);
+		}
+	}
+	/**
+	 * Parse the VFREEBUSY in the body of a free-busy-query response.
+	 * FREEBUSY properties without an FBTYPE are busy (RFC 5545); all types other than FREE are included.
+	 * 
+	 * @param content
+	 * @return the busy periods in the response
+	 * @throws IOException
+	 */
+	protected PeriodList extractBusyPeriods(InputStream content) throws IOException {
+		Calendar calendar;
+		try {
+			calendar = new CalendarBuilder().build(content);
+		} catch (ParserException e) {
+			throw new CaldavDataAccessException("failed to parse free-busy-query response", e);
+		}
+		PeriodList result = new PeriodList(true);
+		for(Object component : calendar.getComponents(Component.VFREEBUSY)) {
+			VFreeBusy freeBusy = (VFreeBusy) component;
+			for(Object property : freeBusy.getProperties(Property.FREEBUSY)) {
+				FreeBusy busy = (FreeBusy) property;
+				if(!FbType.FREE.equals(busy.getParameter(Parameter.FBTYPE))) {
+					for(Object period : busy.getPeriods()) {
+						result.add((Period) period);
+					}
+				}
+			}
+		}
+		return result;
 	}
 
 	/* (non-Javadoc)
@@ -609,6 +1086,10 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 			}
 			Date startDate = CommonDateOperations.beginningOfDay(schedule.getScheduleStartTime());
 			Date endDate = CommonDateOperations.endOfDay(schedule.getScheduleEndTime());
+			if(incrementalReflection) {
+				reflectChanges(owner, this.eventUtils.convertScheduleForReflection(schedule), startDate, endDate);
+				return;
+			}
 			purgeAvailableScheduleReflections(owner, startDate, endDate);
 
 			List<Calendar> calendars = this.eventUtils.convertScheduleForReflection(schedule);
@@ -639,6 +1120,115 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 		}
 	}
 
+	/**
+	 * Store the desired reflections, issuing only the PUTs and DELETEs the {@link ReflectionDiff} against the
+	 * stored reflections calls for, up to reflectionConcurrency at a time.
+	 * 
+	 * @param owner
+	 * @param calendars the desired reflections
+	 * @param startDate
+	 * @param endDate
+	 */
+	protected void reflectChanges(final IScheduleOwner owner, final List<Calendar> calendars, final Date startDate, final Date endDate) {
+		final ICalendarAccount calendarAccount = owner.getCalendarAccount();
+		ReflectionDiff diff = new ReflectionDiff(calendars, peekAtAvailableScheduleReflections(owner, startDate, endDate), this.eventUtils);
+		if(log.isDebugEnabled()) {
+			log.debug("reflectAvailableSchedule for " + owner + ": " + diff);
+		}
+		List<Callable<Void>> requests = new ArrayList<Callable<Void>>();
+		for(final Calendar calendar : diff.getCreates()) {
+			final Uid uid = this.eventUtils.extractUid(calendar);
+			if(uid == null) {
+				log.warn("cannot store reflection for calendar with no UID: " + calendar);
+				continue;
+			}
+			requests.add(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					int statusCode = putNewCalendar(calendarAccount, calendar, uid.getValue());
+					if(!isSuccessfulPut(statusCode)) {
+						throw new CaldavDataAccessException("reflectAvailableSchedule for " + owner  + " failed with unexpected status code: " + statusCode);
+					}
+					return null;
+				}
+			});
+		}
+		for(final Map.Entry<CalendarWithURI, Calendar> update : diff.getUpdates().entrySet()) {
+			requests.add(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					int statusCode = putExistingCalendar(calendarAccount, update.getKey(), update.getValue());
+					if(!isSuccessfulPut(statusCode)) {
+						throw new CaldavDataAccessException("reflectAvailableSchedule for " + owner  + " failed with unexpected status code: " + statusCode);
+					}
+					return null;
+				}
+			});
+		}
+		for(final CalendarWithURI calendar : diff.getDeletes()) {
+			requests.add(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					deleteCalendar(calendar, calendarAccount);
+					return null;
+				}
+			});
+		}
+		executeReflectionRequests(owner, requests);
+	}
+	/**
+	 * Run the requests on the reflection executor (or the calling thread, if there is none or only 1 request)
+	 * and wait for all of them to complete.
+	 * The {@link RequestMemo} is bound to the calling thread, so it is invalidated here rather than by the requests.
+	 * 
+	 * @param owner
+	 * @param requests
+	 * @throws CaldavDataAccessException if any request failed; the first failure is rethrown
+	 */
+	protected void executeReflectionRequests(final IScheduleOwner owner, final List<Callable<Void>> requests) {
+		List<Future<Void>> results = new ArrayList<Future<Void>>();
+		for(Callable<Void> request : requests) {
+			FutureTask<Void> task = new FutureTask<Void>(request);
+			if(this.reflectionExecutor == null || requests.size() == 1) {
+				task.run();
+			} else {
+				this.reflectionExecutor.execute(task);
+			}
+			results.add(task);
+		}
+		RuntimeException failure = null;
+		try {
+			for(Future<Void> result : results) {
+				try {
+					result.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					for(Future<Void> remaining : results) {
+						remaining.cancel(true);
+					}
+					throw new CaldavDataAccessException("interrupted in reflectAvailableSchedule for " + owner, e);
+				} catch (ExecutionException e) {
+					if(failure == null) {
+						Throwable cause = e.getCause();
+						if(cause instanceof CaldavDataAccessException) {
+							failure = (CaldavDataAccessException) cause;
+						} else {
+							log.error("an exception occurred in reflectAvailableSchedule for " + owner);
+							failure = new CaldavDataAccessException(cause);
+						}
+					}
+				}
+			}
+		} finally {
+			if(!requests.isEmpty()) {
+				RequestMemo.invalidate(owner.getCalendarAccount());
+			}
+		}
+		if(failure != null) {
+			throw failure;
+		}
+	}
+
 	/* (non-Javadoc)
 	 * @see org.jasig.schedassist.ICalendarDataDao#purgeAvailableScheduleReflections(org.jasig.schedassist.model.IScheduleOwner, java.util.Date, java.util.Date)
 	 */
@@ -658,12 +1248,12 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 				HttpRequest toExecute = methodInterceptor.doWithMethod(method,owner.getCalendarAccount());
 				HttpEntity entity = null;
 				try {
-					HttpResponse response = this.httpClient.execute(httpHost, toExecute, context);
+					HttpResponse response = execute(toExecute, context);
 					entity = response.getEntity();
 					int statusCode = response.getStatusLine().getStatusCode();
 					log.debug("cancelAppointment status code: " + statusCode);
 					if(statusCode == HttpStatus.SC_NO_CONTENT) {
-						//success
+						evictCachedCalendar(owner.getCalendarAccount(), calendar.getUri());
 					} else {
 						throw new CaldavDataAccessException("purgeAvailableScheduleReflections for " + owner + ", " + startDate +  ", " + endDate +" failed with unexpected status code: " + statusCode);
 					}
@@ -754,8 +1344,159 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 					final ICalendarAccount calendarAccount,
 					final Date startDate,
 					final Date endDate) {
-		final String accountUri = this.caldavDialect.getCalendarAccountHome(calendarAccount);
-		final HttpEntity requestEntity =
+		return getCalendarsInternal(calendarAccount, startDate, endDate, true);
+	}
+	/**
+	 * Callers that go on to modify the returned {@link Calendar}s must pass false for useCache,
+	 * as the cached instances are shared.
+	 * 
+	 * @param calendarAccount to query
+	 * @param startDate of range
+	 * @param endDate of range
+	 * @param useCache if the {@link SyncCollectionCalendarCache} may satisfy the request
+	 * @return calendar with uri
+	 */
+	protected List<CalendarWithURI> getCalendarsInternal(
+					final ICalendarAccount calendarAccount,
+					final Date startDate,
+					final Date endDate,
+					final boolean useCache) {
+		return getCalendarsInternal(calendarAccount, startDate, endDate, useCache, null);
+	}
+	/**
+	 * The pre-scan only applies to calendars retrieved with a calendar-query REPORT; the calendars held 
+	 * by the {@link SyncCollectionCalendarCache} are complete.
+	 * Pre-scanned calendars are incomplete, so they are neither indexed nor handed to 
+	 * {@link #handleDeclinedAttendees(List, ICalendarAccount)}: a purge would write the incomplete resource back.
+	 * 
+	 * @param calendarAccount to query
+	 * @param startDate of range
+	 * @param endDate of range
+	 * @param useCache if the {@link SyncCollectionCalendarCache} may satisfy the request
+	 * @param preScan the {@link CalendarDataPreScan} to apply to the calendar-data, or null for none
+	 * @return calendar with uri
+	 */
+	protected List<CalendarWithURI> getCalendarsInternal(
+					final ICalendarAccount calendarAccount,
+					final Date startDate,
+					final Date endDate,
+					final boolean useCache,
+					final CalendarDataPreScan preScan) {
+		List<CalendarWithURI> calendars = null;
+		if (useCache && calendarCache != null && caldavDialect.isSyncCollectionSupported()) {
+			calendars = getSynchronizedCalendars(calendarAccount, startDate, endDate);
+		}
+		if (calendars == null) {
+			calendars = queryCalendars(calendarAccount, startDate, endDate, preScan);
+			if (preScan != null) {
+				return calendars;
+			}
+		} else if (declinedAttendeeSweeper == null && isGetCalendarPerformsPurgeDeclinedAttendees()) {
+			// the purge alters the calendars it is given, and the cached instances are shared
+			calendars = copyPurgeCandidates(calendars, calendarAccount);
+		}
+		indexAppointments(calendarAccount, calendars);
+		return handleDeclinedAttendees(calendars, calendarAccount);
+	}
+	/**
+	 * 
+	 * @param calendars
+	 * @param calendarAccount
+	 * @return the calendars, with copies in place of those {@link #purgeDeclinedAttendees(CalendarWithURI, ICalendarAccount)} would alter
+	 */
+	protected List<CalendarWithURI> copyPurgeCandidates(
+					final List<CalendarWithURI> calendars, 
+					final ICalendarAccount calendarAccount) {
+		final List<CalendarWithURI> results = new ArrayList<>(calendars.size());
+		for (final CalendarWithURI c: calendars) {
+			final VEvent event = getUpcomingOwnedAppointment(c, calendarAccount);
+			final Calendar copy = event != null && hasDeclinedAttendee(event) ? copyForCache(event) : null;
+			results.add(copy != null ? new CalendarWithURI(copy, c.getUri(), c.getEtag()) : c);
+		}
+		return results;
+	}
+	/**
+	 * Without a {@link DeclinedAttendeeSweeper}, purge the declined attendees from the calendars with 
+	 * {@link #purgeDeclinedAttendees(CalendarWithURI, ICalendarAccount)}.
+	 * With one, queue the calendars with declined attendees for it and return the calendars unaltered; 
+	 * until the sweep, those appointments still occupy their blocks, except to 
+	 * {@link #getExistingAppointmentOrCheckForConflicts(IScheduleOwner, AvailableBlock)}, which purges them itself.
+	 * 
+	 * @param calendars
+	 * @param calendarAccount
+	 * @return the calendars, minus any removed by the purge
+	 */
+	protected List<CalendarWithURI> handleDeclinedAttendees(
+					final List<CalendarWithURI> calendars, 
+					final ICalendarAccount calendarAccount) {
+		if (!isGetCalendarPerformsPurgeDeclinedAttendees()) {
+			return calendars;
+		}
+		if (declinedAttendeeSweeper == null) {
+			return purgeDeclinedAttendees(calendars, calendarAccount);
+		}
+		boolean owner = false;
+		for (final CalendarWithURI c: calendars) {
+			final VEvent event = getUpcomingOwnedAppointment(c, calendarAccount);
+			if (event != null) {
+				owner = true;
+				if (hasDeclinedAttendee(event)) {
+					declinedAttendeeSweeper.enqueue(calendarAccount, c.getUri());
+				}
+			}
+		}
+		if (owner) {
+			declinedAttendeeSweeper.registerOwner(calendarAccount);
+		}
+		return calendars;
+	}
+	/**
+	 * 
+	 * @param calendars
+	 * @param calendarAccount
+	 * @return the calendars, minus any removed by {@link #purgeDeclinedAttendees(CalendarWithURI, ICalendarAccount)}
+	 */
+	protected List<CalendarWithURI> purgeDeclinedAttendees(
+					final List<CalendarWithURI> calendars, 
+					final ICalendarAccount calendarAccount) {
+		final List<CalendarWithURI> results = new ArrayList<>();
+		for (final CalendarWithURI c: calendars) {
+			if (purgeDeclinedAttendees(c, calendarAccount) != null) {
+				results.add(c);
+			}
+		}
+		return results;
+	}
+	/**
+	 * Retrieve the calendars in the account with a calendar-query REPORT.
+	 * 
+	 * @param calendarAccount to query
+	 * @param startDate of range
+	 * @param endDate of range
+	 * @return calendar with uri
+	 */
+	protected List<CalendarWithURI> queryCalendars(
+					final ICalendarAccount calendarAccount,
+					final Date startDate,
+					final Date endDate) {
+		return queryCalendars(calendarAccount, startDate, endDate, null);
+	}
+	/**
+	 * Retrieve the calendars in the account with a calendar-query REPORT.
+	 * 
+	 * @param calendarAccount to query
+	 * @param startDate of range
+	 * @param endDate of range
+	 * @param preScan the {@link CalendarDataPreScan} to apply to the calendar-data, or null for none
+	 * @return calendar with uri
+	 */
+	protected List<CalendarWithURI> queryCalendars(
+					final ICalendarAccount calendarAccount,
+					final Date startDate,
+					final Date endDate,
+					final CalendarDataPreScan preScan) {
+		final String accountUri = this.caldavDialect.getCalendarAccountHome(calendarAccount);
+		final HttpEntity requestEntity =
 						caldavDialect.generateGetCalendarRequestEntity(startDate, endDate);
 		final ReportMethod method = new ReportMethod(accountUri);
 		method.setEntity(requestEntity);
@@ -776,28 +1517,14 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 		HttpEntity entity = null;
 		try {
 			final HttpResponse response =
-							httpClient.execute(httpHost, toExecute, context);
+							execute(toExecute, context);
 			entity = response.getEntity();
 			final int statusCode = response.getStatusLine().getStatusCode();
 			log.debug("getCalendarsInternal status code: " + statusCode);
 			if (statusCode == HttpStatus.SC_OK ||
 							statusCode == HttpStatus.SC_MULTI_STATUS) {
 				final InputStream content = entity.getContent();
-				final ReportResponseHandlerImpl reportResponseHandler =
-								new ReportResponseHandlerImpl();
-				final List<CalendarWithURI> calendars =
-								reportResponseHandler.extractCalendars(content);
-				if (isGetCalendarPerformsPurgeDeclinedAttendees()) {
-					final List<CalendarWithURI> results = new ArrayList<>();
-					for (final CalendarWithURI c: calendars) {
-						if (purgeDeclinedAttendees(c, calendarAccount) != null) {
-							results.add(c);
-						}
-					}
-					return results;
-				}
-				// purgeDeclinedAttendees disabled
-				return calendars;
+				return reportResponseHandler.extractCalendars(content, preScan);
 			} else {
 				throw new CaldavDataAccessException("unexpected status code: " + statusCode);
 			}
@@ -808,9 +1535,292 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 			quietlyConsume(entity);
 		}
 	}
+	/**
+	 * Bring the account's cached calendar collection up to date with DAV:sync-collection REPORTs,
+	 * fetching new and changed resources with calendar-multiget REPORTs, and return the cached
+	 * calendars with events in the range.
+	 * 
+	 * The REPORTs update a copy of the collection, so no lock is held while they run; the copy then replaces
+	 * the cached collection, unless another read or a write changed it in the meantime. In that case the 
+	 * copy's calendars, which are as current as the server's, are returned and the next read synchronizes again.
+	 * 
+	 * @param calendarAccount to query
+	 * @param startDate of range
+	 * @param endDate of range
+	 * @return calendar with uri, or null if the server does not support sync-collection for the account
+	 */
+	protected List<CalendarWithURI> getSynchronizedCalendars(
+					final ICalendarAccount calendarAccount,
+					final Date startDate,
+					final Date endDate) {
+		final String accountUri = this.caldavDialect.getCalendarAccountHome(calendarAccount);
+		final CalendarCollection collection = calendarCache.getCollection(accountUri);
+		if (collection.isUnsupported()) {
+			return null;
+		}
+		final CalendarCollection working = collection.copy();
+		int rounds = 0;
+		SyncCollectionResponse changes;
+		do {
+			changes = syncCollection(calendarAccount, accountUri, working);
+			if (changes == null) {
+				collection.setUnsupported(true);
+				collection.reset();
+				return null;
+			}
+			for (final String href: changes.getRemoved()) {
+				working.remove(href);
+			}
+			final List<String> stale = new ArrayList<>();
+			for (final Map.Entry<String, String> change: changes.getChanged().entrySet()) {
+				final String href = change.getKey();
+				if (href.endsWith("/")) {
+					// the collection itself
+					continue;
+				}
+				final CalendarWithURI cached = working.get(href);
+				if (cached == null || change.getValue() == null || !change.getValue().equals(cached.getEtag())) {
+					stale.add(href);
+				}
+			}
+			for (int i = 0; i < stale.size(); i += syncCollectionMultigetSize) {
+				multigetCalendars(calendarAccount, accountUri, working,
+						stale.subList(i, Math.min(stale.size(), i + syncCollectionMultigetSize)));
+			}
+			working.setSyncToken(changes.getSyncToken());
+		} while (changes.isTruncated() && ++rounds < MAX_SYNC_COLLECTION_ROUNDS);
+
+		if (!collection.replace(working) && log.isDebugEnabled()) {
+			log.debug("cached calendar collection for " + calendarAccount + " changed during getSynchronizedCalendars, not replaced");
+		}
+		final List<CalendarWithURI> results = new ArrayList<>();
+		for (final CalendarWithURI calendar: working.getResources()) {
+			if (overlaps(calendar.getCalendar(), startDate, endDate)) {
+				results.add(calendar);
+			}
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("getSynchronizedCalendars returning " + results.size() + " of " + working.size() + " cached calendars for " + calendarAccount);
+		}
+		return results;
+	}
+	/**
+	 * Execute a single DAV:sync-collection REPORT against the account's calendar collection.
+	 * An invalid sync token resets the collection and the REPORT is retried for a full sync.
+	 * 
+	 * @param calendarAccount
+	 * @param accountUri
+	 * @param collection
+	 * @return the changes since the collection's sync token, or null if the server does not support sync-collection
+	 */
+	protected SyncCollectionResponse syncCollection(
+					final ICalendarAccount calendarAccount,
+					final String accountUri,
+					final CalendarCollection collection) {
+		while (true) {
+			final String syncToken = collection.getSyncToken();
+			final ReportMethod method = new ReportMethod(accountUri);
+			method.setEntity(caldavDialect.generateSyncCollectionRequestEntity(syncToken));
+			method.addHeader(DEPTH_ZERO_HEADER);
+			if (log.isDebugEnabled()) {
+				log.debug("syncCollection executing " + methodToString(method) + " for " + calendarAccount + ", sync token " + syncToken);
+			}
+			final HttpRequest toExecute = methodInterceptor.doWithMethod(method, calendarAccount);
+			final HttpContext context = constructHttpContext(calendarAccount);
+
+			HttpEntity entity = null;
+			try {
+				final HttpResponse response = execute(toExecute, context);
+				entity = response.getEntity();
+				final int statusCode = response.getStatusLine().getStatusCode();
+				log.debug("syncCollection status code: " + statusCode);
+				if (statusCode == HttpStatus.SC_MULTI_STATUS) {
+					return syncCollectionResponseHandler.extractChanges(entity.getContent());
+				} else if (syncToken != null && (statusCode == HttpStatus.SC_FORBIDDEN || statusCode == HttpStatus.SC_CONFLICT)) {
+					// DAV:valid-sync-token precondition failed, start over
+					log.info("syncCollection sync token " + syncToken + " rejected for " + calendarAccount + ", performing full sync");
+					collection.reset();
+				} else {
+					log.warn("syncCollection for " + calendarAccount + " failed with status code " + statusCode + ", falling back to calendar-query");
+					return null;
+				}
+			} catch (IOException e) {
+				log.error("an IOException occurred in syncCollection for " + calendarAccount);
+				throw new CaldavDataAccessException(e);
+			} finally {
+				quietlyConsume(entity);
+			}
+		}
+	}
+	/**
+	 * Fetch the resources with a calendar-multiget REPORT and store them in the collection.
+	 * Requested resources missing from the response are removed from the collection.
+	 * 
+	 * @param calendarAccount
+	 * @param accountUri
+	 * @param collection
+	 * @param hrefs
+	 */
+	protected void multigetCalendars(
+					final ICalendarAccount calendarAccount,
+					final String accountUri,
+					final CalendarCollection collection,
+					final List<String> hrefs) {
+		final ReportMethod method = new ReportMethod(accountUri);
+		method.setEntity(caldavDialect.generateCalendarMultigetRequestEntity(hrefs));
+		method.addHeader(DEPTH_HEADER);
+		if (log.isDebugEnabled()) {
+			log.debug("multigetCalendars executing " + methodToString(method) + " for " + calendarAccount + ", " + hrefs.size() + " resources");
+		}
+		final HttpRequest toExecute = methodInterceptor.doWithMethod(method, calendarAccount);
+		final HttpContext context = constructHttpContext(calendarAccount);
+
+		HttpEntity entity = null;
+		try {
+			final HttpResponse response = execute(toExecute, context);
+			entity = response.getEntity();
+			final int statusCode = response.getStatusLine().getStatusCode();
+			log.debug("multigetCalendars status code: " + statusCode);
+			if (statusCode != HttpStatus.SC_MULTI_STATUS) {
+				throw new CaldavDataAccessException("unexpected status code: " + statusCode);
+			}
+			final Set<String> missing = new HashSet<>();
+			for (final String href: hrefs) {
+				missing.add(SyncCollectionCalendarCache.normalizeHref(href));
+			}
+			reportResponseHandler.extractCalendars(entity.getContent(), c -> {
+				collection.put(c);
+				missing.remove(SyncCollectionCalendarCache.normalizeHref(c.getUri()));
+			});
+			for (final String href: missing) {
+				collection.remove(href);
+			}
+		} catch (IOException e) {
+			log.error("an IOException occurred in multigetCalendars for " + calendarAccount);
+			throw new CaldavDataAccessException(e);
+		} finally {
+			quietlyConsume(entity);
+		}
+	}
+	/**
+	 * 
+	 * @param calendar
+	 * @param startDate
+	 * @param endDate
+	 * @return true if any {@link VEvent} in the calendar (or any of its recurrences) overlaps the range, as for a CalDAV time-range filter
+	 */
+	protected boolean overlaps(final Calendar calendar, final Date startDate, final Date endDate) {
+		final long start = startDate.getTime();
+		final long end = endDate.getTime();
+		for (final Object component: calendar.getComponents(VEvent.VEVENT)) {
+			final VEvent event = (VEvent) component;
+			if (event.getStartDate() == null || event.getStartDate().getDate() == null) {
+				continue;
+			}
+			if (this.eventUtils.isEventRecurring(event)) {
+				final PeriodList periods = this.eventUtils.calculateRecurrence(event, startDate, endDate);
+				for (final Object p: periods) {
+					final Period period = (Period) p;
+					if (overlaps(period.getStart().getTime(), period.getEnd().getTime(), start, end)) {
+						return true;
+					}
+				}
+			} else {
+				final long eventStart = event.getStartDate().getDate().getTime();
+				final DtEnd eventEnd = event.getEndDate(true);
+				if (overlaps(eventStart, eventEnd != null ? eventEnd.getDate().getTime() : eventStart, start, end)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	/**
+	 * 
+	 * @param eventStart
+	 * @param eventEnd
+	 * @param start
+	 * @param end
+	 * @return true if the event overlaps the range
+	 */
+	static boolean overlaps(final long eventStart, final long eventEnd, final long start, final long end) {
+		if (eventEnd == eventStart) {
+			return start <= eventStart && eventStart < end;
+		}
+		return eventStart < end && eventEnd > start;
+	}
+	/**
+	 * Store the result of a successful PUT in the account's cached calendar collection, if present.
+	 * Without an ETag in the response the resource is dropped, to be fetched again by the next sync.
+	 * 
+	 * @param calendarAccount
+	 * @param uri
+	 * @param calendar the stored calendar, or null if unavailable
+	 * @param response
+	 */
+	protected void updateCachedCalendar(final ICalendarAccount calendarAccount, final String uri,
+					final Calendar calendar, final HttpResponse response) {
+		final CalendarCollection collection = peekCachedCollection(calendarAccount);
+		if (collection == null) {
+			return;
+		}
+		final Header etag = response.getFirstHeader("ETag");
+		if (calendar != null && etag != null) {
+			collection.put(new CalendarWithURI(calendar, uri, etag.getValue()));
+		} else {
+			collection.remove(uri);
+		}
+	}
+	/**
+	 * Remove the resource from the account's cached calendar collection, if present.
+	 * 
+	 * @param calendarAccount
+	 * @param uri
+	 */
+	protected void evictCachedCalendar(final ICalendarAccount calendarAccount, final String uri) {
+		final CalendarCollection collection = peekCachedCollection(calendarAccount);
+		if (collection != null) {
+			collection.remove(uri);
+		}
+	}
+	/**
+	 * 
+	 * @param calendarAccount
+	 * @return the account's cached calendar collection, or null
+	 */
+	private CalendarCollection peekCachedCollection(final ICalendarAccount calendarAccount) {
+		if (calendarCache == null) {
+			return null;
+		}
+		return calendarCache.peekCollection(this.caldavDialect.getCalendarAccountHome(calendarAccount));
+	}
+	/**
+	 * 
+	 * @param statusCode
+	 * @return true if the status code indicates the PUT stored the resource
+	 */
+	static boolean isSuccessfulPut(int statusCode) {
+		return statusCode == HttpStatus.SC_OK || statusCode == HttpStatus.SC_CREATED || statusCode == HttpStatus.SC_NO_CONTENT;
+	}
+	/**
+	 * 
+	 * @param event
+	 * @return a copy of the event wrapped in a {@link Calendar}, or null if the event could not be copied
+	 */
+	Calendar copyForCache(final VEvent event) {
+		try {
+			return this.eventUtils.wrapEventInCalendar((VEvent) event.copy());
+		} catch (ParseException | IOException | URISyntaxException e) {
+			log.debug("failed to copy event for cache " + event.getUid(), e);
+			return null;
+		}
+	}
 	/**
 	 * Consolidate the {@link Calendar}s within the argument, returning 1.
 	 * 
+	 * The VTIMEZONEs of calendars parsed by the {@link ReportResponseHandlerImpl} are shared instances
+	 * (see {@link SharedTimeZoneRegistry}), so the result references them rather than copies, once per TZID.
+	 * 
 	 * @see Calendars#merge(Calendar, Calendar)
 	 * @param calendars
 	 * @return never null
@@ -822,23 +1832,15 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 			return new Calendar();
 		} else if(size == 1) {
 			return calendars.get(0).getCalendar();
-		} else if (size == 2) {
-			return merge(calendars.get(0).getCalendar(), calendars.get(1).getCalendar());
 		} else {
-			// create target by merging first 2
-			Calendar main = merge(calendars.get(0).getCalendar(), calendars.get(1).getCalendar());
-			// loop over the rest
-			List<CalendarWithURI> remaining = calendars.subList(2, calendars.size());
-			for(Iterator<CalendarWithURI> i = remaining.iterator(); i.hasNext();) {
-				CalendarWithURI left = i.next();
-				// if there aren't any more in the iterator, merge an empty calendar
-				Calendar right = new Calendar();
-				if(i.hasNext()) {
-					right = i.next().getCalendar();
-				} 
-				merge(main, left.getCalendar(), right);
+			Calendar result = new Calendar();
+			result.getProperties().add(DefaultEventUtilsImpl.PROD_ID);
+			result.getProperties().add(Version.VERSION_2_0);
+			Set<String> timezoneIds = new HashSet<String>();
+			for(CalendarWithURI calendar : calendars) {
+				addComponents(result, calendar.getCalendar(), timezoneIds);
 			}
-			return main;
+			return result;
 		}
 	}
 	
@@ -866,34 +1868,31 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 	 * @param right calendar
 	 */
 	protected void merge(Calendar target, Calendar left, Calendar right) {
-		Map<String, VTimeZone> existingTimezones = new HashMap<String, VTimeZone>();
-		// first pass is through the target to id VTIMEZONEs already stored
+		Set<String> timezoneIds = new HashSet<String>();
+		// id VTIMEZONEs already stored in the target
 		for (final var c: target.getComponents()) {
-			if(VTimeZone.VTIMEZONE.equals(c.getName())) {
-				VTimeZone tz = (VTimeZone) c;
-				existingTimezones.put(tz.getTimeZoneId().getValue(), tz);
+			if(c instanceof VTimeZone) {
+				timezoneIds.add(((VTimeZone) c).getTimeZoneId().getValue());
 			}
 		}
-		// 2nd: pass through left
-		for (final var c: left.getComponents()) {
-			final boolean componentIsTimezone = VTimeZone.VTIMEZONE.equals(c.getName());
-			if(componentIsTimezone && existingTimezones.containsKey(((VTimeZone) c).getTimeZoneId().getValue())) {
-				// don't add this timezone, we've already got a copy
-			} else {
-				target.getComponents().add(c);
-				if(componentIsTimezone) {
-					VTimeZone tz = (VTimeZone) c;
-					existingTimezones.put(tz.getTimeZoneId().getValue(), tz);
-				}
-			}
-		}
-		// 3rd: iterate over the right
-		for (final var c: right.getComponents()) {
-			if(VTimeZone.VTIMEZONE.equals(c.getName()) && existingTimezones.containsKey(((VTimeZone) c).getTimeZoneId().getValue())) {
+		addComponents(target, left, timezoneIds);
+		addComponents(target, right, timezoneIds);
+	}
+	
+	/**
+	 * Add the components of the source to the target, skipping VTIMEZONEs with the TZID of one already added.
+	 * 
+	 * @param target
+	 * @param source
+	 * @param timezoneIds the TZIDs of the VTIMEZONEs in the target, updated by this method
+	 */
+	private void addComponents(Calendar target, Calendar source, Set<String> timezoneIds) {
+		for (final var c: source.getComponents()) {
+			if(c instanceof VTimeZone && !timezoneIds.add(((VTimeZone) c).getTimeZoneId().getValue())) {
 				// don't add this timezone, we've already got a copy
-			} else {
-				target.getComponents().add(c);
+				continue;
 			}
+			target.getComponents().add(c);
 		}
 	}
 
@@ -901,18 +1900,73 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 	 * This method returns the {@link CalendarWithURI} containing a single {@link VEvent} that
 	 * was created with the Scheduling Assistant with the specified {@link IScheduleOwner} as the owner
 	 * and the specified start and end times.
+	 * The result is memoized for the current {@link RequestMemo}, see {@link #memoizeExistingAppointment(IScheduleOwner, Date, Date, Supplier)}.
 	 * 
 	 * @param owner
 	 * @param startTime
 	 * @param endTime
 	 * @return the matching Scheduling Assistant {@link VEvent}, or null if none for this {@link IScheduleOwner} at the specified times
 	 */
-	protected CalendarWithURI getExistingAppointmentInternal(IScheduleOwner owner,
+	protected CalendarWithURI getExistingAppointmentInternal(final IScheduleOwner owner,
+			final Date startTime, final Date endTime) {
+		return memoizeExistingAppointment(owner, startTime, endTime, () -> {
+			// the result may be modified and stored, don't share the cached instances
+			List<CalendarWithURI> calendars = getCalendarsInternal(owner.getCalendarAccount(), startTime, endTime, false);
+			return findExistingAppointment(calendars, owner, startTime, endTime);
+		});
+	}
+	/**
+	 * Memoize the owner's appointment at the times for the {@link RequestMemo} bound to the current thread; 
+	 * every write to the owner's account discards it. Callers modify the appointment they are given 
+	 * (and keep the modification if the PUT fails), so the memo keeps its own instance and each caller gets a copy.
+	 * 
+	 * The memo is bound to the thread, so lookups on other threads, such as the lookup executor of 
+	 * SchedulingAssistantServiceImpl, are not memoized.
+	 * 
+	 * @param owner
+	 * @param startTime
+	 * @param endTime
+	 * @param loader
+	 * @return a copy of the memoized appointment, or the result of the loader if no memo is bound to the thread
+	 */
+	private CalendarWithURI memoizeExistingAppointment(final IScheduleOwner owner, final Date startTime, final Date endTime,
+			final Supplier<CalendarWithURI> loader) {
+		if(RequestMemo.current() == null) {
+			return loader.get();
+		}
+		CalendarWithURI result = RequestMemo.memoize(owner.getCalendarAccount(), existingAppointmentKey(startTime, endTime), loader);
+		if(result == null) {
+			return null;
+		}
+		try {
+			return new CalendarWithURI(new Calendar(result.getCalendar()), result.getUri(), result.getEtag());
+		} catch (ParseException | IOException | URISyntaxException e) {
+			throw new CaldavDataFormatException("failed to copy " + result.getUri() + " for " + owner, e);
+		}
+	}
+	/**
+	 * 
+	 * @param startTime
+	 * @param endTime
+	 * @return the {@link RequestMemo} key for the owner's appointment at the times
+	 */
+	private static Object existingAppointmentKey(Date startTime, Date endTime) {
+		return RequestMemo.key("existingAppointment", startTime.getTime(), endTime.getTime());
+	}
+	/**
+	 * 
+	 * @param calendars
+	 * @param owner
+	 * @param startTime
+	 * @param endTime
+	 * @return the {@link CalendarWithURI} containing the owner's Scheduling Assistant appointment at the specified times, or null
+	 * @see #getExistingAppointmentInternal(IScheduleOwner, Date, Date)
+	 */
+	CalendarWithURI findExistingAppointment(List<CalendarWithURI> calendars, IScheduleOwner owner,
 			Date startTime, Date endTime) {
 		final DateTime targetStartTime = new DateTime(startTime);
 		final DateTime targetEndTime = new DateTime(endTime);
 
-		List<CalendarWithURI> calendars = getCalendarsInternal(owner.getCalendarAccount(), startTime, endTime);
 		for(CalendarWithURI calendarWithUri : calendars) {
 			ComponentList componentList = calendarWithUri.getCalendar().getComponents(VEvent.VEVENT);
 			if(componentList.size() != 1) {
@@ -961,13 +2015,214 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 	 * @return the matching event, or null if not found.
 	 */
 	protected CalendarWithURI getExistingAppointmentInternalForVisitor(IScheduleVisitor visitor, Date startTime, Date endTime, Uid eventUid) {
-		final DateTime targetStartTime = new DateTime(startTime);
-		final DateTime targetEndTime = new DateTime(endTime);
 		if(eventUid == null) {
 			log.debug("cannot call getExistingAppointmentInternal with null eventUid, visitor: " + visitor);
 			return null;
 		}
-		List<CalendarWithURI> calendars = getCalendarsInternal(visitor.getCalendarAccount(), startTime, endTime);
+		List<CalendarWithURI> calendars = getCalendarsInternal(visitor.getCalendarAccount(), startTime, endTime, false);
+		return findCancelledAppointment(calendars, startTime, endTime, eventUid);
+	}
+	/**
+	 * Retrieve the appointment from the {@link AppointmentIndex} if indexed, otherwise search for it with
+	 * {@link #getExistingAppointmentInternal(IScheduleOwner, Date, Date)}.
+	 * 
+	 * @param owner
+	 * @param appointment
+	 * @return the matching appointment in the owner's calendar, or null
+	 */
+	protected CalendarWithURI getExistingAppointmentInternal(final IScheduleOwner owner, final VEvent appointment) {
+		final Date startTime = appointment.getStartDate().getDate();
+		final Date endTime = appointment.getEndDate(true).getDate();
+		return memoizeExistingAppointment(owner, startTime, endTime, () -> {
+			CalendarWithURI indexed = getIndexedAppointment(owner, appointment);
+			if(indexed != null) {
+				return indexed;
+			}
+			return getExistingAppointmentInternal(owner, startTime, endTime);
+		});
+	}
+	/**
+	 * GET the appointment's resource from the {@link AppointmentIndex}.
+	 * Entries that are missing on the server or no longer hold the appointment are removed.
+	 * 
+	 * @param owner
+	 * @param appointment
+	 * @return the appointment, or null if not indexed or the index entry is stale
+	 */
+	protected CalendarWithURI getIndexedAppointment(IScheduleOwner owner, VEvent appointment) {
+		final ICalendarAccount calendarAccount = owner.getCalendarAccount();
+		final AppointmentIndex.Entry entry = lookupIndexedAppointment(calendarAccount, appointment);
+		if(entry == null) {
+			return null;
+		}
+		final String accountHome = this.caldavDialect.getCalendarAccountHome(calendarAccount);
+		final String uid = appointment.getUid().getValue();
+		HttpGet method = new HttpGet(this.caldavDialect.resolveCalendarURI(new CalendarWithURI(null, entry.getHref())).toString());
+		if(log.isDebugEnabled()) {
+			log.debug("getIndexedAppointment executing " + methodToString(method) + " for " + owner);
+		}
+		HttpRequest toExecute = methodInterceptor.doWithMethod(method, calendarAccount);
+		final HttpContext context = constructHttpContext(calendarAccount);
+
+		HttpEntity entity = null;
+		try {
+			HttpResponse response = execute(toExecute, context);
+			entity = response.getEntity();
+			int statusCode = response.getStatusLine().getStatusCode();
+			Header etag = response.getFirstHeader("ETag");
+			if(statusCode != HttpStatus.SC_OK || entity == null || etag == null) {
+				log.debug("getIndexedAppointment status code " + statusCode + " for " + entry + ", falling back to search");
+				this.appointmentIndex.remove(accountHome, uid);
+				return null;
+			}
+			Calendar calendar = new CalendarBuilder().build(entity.getContent());
+			CalendarWithURI result = new CalendarWithURI(calendar, entry.getHref(), etag.getValue());
+			result = findExistingAppointment(Collections.singletonList(result), owner,
+					appointment.getStartDate().getDate(), appointment.getEndDate(true).getDate());
+			if(result == null) {
+				log.debug("indexed resource " + entry + " no longer matches " + uid + ", falling back to search");
+				this.appointmentIndex.remove(accountHome, uid);
+				return null;
+			}
+			indexAppointments(calendarAccount, Collections.singletonList(result));
+			List<CalendarWithURI> results = handleDeclinedAttendees(Collections.singletonList(result), calendarAccount);
+			return results.isEmpty() ? null : result;
+		} catch (ParserException e) {
+			log.debug("failed to parse indexed resource " + entry + ", falling back to search", e);
+			this.appointmentIndex.remove(accountHome, uid);
+			return null;
+		} catch (IOException e) {
+			log.error("an IOException occurred in getIndexedAppointment for " + owner + ", " + entry);
+			throw new CaldavDataAccessException(e);
+		} finally {
+			quietlyConsume(entity);
+		}
+	}
+	/**
+	 * DELETE the appointment's resource from the {@link AppointmentIndex}, with If-Match on the indexed ETag.
+	 * 
+	 * @param calendarAccount
+	 * @param appointment
+	 * @return true if the resource was deleted, false if it is not indexed or the index entry was stale
+	 */
+	protected boolean deleteIndexedAppointment(ICalendarAccount calendarAccount, VEvent appointment) {
+		final AppointmentIndex.Entry entry = lookupIndexedAppointment(calendarAccount, appointment);
+		if(entry == null) {
+			return false;
+		}
+		RequestMemo.invalidate(calendarAccount);
+		HttpDelete method = new HttpDelete(this.caldavDialect.resolveCalendarURI(new CalendarWithURI(null, entry.getHref())).toString());
+		method.addHeader(IF_MATCH_HEADER, entry.getEtag());
+		if(log.isDebugEnabled()) {
+			log.debug("deleteIndexedAppointment executing " + methodToString(method) + " for " + calendarAccount);
+		}
+		HttpRequest toExecute = methodInterceptor.doWithMethod(method, calendarAccount);
+		final HttpContext context = constructHttpContext(calendarAccount);
+
+		HttpEntity entity = null;
+		try {
+			HttpResponse response = execute(toExecute, context);
+			entity = response.getEntity();
+			int statusCode = response.getStatusLine().getStatusCode();
+			log.debug("deleteIndexedAppointment status code: " + statusCode);
+			this.appointmentIndex.remove(this.caldavDialect.getCalendarAccountHome(calendarAccount), appointment.getUid().getValue());
+			if(statusCode == HttpStatus.SC_NO_CONTENT || statusCode == HttpStatus.SC_OK) {
+				evictCachedCalendar(calendarAccount, entry.getHref());
+				return true;
+			}
+			// 412 (changed since indexed) or 404 (moved or already gone): search for it instead
+			return false;
+		} catch (IOException e) {
+			log.error("an IOException occurred in deleteIndexedAppointment for " + calendarAccount + ", " + entry);
+			throw new CaldavDataAccessException(e);
+		} finally {
+			quietlyConsume(entity);
+		}
+	}
+	/**
+	 * 
+	 * @param calendarAccount
+	 * @param appointment
+	 * @return the index entry for the appointment's UID in the account's calendar home, or null
+	 */
+	private AppointmentIndex.Entry lookupIndexedAppointment(ICalendarAccount calendarAccount, VEvent appointment) {
+		if(this.appointmentIndex == null || appointment.getUid() == null) {
+			return null;
+		}
+		return this.appointmentIndex.get(this.caldavDialect.getCalendarAccountHome(calendarAccount), appointment.getUid().getValue());
+	}
+	/**
+	 * Add the Scheduling Assistant appointments among the calendars to the {@link AppointmentIndex}, if present.
+	 * 
+	 * @param calendarAccount
+	 * @param calendars
+	 */
+	protected void indexAppointments(ICalendarAccount calendarAccount, List<CalendarWithURI> calendars) {
+		if(this.appointmentIndex == null) {
+			return;
+		}
+		final String accountHome = this.caldavDialect.getCalendarAccountHome(calendarAccount);
+		for(CalendarWithURI calendar : calendars) {
+			ComponentList events = calendar.getCalendar().getComponents(VEvent.VEVENT);
+			if(events.size() != 1 || calendar.getEtag() == null) {
+				continue;
+			}
+			VEvent event = (VEvent) events.get(0);
+			if(event.getUid() != null && SchedulingAssistantAppointment.TRUE.equals(event.getProperty(SchedulingAssistantAppointment.AVAILABLE_APPOINTMENT))) {
+				this.appointmentIndex.put(accountHome, event.getUid().getValue(), calendar.getUri(), calendar.getEtag());
+			}
+		}
+	}
+	/**
+	 * Update the {@link AppointmentIndex}, if present, after a PUT of the event.
+	 * 
+	 * @param calendarAccount
+	 * @param uri
+	 * @param event
+	 * @param response the response to the PUT, or null if it failed
+	 */
+	protected void indexStoredAppointment(ICalendarAccount calendarAccount, String uri, VEvent event, HttpResponse response) {
+		if(this.appointmentIndex == null || event.getUid() == null) {
+			return;
+		}
+		final String accountHome = this.caldavDialect.getCalendarAccountHome(calendarAccount);
+		final Header etag = response != null ? response.getFirstHeader("ETag") : null;
+		if(etag != null && SchedulingAssistantAppointment.TRUE.equals(event.getProperty(SchedulingAssistantAppointment.AVAILABLE_APPOINTMENT))) {
+			this.appointmentIndex.put(accountHome, event.getUid().getValue(), uri, etag.getValue());
+		} else {
+			this.appointmentIndex.remove(accountHome, event.getUid().getValue());
+		}
+	}
+	/**
+	 * Remove the appointment in the calendar from the {@link AppointmentIndex}, if present.
+	 * 
+	 * @param calendarAccount
+	 * @param calendar
+	 */
+	protected void unindexAppointment(ICalendarAccount calendarAccount, Calendar calendar) {
+		if(this.appointmentIndex == null || calendar == null) {
+			return;
+		}
+		final String accountHome = this.caldavDialect.getCalendarAccountHome(calendarAccount);
+		for(Object component : calendar.getComponents(VEvent.VEVENT)) {
+			Uid uid = ((VEvent) component).getUid();
+			if(uid != null) {
+				this.appointmentIndex.remove(accountHome, uid.getValue());
+			}
+		}
+	}
+	/**
+	 * 
+	 * @param calendars
+	 * @param startTime
+	 * @param endTime
+	 * @param eventUid
+	 * @return the {@link CalendarWithURI} containing the CANCELLED event with the specified start, end and uid, or null
+	 * @see #getExistingAppointmentInternalForVisitor(IScheduleVisitor, Date, Date, Uid)
+	 */
+	CalendarWithURI findCancelledAppointment(List<CalendarWithURI> calendars, Date startTime, Date endTime, Uid eventUid) {
+		final DateTime targetStartTime = new DateTime(startTime);
+		final DateTime targetEndTime = new DateTime(endTime);
 		for(CalendarWithURI calendarWithUri : calendars) {
 			ComponentList componentList = calendarWithUri.getCalendar().getComponents(VEvent.VEVENT);
 			if(componentList.size() != 1) {
@@ -1001,6 +2256,7 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 	 * @throws IOException
 	 */
 	protected int putNewCalendar(ICalendarAccount eventOwner, Calendar calendar, String eventUid) throws HttpException, IOException {
+		RequestMemo.invalidate(eventOwner);
 		String uri = generateEventUri(eventOwner, eventUid);
 
 		HttpPut method = constructPutMethod(uri, calendar);
@@ -1014,7 +2270,7 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 
 		HttpEntity entity = null;
 		try {
-			HttpResponse response = this.httpClient.execute(httpHost, toExecute, context);
+			HttpResponse response = execute(toExecute, context);
 			entity = response.getEntity();
 			if(log.isDebugEnabled()) {
 				if(entity == null) {
@@ -1025,6 +2281,9 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 				}
 			}
 			int statusCode = response.getStatusLine().getStatusCode();
+			if(isSuccessfulPut(statusCode)) {
+				updateCachedCalendar(eventOwner, uri, calendar, response);
+			}
 			return statusCode;
 		} finally {
 			EntityUtils.consume(entity);
@@ -1032,6 +2291,46 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 
 	}
 
+	/**
+	 * Replace a stored calendar using CalDAV PUT, conditional on its ETag if known.
+	 * 
+	 * @param eventOwner
+	 * @param existing the stored calendar
+	 * @param calendar the replacement
+	 * @return the status code
+	 * @throws IOException
+	 */
+	protected int putExistingCalendar(ICalendarAccount eventOwner, CalendarWithURI existing, Calendar calendar) throws IOException {
+		RequestMemo.invalidate(eventOwner);
+		String uri = this.caldavDialect.resolveCalendarURI(existing).toString();
+
+		HttpPut method = constructPutMethod(uri, calendar);
+		if(existing.getEtag() != null) {
+			method.addHeader(IF_MATCH_HEADER, existing.getEtag());
+		}
+
+		HttpRequest toExecute = this.methodInterceptor.doWithMethod(method, eventOwner);
+		if(log.isDebugEnabled()) {
+			log.debug("putExistingCalendar executing " + methodToString(method) + " for " + eventOwner);
+		}
+		final HttpContext context = constructHttpContext(eventOwner);
+
+		HttpEntity entity = null;
+		try {
+			HttpResponse response = execute(toExecute, context);
+			entity = response.getEntity();
+			int statusCode = response.getStatusLine().getStatusCode();
+			if(isSuccessfulPut(statusCode)) {
+				updateCachedCalendar(eventOwner, existing.getUri(), calendar, response);
+			} else {
+				evictCachedCalendar(eventOwner, existing.getUri());
+			}
+			return statusCode;
+		} finally {
+			EntityUtils.consume(entity);
+		}
+	}
+
 	/**
 	 * Store a new event using CalDAV PUT.
 	 * 
@@ -1042,7 +2341,20 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 	 */
 	protected int putNewEvent(final ICalendarAccount eventOwner,
 														final VEvent event) throws IOException {
-		final String uri = generateEventUri(eventOwner, event);
+		return putNewEvent(eventOwner, generateEventUri(eventOwner, event), event);
+	}
+	/**
+	 * Store a new event at the uri using CalDAV PUT.
+	 * 
+	 * @param eventOwner
+	 * @param uri
+	 * @param event
+	 * @return
+	 * @throws IOException
+	 */
+	protected int putNewEvent(final ICalendarAccount eventOwner, final String uri,
+														final VEvent event) throws IOException {
+		RequestMemo.invalidate(eventOwner);
 
 		final HttpPut method = constructPutMethod(uri, event);
 		method.addHeader(IF_NONE_MATCH_HEADER);
@@ -1055,7 +2367,7 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 
 		HttpEntity entity = null;
 		try {
-			final HttpResponse response = this.httpClient.execute(httpHost, toExecute, context);
+			final HttpResponse response = execute(toExecute, context);
 			entity = response.getEntity();
 			if (log.isDebugEnabled()) {
 				if (entity == null) {
@@ -1066,7 +2378,12 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 				}
 			}
 
-			return response.getStatusLine().getStatusCode();
+			final int statusCode = response.getStatusLine().getStatusCode();
+			if (isSuccessfulPut(statusCode)) {
+				updateCachedCalendar(eventOwner, uri, copyForCache(event), response);
+				indexStoredAppointment(eventOwner, uri, event, response);
+			}
+			return statusCode;
 		} finally {
 			EntityUtils.consume(entity);
 		}
@@ -1084,7 +2401,32 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 	 * @throws IOException
 	 */
 	protected int putExistingEvent(ICalendarAccount eventOwner, VEvent event, String etag) throws IOException {
-		String uri = generateEventUri(eventOwner, event);
+		return putExistingEvent(eventOwner, generateEventUri(eventOwner, event), event, etag);
+	}
+	/**
+	 * Replace the event stored in the existing resource using CalDAV PUT, with If-Match on its ETag.
+	 * 
+	 * @param eventOwner
+	 * @param existing the resource that holds the event, which need not be named after its UID
+	 * @param event
+	 * @return the status code
+	 * @throws IOException
+	 */
+	protected int putExistingEvent(ICalendarAccount eventOwner, CalendarWithURI existing, VEvent event) throws IOException {
+		return putExistingEvent(eventOwner, this.caldavDialect.resolveCalendarURI(existing).toString(), event, existing.getEtag());
+	}
+	/**
+	 * Update the existing event at the uri using CalDAV PUT.
+	 * 
+	 * @param eventOwner
+	 * @param uri
+	 * @param event
+	 * @param etag
+	 * @return
+	 * @throws IOException
+	 */
+	private int putExistingEvent(ICalendarAccount eventOwner, String uri, VEvent event, String etag) throws IOException {
+		RequestMemo.invalidate(eventOwner);
 
 		HttpPut method = constructPutMethod(uri, event);
 		method.addHeader(IF_MATCH_HEADER, etag);
@@ -1097,17 +2439,103 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 
 		HttpEntity entity = null;
 		try {
-			HttpResponse response = this.httpClient.execute(httpHost, toExecute, context);
+			HttpResponse response = execute(toExecute, context);
 			entity = response.getEntity();
 			if(log.isDebugEnabled()) {
 				log.debug("putExistingEvent response entity is null, response status line: " + response.getStatusLine());
 			}
 			int statusCode = response.getStatusLine().getStatusCode();
+			if(isSuccessfulPut(statusCode)) {
+				updateCachedCalendar(eventOwner, uri, copyForCache(event), response);
+				indexStoredAppointment(eventOwner, uri, event, response);
+			} else {
+				evictCachedCalendar(eventOwner, uri);
+				indexStoredAppointment(eventOwner, uri, event, null);
+			}
 			return statusCode;
 		} finally {
 			EntityUtils.consume(entity);
 		}
 	}
+	/**
+	 * 
+	 * @param calendarWithURI
+	 * @param owner
+	 * @return the lone event in the calendar if it is an upcoming {@link SchedulingAssistantAppointment} the owner attends as owner, otherwise null
+	 */
+	protected VEvent getUpcomingOwnedAppointment(CalendarWithURI calendarWithURI, ICalendarAccount owner) {
+		ComponentList componentList = calendarWithURI.getCalendar().getComponents(VEvent.VEVENT);
+		if(componentList.size() != 1) {
+			return null;
+		}
+		VEvent event = (VEvent) componentList.get(0);
+		if(event.getStartDate() == null || event.getStartDate().getDate().before(new java.util.Date())) {
+			return null;
+		}
+		if(SchedulingAssistantAppointment.TRUE.equals(event.getProperty(SchedulingAssistantAppointment.AVAILABLE_APPOINTMENT))
+				&& this.eventUtils.isAttendingAsOwner(event, owner)) {
+			return event;
+		}
+		return null;
+	}
+	/**
+	 * 
+	 * @param event
+	 * @return true if an owner or visitor attendee of the event has declined, so {@link #purgeDeclinedAttendees(CalendarWithURI, ICalendarAccount)} would alter it
+	 */
+	protected boolean hasDeclinedAttendee(VEvent event) {
+		for(Object a : this.eventUtils.getAttendeeListFromEvent(event)) {
+			Property attendee = (Property) a;
+			if(PartStat.DECLINED.equals(attendee.getParameter(PartStat.PARTSTAT))) {
+				Parameter appointmentRole = attendee.getParameter(AppointmentRole.APPOINTMENT_ROLE);
+				if(AppointmentRole.OWNER.equals(appointmentRole) || AppointmentRole.VISITOR.equals(appointmentRole)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	/**
+	 * Fetch the current state of the resource at the href and purge its declined attendees. 
+	 * Used by the {@link DeclinedAttendeeSweeper}.
+	 * 
+	 * @param owner
+	 * @param href
+	 * @see #purgeDeclinedAttendees(CalendarWithURI, ICalendarAccount)
+	 */
+	protected void purgeDeclinedAttendees(ICalendarAccount owner, String href) {
+		HttpGet method = new HttpGet(this.caldavDialect.resolveCalendarURI(new CalendarWithURI(null, href)).toString());
+		if(log.isDebugEnabled()) {
+			log.debug("purgeDeclinedAttendees executing " + methodToString(method) + " for " + owner);
+		}
+		HttpRequest toExecute = methodInterceptor.doWithMethod(method, owner);
+		final HttpContext context = constructHttpContext(owner);
+
+		HttpEntity entity = null;
+		try {
+			HttpResponse response = execute(toExecute, context);
+			entity = response.getEntity();
+			int statusCode = response.getStatusLine().getStatusCode();
+			Header etag = response.getFirstHeader("ETag");
+			if(statusCode == HttpStatus.SC_NOT_FOUND) {
+				log.debug("purgeDeclinedAttendees " + href + " no longer exists for " + owner);
+				return;
+			}
+			if(statusCode != HttpStatus.SC_OK || entity == null || etag == null) {
+				throw new CaldavDataAccessException("purgeDeclinedAttendees for " + owner + ", " + href + " failed with unexpected status code: " + statusCode);
+			}
+			Calendar calendar = new CalendarBuilder().build(entity.getContent());
+			purgeDeclinedAttendees(new CalendarWithURI(calendar, href, etag.getValue()), owner);
+		} catch (ParserException e) {
+			log.error("failed to parse " + href + " for " + owner);
+			throw new CaldavDataAccessException(e);
+		} catch (IOException e) {
+			log.error("an IOException occurred in purgeDeclinedAttendees for " + owner + ", " + href);
+			throw new CaldavDataAccessException(e);
+		} finally {
+			quietlyConsume(entity);
+		}
+	}
 	/**
 	 * This method will inspect {@link IScheduleVisitor} {@link Attendee}s among the {@link SchedulingAssistantAppointment}s
 	 * in the {@link Calendar} argument.
@@ -1158,7 +2586,7 @@ public class CaldavCalendarDataDaoImpl implements ICalendarDataDao, Initializing
 								event.getProperties().remove(attendee);
 
 								try {
-									int statusCode = putExistingEvent(owner, event, calendarWithURI.getEtag());
+									int statusCode = putExistingEvent(owner, calendarWithURI, event);
 									log.debug("purgeDeclinedAttendees leave status code: " + statusCode);
 									if(statusCode == HttpStatus.SC_OK || statusCode == HttpStatus.SC_CREATED || statusCode == HttpStatus.SC_NO_CONTENT) {
 										log.warn("purgeDeclinedAttendees successfully removed declined attendee from group appointment " + event);
@@ -0,0 +1,289 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.jasig.schedassist.impl.caldav;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.commons.lang.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * Pooling connection manager for the CalDAV {@link CloseableHttpClient}, with live statistics.
+ *
+ * In addition to the maximum total and per route connections of {@link PoolingHttpClientConnectionManager}, this class:
+ * <ul>
+ * <li>closes expired connections, and connections idle for longer than idleConnectionTimeoutSeconds, every
+ * evictionIntervalSeconds on a background thread;</li>
+ * <li>records how long each connection lease waited, in a histogram, and how many leases timed out;</li>
+ * <li>creates the {@link CloseableHttpClient} with {@link #createHttpClient()}, applying the connect, socket and lease timeouts
+ * and a keep-alive strategy that honors the server's Keep-Alive header up to keepAliveSeconds.</li>
+ * </ul>
+ * The clients share this connection manager, which is only shut down by {@link #destroy()}.
+ */
+public class CaldavConnectionManager extends PoolingHttpClientConnectionManager implements InitializingBean, DisposableBean {
+
+	/**
+	 * Upper bounds, in milliseconds, of the lease wait histogram buckets; the last bucket is unbounded.
+	 */
+	static final long [] LEASE_WAIT_BUCKETS = { 1, 5, 10, 50, 100, 500, 1000, 5000 };
+
+	private final Log log = LogFactory.getLog(this.getClass());
+	private final AtomicLongArray leaseWaits = new AtomicLongArray(LEASE_WAIT_BUCKETS.length + 1);
+	private final AtomicLong leaseTimeouts = new AtomicLong();
+	private int connectTimeoutMillis = 5000;
+	private int socketTimeoutMillis = 5000;
+	private long leaseTimeoutMillis = 5000;
+	private long keepAliveSeconds = 30;
+	private long idleConnectionTimeoutSeconds = 60;
+	private long evictionIntervalSeconds = 30;
+	private ScheduledExecutorService evictionExecutor;
+
+	/**
+	 *
+	 * @param socketFactoryRegistry see {@link SchemeRegistryProvider#createSocketFactoryRegistry(String, boolean)}
+	 * @param connectionTimeToLiveSeconds the maximum lifetime of a connection, or a value &lt;= 0 for no limit
+	 */
+	public CaldavConnectionManager(Registry<ConnectionSocketFactory> socketFactoryRegistry, long connectionTimeToLiveSeconds) {
+		super(socketFactoryRegistry, null, null, null, connectionTimeToLiveSeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * @param connectTimeoutMillis the timeout to establish a connection
+	 */
+	public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+		this.connectTimeoutMillis = connectTimeoutMillis;
+	}
+	/**
+	 * @param socketTimeoutMillis the timeout waiting for data on an established connection
+	 */
+	public void setSocketTimeoutMillis(int socketTimeoutMillis) {
+		this.socketTimeoutMillis = socketTimeoutMillis;
+	}
+	/**
+	 * @param leaseTimeoutMillis the timeout waiting to lease a connection from the pool
+	 */
+	public void setLeaseTimeoutMillis(long leaseTimeoutMillis) {
+		this.leaseTimeoutMillis = leaseTimeoutMillis;
+	}
+	/**
+	 * @param keepAliveSeconds how long to keep idle connections open, if the server does not say otherwise (and at most)
+	 */
+	public void setKeepAliveSeconds(long keepAliveSeconds) {
+		Validate.isTrue(keepAliveSeconds > 0, "keepAliveSeconds must be greater than 0");
+		this.keepAliveSeconds = keepAliveSeconds;
+	}
+	/**
+	 * @param idleConnectionTimeoutSeconds connections idle for longer are closed by the eviction thread
+	 */
+	public void setIdleConnectionTimeoutSeconds(long idleConnectionTimeoutSeconds) {
+		this.idleConnectionTimeoutSeconds = idleConnectionTimeoutSeconds;
+	}
+	/**
+	 * @param evictionIntervalSeconds how often the eviction thread runs; a value &lt;= 0 disables it
+	 */
+	public void setEvictionIntervalSeconds(long evictionIntervalSeconds) {
+		this.evictionIntervalSeconds = evictionIntervalSeconds;
+	}
+	/**
+	 * Override the default maximum connections per route for specific hosts.
+	 *
+	 * @param routeLimits maximum connections keyed by host URI, e.g. 'https://caldav.school.edu:443'
+	 */
+	public void setRouteLimits(Map<String, Integer> routeLimits) {
+		for(Map.Entry<String, Integer> entry : routeLimits.entrySet()) {
+			HttpHost host = HttpHost.create(entry.getKey());
+			setMaxPerRoute(new HttpRoute(host, null, "https".equalsIgnoreCase(host.getSchemeName())), entry.getValue());
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
+	 */
+	@Override
+	public void afterPropertiesSet() {
+		if(evictionIntervalSeconds > 0) {
+			this.evictionExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "caldavConnectionManager-eviction");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			this.evictionExecutor.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					closeExpiredConnections();
+					if(idleConnectionTimeoutSeconds > 0) {
+						closeIdleConnections(idleConnectionTimeoutSeconds, TimeUnit.SECONDS);
+					}
+				}
+			}, evictionIntervalSeconds, evictionIntervalSeconds, TimeUnit.SECONDS);
+		}
+	}
+	/* (non-Javadoc)
+	 * @see org.springframework.beans.factory.DisposableBean#destroy()
+	 */
+	@Override
+	public void destroy() {
+		if(this.evictionExecutor != null) {
+			this.evictionExecutor.shutdownNow();
+		}
+		shutdown();
+	}
+
+	/**
+	 * @return a new {@link CloseableHttpClient} using this connection manager, with the configured timeouts and keep-alive strategy
+	 */
+	public CloseableHttpClient createHttpClient() {
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(connectTimeoutMillis)
+				.setSocketTimeout(socketTimeoutMillis)
+				.setConnectionRequestTimeout((int) Math.min(leaseTimeoutMillis, Integer.MAX_VALUE))
+				.build();
+		return HttpClientBuilder.create()
+				.setConnectionManager(this)
+				.setConnectionManagerShared(true)
+				.setDefaultRequestConfig(requestConfig)
+				.setKeepAliveStrategy(new ConnectionKeepAliveStrategy() {
+					@Override
+					public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+						long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+						long max = keepAliveSeconds * 1000L;
+						return duration < 0 || duration > max ? max : duration;
+					}
+				})
+				.build();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.http.impl.conn.PoolingHttpClientConnectionManager#requestConnection(org.apache.http.conn.routing.HttpRoute, java.lang.Object)
+	 */
+	@Override
+	public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+		final ConnectionRequest request = super.requestConnection(route, state);
+		final long requested = System.nanoTime();
+		return new ConnectionRequest() {
+			@Override
+			public HttpClientConnection get(long timeout, TimeUnit tunit)
+					throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+				try {
+					return request.get(timeout, tunit);
+				} catch (ConnectionPoolTimeoutException e) {
+					leaseTimeouts.incrementAndGet();
+					log.warn("timed out waiting for a connection to " + route + ", " + getTotalStats());
+					throw e;
+				} finally {
+					recordLeaseWait(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - requested));
+				}
+			}
+			@Override
+			public boolean cancel() {
+				return request.cancel();
+			}
+		};
+	}
+	/**
+	 *
+	 * @param millis
+	 */
+	void recordLeaseWait(long millis) {
+		int bucket = 0;
+		while(bucket < LEASE_WAIT_BUCKETS.length && millis >= LEASE_WAIT_BUCKETS[bucket]) {
+			bucket++;
+		}
+		leaseWaits.incrementAndGet(bucket);
+	}
+
+	/**
+	 * @return the number of connections leased from the pool
+	 */
+	public int getLeased() {
+		return getTotalStats().getLeased();
+	}
+	/**
+	 * @return the number of requests waiting for a connection
+	 */
+	public int getPending() {
+		return getTotalStats().getPending();
+	}
+	/**
+	 * @return the number of idle connections in the pool
+	 */
+	public int getAvailable() {
+		return getTotalStats().getAvailable();
+	}
+	/**
+	 * @return the number of leases that timed out
+	 */
+	public long getLeaseTimeouts() {
+		return leaseTimeouts.get();
+	}
+	/**
+	 * @return the number of leases, by how long they waited for a connection
+	 */
+	public Map<String, Long> getLeaseWaitHistogram() {
+		Map<String, Long> result = new LinkedHashMap<String, Long>();
+		for(int i = 0; i < LEASE_WAIT_BUCKETS.length; i++) {
+			result.put("< " + LEASE_WAIT_BUCKETS[i] + " ms", leaseWaits.get(i));
+		}
+		result.put(">= " + LEASE_WAIT_BUCKETS[LEASE_WAIT_BUCKETS.length - 1] + " ms", leaseWaits.get(LEASE_WAIT_BUCKETS.length));
+		return result;
+	}
+	/**
+	 * @return the leased, pending and available connections and the maximum for each route used so far
+	 */
+	public Map<String, PoolStats> getRouteStatistics() {
+		Map<String, PoolStats> result = new TreeMap<String, PoolStats>();
+		for(HttpRoute route : getRoutes()) {
+			result.put(route.getTargetHost().toURI(), getStats(route));
+		}
+		return result;
+	}
+}
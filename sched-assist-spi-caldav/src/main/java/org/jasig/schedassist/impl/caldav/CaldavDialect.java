@@ -20,6 +20,7 @@
 package org.jasig.schedassist.impl.caldav;
 
 import java.net.URI;
+import java.util.Collection;
 import java.util.Date;
 
 import net.fortuna.ical4j.model.Calendar;
@@ -150,4 +151,44 @@ public interface CaldavDialect {
 	 * @return a {@link RequestEntity} used with the REPORT request to retrieve an account's Calendar data between the 2 {@link Date}s
 	 */
 	HttpEntity generateGetCalendarRequestEntity(Date startDate, Date endDate);
+	
+	/**
+	 * 
+	 * @return true if the CalDAV server supports DAV:sync-collection REPORTs (RFC 6578) on calendar account homes
+	 */
+	boolean isSyncCollectionSupported();
+	
+	/**
+	 * Generate an appropriate {@link RequestEntity} body for a DAV:sync-collection REPORT that returns
+	 * the href and ETag of each member of a calendar collection changed since the sync token.
+	 * 
+	 * @param syncToken the token returned by the previous sync-collection REPORT, or null for an initial sync
+	 * @return a {@link RequestEntity} used with the REPORT request to retrieve changes to the collection
+	 */
+	HttpEntity generateSyncCollectionRequestEntity(String syncToken);
+	
+	/**
+	 * Generate an appropriate {@link RequestEntity} body for a CalDAV calendar-multiget REPORT that 
+	 * retrieves the calendar data and ETag of the specified resources.
+	 * 
+	 * @param hrefs the hrefs of the resources, as returned by the server
+	 * @return a {@link RequestEntity} used with the REPORT request to retrieve the resources
+	 */
+	HttpEntity generateCalendarMultigetRequestEntity(Collection<String> hrefs);
+	
+	/**
+	 * 
+	 * @return true if the CalDAV server supports CALDAV:free-busy-query REPORTs on calendar account homes
+	 */
+	boolean isFreeBusyQuerySupported();
+	
+	/**
+	 * Generate an appropriate {@link RequestEntity} body for a CALDAV:free-busy-query REPORT that returns
+	 * the busy time between the specified dates as a VFREEBUSY.
+	 * 
+	 * @param startDate
+	 * @param endDate
+	 * @return a {@link RequestEntity} used with the REPORT request to retrieve an account's busy time between the 2 {@link Date}s
+	 */
+	HttpEntity generateFreeBusyQueryRequestEntity(Date startDate, Date endDate);
 }
\ No newline at end of file
@@ -42,6 +42,7 @@ import org.jasig.schedassist.IAffiliationSource;
 import org.jasig.schedassist.model.AppointmentRole;
 import org.jasig.schedassist.model.AvailableBlock;
 import org.jasig.schedassist.model.DefaultEventUtilsImpl;
+import org.jasig.schedassist.model.EventDigest;
 import org.jasig.schedassist.model.ICalendarAccount;
 import org.jasig.schedassist.model.IScheduleOwner;
 import org.jasig.schedassist.model.IScheduleVisitor;
@@ -167,6 +168,21 @@ public class CaldavEventUtilsImpl extends DefaultEventUtilsImpl implements Initi
 		}	
 	}
 
+	/* (non-Javadoc)
+	 * @see org.jasig.schedassist.model.DefaultEventUtilsImpl#willEventCauseConflict(org.jasig.schedassist.model.ICalendarAccount, org.jasig.schedassist.model.EventDigest)
+	 */
+	@Override
+	public boolean willEventCauseConflict(ICalendarAccount calendarAccount,
+			EventDigest event) {
+		if(event == null) {
+			return false;
+		}
+		if(event.isCancelled()) {
+			return false;
+		}
+		return event.isOpaque();
+	}
+
 	/* (non-Javadoc)
 	 * @see org.jasig.schedassist.model.DefaultEventUtilsImpl#constructSchedulingAssistantAttendee(org.jasig.schedassist.model.ICalendarAccount, org.jasig.schedassist.model.AppointmentRole)
 	 */
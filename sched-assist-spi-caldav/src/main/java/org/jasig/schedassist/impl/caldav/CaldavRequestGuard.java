@@ -0,0 +1,565 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.jasig.schedassist.impl.caldav;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * Bounds the time and threads {@link CaldavCalendarDataDaoImpl} spends on a slow or failing CalDAV server.
+ * 
+ * <ul>
+ * <li>Deadlines: a request is aborted if it has not completed, response body included, within the read
+ * (GET, REPORT) or write (PUT, DELETE and others) deadline. The deadline includes the wait for a pooled connection.</li>
+ * <li>Bulkheads: at most maxConcurrentReads reads and maxConcurrentWrites writes are in flight; a request that cannot
+ * get a slot within bulkheadWaitMillis is rejected. Keeping maxConcurrentReads below the connection pool's maximum per
+ * route leaves connections for writes however many reads are waiting.</li>
+ * <li>Circuit breaker: once at least minimumCalls of the last slidingWindowSize requests have completed, and either
+ * failureRateThreshold percent of them failed (an IOException, or a 5xx status) or slowCallRateThreshold percent took longer
+ * than slowCallThresholdMillis, all requests are rejected for openMillis. Then up to halfOpenCalls trial requests are let
+ * through; the circuit closes if they all succeed, and opens again on the first failure.</li>
+ * </ul>
+ * Rejected requests fail immediately with a {@link CaldavDataAccessException}.
+ */
+public class CaldavRequestGuard implements InitializingBean, DisposableBean {
+
+	/**
+	 * States of the circuit breaker.
+	 */
+	public enum State {
+		CLOSED,
+		OPEN,
+		HALF_OPEN
+	}
+
+	/**
+	 * The execution of a request, for {@link CaldavRequestGuard#execute(HttpRequest, GuardedExecution)}.
+	 */
+	public interface GuardedExecution {
+		/**
+		 * 
+		 * @return the response
+		 * @throws IOException
+		 */
+		HttpResponse execute() throws IOException;
+	}
+
+	protected final Log log = LogFactory.getLog(this.getClass());
+	private long readDeadlineMillis = 10000;
+	private long writeDeadlineMillis = 15000;
+	private int maxConcurrentReads = 15;
+	private int maxConcurrentWrites = 5;
+	private long bulkheadWaitMillis = 500;
+	private int slidingWindowSize = 50;
+	private int minimumCalls = 20;
+	private int failureRateThreshold = 50;
+	private int slowCallRateThreshold = 80;
+	private long slowCallThresholdMillis = 5000;
+	private long openMillis = 30000;
+	private int halfOpenCalls = 3;
+
+	private Semaphore reads;
+	private Semaphore writes;
+	private ScheduledExecutorService deadlineExecutor;
+	private final AtomicLong circuitRejections = new AtomicLong();
+	private final AtomicLong bulkheadRejections = new AtomicLong();
+	private final AtomicLong deadlinesExceeded = new AtomicLong();
+	private final AtomicLong circuitOpenings = new AtomicLong();
+
+	// circuit breaker state, guarded by this
+	private State state = State.CLOSED;
+	private long epoch = 0;
+	private long openedAt;
+	private int trialsPermitted;
+	private int trialsSucceeded;
+	private boolean [] windowFailures;
+	private boolean [] windowSlow;
+	private int windowPosition;
+	private int windowCount;
+	private int windowFailureCount;
+	private int windowSlowCount;
+
+	/**
+	 * @param readDeadlineMillis the time allowed for a GET or REPORT
+	 */
+	public void setReadDeadlineMillis(long readDeadlineMillis) {
+		this.readDeadlineMillis = readDeadlineMillis;
+	}
+	/**
+	 * @param writeDeadlineMillis the time allowed for a PUT, DELETE or other request
+	 */
+	public void setWriteDeadlineMillis(long writeDeadlineMillis) {
+		this.writeDeadlineMillis = writeDeadlineMillis;
+	}
+	/**
+	 * @param maxConcurrentReads the maximum number of reads in flight
+	 */
+	public void setMaxConcurrentReads(int maxConcurrentReads) {
+		this.maxConcurrentReads = maxConcurrentReads;
+	}
+	/**
+	 * @param maxConcurrentWrites the maximum number of writes in flight
+	 */
+	public void setMaxConcurrentWrites(int maxConcurrentWrites) {
+		this.maxConcurrentWrites = maxConcurrentWrites;
+	}
+	/**
+	 * @param bulkheadWaitMillis how long a request waits for a read or write slot before it is rejected
+	 */
+	public void setBulkheadWaitMillis(long bulkheadWaitMillis) {
+		this.bulkheadWaitMillis = bulkheadWaitMillis;
+	}
+	/**
+	 * @param slidingWindowSize the number of most recent requests the failure and slow call rates are calculated over
+	 */
+	public void setSlidingWindowSize(int slidingWindowSize) {
+		this.slidingWindowSize = slidingWindowSize;
+	}
+	/**
+	 * @param minimumCalls the number of requests in the window before the circuit can open
+	 */
+	public void setMinimumCalls(int minimumCalls) {
+		this.minimumCalls = minimumCalls;
+	}
+	/**
+	 * @param failureRateThreshold the percentage of failed requests that opens the circuit
+	 */
+	public void setFailureRateThreshold(int failureRateThreshold) {
+		this.failureRateThreshold = failureRateThreshold;
+	}
+	/**
+	 * @param slowCallRateThreshold the percentage of slow requests that opens the circuit
+	 */
+	public void setSlowCallRateThreshold(int slowCallRateThreshold) {
+		this.slowCallRateThreshold = slowCallRateThreshold;
+	}
+	/**
+	 * @param slowCallThresholdMillis requests taking longer than this to respond are slow
+	 */
+	public void setSlowCallThresholdMillis(long slowCallThresholdMillis) {
+		this.slowCallThresholdMillis = slowCallThresholdMillis;
+	}
+	/**
+	 * @param openMillis how long the circuit stays open before trial requests are let through
+	 */
+	public void setOpenMillis(long openMillis) {
+		this.openMillis = openMillis;
+	}
+	/**
+	 * @param halfOpenCalls the number of successful trial requests that close the circuit
+	 */
+	public void setHalfOpenCalls(int halfOpenCalls) {
+		this.halfOpenCalls = halfOpenCalls;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
+	 */
+	@Override
+	public void afterPropertiesSet() {
+		Validate.isTrue(maxConcurrentReads > 0, "maxConcurrentReads must be greater than 0");
+		Validate.isTrue(maxConcurrentWrites > 0, "maxConcurrentWrites must be greater than 0");
+		Validate.isTrue(slidingWindowSize > 0, "slidingWindowSize must be greater than 0");
+		Validate.isTrue(minimumCalls > 0 && minimumCalls <= slidingWindowSize, "minimumCalls must be between 1 and slidingWindowSize");
+		Validate.isTrue(halfOpenCalls > 0, "halfOpenCalls must be greater than 0");
+		this.reads = new Semaphore(maxConcurrentReads, true);
+		this.writes = new Semaphore(maxConcurrentWrites, true);
+		this.windowFailures = new boolean[slidingWindowSize];
+		this.windowSlow = new boolean[slidingWindowSize];
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = Executors.defaultThreadFactory().newThread(r);
+				thread.setName("caldavRequestGuard-deadlines");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.setRemoveOnCancelPolicy(true);
+		this.deadlineExecutor = executor;
+	}
+	/* (non-Javadoc)
+	 * @see org.springframework.beans.factory.DisposableBean#destroy()
+	 */
+	@Override
+	public void destroy() {
+		if(this.deadlineExecutor != null) {
+			this.deadlineExecutor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Execute the request within its bulkhead and deadline, if the circuit allows it.
+	 * The bulkhead slot is held, and the deadline applies, until the response body is consumed or closed.
+	 * 
+	 * @param request
+	 * @param execution
+	 * @return the response
+	 * @throws IOException if the execution fails, or is aborted at the deadline
+	 * @throws CaldavDataAccessException if the circuit is open or the bulkhead is full
+	 */
+	public HttpResponse execute(final HttpRequest request, GuardedExecution execution) throws IOException {
+		final boolean write = isWrite(request);
+		final long permit = acquireCircuitPermission(request);
+		final Semaphore bulkhead = write ? writes : reads;
+		try {
+			if(!bulkhead.tryAcquire(bulkheadWaitMillis, TimeUnit.MILLISECONDS)) {
+				bulkheadRejections.incrementAndGet();
+				releaseTrial(permit);
+				throw new CaldavDataAccessException((write ? "write" : "read") + " bulkhead full, rejecting " + describe(request));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			releaseTrial(permit);
+			throw new CaldavDataAccessException("interrupted waiting for bulkhead", e);
+		}
+
+		final Slot slot = new Slot(bulkhead);
+		final AtomicBoolean aborted = new AtomicBoolean();
+		if(request instanceof HttpUriRequest) {
+			slot.deadline = deadlineExecutor.schedule(new Runnable() {
+				@Override
+				public void run() {
+					aborted.set(true);
+					deadlinesExceeded.incrementAndGet();
+					log.warn("deadline exceeded, aborting " + describe(request));
+					((HttpUriRequest) request).abort();
+					slot.release();
+				}
+			}, write ? writeDeadlineMillis : readDeadlineMillis, TimeUnit.MILLISECONDS);
+		}
+
+		final long start = System.nanoTime();
+		final HttpResponse response;
+		try {
+			response = execution.execute();
+		} catch (IOException e) {
+			if(aborted.get() && e instanceof InterruptedIOException) {
+				// HttpClient interrupts the thread when a wait for a pooled connection is aborted; the abort was ours
+				Thread.interrupted();
+			}
+			recordOutcome(permit, true, elapsedMillis(start));
+			slot.release();
+			throw e;
+		} catch (RuntimeException e) {
+			recordOutcome(permit, true, elapsedMillis(start));
+			slot.release();
+			throw e;
+		}
+		recordOutcome(permit, aborted.get() || response.getStatusLine().getStatusCode() >= 500, elapsedMillis(start));
+		final HttpEntity entity = response.getEntity();
+		if(entity == null || !entity.isStreaming()) {
+			slot.release();
+		} else {
+			response.setEntity(new HttpEntityWrapper(entity) {
+				@Override
+				public InputStream getContent() throws IOException {
+					return new SlotReleasingInputStream(super.getContent(), slot);
+				}
+			});
+		}
+		return response;
+	}
+
+	/**
+	 * 
+	 * @param request
+	 * @return the circuit's epoch the request was permitted in, negated for half open trial requests
+	 * @throws CaldavDataAccessException if the circuit is open, or all trial requests are in flight
+	 */
+	synchronized long acquireCircuitPermission(HttpRequest request) {
+		if(state == State.OPEN) {
+			if(System.currentTimeMillis() - openedAt < openMillis) {
+				circuitRejections.incrementAndGet();
+				throw new CaldavDataAccessException("circuit open, rejecting " + describe(request));
+			}
+			transition(State.HALF_OPEN);
+		}
+		if(state == State.HALF_OPEN) {
+			if(trialsPermitted >= halfOpenCalls) {
+				circuitRejections.incrementAndGet();
+				throw new CaldavDataAccessException("circuit half open, rejecting " + describe(request));
+			}
+			trialsPermitted++;
+			return -epoch;
+		}
+		return epoch;
+	}
+	/**
+	 * Record the outcome of a request; outcomes of requests permitted before the circuit last changed state are ignored.
+	 * 
+	 * @param permit from {@link #acquireCircuitPermission(HttpRequest)}
+	 * @param failed
+	 * @param elapsedMillis
+	 */
+	synchronized void recordOutcome(long permit, boolean failed, long elapsedMillis) {
+		final boolean slow = elapsedMillis > slowCallThresholdMillis;
+		if(Math.abs(permit) != epoch) {
+			return;
+		}
+		if(state == State.HALF_OPEN) {
+			if(failed || slow) {
+				transition(State.OPEN);
+			} else if(++trialsSucceeded >= halfOpenCalls) {
+				transition(State.CLOSED);
+			}
+			return;
+		}
+		if(windowCount == slidingWindowSize) {
+			if(windowFailures[windowPosition]) {
+				windowFailureCount--;
+			}
+			if(windowSlow[windowPosition]) {
+				windowSlowCount--;
+			}
+		} else {
+			windowCount++;
+		}
+		windowFailures[windowPosition] = failed;
+		windowSlow[windowPosition] = slow;
+		if(failed) {
+			windowFailureCount++;
+		}
+		if(slow) {
+			windowSlowCount++;
+		}
+		windowPosition = (windowPosition + 1) % slidingWindowSize;
+		if(windowCount >= minimumCalls
+				&& (windowFailureCount * 100 >= failureRateThreshold * windowCount || windowSlowCount * 100 >= slowCallRateThreshold * windowCount)) {
+			log.warn("opening circuit, " + windowFailureCount + " failed and " + windowSlowCount + " slow of the last " + windowCount + " requests");
+			transition(State.OPEN);
+		}
+	}
+	/**
+	 * Give back a half open trial permission for a request that was not executed, or was cancelled.
+	 * 
+	 * @param permit from {@link #acquireCircuitPermission(HttpRequest)}
+	 */
+	synchronized void releaseTrial(long permit) {
+		if(permit < 0 && -permit == epoch && state == State.HALF_OPEN) {
+			trialsPermitted--;
+		}
+	}
+	/**
+	 * 
+	 * @param newState
+	 */
+	private void transition(State newState) {
+		if(log.isInfoEnabled()) {
+			log.info("circuit " + state + " -> " + newState);
+		}
+		state = newState;
+		epoch++;
+		trialsPermitted = 0;
+		trialsSucceeded = 0;
+		if(newState == State.OPEN) {
+			openedAt = System.currentTimeMillis();
+			circuitOpenings.incrementAndGet();
+		} else if(newState == State.CLOSED) {
+			windowPosition = 0;
+			windowCount = 0;
+			windowFailureCount = 0;
+			windowSlowCount = 0;
+		}
+	}
+
+	/**
+	 * 
+	 * @param request
+	 * @return true unless the request is a GET or REPORT
+	 */
+	static boolean isWrite(HttpRequest request) {
+		String method = request.getRequestLine().getMethod();
+		return !("GET".equals(method) || ReportMethod.REPORT.equals(method));
+	}
+	/**
+	 * 
+	 * @param request
+	 * @return the method and uri of the request
+	 */
+	private static String describe(HttpRequest request) {
+		return request.getRequestLine().getMethod() + " " + request.getRequestLine().getUri();
+	}
+	/**
+	 * 
+	 * @param startNanos
+	 * @return the milliseconds since startNanos
+	 */
+	private static long elapsedMillis(long startNanos) {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * @return the state of the circuit breaker
+	 */
+	public synchronized String getState() {
+		if(state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+			// the next request is a trial
+			return State.HALF_OPEN.name();
+		}
+		return state.name();
+	}
+	/**
+	 * @return the percentage of failed requests in the sliding window, or -1 if it has fewer than minimumCalls
+	 */
+	public synchronized int getFailureRate() {
+		return windowCount < minimumCalls ? -1 : windowFailureCount * 100 / windowCount;
+	}
+	/**
+	 * @return the percentage of slow requests in the sliding window, or -1 if it has fewer than minimumCalls
+	 */
+	public synchronized int getSlowCallRate() {
+		return windowCount < minimumCalls ? -1 : windowSlowCount * 100 / windowCount;
+	}
+	/**
+	 * @return the number of reads in flight
+	 */
+	public int getActiveReads() {
+		return maxConcurrentReads - reads.availablePermits();
+	}
+	/**
+	 * @return the number of writes in flight
+	 */
+	public int getActiveWrites() {
+		return maxConcurrentWrites - writes.availablePermits();
+	}
+	/**
+	 * @return the number of requests rejected by the circuit breaker since startup
+	 */
+	public long getCircuitRejections() {
+		return circuitRejections.get();
+	}
+	/**
+	 * @return the number of requests rejected by a full bulkhead since startup
+	 */
+	public long getBulkheadRejections() {
+		return bulkheadRejections.get();
+	}
+	/**
+	 * @return the number of requests aborted at their deadline since startup
+	 */
+	public long getDeadlinesExceeded() {
+		return deadlinesExceeded.get();
+	}
+	/**
+	 * @return the number of times the circuit opened since startup
+	 */
+	public long getCircuitOpenings() {
+		return circuitOpenings.get();
+	}
+
+	/**
+	 * A bulkhead slot and the deadline of the request holding it, released once.
+	 */
+	private static final class Slot {
+		private final Semaphore bulkhead;
+		private final AtomicBoolean released = new AtomicBoolean();
+		private volatile ScheduledFuture<?> deadline;
+		/**
+		 * @param bulkhead
+		 */
+		Slot(Semaphore bulkhead) {
+			this.bulkhead = bulkhead;
+		}
+		/**
+		 * Release the bulkhead slot and cancel the deadline.
+		 */
+		void release() {
+			if(released.compareAndSet(false, true)) {
+				bulkhead.release();
+				ScheduledFuture<?> pending = deadline;
+				if(pending != null) {
+					pending.cancel(false);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Releases the {@link Slot} when the response body is read to the end or closed.
+	 */
+	private static final class SlotReleasingInputStream extends FilterInputStream {
+		private final Slot slot;
+		/**
+		 * @param in
+		 * @param slot
+		 */
+		SlotReleasingInputStream(InputStream in, Slot slot) {
+			super(in);
+			this.slot = slot;
+		}
+		/* (non-Javadoc)
+		 * @see java.io.FilterInputStream#read()
+		 */
+		@Override
+		public int read() throws IOException {
+			int result = super.read();
+			if(result == -1) {
+				slot.release();
+			}
+			return result;
+		}
+		/* (non-Javadoc)
+		 * @see java.io.FilterInputStream#read(byte[], int, int)
+		 */
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int result = super.read(b, off, len);
+			if(result == -1) {
+				slot.release();
+			}
+			return result;
+		}
+		/* (non-Javadoc)
+		 * @see java.io.FilterInputStream#close()
+		 */
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				slot.release();
+			}
+		}
+	}
+}
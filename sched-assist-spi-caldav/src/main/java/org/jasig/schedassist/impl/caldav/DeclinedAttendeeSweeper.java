@@ -0,0 +1,357 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jasig.schedassist.impl.caldav;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.Validate;
+import org.apache.commons.lang.time.DateUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jasig.schedassist.model.ICalendarAccount;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Purges declined attendees from Scheduling Assistant appointments in the background, so reads
+ * of an owner's calendar never wait on the DELETEs and PUTs of
+ * {@link CaldavCalendarDataDaoImpl#purgeDeclinedAttendees(CalendarWithURI, ICalendarAccount)}.
+ *
+ * {@link CaldavCalendarDataDaoImpl} queues the appointments with declined attendees it reads with {@link #enqueue(ICalendarAccount, String)},
+ * and the owners of the appointments it reads with {@link #registerOwner(ICalendarAccount)}. Each {@link #sweep()} re-reads
+ * the upcoming appointments of the next batch of registered owners (which queues any declines that arrived since), then
+ * purges a batch of queued appointments, each re-fetched so the purge acts on its current state.
+ * At most {@link #getConcurrency()} CalDAV requests are in flight for the sweeper at any time.
+ */
+public class DeclinedAttendeeSweeper implements InitializingBean, DisposableBean {
+
+	protected final Log log = LogFactory.getLog(this.getClass());
+	private CaldavCalendarDataDaoImpl calendarDataDao;
+	private int maxQueueSize = 1000;
+	private int batchSize = 50;
+	private int concurrency = 2;
+	private int maxOwners = 1000;
+	private int ownersPerSweep = 10;
+	private int lookaheadDays = 14;
+	private ExecutorService executor;
+	private final Map<String, Candidate> queue = new LinkedHashMap<String, Candidate>();
+	private final Map<String, ICalendarAccount> owners = new LinkedHashMap<String, ICalendarAccount>();
+	private final AtomicLong swept = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+
+	/**
+	 * @param calendarDataDao the calendarDataDao to set
+	 */
+	@Autowired
+	public void setCalendarDataDao(CaldavCalendarDataDaoImpl calendarDataDao) {
+		this.calendarDataDao = calendarDataDao;
+	}
+	/**
+	 * @param maxQueueSize the maximum number of queued appointments; further candidates are dropped until the next sweep
+	 */
+	public void setMaxQueueSize(int maxQueueSize) {
+		this.maxQueueSize = maxQueueSize;
+	}
+	/**
+	 * @param batchSize the maximum number of queued appointments purged per sweep
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+	/**
+	 * @return the maximum number of concurrent CalDAV requests
+	 */
+	public int getConcurrency() {
+		return concurrency;
+	}
+	/**
+	 * @param concurrency the maximum number of concurrent CalDAV requests
+	 */
+	public void setConcurrency(int concurrency) {
+		this.concurrency = concurrency;
+	}
+	/**
+	 * @param maxOwners the maximum number of owners to remember; the least recently registered are forgotten first
+	 */
+	public void setMaxOwners(int maxOwners) {
+		this.maxOwners = maxOwners;
+	}
+	/**
+	 * @param ownersPerSweep the number of owners whose upcoming appointments are re-read per sweep, 0 to disable
+	 */
+	public void setOwnersPerSweep(int ownersPerSweep) {
+		this.ownersPerSweep = ownersPerSweep;
+	}
+	/**
+	 * @param lookaheadDays how many days of an owner's upcoming appointments to re-read
+	 */
+	public void setLookaheadDays(int lookaheadDays) {
+		this.lookaheadDays = lookaheadDays;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
+	 */
+	@Override
+	public void afterPropertiesSet() {
+		Validate.notNull(calendarDataDao, "calendarDataDao cannot be null");
+		Validate.isTrue(concurrency > 0, "concurrency must be greater than 0");
+		Validate.isTrue(batchSize > 0, "batchSize must be greater than 0");
+		final AtomicInteger threadCount = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(concurrency, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "declinedAttendeeSweeper-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	/* (non-Javadoc)
+	 * @see org.springframework.beans.factory.DisposableBean#destroy()
+	 */
+	@Override
+	public void destroy() {
+		if(this.executor != null) {
+			this.executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Queue the appointment at the href for a purge; an appointment already queued is not queued twice.
+	 *
+	 * @param owner
+	 * @param href
+	 * @return true if the appointment is queued, false if the queue is full
+	 */
+	public boolean enqueue(ICalendarAccount owner, String href) {
+		final String accountKey = accountKey(owner);
+		final String key = accountKey + " " + SyncCollectionCalendarCache.normalizeHref(href);
+		synchronized (queue) {
+			if(queue.containsKey(key)) {
+				return true;
+			}
+			if(queue.size() >= maxQueueSize) {
+				dropped.incrementAndGet();
+				log.debug("queue full, dropping " + href + " for " + owner);
+				return false;
+			}
+			queue.put(key, new Candidate(owner, href));
+			return true;
+		}
+	}
+	/**
+	 * Remember the owner, so later sweeps re-read its upcoming appointments.
+	 *
+	 * @param owner
+	 */
+	public void registerOwner(ICalendarAccount owner) {
+		final String key = accountKey(owner);
+		synchronized (owners) {
+			if(owners.containsKey(key)) {
+				return;
+			}
+			owners.put(key, owner);
+			if(owners.size() > maxOwners) {
+				Iterator<String> eldest = owners.keySet().iterator();
+				eldest.next();
+				eldest.remove();
+			}
+		}
+	}
+
+	/**
+	 * Re-read the upcoming appointments of the next batch of owners, then purge the next batch of queued appointments.
+	 * Skipped when the system property 'org.jasig.schedassist.runScheduledTasks' is false.
+	 */
+	@Scheduled(fixedDelayString="${caldav.declinedAttendeeSweeper.delayMillis:60000}")
+	public void sweep() {
+		final String propertyValue = System.getProperty("org.jasig.schedassist.runScheduledTasks", "true");
+		if(!Boolean.parseBoolean(propertyValue)) {
+			log.debug("ignoring sweep as 'org.jasig.schedassist.runScheduledTasks' set to false");
+			return;
+		}
+		final long start = System.currentTimeMillis();
+		int walked = walkOwners();
+		int purged = purgeQueued();
+		if(walked > 0 || purged > 0) {
+			log.info("sweep re-read " + walked + " owners and purged " + purged + " appointments in " + (System.currentTimeMillis() - start) + " ms");
+		}
+	}
+
+	/**
+	 * Re-read the upcoming appointments of the next {@link #setOwnersPerSweep(int)} owners, in rotation.
+	 *
+	 * @return the number of owners read
+	 */
+	int walkOwners() {
+		final List<ICalendarAccount> batch = new ArrayList<ICalendarAccount>();
+		synchronized (owners) {
+			Iterator<Map.Entry<String, ICalendarAccount>> iterator = owners.entrySet().iterator();
+			while(iterator.hasNext() && batch.size() < Math.min(ownersPerSweep, owners.size())) {
+				batch.add(iterator.next().getValue());
+				iterator.remove();
+			}
+			// move to the end of the rotation
+			for(ICalendarAccount owner : batch) {
+				owners.put(accountKey(owner), owner);
+			}
+		}
+		final Date startDate = new Date();
+		final Date endDate = DateUtils.addDays(startDate, lookaheadDays);
+		List<Runnable> tasks = new ArrayList<Runnable>();
+		for(final ICalendarAccount owner : batch) {
+			tasks.add(new Runnable() {
+				@Override
+				public void run() {
+					// queues any appointments with declined attendees
+					calendarDataDao.getCalendarsInternal(owner, startDate, endDate, false);
+				}
+			});
+		}
+		return runAll(tasks);
+	}
+	/**
+	 * Purge the next {@link #setBatchSize(int)} queued appointments.
+	 *
+	 * @return the number of appointments purged without error
+	 */
+	int purgeQueued() {
+		final List<Candidate> batch = new ArrayList<Candidate>();
+		synchronized (queue) {
+			Iterator<Candidate> iterator = queue.values().iterator();
+			while(iterator.hasNext() && batch.size() < batchSize) {
+				batch.add(iterator.next());
+				iterator.remove();
+			}
+		}
+		List<Runnable> tasks = new ArrayList<Runnable>();
+		for(final Candidate candidate : batch) {
+			tasks.add(new Runnable() {
+				@Override
+				public void run() {
+					calendarDataDao.purgeDeclinedAttendees(candidate.owner, candidate.href);
+				}
+			});
+		}
+		int completed = runAll(tasks);
+		swept.addAndGet(completed);
+		return completed;
+	}
+	/**
+	 * Run the tasks on the executor and wait for all of them; failures are logged and counted.
+	 *
+	 * @param tasks
+	 * @return the number of tasks that completed without error
+	 */
+	private int runAll(List<Runnable> tasks) {
+		List<Future<?>> futures = new ArrayList<Future<?>>(tasks.size());
+		for(Runnable task : tasks) {
+			futures.add(executor.submit(task));
+		}
+		int completed = 0;
+		for(Future<?> future : futures) {
+			try {
+				future.get();
+				completed++;
+			} catch (ExecutionException e) {
+				failures.incrementAndGet();
+				log.warn("declined attendee sweep task failed", e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return completed;
+			}
+		}
+		return completed;
+	}
+	/**
+	 *
+	 * @param account
+	 * @return the key of the account's calendar home
+	 */
+	private String accountKey(ICalendarAccount account) {
+		return calendarDataDao.getCaldavDialect().getCalendarAccountHome(account);
+	}
+	/**
+	 * @return the number of queued appointments
+	 */
+	public int getQueued() {
+		synchronized (queue) {
+			return queue.size();
+		}
+	}
+	/**
+	 * @return the number of registered owners
+	 */
+	public int getOwners() {
+		synchronized (owners) {
+			return owners.size();
+		}
+	}
+	/**
+	 * @return the number of appointments purged since startup
+	 */
+	public long getSwept() {
+		return swept.get();
+	}
+	/**
+	 * @return the number of candidates dropped because the queue was full
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+	/**
+	 * @return the number of failed reads and purges since startup
+	 */
+	public long getFailures() {
+		return failures.get();
+	}
+
+	/**
+	 * A queued appointment.
+	 */
+	private static final class Candidate {
+		private final ICalendarAccount owner;
+		private final String href;
+		/**
+		 * @param owner
+		 * @param href
+		 */
+		Candidate(ICalendarAccount owner, String href) {
+			this.owner = owner;
+			this.href = href;
+		}
+	}
+}
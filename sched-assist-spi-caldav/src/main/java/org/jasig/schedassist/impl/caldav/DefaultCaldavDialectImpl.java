@@ -23,6 +23,7 @@ import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.text.SimpleDateFormat;
+import java.util.Collection;
 import java.util.Date;
 import java.util.TimeZone;
 
@@ -30,10 +31,12 @@ import net.fortuna.ical4j.model.Calendar;
 import net.fortuna.ical4j.model.component.VEvent;
 import net.fortuna.ical4j.model.property.ProdId;
 
+import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.commons.lang.Validate;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.HttpEntity;
+import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.jasig.schedassist.model.ICalendarAccount;
 import org.jasig.schedassist.model.IEventUtils;
@@ -65,6 +68,8 @@ public class DefaultCaldavDialectImpl implements CaldavDialect{
 	private String accountHomeSuffix = "/calendar/";
 	private IEventUtils eventUtils;
 	private String userPathSegmentAttributeName = "uid";
+	private boolean syncCollectionSupported = false;
+	private boolean freeBusyQuerySupported = false;
 	private Log log = LogFactory.getLog(this.getClass());
 	
 	/**
@@ -134,6 +139,34 @@ public class DefaultCaldavDialectImpl implements CaldavDialect{
 	public void setEventUtils(IEventUtils eventUtils) {
 		this.eventUtils = eventUtils;
 	}
+	/* (non-Javadoc)
+	 * @see org.jasig.schedassist.impl.caldav.CaldavDialect#isSyncCollectionSupported()
+	 */
+	@Override
+	public boolean isSyncCollectionSupported() {
+		return syncCollectionSupported;
+	}
+	/**
+	 * @param syncCollectionSupported the syncCollectionSupported to set
+	 */
+	@Value("${caldav.syncCollectionSupported:false}")
+	public void setSyncCollectionSupported(boolean syncCollectionSupported) {
+		this.syncCollectionSupported = syncCollectionSupported;
+	}
+	/* (non-Javadoc)
+	 * @see org.jasig.schedassist.impl.caldav.CaldavDialect#isFreeBusyQuerySupported()
+	 */
+	@Override
+	public boolean isFreeBusyQuerySupported() {
+		return freeBusyQuerySupported;
+	}
+	/**
+	 * @param freeBusyQuerySupported the freeBusyQuerySupported to set
+	 */
+	@Value("${caldav.freeBusyQuerySupported:false}")
+	public void setFreeBusyQuerySupported(boolean freeBusyQuerySupported) {
+		this.freeBusyQuerySupported = freeBusyQuerySupported;
+	}
 	
 	
 	/*
@@ -179,6 +212,105 @@ public class DefaultCaldavDialectImpl implements CaldavDialect{
 		log.debug(result);
 		return result;
 	}
+	/* (non-Javadoc)
+	 * @see org.jasig.schedassist.impl.caldav.CaldavDialect#generateSyncCollectionRequestEntity(java.lang.String)
+	 */
+	@Override
+	public HttpEntity generateSyncCollectionRequestEntity(String syncToken) {
+		return createXmlEntity(generateSyncCollectionRequestXML(syncToken));
+	}
+	/**
+	 * Generate the XML that makes up a valid DAV:sync-collection request body that would
+	 * be issued with a REPORT request for the members changed since the sync token.
+	 * 
+	 * @param syncToken
+	 * @return sync-collection XML content for REPORT request
+	 */
+	protected String generateSyncCollectionRequestXML(String syncToken) {
+		StringBuilder content = new StringBuilder();
+		content.append("<?xml version=\"1.0\" encoding=\"utf-8\" ?>");
+		content.append("<D:sync-collection xmlns:D=\"DAV:\">");
+		if(syncToken == null) {
+			content.append("  <D:sync-token/>");
+		} else {
+			content.append("  <D:sync-token>" + StringEscapeUtils.escapeXml(syncToken) + "</D:sync-token>");
+		}
+		content.append("  <D:sync-level>1</D:sync-level>");
+		content.append("  <D:prop>");
+		content.append("    <D:getetag/>");
+		content.append("  </D:prop>");
+		content.append("</D:sync-collection>");
+		String result = content.toString();
+		log.debug(result);
+		return result;
+	}
+	/* (non-Javadoc)
+	 * @see org.jasig.schedassist.impl.caldav.CaldavDialect#generateCalendarMultigetRequestEntity(java.util.Collection)
+	 */
+	@Override
+	public HttpEntity generateCalendarMultigetRequestEntity(Collection<String> hrefs) {
+		return createXmlEntity(generateCalendarMultigetRequestXML(hrefs));
+	}
+	/**
+	 * Generate the XML that makes up a valid CalDAV calendar-multiget request body that would
+	 * be issued with a REPORT request for the specified resources.
+	 * 
+	 * @param hrefs
+	 * @return calendar-multiget XML content for REPORT request
+	 */
+	protected String generateCalendarMultigetRequestXML(Collection<String> hrefs) {
+		StringBuilder content = new StringBuilder();
+		content.append("<?xml version=\"1.0\" encoding=\"utf-8\" ?>");
+		content.append("<C:calendar-multiget xmlns:D=\"DAV:\" xmlns:C=\"urn:ietf:params:xml:ns:caldav\">");
+		content.append("  <D:prop>");
+		content.append("    <D:getetag/>");
+		content.append("    <C:calendar-data/>");
+		content.append("  </D:prop>");
+		for(String href : hrefs) {
+			content.append("  <D:href>" + StringEscapeUtils.escapeXml(href) + "</D:href>");
+		}
+		content.append("</C:calendar-multiget>");
+		String result = content.toString();
+		if(log.isDebugEnabled()) {
+			log.debug(result);
+		}
+		return result;
+	}
+	/* (non-Javadoc)
+	 * @see org.jasig.schedassist.impl.caldav.CaldavDialect#generateFreeBusyQueryRequestEntity(java.util.Date, java.util.Date)
+	 */
+	@Override
+	public HttpEntity generateFreeBusyQueryRequestEntity(Date startDate, Date endDate) {
+		return createXmlEntity(generateFreeBusyQueryRequestXML(startDate, endDate));
+	}
+	/**
+	 * Generate the XML that makes up a valid CalDAV free-busy-query request body that would
+	 * be issued with a REPORT request for the busy time between the specified dates.
+	 * 
+	 * @param startDate
+	 * @param endDate
+	 * @return free-busy-query XML content for REPORT request
+	 */
+	protected String generateFreeBusyQueryRequestXML(Date startDate, Date endDate) {
+		StringBuilder content = new StringBuilder();
+		content.append("<?xml version=\"1.0\" encoding=\"utf-8\" ?>");
+		content.append("<C:free-busy-query xmlns:C=\"urn:ietf:params:xml:ns:caldav\">");
+		content.append("  <C:time-range start=\"" + formatDateTime(startDate) + "\" end=\"" + formatDateTime(endDate) + "\"/>");
+		content.append("</C:free-busy-query>");
+		String result = content.toString();
+		if(log.isDebugEnabled()) {
+			log.debug(result);
+		}
+		return result;
+	}
+	/**
+	 * 
+	 * @param content
+	 * @return a UTF-8 'application/xml' {@link HttpEntity} for the content
+	 */
+	protected HttpEntity createXmlEntity(String content) {
+		return new StringEntity(content, ContentType.create("application/xml", UTF_8));
+	}
 	/*
 	 * (non-Javadoc)
 	 * @see org.jasig.schedassist.impl.caldav.CaldavDialect#generateCreateAppointmentRequestEntity(net.fortuna.ical4j.model.component.VEvent)
@@ -0,0 +1,209 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.jasig.schedassist.impl.caldav;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.Property;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.property.Uid;
+
+import org.jasig.schedassist.model.IEventUtils;
+
+/**
+ * The PUTs and DELETEs needed to bring an owner's stored availability reflections in line with the desired ones.
+ *
+ * Reflections are matched on a hash of their VEVENT content, ignoring the UID and the DTSTAMP, CREATED and
+ * LAST-MODIFIED properties that change every time a reflection is generated. Stored reflections with the same
+ * content as a desired one are left alone. The remaining desired reflections replace the remaining stored ones in place,
+ * preferring a stored reflection with the same UID and otherwise adopting the UID of the stored one, so the resource is
+ * overwritten rather than deleted and recreated. Desired reflections left over are created, stored ones left over deleted.
+ */
+final class ReflectionDiff {
+
+	private final List<Calendar> creates = new ArrayList<Calendar>();
+	private final Map<CalendarWithURI, Calendar> updates = new LinkedHashMap<CalendarWithURI, Calendar>();
+	private final List<CalendarWithURI> deletes = new ArrayList<CalendarWithURI>();
+	private int unchanged = 0;
+
+	/**
+	 *
+	 * @param desired the reflections to store, from {@link IEventUtils#convertScheduleForReflection(org.jasig.schedassist.model.AvailableSchedule)}
+	 * @param existing the stored reflections
+	 * @param eventUtils
+	 */
+	ReflectionDiff(List<Calendar> desired, List<CalendarWithURI> existing, IEventUtils eventUtils) {
+		Map<String, LinkedList<CalendarWithURI>> existingByHash = new HashMap<String, LinkedList<CalendarWithURI>>();
+		Map<String, CalendarWithURI> existingByUri = new LinkedHashMap<String, CalendarWithURI>();
+		for(CalendarWithURI calendar : existing) {
+			if(existingByUri.put(calendar.getUri(), calendar) == null) {
+				String hash = contentHash(calendar.getCalendar());
+				LinkedList<CalendarWithURI> sameHash = existingByHash.get(hash);
+				if(sameHash == null) {
+					sameHash = new LinkedList<CalendarWithURI>();
+					existingByHash.put(hash, sameHash);
+				}
+				sameHash.add(calendar);
+			}
+		}
+
+		List<Calendar> changed = new ArrayList<Calendar>();
+		for(Calendar calendar : desired) {
+			LinkedList<CalendarWithURI> sameHash = existingByHash.get(contentHash(calendar));
+			if(sameHash != null && !sameHash.isEmpty()) {
+				existingByUri.remove(sameHash.removeFirst().getUri());
+				unchanged++;
+			} else {
+				changed.add(calendar);
+			}
+		}
+
+		Map<String, CalendarWithURI> remainingByUid = new HashMap<String, CalendarWithURI>();
+		for(CalendarWithURI calendar : existingByUri.values()) {
+			Uid uid = eventUtils.extractUid(calendar.getCalendar());
+			if(uid != null) {
+				remainingByUid.put(uid.getValue(), calendar);
+			}
+		}
+		List<Calendar> unpaired = new ArrayList<Calendar>();
+		for(Calendar calendar : changed) {
+			Uid uid = eventUtils.extractUid(calendar);
+			CalendarWithURI sameUid = uid != null ? remainingByUid.remove(uid.getValue()) : null;
+			if(sameUid != null) {
+				existingByUri.remove(sameUid.getUri());
+				updates.put(sameUid, calendar);
+			} else {
+				unpaired.add(calendar);
+			}
+		}
+		Iterator<CalendarWithURI> remaining = existingByUri.values().iterator();
+		for(Calendar calendar : unpaired) {
+			Uid uid = eventUtils.extractUid(calendar);
+			CalendarWithURI replaced = null;
+			while(uid != null && replaced == null && remaining.hasNext()) {
+				CalendarWithURI candidate = remaining.next();
+				Uid candidateUid = eventUtils.extractUid(candidate.getCalendar());
+				if(candidateUid != null) {
+					uid.setValue(candidateUid.getValue());
+					replaced = candidate;
+				} else {
+					deletes.add(candidate);
+				}
+				remaining.remove();
+			}
+			if(replaced != null) {
+				updates.put(replaced, calendar);
+			} else {
+				creates.add(calendar);
+			}
+		}
+		while(remaining.hasNext()) {
+			deletes.add(remaining.next());
+		}
+	}
+
+	/**
+	 * @return the desired reflections with no stored counterpart, to be stored as new resources
+	 */
+	List<Calendar> getCreates() {
+		return Collections.unmodifiableList(creates);
+	}
+	/**
+	 * @return the stored reflections to overwrite, each with the desired reflection (carrying its UID) to store in its place
+	 */
+	Map<CalendarWithURI, Calendar> getUpdates() {
+		return Collections.unmodifiableMap(updates);
+	}
+	/**
+	 * @return the stored reflections with no desired counterpart
+	 */
+	List<CalendarWithURI> getDeletes() {
+		return Collections.unmodifiableList(deletes);
+	}
+	/**
+	 * @return the number of desired reflections already stored
+	 */
+	int getUnchanged() {
+		return unchanged;
+	}
+	/**
+	 * @return true if no requests are needed
+	 */
+	boolean isEmpty() {
+		return creates.isEmpty() && updates.isEmpty() && deletes.isEmpty();
+	}
+
+	/**
+	 * The properties of each VEVENT, minus UID, DTSTAMP, CREATED and LAST-MODIFIED, are sorted so the
+	 * hash does not depend on the order the server returns them in.
+	 *
+	 * @param calendar
+	 * @return the SHA-256 hash, in hex, of the content of the VEVENTs in the calendar
+	 */
+	static String contentHash(Calendar calendar) {
+		List<String> events = new ArrayList<String>();
+		for(Object component : calendar.getComponents(VEvent.VEVENT)) {
+			List<String> properties = new ArrayList<String>();
+			for(Object o : ((VEvent) component).getProperties()) {
+				Property property = (Property) o;
+				String name = property.getName();
+				if(!Property.UID.equals(name) && !Property.DTSTAMP.equals(name)
+						&& !Property.CREATED.equals(name) && !Property.LAST_MODIFIED.equals(name)) {
+					properties.add(property.toString());
+				}
+			}
+			Collections.sort(properties);
+			events.add(String.join("", properties));
+		}
+		Collections.sort(events);
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			for(String event : events) {
+				digest.update(event.getBytes(StandardCharsets.UTF_8));
+				digest.update((byte) 0);
+			}
+			return HexFormat.of().formatHex(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ReflectionDiff [creates=" + creates.size() + ", updates=" + updates.size()
+				+ ", deletes=" + deletes.size() + ", unchanged=" + unchanged + "]";
+	}
+}
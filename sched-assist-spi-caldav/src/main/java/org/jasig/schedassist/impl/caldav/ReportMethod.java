@@ -19,24 +19,37 @@
 
 package org.jasig.schedassist.impl.caldav;
 
-import org.apache.http.message.BasicHttpEntityEnclosingRequest;
+import java.net.URI;
+
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
 
 /**
  * Provides "REPORT" HTTP Method.
+ * Like the other {@link HttpEntityEnclosingRequestBase} methods, it can be aborted while executing.
  * 
  * @author Nicholas Blair, nblair@doit.wisc.edu
  * @version $Id: ReportMethod.java $
  */
-public final class ReportMethod extends BasicHttpEntityEnclosingRequest {
+public final class ReportMethod extends HttpEntityEnclosingRequestBase {
 
 	protected static final String REPORT = "REPORT";
 
 	/**
 	 * 
 	 * @param uri
+	 * @throws IllegalArgumentException if the uri is invalid
 	 */
 	public ReportMethod(String uri) {
-		super(REPORT, uri);
+		super();
+		setURI(URI.create(uri));
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.http.client.methods.HttpRequestBase#getMethod()
+	 */
+	@Override
+	public String getMethod() {
+		return REPORT;
 	}
 
 }
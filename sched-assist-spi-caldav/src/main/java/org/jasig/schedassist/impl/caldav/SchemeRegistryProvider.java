@@ -19,9 +19,15 @@
 
 package org.jasig.schedassist.impl.caldav;
 
+import org.apache.http.HttpHost;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
 import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.impl.conn.SchemeRegistryFactory;
 
@@ -58,4 +64,20 @@ public final class SchemeRegistryProvider {
 		
 		return registry;
 	}
+	
+	/**
+	 * Equivalent of {@link #createSchemeRegistry(String, int, boolean)} for {@link CaldavConnectionManager}.
+	 * The port is taken from the {@link HttpHost} of each request, so only the scheme name is registered.
+	 * 
+	 * @param schemeName
+	 * @param useSsl
+	 * @return a {@link Registry} with socket factories for http, https and schemeName
+	 */
+	public static Registry<ConnectionSocketFactory> createSocketFactoryRegistry(String schemeName, boolean useSsl) {
+		return RegistryBuilder.<ConnectionSocketFactory>create()
+				.register("http", PlainConnectionSocketFactory.getSocketFactory())
+				.register("https", SSLConnectionSocketFactory.getSocketFactory())
+				.register(schemeName, useSsl ? SSLConnectionSocketFactory.getSocketFactory() : PlainConnectionSocketFactory.getSocketFactory())
+				.build();
+	}
 }
@@ -0,0 +1,242 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jasig.schedassist.impl.caldav;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Bounded, least recently used cache of the calendar collections of {@link CaldavCalendarDataDaoImpl}'s accounts.
+ *
+ * Each {@link CalendarCollection} holds the resources of one account's calendar home, by href and ETag, along
+ * with the DAV:sync-token they are current as of; {@link CaldavCalendarDataDaoImpl} brings it up to date with
+ * a DAV:sync-collection REPORT before each read, and applies its own writes to it directly.
+ * 
+ * The cached {@link CalendarWithURI}s are shared by all readers and must not be modified.
+ */
+public class SyncCollectionCalendarCache {
+
+	private final Map<String, CalendarCollection> collections;
+
+	/**
+	 *
+	 * @param maxCollections the maximum number of calendar collections to keep
+	 */
+	public SyncCollectionCalendarCache(final int maxCollections) {
+		Validate.isTrue(maxCollections > 0, "maxCollections must be greater than 0");
+		this.collections = new LinkedHashMap<String, CalendarCollection>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CalendarCollection> eldest) {
+				return size() > maxCollections;
+			}
+		};
+	}
+
+	/**
+	 *
+	 * @param collectionUri
+	 * @return the {@link CalendarCollection} for the uri, created if necessary
+	 */
+	CalendarCollection getCollection(String collectionUri) {
+		synchronized (collections) {
+			CalendarCollection collection = collections.get(collectionUri);
+			if(collection == null) {
+				collection = new CalendarCollection();
+				collections.put(collectionUri, collection);
+			}
+			return collection;
+		}
+	}
+	/**
+	 *
+	 * @param collectionUri
+	 * @return the {@link CalendarCollection} for the uri, or null if it is not cached
+	 */
+	CalendarCollection peekCollection(String collectionUri) {
+		synchronized (collections) {
+			return collections.get(collectionUri);
+		}
+	}
+	/**
+	 * Discard the cached collection for the uri.
+	 *
+	 * @param collectionUri
+	 */
+	public void invalidate(String collectionUri) {
+		synchronized (collections) {
+			collections.remove(collectionUri);
+		}
+	}
+	/**
+	 * Remove all collections.
+	 */
+	public void clear() {
+		synchronized (collections) {
+			collections.clear();
+		}
+	}
+	/**
+	 * @return the number of cached collections
+	 */
+	public int getSize() {
+		synchronized (collections) {
+			return collections.size();
+		}
+	}
+
+	/**
+	 * Servers may return hrefs as paths or as absolute URIs; resources are keyed on the path.
+	 *
+	 * @param href
+	 * @return the path of the href
+	 */
+	static String normalizeHref(String href) {
+		if(href == null) {
+			return null;
+		}
+		try {
+			URI uri = URI.create(href);
+			if(uri.isAbsolute() && uri.getRawPath() != null) {
+				return uri.getRawPath();
+			}
+		} catch (IllegalArgumentException e) {
+			// not a valid URI, use as is
+		}
+		return href;
+	}
+
+	/**
+	 * The resources of a single calendar collection as of a sync token.
+	 * A sync-collection REPORT is applied to a {@link #copy()}, without holding the collection's monitor,
+	 * and the copy then replaces the contents of the collection with {@link #replace(CalendarCollection)}. 
+	 */
+	static final class CalendarCollection {
+		private final Map<String, CalendarWithURI> resources = new LinkedHashMap<String, CalendarWithURI>();
+		private String syncToken;
+		private boolean unsupported = false;
+		private long version = 0;
+		private long copiedVersion = -1;
+
+		/**
+		 * @return the sync token the resources are current as of, or null before the first sync
+		 */
+		synchronized String getSyncToken() {
+			return syncToken;
+		}
+		/**
+		 * @param syncToken
+		 */
+		synchronized void setSyncToken(String syncToken) {
+			this.syncToken = syncToken;
+			version++;
+		}
+		/**
+		 * @return true if the server rejected sync-collection REPORTs for this collection
+		 */
+		synchronized boolean isUnsupported() {
+			return unsupported;
+		}
+		/**
+		 * @param unsupported
+		 */
+		synchronized void setUnsupported(boolean unsupported) {
+			this.unsupported = unsupported;
+		}
+		/**
+		 *
+		 * @param href
+		 * @return the cached resource, or null
+		 */
+		synchronized CalendarWithURI get(String href) {
+			return resources.get(normalizeHref(href));
+		}
+		/**
+		 *
+		 * @param calendar
+		 */
+		synchronized void put(CalendarWithURI calendar) {
+			resources.put(normalizeHref(calendar.getUri()), calendar);
+			version++;
+		}
+		/**
+		 *
+		 * @param href
+		 */
+		synchronized void remove(String href) {
+			resources.remove(normalizeHref(href));
+			version++;
+		}
+		/**
+		 * Discard all resources and the sync token.
+		 */
+		synchronized void reset() {
+			resources.clear();
+			syncToken = null;
+			version++;
+		}
+		/**
+		 * @return a copy of the resources and sync token, to bring up to date and then {@link #replace(CalendarCollection)} this collection with
+		 */
+		synchronized CalendarCollection copy() {
+			CalendarCollection copy = new CalendarCollection();
+			copy.resources.putAll(resources);
+			copy.syncToken = syncToken;
+			copy.copiedVersion = version;
+			return copy;
+		}
+		/**
+		 * Replace the resources and sync token with those of the copy, unless this collection changed since 
+		 * the copy was made; the changes would be lost, and the copy may be older than them.
+		 * 
+		 * @param copy a {@link #copy()} of this collection
+		 * @return true if the contents were replaced
+		 */
+		synchronized boolean replace(CalendarCollection copy) {
+			if(copy.copiedVersion != version) {
+				return false;
+			}
+			synchronized (copy) {
+				resources.clear();
+				resources.putAll(copy.resources);
+				syncToken = copy.syncToken;
+			}
+			version++;
+			return true;
+		}
+		/**
+		 * @return a copy of the cached resources
+		 */
+		synchronized List<CalendarWithURI> getResources() {
+			return new ArrayList<CalendarWithURI>(resources.values());
+		}
+		/**
+		 * @return the number of cached resources
+		 */
+		synchronized int size() {
+			return resources.size();
+		}
+	}
+}
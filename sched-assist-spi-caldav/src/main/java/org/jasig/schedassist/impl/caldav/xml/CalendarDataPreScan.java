@@ -0,0 +1,201 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.jasig.schedassist.impl.caldav.xml;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Lexical pre-scan of calendar-data, applied before it is parsed by ical4j.
+ * 
+ * Each VEVENT is read as text, and only its top level STATUS, TRANSP and RECURRENCE-ID properties are
+ * inspected; events that can never cause a conflict (see 
+ * {@link org.jasig.schedassist.impl.caldav.CaldavEventUtilsImpl#willEventCauseConflict(org.jasig.schedassist.model.ICalendarAccount, net.fortuna.ical4j.model.component.VEvent)})
+ * are dropped from the text, so only the events that need their attendees inspected are built.
+ * Recurrence overrides (events with a RECURRENCE-ID) are always kept.
+ * 
+ * Only suitable for callers that use the result for conflict checks; the calendars are incomplete.
+ */
+public class CalendarDataPreScan {
+
+	private static final String BEGIN_VEVENT = "BEGIN:VEVENT";
+	private static final String END_VEVENT = "END:VEVENT";
+	private static final String BEGIN = "BEGIN:";
+	private static final String END = "END:";
+	private static final String STATUS = "STATUS";
+	private static final String TRANSP = "TRANSP";
+	private static final String RECURRENCE_ID = "RECURRENCE-ID";
+
+	private final AtomicLong scannedEvents = new AtomicLong();
+	private final AtomicLong skippedEvents = new AtomicLong();
+
+	/**
+	 * 
+	 * @param properties the top level STATUS, TRANSP and RECURRENCE-ID of the event, by upper case name
+	 * @return true if the event can be dropped
+	 */
+	protected boolean isSkippable(Map<String, String> properties) {
+		if(properties.containsKey(RECURRENCE_ID)) {
+			return false;
+		}
+		return "CANCELLED".equalsIgnoreCase(properties.get(STATUS)) || "TRANSPARENT".equalsIgnoreCase(properties.get(TRANSP));
+	}
+
+	/**
+	 * @return the number of events scanned
+	 */
+	public long getScannedEvents() {
+		return scannedEvents.get();
+	}
+	/**
+	 * @return the number of events dropped
+	 */
+	public long getSkippedEvents() {
+		return skippedEvents.get();
+	}
+
+	/**
+	 * 
+	 * @param source
+	 * @return a {@link PreScanReader} over the source
+	 */
+	PreScanReader newReader(Reader source) {
+		return new PreScanReader(source);
+	}
+
+	/**
+	 * 
+	 * @param line an unfolded content line, without its line terminator
+	 * @return the upper case property name of the line
+	 */
+	static String propertyName(String line) {
+		int end = StringUtils.indexOfAny(line, ";:");
+		return (end < 0 ? line : line.substring(0, end)).trim().toUpperCase();
+	}
+
+	/**
+	 * 
+	 * @param line an unfolded content line, without its line terminator
+	 * @return the value of the line: the text after the first colon outside a quoted parameter value
+	 */
+	static String propertyValue(String line) {
+		boolean quoted = false;
+		for(int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if(c == '"') {
+				quoted = !quoted;
+			} else if(c == ':' && !quoted) {
+				return line.substring(i + 1).trim();
+			}
+		}
+		return "";
+	}
+
+	/**
+	 * {@link Reader} that drops the VEVENTs {@link CalendarDataPreScan#isSkippable(Map)} rejects.
+	 */
+	final class PreScanReader extends LineFilterReader {
+		private int keptEvents = 0;
+		private int droppedEvents = 0;
+
+		/**
+		 * 
+		 * @param source
+		 */
+		PreScanReader(Reader source) {
+			super(source);
+		}
+
+		/**
+		 * @return true if at least one VEVENT was dropped and none were kept
+		 */
+		boolean isEmpty() {
+			return droppedEvents > 0 && keptEvents == 0;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see org.jasig.schedassist.impl.caldav.xml.LineFilterReader#nextChunk()
+		 */
+		@Override
+		protected String nextChunk() throws IOException {
+			String line;
+			while((line = readLine()) != null) {
+				if(!BEGIN_VEVENT.equalsIgnoreCase(line.trim())) {
+					return line;
+				}
+				StringBuilder event = new StringBuilder(line);
+				Map<String, String> properties = new HashMap<String, String>();
+				StringBuilder contentLine = null;
+				int depth = 1;
+				while(depth > 0 && (line = readLine()) != null) {
+					event.append(line);
+					String unterminated = StringUtils.stripEnd(line, "\r\n");
+					if(isFolded(line)) {
+						if(contentLine != null) {
+							contentLine.append(unterminated.substring(1));
+						}
+						continue;
+					}
+					inspect(contentLine, properties);
+					contentLine = null;
+					String trimmed = unterminated.trim();
+					if(StringUtils.startsWithIgnoreCase(trimmed, BEGIN)) {
+						depth++;
+					} else if(StringUtils.startsWithIgnoreCase(trimmed, END)) {
+						depth--;
+					} else if(depth == 1) {
+						contentLine = new StringBuilder(unterminated);
+					}
+				}
+				scannedEvents.incrementAndGet();
+				if(depth > 0 || !END_VEVENT.equalsIgnoreCase(StringUtils.trim(line)) || !isSkippable(properties)) {
+					keptEvents++;
+					return event.toString();
+				}
+				skippedEvents.incrementAndGet();
+				droppedEvents++;
+			}
+			return null;
+		}
+
+		/**
+		 * 
+		 * @param contentLine an unfolded, top level content line of the event, or null
+		 * @param properties updated with the line if it is one of the inspected properties
+		 */
+		private void inspect(StringBuilder contentLine, Map<String, String> properties) {
+			if(contentLine == null) {
+				return;
+			}
+			String line = contentLine.toString();
+			String name = propertyName(line);
+			if(STATUS.equals(name) || TRANSP.equals(name) || RECURRENCE_ID.equals(name)) {
+				properties.put(name, propertyValue(line));
+			}
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.jasig.schedassist.impl.caldav.xml;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Base class for {@link Reader}s that pass iCalendar text through line by line (or component by 
+ * component), dropping or rewriting some of it before the {@link net.fortuna.ical4j.data.CalendarBuilder} sees it.
+ * Line terminators are preserved.
+ */
+abstract class LineFilterReader extends Reader {
+
+	private final BufferedReader source;
+	private String chunk;
+	private int chunkOffset = 0;
+
+	/**
+	 * 
+	 * @param source
+	 */
+	LineFilterReader(Reader source) {
+		this.source = new BufferedReader(source);
+	}
+
+	/**
+	 * 
+	 * @return the next text to pass on, or null at the end of the source
+	 * @throws IOException
+	 */
+	protected abstract String nextChunk() throws IOException;
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.Reader#read(char[], int, int)
+	 */
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if(len == 0) {
+			return 0;
+		}
+		while(chunk == null || chunkOffset == chunk.length()) {
+			chunk = nextChunk();
+			chunkOffset = 0;
+			if(chunk == null) {
+				return -1;
+			}
+		}
+		int read = Math.min(len, chunk.length() - chunkOffset);
+		chunk.getChars(chunkOffset, chunkOffset + read, cbuf, off);
+		chunkOffset += read;
+		return read;
+	}
+
+	/**
+	 * 
+	 * @return the next line of the source, including its line terminator, or null at the end of the source
+	 * @throws IOException
+	 */
+	protected String readLine() throws IOException {
+		StringBuilder line = new StringBuilder();
+		int c;
+		while((c = source.read()) != -1) {
+			line.append((char) c);
+			if(c == '\n') {
+				break;
+			}
+		}
+		return line.length() == 0 ? null : line.toString();
+	}
+
+	/**
+	 * 
+	 * @param line
+	 * @return true if the line continues the previous one (RFC 5545 folding)
+	 */
+	protected static boolean isFolded(String line) {
+		return line.startsWith(" ") || line.startsWith("\t");
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.Reader#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		source.close();
+	}
+}
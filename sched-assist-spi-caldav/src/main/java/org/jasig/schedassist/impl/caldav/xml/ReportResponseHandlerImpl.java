@@ -26,9 +26,11 @@ import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLInputFactory;
@@ -39,6 +41,8 @@ import javax.xml.stream.XMLStreamReader;
 import net.fortuna.ical4j.data.CalendarBuilder;
 import net.fortuna.ical4j.data.ParserException;
 import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.TimeZoneRegistry;
+import net.fortuna.ical4j.model.TimeZoneRegistryFactory;
 import net.fortuna.ical4j.util.CompatibilityHints;
 
 import org.apache.commons.io.input.TeeInputStream;
@@ -55,6 +59,11 @@ import org.jasig.schedassist.impl.caldav.ReportMethod;
  * This class has a static initializer that sets 
  * {@link CompatibilityHints#KEY_RELAXED_UNFOLDING} to true.
  * 
+ * All instances share a single {@link XMLInputFactory}. The text of each 'calendar-data' element is read
+ * from the {@link XMLStreamReader} as the iCalendar parser consumes it, rather than being copied into a String first.
+ * VTIMEZONE components already in the {@link SharedTimeZoneRegistry} are not parsed again; the resulting 
+ * {@link Calendar}s reference the registered instances.
+ * 
  * @author Nicholas Blair
  * @version $ Id: ReportResponseHandlerImpl.java $
  */
@@ -68,19 +77,89 @@ public class ReportResponseHandlerImpl {
 	protected static final String ETAG = "getetag";
 	protected static final String CALDAV_NS = "urn:ietf:params:xml:ns:caldav";
 	protected static final String CALENDAR_DATA = "calendar-data";
+	protected static final XMLInputFactory XML_INPUT_FACTORY = createXMLInputFactory();
 	protected final Log log = LogFactory.getLog(this.getClass());
+	private SharedTimeZoneRegistry timeZoneRegistry = SharedTimeZoneRegistry.getSharedInstance();
+	
+	/**
+	 * Defaults to {@link SharedTimeZoneRegistry#getSharedInstance()}.
+	 * 
+	 * @param timeZoneRegistry the timeZoneRegistry to set
+	 */
+	public void setTimeZoneRegistry(SharedTimeZoneRegistry timeZoneRegistry) {
+		this.timeZoneRegistry = timeZoneRegistry;
+	}
+	
+	/**
+	 * 
+	 * @return the {@link XMLInputFactory} shared by all instances
+	 */
+	private static XMLInputFactory createXMLInputFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		// report text in chunks so calendar-data can be streamed
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+		return factory;
+	}
 	
 	/**
 	 * Extracts a {@link List} of {@link Calendar}s from the {@link InputStream}, if present.
 	 * 
+	 * @see #extractCalendars(InputStream, Consumer)
 	 * @param inputStream
 	 * @return a never null, but possibly empty {@link List} of {@link Calendar}s from the {@link InputStream}
 	 * @throws XmlParsingException in the event the stream could not be properly parsed
 	 */
 	public List<CalendarWithURI> extractCalendars(InputStream inputStream) {
-		List<CalendarWithURI> results = new ArrayList<CalendarWithURI>();
+		return extractCalendars(inputStream, (CalendarDataPreScan) null);
+	}
+	
+	/**
+	 * Extracts a {@link List} of {@link Calendar}s from the {@link InputStream}, applying the {@link CalendarDataPreScan}
+	 * to each 'calendar-data' element first. Calendars left without events by the pre-scan are omitted.
+	 * 
+	 * @param inputStream
+	 * @param preScan the {@link CalendarDataPreScan} to apply, or null for none
+	 * @return a never null, but possibly empty {@link List} of {@link Calendar}s from the {@link InputStream}
+	 * @throws XmlParsingException in the event the stream could not be properly parsed
+	 */
+	public List<CalendarWithURI> extractCalendars(InputStream inputStream, CalendarDataPreScan preScan) {
+		final List<CalendarWithURI> results = new ArrayList<CalendarWithURI>();
+		extractCalendars(inputStream, new Consumer<CalendarWithURI>() {
+			@Override
+			public void accept(CalendarWithURI calendar) {
+				results.add(calendar);
+			}
+		}, preScan);
+		return results;
+	}
+	
+	/**
+	 * Parse the {@link InputStream}, passing each {@link CalendarWithURI} to the {@link Consumer} as soon as
+	 * its 'calendar-data' element has been parsed. 
+	 * Only the calendar being parsed is held in memory, unless debug logging is enabled, in which case
+	 * the response is captured for logging.
+	 * 
+	 * @param inputStream
+	 * @param consumer
+	 * @return the number of {@link CalendarWithURI}s passed to the consumer
+	 * @throws XmlParsingException in the event the stream could not be properly parsed
+	 */
+	public int extractCalendars(InputStream inputStream, Consumer<CalendarWithURI> consumer) {
+		return extractCalendars(inputStream, consumer, null);
+	}
+	
+	/**
+	 * 
+	 * @see #extractCalendars(InputStream, Consumer)
+	 * @param inputStream
+	 * @param consumer
+	 * @param preScan the {@link CalendarDataPreScan} to apply, or null for none
+	 * @return the number of {@link CalendarWithURI}s passed to the consumer
+	 * @throws XmlParsingException in the event the stream could not be properly parsed
+	 */
+	protected int extractCalendars(InputStream inputStream, Consumer<CalendarWithURI> consumer, CalendarDataPreScan preScan) {
+		int count = 0;
 		ByteArrayOutputStream capturedContent = null;
-		XMLInputFactory factory = XMLInputFactory.newInstance();
 		try {
 			InputStream localReference = inputStream;
 			if(log.isDebugEnabled()) {
@@ -92,10 +171,10 @@ public class ReportResponseHandlerImpl {
 			int firstbyte = buffered.read();
 			if(-1 == firstbyte) {
 				// short circuit on empty stream
-				return results;
+				return count;
 			}
 			buffered.reset();
-			XMLStreamReader parser = factory.createXMLStreamReader(buffered);
+			XMLStreamReader parser = XML_INPUT_FACTORY.createXMLStreamReader(buffered);
 			
 			String currentUri = null;
 			String currentEtag = null;
@@ -108,10 +187,13 @@ public class ReportResponseHandlerImpl {
 					} else if (isWebdavEtagElement(name)){
 						currentEtag = parser.getElementText();
 					} else if(isCalendarDataElement(name)) {
-						Calendar cal = extractCalendar(parser.getElementText());
+						CalendarDataReader calendarData = new CalendarDataReader(parser);
+						Calendar cal = extractCalendar(calendarData, preScan);
+						// skip whatever the iCalendar parser left unread
+						calendarData.drain();
 						if(cal != null) {
-							CalendarWithURI withUri = new CalendarWithURI(cal, currentUri, currentEtag);
-							results.add(withUri);
+							consumer.accept(new CalendarWithURI(cal, currentUri, currentEtag));
+							count++;
 						} else if(log.isDebugEnabled()) {
 							log.debug("extractCalendar returned null for " + currentUri + ", skipping");
 						}
@@ -121,7 +203,7 @@ public class ReportResponseHandlerImpl {
 			}
 			
 			if(log.isDebugEnabled()) {
-				log.debug("extracted " + results.size() + " calendar from " + capturedContent.toString());
+				log.debug("extracted " + count + " calendar from " + capturedContent.toString());
 			}
 			
 		} catch (XMLStreamException e) {
@@ -136,7 +218,7 @@ public class ReportResponseHandlerImpl {
 			throw new XmlParsingException("caught IOException in extractCalendars", e);
 		}
 
-		return results;
+		return count;
 	}
 	/**
 	 * 
@@ -181,10 +263,40 @@ public class ReportResponseHandlerImpl {
 	 * @return a {@link Calendar} from the text, or null if not parseable
 	 */
 	protected Calendar extractCalendar(String text) {
-		CalendarBuilder builder = new CalendarBuilder();
+		return extractCalendar(new StringReader(text));
+	}
+	
+	/**
+	 * 
+	 * @param reader
+	 * @return a {@link Calendar} from the reader, or null if not parseable
+	 */
+	protected Calendar extractCalendar(Reader reader) {
+		return extractCalendar(reader, null);
+	}
+	
+	/**
+	 * 
+	 * @param reader
+	 * @param preScan the {@link CalendarDataPreScan} to apply, or null for none
+	 * @return a {@link Calendar} from the reader, or null if not parseable or the pre-scan dropped all of its events
+	 */
+	protected Calendar extractCalendar(Reader reader, CalendarDataPreScan preScan) {
+		CalendarDataPreScan.PreScanReader preScanReader = null;
+		if(preScan != null) {
+			preScanReader = preScan.newReader(reader);
+			reader = preScanReader;
+		}
+		TimeZoneRegistry builderRegistry = TimeZoneRegistryFactory.getInstance().createRegistry();
+		SharedTimeZoneReader sharedTimeZoneReader = new SharedTimeZoneReader(reader, timeZoneRegistry, builderRegistry);
+		CalendarBuilder builder = new CalendarBuilder(builderRegistry);
 		Calendar result;
 		try {
-			result = builder.build(new StringReader(text));
+			result = builder.build(sharedTimeZoneReader);
+			sharedTimeZoneReader.share(result.getComponents());
+			if(preScanReader != null && preScanReader.isEmpty()) {
+				return null;
+			}
 			return result;
 		} catch (IOException e) {
 			log.warn("caught IOException", e);
@@ -194,5 +306,100 @@ public class ReportResponseHandlerImpl {
 			return null;
 		}
 	}
-	
+
+	/**
+	 * {@link Reader} over the text content of the current element of an {@link XMLStreamReader}, 
+	 * read chunk by chunk from the parser.
+	 * Like {@link XMLStreamReader#getElementText()}, comments and processing instructions are skipped and
+	 * a nested element is an error; the parser is left on the element's END_ELEMENT.
+	 */
+	static final class CalendarDataReader extends Reader {
+		private final XMLStreamReader parser;
+		private boolean text = false;
+		private int offset = 0;
+		private boolean ended = false;
+		
+		/**
+		 * 
+		 * @param parser positioned on a START_ELEMENT
+		 */
+		CalendarDataReader(XMLStreamReader parser) {
+			this.parser = parser;
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see java.io.Reader#read(char[], int, int)
+		 */
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			try {
+				return fill(cbuf, off, len);
+			} catch (XMLStreamException e) {
+				throw new IOException("caught XMLStreamException reading element text", e);
+			}
+		}
+		
+		/**
+		 * Consume the remainder of the element's text.
+		 * 
+		 * @throws XMLStreamException
+		 */
+		void drain() throws XMLStreamException {
+			char [] discard = new char[1024];
+			while(fill(discard, 0, discard.length) != -1) {
+				// keep reading
+			}
+		}
+		
+		/**
+		 * 
+		 * @param cbuf
+		 * @param off
+		 * @param len
+		 * @return the number of characters read, or -1 at the end of the element
+		 * @throws XMLStreamException
+		 */
+		private int fill(char[] cbuf, int off, int len) throws XMLStreamException {
+			if(len == 0) {
+				return 0;
+			}
+			while(!ended) {
+				if(text) {
+					int read = parser.getTextCharacters(offset, cbuf, off, len);
+					if(read > 0) {
+						offset += read;
+						return read;
+					}
+					text = false;
+				}
+				switch(parser.next()) {
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+				case XMLStreamConstants.SPACE:
+					text = true;
+					offset = 0;
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					ended = true;
+					break;
+				case XMLStreamConstants.COMMENT:
+				case XMLStreamConstants.PROCESSING_INSTRUCTION:
+					break;
+				default:
+					throw new XMLStreamException("unexpected event in text only element", parser.getLocation());
+				}
+			}
+			return -1;
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see java.io.Reader#close()
+		 */
+		@Override
+		public void close() {
+			// the XMLStreamReader belongs to the caller
+		}
+	}
 }
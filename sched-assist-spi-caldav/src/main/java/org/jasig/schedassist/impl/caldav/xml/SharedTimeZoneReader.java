@@ -0,0 +1,136 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.jasig.schedassist.impl.caldav.xml;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.fortuna.ical4j.model.ComponentList;
+import net.fortuna.ical4j.model.TimeZoneRegistry;
+import net.fortuna.ical4j.model.component.CalendarComponent;
+import net.fortuna.ical4j.model.component.VTimeZone;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * {@link Reader} over iCalendar text that removes the VTIMEZONE components already in a 
+ * {@link SharedTimeZoneRegistry}, registering their shared {@link net.fortuna.ical4j.model.TimeZone}s with 
+ * the {@link TimeZoneRegistry} of the {@link net.fortuna.ical4j.data.CalendarBuilder} instead.
+ * 
+ * Once the calendar is built, {@link #share(ComponentList)} adds the removed components back and 
+ * registers the ones that were parsed.
+ */
+final class SharedTimeZoneReader extends LineFilterReader {
+
+	private static final String BEGIN_VTIMEZONE = "BEGIN:VTIMEZONE";
+	private static final String END_VTIMEZONE = "END:VTIMEZONE";
+	private static final String TZID = "TZID";
+
+	private final SharedTimeZoneRegistry sharedRegistry;
+	private final TimeZoneRegistry builderRegistry;
+	private final List<SharedTimeZoneRegistry.Entry> skipped = new ArrayList<SharedTimeZoneRegistry.Entry>();
+	private final Map<String, String> parsed = new HashMap<String, String>();
+
+	/**
+	 * 
+	 * @param source
+	 * @param sharedRegistry
+	 * @param builderRegistry the {@link TimeZoneRegistry} of the builder reading from this instance
+	 */
+	SharedTimeZoneReader(Reader source, SharedTimeZoneRegistry sharedRegistry, TimeZoneRegistry builderRegistry) {
+		super(source);
+		this.sharedRegistry = sharedRegistry;
+		this.builderRegistry = builderRegistry;
+	}
+
+	/**
+	 * Replace the VTIMEZONEs parsed from this reader with their shared instances, and add the skipped ones.
+	 * 
+	 * @param components the components of the calendar built from this reader
+	 */
+	void share(ComponentList<CalendarComponent> components) {
+		if(!parsed.isEmpty()) {
+			for(int i = 0; i < components.size(); i++) {
+				CalendarComponent component = components.get(i);
+				if(component instanceof VTimeZone) {
+					VTimeZone timezone = (VTimeZone) component;
+					String contentHash = parsed.get(timezone.getTimeZoneId().getValue());
+					if(contentHash != null) {
+						components.set(i, sharedRegistry.intern(contentHash, timezone).getVTimeZone());
+					}
+				}
+			}
+		}
+		for(int i = 0; i < skipped.size(); i++) {
+			components.add(i, skipped.get(i).getVTimeZone());
+		}
+	}
+
+	/**
+	 * 
+	 * @return the next line, or VTIMEZONE component that has to be parsed, or null at the end of the source
+	 * @throws IOException
+	 */
+	@Override
+	protected String nextChunk() throws IOException {
+		String line;
+		while((line = readLine()) != null) {
+			if(!BEGIN_VTIMEZONE.equalsIgnoreCase(line.trim())) {
+				return line;
+			}
+			StringBuilder component = new StringBuilder(line);
+			String tzid = null;
+			boolean inTzid = false;
+			boolean ended = false;
+			while(!ended && (line = readLine()) != null) {
+				component.append(line);
+				if(inTzid && isFolded(line)) {
+					// folded TZID
+					tzid += StringUtils.stripEnd(line.substring(1), "\r\n");
+					continue;
+				}
+				inTzid = false;
+				if(tzid == null && StringUtils.startsWithIgnoreCase(line, TZID) && line.length() > TZID.length()
+						&& (line.charAt(TZID.length()) == ':' || line.charAt(TZID.length()) == ';')) {
+					tzid = StringUtils.stripEnd(StringUtils.substringAfter(line, ":"), "\r\n");
+					inTzid = true;
+				}
+				ended = END_VTIMEZONE.equalsIgnoreCase(line.trim());
+			}
+			if(!ended || tzid == null) {
+				return component.toString();
+			}
+			String contentHash = SharedTimeZoneRegistry.contentHash(component);
+			SharedTimeZoneRegistry.Entry entry = sharedRegistry.lookup(tzid, contentHash);
+			if(entry == null) {
+				parsed.put(tzid, contentHash);
+				return component.toString();
+			}
+			builderRegistry.register(entry.getTimeZone());
+			skipped.add(entry);
+		}
+		return null;
+	}
+}
@@ -0,0 +1,207 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.jasig.schedassist.impl.caldav.xml;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.fortuna.ical4j.model.TimeZone;
+import net.fortuna.ical4j.model.component.VTimeZone;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.lang.Validate;
+
+/**
+ * Bounded, least recently used registry of the VTIMEZONE components seen in CalDAV responses, keyed 
+ * by TZID and a hash of the component's text.
+ * 
+ * Servers repeat the same VTIMEZONE in every calendar-data element; {@link ReportResponseHandlerImpl} 
+ * looks each one up here and, if known, skips it and uses the registered instances instead of parsing it again.
+ * Registered {@link VTimeZone}s are shared by every {@link net.fortuna.ical4j.model.Calendar} they are 
+ * added to and must not be modified.
+ */
+public class SharedTimeZoneRegistry {
+
+	/**
+	 * The default maximum number of timezones in a registry.
+	 */
+	public static final int DEFAULT_MAX_TIMEZONES = 256;
+	private static final SharedTimeZoneRegistry SHARED_INSTANCE = new SharedTimeZoneRegistry(DEFAULT_MAX_TIMEZONES);
+
+	private final Map<String, Entry> timezones;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * 
+	 * @param maxTimezones the maximum number of timezones to keep
+	 */
+	public SharedTimeZoneRegistry(final int maxTimezones) {
+		Validate.isTrue(maxTimezones > 0, "maxTimezones must be greater than 0");
+		this.timezones = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > maxTimezones;
+			}
+		};
+	}
+
+	/**
+	 * @return the registry shared by the process
+	 */
+	public static SharedTimeZoneRegistry getSharedInstance() {
+		return SHARED_INSTANCE;
+	}
+
+	/**
+	 * 
+	 * @param text the text of a VTIMEZONE component, from BEGIN to END
+	 * @return the content hash of the text
+	 */
+	public static String contentHash(CharSequence text) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return Hex.encodeHexString(digest.digest(text.toString().getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+	}
+
+	/**
+	 * 
+	 * @param tzid
+	 * @param contentHash
+	 * @return the registered {@link Entry}, or null
+	 */
+	public Entry lookup(String tzid, String contentHash) {
+		Entry entry;
+		synchronized (timezones) {
+			entry = timezones.get(key(tzid, contentHash));
+		}
+		if(entry != null) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+		}
+		return entry;
+	}
+
+	/**
+	 * Register the timezone, unless one is already registered for the TZID and hash.
+	 * 
+	 * @param contentHash the hash of the text the timezone was parsed from
+	 * @param timezone
+	 * @return the registered {@link Entry} for the TZID and hash
+	 */
+	public Entry intern(String contentHash, VTimeZone timezone) {
+		Validate.notNull(timezone, "timezone cannot be null");
+		String key = key(timezone.getTimeZoneId().getValue(), contentHash);
+		synchronized (timezones) {
+			Entry existing = timezones.get(key);
+			if(existing != null) {
+				return existing;
+			}
+		}
+		// construct outside the lock; a concurrent intern of the same key may win
+		Entry entry = new Entry(timezone);
+		synchronized (timezones) {
+			Entry existing = timezones.get(key);
+			if(existing != null) {
+				return existing;
+			}
+			timezones.put(key, entry);
+			return entry;
+		}
+	}
+
+	/**
+	 * Remove all timezones.
+	 */
+	public void clear() {
+		synchronized (timezones) {
+			timezones.clear();
+		}
+	}
+	/**
+	 * @return the number of registered timezones
+	 */
+	public int getSize() {
+		synchronized (timezones) {
+			return timezones.size();
+		}
+	}
+	/**
+	 * @return the number of lookups that found a registered timezone
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+	/**
+	 * @return the number of lookups that did not
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * 
+	 * @param tzid
+	 * @param contentHash
+	 * @return the registry key
+	 */
+	private static String key(String tzid, String contentHash) {
+		return tzid + " " + contentHash;
+	}
+
+	/**
+	 * A registered {@link VTimeZone}, along with the {@link TimeZone} date properties referencing it resolve to.
+	 */
+	public static final class Entry {
+		private final VTimeZone vTimeZone;
+		private final TimeZone timeZone;
+
+		/**
+		 * 
+		 * @param vTimeZone
+		 */
+		Entry(VTimeZone vTimeZone) {
+			this.vTimeZone = vTimeZone;
+			this.timeZone = new TimeZone(vTimeZone);
+		}
+		/**
+		 * @return the shared {@link VTimeZone}
+		 */
+		public VTimeZone getVTimeZone() {
+			return vTimeZone;
+		}
+		/**
+		 * @return the shared {@link TimeZone}
+		 */
+		public TimeZone getTimeZone() {
+			return timeZone;
+		}
+	}
+}
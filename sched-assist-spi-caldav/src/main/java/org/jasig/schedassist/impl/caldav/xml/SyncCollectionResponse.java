@@ -0,0 +1,81 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jasig.schedassist.impl.caldav.xml;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The changes reported by a DAV:sync-collection REPORT (RFC 6578).
+ */
+public class SyncCollectionResponse {
+
+	private final Map<String, String> changed;
+	private final List<String> removed;
+	private final String syncToken;
+	private final boolean truncated;
+
+	/**
+	 *
+	 * @param changed
+	 * @param removed
+	 * @param syncToken
+	 * @param truncated
+	 */
+	public SyncCollectionResponse(Map<String, String> changed, List<String> removed, String syncToken, boolean truncated) {
+		this.changed = Collections.unmodifiableMap(changed);
+		this.removed = Collections.unmodifiableList(removed);
+		this.syncToken = syncToken;
+		this.truncated = truncated;
+	}
+	/**
+	 * @return the href and ETag of each new or changed member, in response order; the ETag may be null
+	 */
+	public Map<String, String> getChanged() {
+		return changed;
+	}
+	/**
+	 * @return the hrefs of the members removed from the collection
+	 */
+	public List<String> getRemoved() {
+		return removed;
+	}
+	/**
+	 * @return the new sync token
+	 */
+	public String getSyncToken() {
+		return syncToken;
+	}
+	/**
+	 * @return true if the server limited the results, and another REPORT with the new sync token is needed
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "SyncCollectionResponse [changed=" + changed.size() + ", removed=" + removed.size()
+				+ ", syncToken=" + syncToken + ", truncated=" + truncated + "]";
+	}
+}
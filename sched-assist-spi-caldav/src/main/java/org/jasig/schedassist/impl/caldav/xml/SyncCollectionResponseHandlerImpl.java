@@ -0,0 +1,159 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jasig.schedassist.impl.caldav.xml;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.lang.StringUtils;
+import org.jasig.schedassist.impl.caldav.ReportMethod;
+
+/**
+ * StaX based parser for the response body of DAV:sync-collection {@link ReportMethod} requests (RFC 6578).
+ *
+ * Members with a 404 status are reported as removed; all others as changed, along with the ETag
+ * from their 200 propstat. A 507 status on the collection itself marks the response as truncated.
+ */
+public class SyncCollectionResponseHandlerImpl extends ReportResponseHandlerImpl {
+
+	protected static final String RESPONSE = "response";
+	protected static final String PROPSTAT = "propstat";
+	protected static final String STATUS = "status";
+	protected static final String SYNC_TOKEN = "sync-token";
+
+	/**
+	 *
+	 * @param inputStream
+	 * @return the changes in the response
+	 * @throws XmlParsingException in the event the stream could not be properly parsed
+	 */
+	public SyncCollectionResponse extractChanges(InputStream inputStream) {
+		Map<String, String> changed = new LinkedHashMap<String, String>();
+		List<String> removed = new ArrayList<String>();
+		String syncToken = null;
+		boolean truncated = false;
+		try {
+			XMLStreamReader parser = XML_INPUT_FACTORY.createXMLStreamReader(inputStream);
+
+			String href = null;
+			String etag = null;
+			String responseStatus = null;
+			String propstatEtag = null;
+			String propstatStatus = null;
+			boolean inPropstat = false;
+			for (int eventType = parser.next(); eventType != XMLStreamConstants.END_DOCUMENT; eventType = parser.next()) {
+				switch(eventType) {
+				case XMLStreamConstants.START_ELEMENT:
+					QName name = parser.getName();
+					if(isWebdavElement(name, RESPONSE)) {
+						href = null;
+						etag = null;
+						responseStatus = null;
+					} else if(isWebdavHrefElement(name)) {
+						if(href == null) {
+							href = StringUtils.trim(parser.getElementText());
+						}
+					} else if(isWebdavElement(name, PROPSTAT)) {
+						inPropstat = true;
+						propstatEtag = null;
+						propstatStatus = null;
+					} else if(isWebdavElement(name, STATUS)) {
+						if(inPropstat) {
+							propstatStatus = parser.getElementText();
+						} else {
+							responseStatus = parser.getElementText();
+						}
+					} else if(isWebdavEtagElement(name)) {
+						propstatEtag = StringUtils.trimToNull(parser.getElementText());
+					} else if(isWebdavElement(name, SYNC_TOKEN)) {
+						syncToken = StringUtils.trim(parser.getElementText());
+					}
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					QName endName = parser.getName();
+					if(isWebdavElement(endName, PROPSTAT)) {
+						if(propstatEtag != null && (propstatStatus == null || statusCode(propstatStatus) == 200)) {
+							etag = propstatEtag;
+						}
+						inPropstat = false;
+					} else if(isWebdavElement(endName, RESPONSE)) {
+						int statusCode = statusCode(responseStatus);
+						if(statusCode == 404) {
+							removed.add(href);
+						} else if(statusCode == 507) {
+							truncated = true;
+						} else if(href != null) {
+							changed.put(href, etag);
+						}
+					}
+					break;
+				}
+			}
+		} catch (XMLStreamException e) {
+			log.error("caught XMLStreamException in extractChanges", e);
+			throw new XmlParsingException("caught XMLStreamException in extractChanges", e);
+		}
+
+		SyncCollectionResponse result = new SyncCollectionResponse(changed, removed, syncToken, truncated);
+		if(log.isDebugEnabled()) {
+			log.debug("extracted " + result);
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 * @param qname
+	 * @param localPart
+	 * @return true if the argument is a WebDAV element with the local part
+	 */
+	protected boolean isWebdavElement(QName qname, String localPart) {
+		if(qname == null) {
+			return false;
+		} else {
+			return WEBDAV_NS.equals(qname.getNamespaceURI()) && localPart.equals(qname.getLocalPart());
+		}
+	}
+
+	/**
+	 *
+	 * @param status a status line, e.g. 'HTTP/1.1 404 Not Found'
+	 * @return the status code from the status line, or -1 if not present
+	 */
+	static int statusCode(String status) {
+		String [] tokens = StringUtils.split(status);
+		if(tokens == null || tokens.length < 2) {
+			return -1;
+		}
+		try {
+			return Integer.parseInt(tokens[1]);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,280 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.jasig.schedassist.impl.caldav;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.DateTime;
+import net.fortuna.ical4j.model.component.VEvent;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.nio.client.HttpAsyncClient;
+import org.apache.http.protocol.HttpContext;
+import org.jasig.schedassist.ConflictExistsException;
+import org.jasig.schedassist.NullAffiliationSourceImpl;
+import org.jasig.schedassist.SchedulingException;
+import org.jasig.schedassist.impl.caching.RequestMemo;
+import org.jasig.schedassist.model.AvailableBlockBuilder;
+import org.jasig.schedassist.model.CommonDateOperations;
+import org.jasig.schedassist.model.ICalendarAccount;
+import org.jasig.schedassist.model.mock.MockCalendarAccount;
+import org.jasig.schedassist.model.mock.MockScheduleOwner;
+import org.jasig.schedassist.model.mock.MockScheduleVisitor;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+
+/**
+ * Tests for {@link AsyncCaldavCalendarDataDaoImpl}.
+ */
+public class AsyncCaldavCalendarDataDaoImplTest {
+
+	/**
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testGetCalendar() throws Exception {
+		DefaultCaldavDialectImpl dialect = new DefaultCaldavDialectImpl();
+		HttpAsyncClient httpAsyncClient = mockHttpAsyncClient(207,
+				new ClassPathResource("caldav-examples/report-response-single-calendar.xml").getInputStream());
+		AsyncCaldavCalendarDataDaoImpl asyncDao = createDao(dialect, httpAsyncClient);
+
+		Date start = CommonDateOperations.parseDatePhrase("20110502");
+		Date end = CommonDateOperations.parseDatePhrase("20110503");
+		Calendar calendar = asyncDao.getCalendar(mockCalendarAccount(), start, end).get();
+		Assert.assertEquals(1, calendar.getComponents(VEvent.VEVENT).size());
+		asyncDao.destroy();
+	}
+	/**
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testCheckForConflictsFreeBusy() throws Exception {
+		String freeBusy = "BEGIN:VCALENDAR\r\nVERSION:2.0\r\nPRODID:-//Example Corp.//CalDAV Server//EN\r\n"
+				+ "BEGIN:VFREEBUSY\r\nDTSTAMP:20110502T120000Z\r\nDTSTART:20110502T000000Z\r\nDTEND:20110503T000000Z\r\n"
+				+ "FREEBUSY:20110502T150000Z/20110502T160000Z\r\n"
+				+ "END:VFREEBUSY\r\nEND:VCALENDAR\r\n";
+		DefaultCaldavDialectImpl dialect = new DefaultCaldavDialectImpl();
+		dialect.setFreeBusyQuerySupported(true);
+		HttpAsyncClient httpAsyncClient = mockHttpAsyncClient(200,
+				new ByteArrayInputStream(freeBusy.getBytes(StandardCharsets.UTF_8)));
+		AsyncCaldavCalendarDataDaoImpl asyncDao = createDao(dialect, httpAsyncClient);
+
+		Date start = CommonDateOperations.parseDatePhrase("20110502");
+		Date end = CommonDateOperations.parseDatePhrase("20110503");
+		MockScheduleOwner owner = new MockScheduleOwner(mockCalendarAccount(), 1);
+		try {
+			asyncDao.checkForConflicts(owner, AvailableBlockBuilder.createBlock(start, end)).join();
+			Assert.fail("expected ConflictExistsException not thrown");
+		} catch (CompletionException e) {
+			Assert.assertTrue(e.getCause() instanceof ConflictExistsException);
+		}
+		asyncDao.destroy();
+	}
+	/**
+	 * An appointment that can't be found completes exceptionally with a {@link SchedulingException}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testJoinAppointmentNotFound() throws Exception {
+		String empty = "<D:multistatus xmlns:D=\"DAV:\"></D:multistatus>";
+		DefaultCaldavDialectImpl dialect = new DefaultCaldavDialectImpl();
+		HttpAsyncClient httpAsyncClient = mockHttpAsyncClient(207,
+				new ByteArrayInputStream(empty.getBytes(StandardCharsets.UTF_8)));
+		AsyncCaldavCalendarDataDaoImpl asyncDao = createDao(dialect, httpAsyncClient);
+
+		Date start = CommonDateOperations.parseDatePhrase("20110502");
+		Date end = CommonDateOperations.parseDatePhrase("20110503");
+		MockScheduleOwner owner = new MockScheduleOwner(mockCalendarAccount(), 1);
+		MockScheduleVisitor visitor = new MockScheduleVisitor(mockCalendarAccount());
+		VEvent appointment = new VEvent(new DateTime(start), new DateTime(end), "appointment");
+		try {
+			asyncDao.joinAppointment(visitor, owner, appointment).join();
+			Assert.fail("expected SchedulingException not thrown");
+		} catch (CompletionException e) {
+			Assert.assertTrue(e.getCause() instanceof SchedulingException);
+		}
+		asyncDao.destroy();
+	}
+	/**
+	 * A failed request completes exceptionally with a {@link CaldavDataAccessException}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testRequestFailed() throws Exception {
+		HttpAsyncClient httpAsyncClient = mock(HttpAsyncClient.class);
+		doAnswer(invocation -> {
+			FutureCallback<HttpResponse> callback = invocation.getArgument(3);
+			callback.failed(new IOException("connection refused"));
+			return null;
+		}).when(httpAsyncClient).execute((HttpHost) eq(null), isA(HttpRequest.class), isA(HttpContext.class), any());
+		AsyncCaldavCalendarDataDaoImpl asyncDao = createDao(new DefaultCaldavDialectImpl(), httpAsyncClient);
+
+		Date start = CommonDateOperations.parseDatePhrase("20110502");
+		Date end = CommonDateOperations.parseDatePhrase("20110503");
+		try {
+			asyncDao.getCalendar(mockCalendarAccount(), start, end).join();
+			Assert.fail("expected CaldavDataAccessException not thrown");
+		} catch (CompletionException e) {
+			Assert.assertTrue(e.getCause() instanceof CaldavDataAccessException);
+		}
+		asyncDao.destroy();
+	}
+
+	/**
+	 * A created appointment is added to the {@link AppointmentIndex}, and the calling thread's {@link RequestMemo}
+	 * is invalidated for the owner.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testCreateAppointmentIndexed() throws Exception {
+		HttpAsyncClient httpAsyncClient = mockHttpAsyncClient(201, null);
+		AppointmentIndex appointmentIndex = new AppointmentIndex(10);
+		DefaultCaldavDialectImpl dialect = new DefaultCaldavDialectImpl();
+		dialect.setEventUtils(new CaldavEventUtilsImpl(new NullAffiliationSourceImpl()));
+		AsyncCaldavCalendarDataDaoImpl asyncDao = createDao(dialect, httpAsyncClient, appointmentIndex);
+		MockCalendarAccount ownerAccount = new MockCalendarAccount();
+		ownerAccount.setUsername("owner");
+		ownerAccount.setEmailAddress("owner@domain.com");
+		ownerAccount.setDisplayName("OWNER OWNER");
+		ownerAccount.setAttributeValue("uid", "owner");
+		MockCalendarAccount visitorAccount = new MockCalendarAccount();
+		visitorAccount.setUsername("visitor");
+		visitorAccount.setEmailAddress("visitor@domain.com");
+		visitorAccount.setDisplayName("VISITOR VISITOR");
+		MockScheduleOwner owner = new MockScheduleOwner(ownerAccount, 1);
+		MockScheduleVisitor visitor = new MockScheduleVisitor(visitorAccount);
+
+		RequestMemo memo = RequestMemo.begin();
+		try {
+			final AtomicInteger loads = new AtomicInteger();
+			RequestMemo.memoize(ownerAccount, "key", () -> loads.incrementAndGet());
+			VEvent event = asyncDao.createAppointment(visitor, owner, AvailableBlockBuilder.createBlock("20110502-1500", "20110502-1530"), "description").join();
+			RequestMemo.memoize(ownerAccount, "key", () -> loads.incrementAndGet());
+			Assert.assertEquals(2, loads.get());
+
+			AppointmentIndex.Entry entry = appointmentIndex.get(dialect.getCalendarAccountHome(ownerAccount), event.getUid().getValue());
+			Assert.assertNotNull(entry);
+			Assert.assertEquals("\"1\"", entry.getEtag());
+		} finally {
+			memo.end();
+			asyncDao.destroy();
+		}
+	}
+
+	/**
+	 * 
+	 * @param dialect
+	 * @param httpAsyncClient
+	 * @return an initialized {@link AsyncCaldavCalendarDataDaoImpl}
+	 * @throws Exception
+	 */
+	private AsyncCaldavCalendarDataDaoImpl createDao(DefaultCaldavDialectImpl dialect, HttpAsyncClient httpAsyncClient) throws Exception {
+		return createDao(dialect, httpAsyncClient, null);
+	}
+	/**
+	 * 
+	 * @param dialect
+	 * @param httpAsyncClient
+	 * @param appointmentIndex the {@link AppointmentIndex} of the {@link CaldavCalendarDataDaoImpl}, or null
+	 * @return an initialized {@link AsyncCaldavCalendarDataDaoImpl}
+	 * @throws Exception
+	 */
+	private AsyncCaldavCalendarDataDaoImpl createDao(DefaultCaldavDialectImpl dialect, HttpAsyncClient httpAsyncClient,
+			AppointmentIndex appointmentIndex) throws Exception {
+		dialect.setCaldavHost(URI.create("http://localhost:8080/"));
+		CaldavCalendarDataDaoImpl calendarDataDao = new CaldavCalendarDataDaoImpl();
+		calendarDataDao.setCaldavDialect(dialect);
+		calendarDataDao.setAppointmentIndex(appointmentIndex);
+		calendarDataDao.setGetCalendarPerformsPurgeDeclinedAttendees(false);
+		DefaultCredentialsProviderFactoryImpl credentialsProviderFactory = new DefaultCredentialsProviderFactoryImpl();
+		credentialsProviderFactory.setCaldavAdminUsername("username");
+		credentialsProviderFactory.setCaldavAdminPassword("password");
+		calendarDataDao.setCredentialsProviderFactory(credentialsProviderFactory);
+
+		AsyncCaldavCalendarDataDaoImpl asyncDao = new AsyncCaldavCalendarDataDaoImpl();
+		asyncDao.setCalendarDataDao(calendarDataDao);
+		asyncDao.setHttpAsyncClient(httpAsyncClient);
+		asyncDao.setCompletionThreads(1);
+		asyncDao.afterPropertiesSet();
+		return asyncDao;
+	}
+	/**
+	 * 
+	 * @param statusCode
+	 * @param content
+	 * @return a mock {@link HttpAsyncClient} that completes every request with the status code and content
+	 * @throws IOException
+	 */
+	private HttpAsyncClient mockHttpAsyncClient(int statusCode, InputStream content) throws IOException {
+		HttpEntity entity = mock(HttpEntity.class);
+		when(entity.getContent()).thenReturn(content);
+		StatusLine statusLine = mock(StatusLine.class);
+		when(statusLine.getStatusCode()).thenReturn(statusCode);
+		HttpResponse response = mock(HttpResponse.class);
+		when(response.getStatusLine()).thenReturn(statusLine);
+		when(response.getEntity()).thenReturn(entity);
+		when(response.getFirstHeader("ETag")).thenReturn(new BasicHeader("ETag", "\"1\""));
+		HttpAsyncClient httpAsyncClient = mock(HttpAsyncClient.class);
+		doAnswer(invocation -> {
+			FutureCallback<HttpResponse> callback = invocation.getArgument(3);
+			callback.completed(response);
+			return null;
+		}).when(httpAsyncClient).execute((HttpHost) eq(null), isA(HttpRequest.class), isA(HttpContext.class), any());
+		return httpAsyncClient;
+	}
+	/**
+	 * 
+	 * @return a mock {@link ICalendarAccount}
+	 */
+	private ICalendarAccount mockCalendarAccount() {
+		ICalendarAccount calendarAccount = mock(ICalendarAccount.class);
+		when(calendarAccount.getAttributeValue("uid")).thenReturn("username");
+		when(calendarAccount.getEmailAddress()).thenReturn("username@server.edu");
+		return calendarAccount;
+	}
+}
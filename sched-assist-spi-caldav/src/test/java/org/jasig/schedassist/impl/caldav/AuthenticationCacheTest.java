@@ -0,0 +1,106 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.jasig.schedassist.impl.caldav;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.client.AuthCache;
+import org.apache.http.impl.auth.DigestScheme;
+import org.jasig.schedassist.model.mock.MockCalendarAccount;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link AuthenticationCache}.
+ */
+public class AuthenticationCacheTest {
+
+	/**
+	 * 
+	 */
+	@Test
+	public void testCounters() {
+		AuthenticationCache authenticationCache = new AuthenticationCache(10, 300);
+		MockCalendarAccount account = new MockCalendarAccount();
+		account.setUsername("user1");
+		AuthCache authCache = authenticationCache.getAuthCache(account);
+		Assert.assertSame(authCache, authenticationCache.getAuthCache(account));
+		Assert.assertFalse(authenticationCache.isPrimed(authCache));
+
+		// first request answers the challenge, and the client caches the scheme
+		authCache.put(new HttpHost("localhost", 8080), new DigestScheme());
+		authenticationCache.recordResponse(authCache, false, response(200));
+		Assert.assertEquals(1, authenticationCache.getChallengesAnswered());
+		Assert.assertTrue(authenticationCache.isPrimed(authCache));
+
+		authenticationCache.recordResponse(authCache, true, response(207));
+		authenticationCache.recordResponse(authCache, true, response(204));
+		Assert.assertEquals(2, authenticationCache.getChallengesAvoided());
+
+		// rejected: state discarded
+		authenticationCache.recordResponse(authCache, true, response(401));
+		Assert.assertEquals(1, authenticationCache.getAuthenticationFailures());
+		Assert.assertFalse(authenticationCache.isPrimed(authCache));
+		Assert.assertEquals(2, authenticationCache.getChallengesAvoided());
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testBoundsAndExpiry() throws Exception {
+		AuthenticationCache authenticationCache = new AuthenticationCache(2, 1);
+		MockCalendarAccount account1 = new MockCalendarAccount();
+		account1.setUsername("user1");
+		MockCalendarAccount account2 = new MockCalendarAccount();
+		account2.setUsername("user2");
+		MockCalendarAccount account3 = new MockCalendarAccount();
+		account3.setUsername("user3");
+
+		AuthCache authCache = authenticationCache.getAuthCache(account1);
+		Assert.assertNotSame(authCache, authenticationCache.getAuthCache(account2));
+		authenticationCache.getAuthCache(account3);
+		Assert.assertEquals(2, authenticationCache.getSize());
+		Assert.assertNotSame(authCache, authenticationCache.getAuthCache(account1));
+
+		authCache = authenticationCache.getAuthCache(account1);
+		Thread.sleep(1100);
+		Assert.assertNotSame(authCache, authenticationCache.getAuthCache(account1));
+	}
+
+	/**
+	 * 
+	 * @param statusCode
+	 * @return a mock response with the status code
+	 */
+	private HttpResponse response(int statusCode) {
+		StatusLine statusLine = mock(StatusLine.class);
+		when(statusLine.getStatusCode()).thenReturn(statusCode);
+		HttpResponse response = mock(HttpResponse.class);
+		when(response.getStatusLine()).thenReturn(statusLine);
+		return response;
+	}
+}
@@ -22,21 +22,34 @@ package org.jasig.schedassist.impl.caldav;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isA;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.fortuna.ical4j.model.Calendar;
 import net.fortuna.ical4j.model.DateTime;
+import net.fortuna.ical4j.model.Parameter;
+import net.fortuna.ical4j.model.Period;
+import net.fortuna.ical4j.model.PeriodList;
+import net.fortuna.ical4j.model.Property;
 import net.fortuna.ical4j.model.TimeZone;
 import net.fortuna.ical4j.model.TimeZoneRegistry;
 import net.fortuna.ical4j.model.TimeZoneRegistryFactory;
 import net.fortuna.ical4j.model.component.VEvent;
 import net.fortuna.ical4j.model.component.VTimeZone;
+import net.fortuna.ical4j.model.parameter.PartStat;
 import net.fortuna.ical4j.model.property.Uid;
 
 import org.apache.commons.lang.time.DateUtils;
@@ -45,13 +58,30 @@ import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.StatusLine;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.AuthState;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.auth.BasicScheme;
 import org.apache.http.protocol.HttpContext;
+import org.jasig.schedassist.ConflictExistsException;
+import org.jasig.schedassist.NullAffiliationSourceImpl;
+import org.jasig.schedassist.impl.caching.RequestMemo;
+import org.jasig.schedassist.impl.caldav.xml.CalendarDataPreScan;
+import org.jasig.schedassist.model.AvailableBlock;
+import org.jasig.schedassist.model.AvailableBlockBuilder;
+import org.jasig.schedassist.model.CommonDateOperations;
 import org.jasig.schedassist.model.DefaultEventUtilsImpl;
 import org.jasig.schedassist.model.ICalendarAccount;
+import org.jasig.schedassist.model.mock.MockCalendarAccount;
+import org.jasig.schedassist.model.mock.MockScheduleOwner;
+import org.jasig.schedassist.model.mock.MockScheduleVisitor;
 import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
 
@@ -389,4 +419,642 @@ public class CaldavCalendarDataDaoImplTest {
 		Assert.assertNotNull(calendar);
 		
 	}
+
+	/**
+	 * With a {@link SyncCollectionCalendarCache}, the first read performs a full sync and fetches
+	 * the changed resource; the second read only issues the sync-collection REPORT.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testGetCalendarSyncCollection() throws Exception {
+		CaldavCalendarDataDaoImpl calendarDataDao = new CaldavCalendarDataDaoImpl();
+		ICalendarAccount calendarAccount = mock(ICalendarAccount.class);
+		when(calendarAccount.getAttributeValue("uid")).thenReturn("username");
+		when(calendarAccount.getEmailAddress()).thenReturn("username@server.edu");
+		DefaultCaldavDialectImpl dialect = new DefaultCaldavDialectImpl();
+		dialect.setCaldavHost(URI.create("http://localhost:8080/"));
+		dialect.setSyncCollectionSupported(true);
+		calendarDataDao.setCaldavDialect(dialect);
+		DefaultCredentialsProviderFactoryImpl credentialsProviderFactory = new DefaultCredentialsProviderFactoryImpl();
+		credentialsProviderFactory.setCaldavAdminUsername("username");
+		credentialsProviderFactory.setCaldavAdminPassword("password");
+		calendarDataDao.setCredentialsProviderFactory(credentialsProviderFactory);
+		calendarDataDao.setCalendarCache(new SyncCollectionCalendarCache(10));
+
+		String fullSync = "<D:multistatus xmlns:D=\"DAV:\"><D:response><D:href>http://cal.example.com/bernard/work/abcd2.ics</D:href>"
+				+ "<D:propstat><D:prop><D:getetag>\"fffff-abcd2\"</D:getetag></D:prop><D:status>HTTP/1.1 200 OK</D:status></D:propstat>"
+				+ "</D:response><D:sync-token>token-1</D:sync-token></D:multistatus>";
+		String noChanges = "<D:multistatus xmlns:D=\"DAV:\"><D:sync-token>token-1</D:sync-token></D:multistatus>";
+		Resource multiget = new ClassPathResource("caldav-examples/report-response-single-calendar.xml");
+
+		HttpEntity entity = mock(HttpEntity.class);
+		when(entity.getContent()).thenReturn(new ByteArrayInputStream(fullSync.getBytes(StandardCharsets.UTF_8)),
+				multiget.getInputStream(),
+				new ByteArrayInputStream(noChanges.getBytes(StandardCharsets.UTF_8)),
+				new ByteArrayInputStream(noChanges.getBytes(StandardCharsets.UTF_8)));
+		StatusLine statusLine = mock(StatusLine.class);
+		when(statusLine.getStatusCode()).thenReturn(207);
+		HttpResponse response = mock(HttpResponse.class);
+		when(response.getStatusLine()).thenReturn(statusLine);
+		when(response.getEntity()).thenReturn(entity);
+		HttpClient httpClient = mock(HttpClient.class);
+		when(httpClient.execute((HttpHost) eq(null), isA(HttpRequest.class), isA(HttpContext.class))).thenReturn(response);
+		calendarDataDao.setHttpClient(httpClient);
+
+		java.util.Date start = CommonDateOperations.parseDatePhrase("20110502");
+		java.util.Date end = CommonDateOperations.parseDatePhrase("20110503");
+		Calendar calendar = calendarDataDao.getCalendar(calendarAccount, start, end);
+		Assert.assertEquals(1, calendar.getComponents(VEvent.VEVENT).size());
+		verify(httpClient, times(2)).execute((HttpHost) eq(null), isA(HttpRequest.class), isA(HttpContext.class));
+
+		calendar = calendarDataDao.getCalendar(calendarAccount, start, end);
+		Assert.assertEquals(1, calendar.getComponents(VEvent.VEVENT).size());
+		verify(httpClient, times(3)).execute((HttpHost) eq(null), isA(HttpRequest.class), isA(HttpContext.class));
+
+		// cached resource outside of the range
+		calendar = calendarDataDao.getCalendar(calendarAccount, end, DateUtils.addDays(end, 1));
+		Assert.assertEquals(0, calendar.getComponents(VEvent.VEVENT).size());
+	}
+
+	@Test
+	public void testOverlaps() {
+		Assert.assertTrue(CaldavCalendarDataDaoImpl.overlaps(10, 20, 15, 25));
+		Assert.assertTrue(CaldavCalendarDataDaoImpl.overlaps(10, 20, 0, 11));
+		Assert.assertFalse(CaldavCalendarDataDaoImpl.overlaps(10, 20, 20, 30));
+		Assert.assertFalse(CaldavCalendarDataDaoImpl.overlaps(10, 20, 0, 10));
+		// zero duration events
+		Assert.assertTrue(CaldavCalendarDataDaoImpl.overlaps(10, 10, 10, 20));
+		Assert.assertFalse(CaldavCalendarDataDaoImpl.overlaps(20, 20, 10, 20));
+	}
+
+	/**
+	 * FREEBUSY properties other than FBTYPE=FREE are busy; a busy period fails the conflict check.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testFreeBusyQuery() throws Exception {
+		String freeBusy = "BEGIN:VCALENDAR\r\nVERSION:2.0\r\nPRODID:-//Example Corp.//CalDAV Server//EN\r\n"
+				+ "BEGIN:VFREEBUSY\r\nDTSTAMP:20110502T120000Z\r\nDTSTART:20110502T000000Z\r\nDTEND:20110503T000000Z\r\n"
+				+ "FREEBUSY:20110502T150000Z/20110502T160000Z\r\n"
+				+ "FREEBUSY;FBTYPE=BUSY-TENTATIVE:20110502T170000Z/PT30M\r\n"
+				+ "FREEBUSY;FBTYPE=FREE:20110502T190000Z/20110502T200000Z\r\n"
+				+ "END:VFREEBUSY\r\nEND:VCALENDAR\r\n";
+
+		CaldavCalendarDataDaoImpl calendarDataDao = new CaldavCalendarDataDaoImpl();
+		ICalendarAccount calendarAccount = mock(ICalendarAccount.class);
+		when(calendarAccount.getAttributeValue("uid")).thenReturn("username");
+		DefaultCaldavDialectImpl dialect = new DefaultCaldavDialectImpl();
+		dialect.setCaldavHost(URI.create("http://localhost:8080/"));
+		calendarDataDao.setCaldavDialect(dialect);
+		DefaultCredentialsProviderFactoryImpl credentialsProviderFactory = new DefaultCredentialsProviderFactoryImpl();
+		credentialsProviderFactory.setCaldavAdminUsername("username");
+		credentialsProviderFactory.setCaldavAdminPassword("password");
+		calendarDataDao.setCredentialsProviderFactory(credentialsProviderFactory);
+
+		HttpEntity entity = mock(HttpEntity.class);
+		when(entity.getContent()).thenReturn(new ByteArrayInputStream(freeBusy.getBytes(StandardCharsets.UTF_8)),
+				new ByteArrayInputStream(freeBusy.getBytes(StandardCharsets.UTF_8)));
+		StatusLine statusLine = mock(StatusLine.class);
+		when(statusLine.getStatusCode()).thenReturn(200);
+		HttpResponse response = mock(HttpResponse.class);
+		when(response.getStatusLine()).thenReturn(statusLine);
+		when(response.getEntity()).thenReturn(entity);
+		HttpClient httpClient = mock(HttpClient.class);
+		when(httpClient.execute((HttpHost) eq(null), isA(HttpRequest.class), isA(HttpContext.class))).thenReturn(response);
+		calendarDataDao.setHttpClient(httpClient);
+
+		java.util.Date start = CommonDateOperations.parseDatePhrase("20110502");
+		java.util.Date end = CommonDateOperations.parseDatePhrase("20110503");
+		// not supported by the dialect
+		Assert.assertNull(calendarDataDao.getBusyPeriods(calendarAccount, start, end));
+
+		dialect.setFreeBusyQuerySupported(true);
+		PeriodList busyPeriods = calendarDataDao.getBusyPeriods(calendarAccount, start, end);
+		Assert.assertEquals(2, busyPeriods.size());
+		Assert.assertTrue(busyPeriods.contains(new Period(new DateTime("20110502T150000Z"), new DateTime("20110502T160000Z"))));
+
+		MockScheduleOwner owner = new MockScheduleOwner(calendarAccount, 1);
+		try {
+			calendarDataDao.checkForConflicts(owner, AvailableBlockBuilder.createBlock(start, end));
+			Assert.fail("expected ConflictExistsException not thrown");
+		} catch (ConflictExistsException e) {
+			// success
+		}
+	}
+
+	/**
+	 * An indexed appointment is cancelled with a single conditional DELETE; a stale index entry
+	 * falls back to the calendar-query REPORT.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testCancelAppointmentIndexed() throws Exception {
+		CaldavCalendarDataDaoImpl calendarDataDao = new CaldavCalendarDataDaoImpl();
+		ICalendarAccount calendarAccount = mock(ICalendarAccount.class);
+		when(calendarAccount.getAttributeValue("uid")).thenReturn("username");
+		DefaultCaldavDialectImpl dialect = new DefaultCaldavDialectImpl();
+		dialect.setCaldavHost(URI.create("http://localhost:8080"));
+		calendarDataDao.setCaldavDialect(dialect);
+		DefaultCredentialsProviderFactoryImpl credentialsProviderFactory = new DefaultCredentialsProviderFactoryImpl();
+		credentialsProviderFactory.setCaldavAdminUsername("username");
+		credentialsProviderFactory.setCaldavAdminPassword("password");
+		calendarDataDao.setCredentialsProviderFactory(credentialsProviderFactory);
+		AppointmentIndex appointmentIndex = new AppointmentIndex(10);
+		calendarDataDao.setAppointmentIndex(appointmentIndex);
+
+		String accountHome = dialect.getCalendarAccountHome(calendarAccount);
+		appointmentIndex.put(accountHome, "uid-1", accountHome + "uid-1.ics", "\"etag-1\"");
+		VEvent appointment = new VEvent(new DateTime("20110502T150000Z"), new DateTime("20110502T160000Z"), "appointment");
+		appointment.getProperties().add(new Uid("uid-1"));
+		MockScheduleOwner owner = new MockScheduleOwner(calendarAccount, 1);
+		MockScheduleVisitor visitor = new MockScheduleVisitor(calendarAccount);
+
+		StatusLine statusLine = mock(StatusLine.class);
+		when(statusLine.getStatusCode()).thenReturn(204);
+		HttpResponse response = mock(HttpResponse.class);
+		when(response.getStatusLine()).thenReturn(statusLine);
+		HttpClient httpClient = mock(HttpClient.class);
+		when(httpClient.execute((HttpHost) eq(null), isA(HttpRequest.class), isA(HttpContext.class))).thenReturn(response);
+		calendarDataDao.setHttpClient(httpClient);
+
+		calendarDataDao.cancelAppointment(visitor, owner, appointment);
+		ArgumentCaptor<HttpRequest> request = ArgumentCaptor.forClass(HttpRequest.class);
+		verify(httpClient, times(1)).execute((HttpHost) eq(null), request.capture(), isA(HttpContext.class));
+		Assert.assertTrue(request.getValue() instanceof HttpDelete);
+		Assert.assertEquals("http://localhost:8080/ucaldav/user/username/calendar/uid-1.ics", request.getValue().getRequestLine().getUri());
+		Assert.assertEquals("\"etag-1\"", request.getValue().getFirstHeader("If-Match").getValue());
+		Assert.assertEquals(0, appointmentIndex.getSize());
+
+		// stale entry
+		appointmentIndex.put(accountHome, "uid-1", accountHome + "uid-1.ics", "\"etag-0\"");
+		HttpEntity entity = mock(HttpEntity.class);
+		when(entity.getContent()).thenReturn(new ByteArrayInputStream("<D:multistatus xmlns:D=\"DAV:\"/>".getBytes(StandardCharsets.UTF_8)));
+		when(response.getEntity()).thenReturn(null, entity);
+		when(statusLine.getStatusCode()).thenReturn(412, 207);
+		calendarDataDao.cancelAppointment(visitor, owner, appointment);
+		verify(httpClient, times(3)).execute((HttpHost) eq(null), request.capture(), isA(HttpContext.class));
+		Assert.assertTrue(request.getValue() instanceof ReportMethod);
+		Assert.assertEquals(0, appointmentIndex.getSize());
+	}
+	
+	/**
+	 * Appointments for the same block are stored to the same resource with If-None-Match: *; 
+	 * a 412 response means another appointment for the block exists.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testCreateAppointmentIfAbsent() throws Exception {
+		CaldavCalendarDataDaoImpl calendarDataDao = new CaldavCalendarDataDaoImpl();
+		MockCalendarAccount ownerAccount = new MockCalendarAccount();
+		ownerAccount.setUsername("owner");
+		ownerAccount.setEmailAddress("owner@domain.com");
+		ownerAccount.setDisplayName("OWNER OWNER");
+		ownerAccount.setAttributeValue("uid", "owner");
+		MockCalendarAccount visitorAccount = new MockCalendarAccount();
+		visitorAccount.setUsername("visitor");
+		visitorAccount.setEmailAddress("visitor@domain.com");
+		visitorAccount.setDisplayName("VISITOR VISITOR");
+		CaldavEventUtilsImpl eventUtils = new CaldavEventUtilsImpl(new NullAffiliationSourceImpl());
+		calendarDataDao.setEventUtils(eventUtils);
+		DefaultCaldavDialectImpl dialect = new DefaultCaldavDialectImpl();
+		dialect.setCaldavHost(URI.create("http://localhost:8080"));
+		dialect.setEventUtils(eventUtils);
+		calendarDataDao.setCaldavDialect(dialect);
+		DefaultCredentialsProviderFactoryImpl credentialsProviderFactory = new DefaultCredentialsProviderFactoryImpl();
+		credentialsProviderFactory.setCaldavAdminUsername("username");
+		credentialsProviderFactory.setCaldavAdminPassword("password");
+		calendarDataDao.setCredentialsProviderFactory(credentialsProviderFactory);
+		MockScheduleOwner owner = new MockScheduleOwner(ownerAccount, 1);
+		MockScheduleVisitor visitor = new MockScheduleVisitor(visitorAccount);
+		AvailableBlock block = AvailableBlockBuilder.createBlock("20110502-1500", "20110502-1530");
+
+		StatusLine statusLine = mock(StatusLine.class);
+		when(statusLine.getStatusCode()).thenReturn(201, 412);
+		HttpResponse response = mock(HttpResponse.class);
+		when(response.getStatusLine()).thenReturn(statusLine);
+		HttpClient httpClient = mock(HttpClient.class);
+		when(httpClient.execute((HttpHost) eq(null), isA(HttpRequest.class), isA(HttpContext.class))).thenReturn(response);
+		calendarDataDao.setHttpClient(httpClient);
+
+		VEvent event = calendarDataDao.createAppointmentIfAbsent(visitor, owner, block, "description");
+		String uri = calendarDataDao.generateBookingUri(owner, block);
+		Assert.assertTrue(uri.startsWith("http://localhost:8080/ucaldav/user/owner/calendar/"));
+		Assert.assertFalse(uri.contains(event.getUid().getValue()));
+		ArgumentCaptor<HttpRequest> request = ArgumentCaptor.forClass(HttpRequest.class);
+		verify(httpClient, times(1)).execute((HttpHost) eq(null), request.capture(), isA(HttpContext.class));
+		Assert.assertEquals(uri, request.getValue().getRequestLine().getUri());
+		Assert.assertEquals("*", request.getValue().getFirstHeader("If-None-Match").getValue());
+
+		try {
+			calendarDataDao.createAppointmentIfAbsent(visitor, owner, block, "description");
+			Assert.fail("expected ConflictExistsException not thrown");
+		} catch (ConflictExistsException e) {
+			// success
+		}
+		verify(httpClient, times(2)).execute((HttpHost) eq(null), request.capture(), isA(HttpContext.class));
+		Assert.assertEquals(uri, request.getValue().getRequestLine().getUri());
+		Assert.assertEquals(uri, calendarDataDao.generateBookingUri(owner, block));
+		Assert.assertFalse(uri.equals(calendarDataDao.generateBookingUri(owner, AvailableBlockBuilder.createBlock("20110502-1530", "20110502-1600"))));
+	}
+
+	/**
+	 * The booking lookup searches slightly inside the block, so appointments that end as the block starts
+	 * or start as it ends are not conflicts, as in {@link CaldavCalendarDataDaoImpl#checkForConflicts(org.jasig.schedassist.model.IScheduleOwner, AvailableBlock)}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testGetExistingAppointmentOrCheckForConflictsWindow() throws Exception {
+		final List<Date> searched = new ArrayList<Date>();
+		CaldavCalendarDataDaoImpl calendarDataDao = new CaldavCalendarDataDaoImpl() {
+			@Override
+			protected List<CalendarWithURI> getCalendarsInternal(ICalendarAccount calendarAccount, Date startDate, Date endDate, boolean useCache) {
+				searched.add(startDate);
+				searched.add(endDate);
+				return Collections.emptyList();
+			}
+		};
+		MockCalendarAccount ownerAccount = new MockCalendarAccount();
+		ownerAccount.setUsername("owner");
+		calendarDataDao.setEventUtils(new CaldavEventUtilsImpl(new NullAffiliationSourceImpl()));
+		MockScheduleOwner owner = new MockScheduleOwner(ownerAccount, 1);
+		AvailableBlock block = AvailableBlockBuilder.createBlock("20110502-1500", "20110502-1530");
+
+		Assert.assertNull(calendarDataDao.getExistingAppointmentOrCheckForConflicts(owner, block));
+		Assert.assertEquals(DateUtils.addSeconds(block.getStartTime(), 1), searched.get(0));
+		Assert.assertEquals(DateUtils.addSeconds(block.getEndTime(), -1), searched.get(1));
+	}
+
+	/**
+	 * With a {@link DeclinedAttendeeSweeper}, reads queue appointments with declined attendees instead of purging them.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testHandleDeclinedAttendeesQueuesForSweeper() throws Exception {
+		CaldavCalendarDataDaoImpl calendarDataDao = new CaldavCalendarDataDaoImpl();
+		MockCalendarAccount ownerAccount = new MockCalendarAccount();
+		ownerAccount.setUsername("owner");
+		ownerAccount.setEmailAddress("owner@domain.com");
+		ownerAccount.setDisplayName("OWNER OWNER");
+		MockCalendarAccount visitorAccount = new MockCalendarAccount();
+		visitorAccount.setUsername("visitor");
+		visitorAccount.setEmailAddress("visitor@domain.com");
+		visitorAccount.setDisplayName("VISITOR VISITOR");
+		CaldavEventUtilsImpl eventUtils = new CaldavEventUtilsImpl(new NullAffiliationSourceImpl());
+		calendarDataDao.setEventUtils(eventUtils);
+		HttpClient httpClient = mock(HttpClient.class);
+		calendarDataDao.setHttpClient(httpClient);
+		DeclinedAttendeeSweeper sweeper = mock(DeclinedAttendeeSweeper.class);
+		calendarDataDao.setDeclinedAttendeeSweeper(sweeper);
+
+		MockScheduleOwner owner = new MockScheduleOwner(ownerAccount, 1);
+		MockScheduleVisitor visitor = new MockScheduleVisitor(visitorAccount);
+		Date start = DateUtils.addDays(new Date(), 1);
+		AvailableBlock block = AvailableBlockBuilder.createBlock(start, DateUtils.addMinutes(start, 30));
+		VEvent accepted = eventUtils.constructAvailableAppointment(block, owner, visitor, "accepted");
+		VEvent declined = eventUtils.constructAvailableAppointment(block, owner, visitor, "declined");
+		Property visitorAttendee = eventUtils.getAttendeeForUserFromEvent(declined, visitorAccount);
+		visitorAttendee.getParameters().remove(visitorAttendee.getParameter(Parameter.PARTSTAT));
+		visitorAttendee.getParameters().add(PartStat.DECLINED);
+
+		List<CalendarWithURI> calendars = new ArrayList<CalendarWithURI>();
+		calendars.add(new CalendarWithURI(eventUtils.wrapEventInCalendar(accepted), "/ucaldav/user/owner/calendar/accepted.ics", "1"));
+		calendars.add(new CalendarWithURI(eventUtils.wrapEventInCalendar(declined), "/ucaldav/user/owner/calendar/declined.ics", "2"));
+
+		List<CalendarWithURI> results = calendarDataDao.handleDeclinedAttendees(calendars, ownerAccount);
+		Assert.assertEquals(calendars, results);
+		verify(sweeper, times(1)).enqueue(ownerAccount, "/ucaldav/user/owner/calendar/declined.ics");
+		verify(sweeper, times(1)).enqueue(isA(ICalendarAccount.class), isA(String.class));
+		verify(sweeper, times(1)).registerOwner(ownerAccount);
+		verifyZeroInteractions(httpClient);
+
+		// the visitor's own reads do not register it as an owner
+		calendarDataDao.handleDeclinedAttendees(calendars, visitorAccount);
+		verify(sweeper, times(1)).registerOwner(isA(ICalendarAccount.class));
+	}
+
+	/**
+	 * Cached calendars the purge would alter are replaced with copies.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testCopyPurgeCandidates() throws Exception {
+		CaldavCalendarDataDaoImpl calendarDataDao = new CaldavCalendarDataDaoImpl();
+		MockCalendarAccount ownerAccount = new MockCalendarAccount();
+		ownerAccount.setUsername("owner");
+		ownerAccount.setEmailAddress("owner@domain.com");
+		ownerAccount.setDisplayName("OWNER OWNER");
+		MockCalendarAccount visitorAccount = new MockCalendarAccount();
+		visitorAccount.setUsername("visitor");
+		visitorAccount.setEmailAddress("visitor@domain.com");
+		visitorAccount.setDisplayName("VISITOR VISITOR");
+		CaldavEventUtilsImpl eventUtils = new CaldavEventUtilsImpl(new NullAffiliationSourceImpl());
+		calendarDataDao.setEventUtils(eventUtils);
+
+		MockScheduleOwner owner = new MockScheduleOwner(ownerAccount, 1);
+		MockScheduleVisitor visitor = new MockScheduleVisitor(visitorAccount);
+		Date start = DateUtils.addDays(new Date(), 1);
+		AvailableBlock block = AvailableBlockBuilder.createBlock(start, DateUtils.addMinutes(start, 30));
+		VEvent accepted = eventUtils.constructAvailableAppointment(block, owner, visitor, "accepted");
+		VEvent declined = eventUtils.constructAvailableAppointment(block, owner, visitor, "declined");
+		Property visitorAttendee = eventUtils.getAttendeeForUserFromEvent(declined, visitorAccount);
+		visitorAttendee.getParameters().remove(visitorAttendee.getParameter(Parameter.PARTSTAT));
+		visitorAttendee.getParameters().add(PartStat.DECLINED);
+
+		List<CalendarWithURI> calendars = new ArrayList<CalendarWithURI>();
+		calendars.add(new CalendarWithURI(eventUtils.wrapEventInCalendar(accepted), "/ucaldav/user/owner/calendar/accepted.ics", "1"));
+		calendars.add(new CalendarWithURI(eventUtils.wrapEventInCalendar(declined), "/ucaldav/user/owner/calendar/declined.ics", "2"));
+
+		List<CalendarWithURI> results = calendarDataDao.copyPurgeCandidates(calendars, ownerAccount);
+		Assert.assertEquals(2, results.size());
+		Assert.assertSame(calendars.get(0), results.get(0));
+		Assert.assertNotSame(calendars.get(1), results.get(1));
+		Assert.assertNotSame(declined, results.get(1).getCalendar().getComponent(VEvent.VEVENT));
+		Assert.assertEquals(declined, results.get(1).getCalendar().getComponent(VEvent.VEVENT));
+		Assert.assertEquals("/ucaldav/user/owner/calendar/declined.ics", results.get(1).getUri());
+		Assert.assertEquals("2", results.get(1).getEtag());
+	}
+
+	/**
+	 * With a {@link DeclinedAttendeeSweeper}, booking a block still purges a declined appointment in it 
+	 * rather than reporting a conflict.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testGetExistingAppointmentOrCheckForConflictsPurgesDeclined() throws Exception {
+		MockCalendarAccount ownerAccount = new MockCalendarAccount();
+		ownerAccount.setUsername("owner");
+		ownerAccount.setEmailAddress("owner@domain.com");
+		ownerAccount.setDisplayName("OWNER OWNER");
+		MockCalendarAccount visitorAccount = new MockCalendarAccount();
+		visitorAccount.setUsername("visitor");
+		visitorAccount.setEmailAddress("visitor@domain.com");
+		visitorAccount.setDisplayName("VISITOR VISITOR");
+		CaldavEventUtilsImpl eventUtils = new CaldavEventUtilsImpl(new NullAffiliationSourceImpl());
+		MockScheduleOwner owner = new MockScheduleOwner(ownerAccount, 1);
+		MockScheduleVisitor visitor = new MockScheduleVisitor(visitorAccount);
+		Date start = DateUtils.truncate(DateUtils.addDays(new Date(), 1), java.util.Calendar.HOUR);
+		AvailableBlock block = AvailableBlockBuilder.createBlock(start, DateUtils.addMinutes(start, 30));
+		VEvent declined = eventUtils.constructAvailableAppointment(block, owner, visitor, "declined");
+		Property visitorAttendee = eventUtils.getAttendeeForUserFromEvent(declined, visitorAccount);
+		visitorAttendee.getParameters().remove(visitorAttendee.getParameter(Parameter.PARTSTAT));
+		visitorAttendee.getParameters().add(PartStat.DECLINED);
+		final CalendarWithURI calendar = new CalendarWithURI(eventUtils.wrapEventInCalendar(declined), "/ucaldav/user/owner/calendar/declined.ics", "1");
+		final List<CalendarWithURI> deleted = new ArrayList<CalendarWithURI>();
+
+		CaldavCalendarDataDaoImpl calendarDataDao = new CaldavCalendarDataDaoImpl() {
+			@Override
+			protected List<CalendarWithURI> getCalendarsInternal(ICalendarAccount calendarAccount, Date startDate, Date endDate, boolean useCache) {
+				return handleDeclinedAttendees(Collections.singletonList(calendar), calendarAccount);
+			}
+			@Override
+			protected int deleteCalendar(CalendarWithURI calendarWithURI, ICalendarAccount calendarAccount) {
+				deleted.add(calendarWithURI);
+				return 204;
+			}
+		};
+		calendarDataDao.setEventUtils(eventUtils);
+		calendarDataDao.setApplicationEventPublisher(mock(ApplicationEventPublisher.class));
+		calendarDataDao.setDeclinedAttendeeSweeper(mock(DeclinedAttendeeSweeper.class));
+
+		Assert.assertNull(calendarDataDao.getExistingAppointmentOrCheckForConflicts(owner, block));
+		Assert.assertEquals(Collections.singletonList(calendar), deleted);
+	}
+
+	/**
+	 * Only {@link CaldavCalendarDataDaoImpl#checkForConflicts(org.jasig.schedassist.model.IScheduleOwner, AvailableBlock)} 
+	 * pre-scans the calendar-data, and the incomplete calendars it gets are never purged of declined attendees.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testPreScannedCalendarsNotPurged() throws Exception {
+		MockCalendarAccount ownerAccount = new MockCalendarAccount();
+		ownerAccount.setUsername("owner");
+		ownerAccount.setEmailAddress("owner@domain.com");
+		ownerAccount.setDisplayName("OWNER OWNER");
+		MockCalendarAccount visitorAccount = new MockCalendarAccount();
+		visitorAccount.setUsername("visitor");
+		visitorAccount.setEmailAddress("visitor@domain.com");
+		visitorAccount.setDisplayName("VISITOR VISITOR");
+		CaldavEventUtilsImpl eventUtils = new CaldavEventUtilsImpl(new NullAffiliationSourceImpl());
+		MockScheduleOwner owner = new MockScheduleOwner(ownerAccount, 1);
+		MockScheduleVisitor visitor = new MockScheduleVisitor(visitorAccount);
+		Date start = DateUtils.truncate(DateUtils.addDays(new Date(), 1), java.util.Calendar.HOUR);
+		AvailableBlock block = AvailableBlockBuilder.createBlock(start, DateUtils.addMinutes(start, 30));
+		VEvent declined = eventUtils.constructAvailableAppointment(block, owner, visitor, "declined");
+		Property visitorAttendee = eventUtils.getAttendeeForUserFromEvent(declined, visitorAccount);
+		visitorAttendee.getParameters().remove(visitorAttendee.getParameter(Parameter.PARTSTAT));
+		visitorAttendee.getParameters().add(PartStat.DECLINED);
+		final CalendarWithURI calendar = new CalendarWithURI(eventUtils.wrapEventInCalendar(declined), "/ucaldav/user/owner/calendar/declined.ics", "1");
+		final List<CalendarDataPreScan> preScans = new ArrayList<CalendarDataPreScan>();
+		final AtomicInteger purges = new AtomicInteger();
+
+		CaldavCalendarDataDaoImpl calendarDataDao = new CaldavCalendarDataDaoImpl() {
+			@Override
+			protected List<CalendarWithURI> queryCalendars(ICalendarAccount calendarAccount, Date startDate, Date endDate, CalendarDataPreScan preScan) {
+				preScans.add(preScan);
+				return Collections.singletonList(calendar);
+			}
+			@Override
+			protected CalendarWithURI purgeDeclinedAttendees(CalendarWithURI calendarWithURI, ICalendarAccount calendarAccount) {
+				purges.incrementAndGet();
+				return calendarWithURI;
+			}
+		};
+		calendarDataDao.setEventUtils(eventUtils);
+		calendarDataDao.setCaldavDialect(new DefaultCaldavDialectImpl());
+
+		try {
+			calendarDataDao.checkForConflicts(owner, block);
+			Assert.fail("expected ConflictExistsException not thrown");
+		} catch (ConflictExistsException e) {
+			// the appointment occupies the block until a complete read purges it
+		}
+		Assert.assertEquals(1, preScans.size());
+		Assert.assertSame(calendarDataDao.getCalendarDataPreScan(), preScans.get(0));
+		Assert.assertEquals(0, purges.get());
+
+		calendarDataDao.getCalendar(ownerAccount, block.getStartTime(), block.getEndTime());
+		Assert.assertEquals(2, preScans.size());
+		Assert.assertNull(preScans.get(1));
+		Assert.assertEquals(1, purges.get());
+	}
+
+	/**
+	 * Within a {@link RequestMemo}, the owner's appointment is searched for once until the owner's account is written to.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testExistingAppointmentMemoized() throws Exception {
+		final AtomicInteger searches = new AtomicInteger();
+		CaldavCalendarDataDaoImpl calendarDataDao = new CaldavCalendarDataDaoImpl() {
+			@Override
+			protected List<CalendarWithURI> getCalendarsInternal(ICalendarAccount calendarAccount, Date startDate, Date endDate, boolean useCache) {
+				searches.incrementAndGet();
+				return Collections.emptyList();
+			}
+		};
+		MockCalendarAccount ownerAccount = new MockCalendarAccount();
+		ownerAccount.setUsername("owner");
+		MockScheduleOwner owner = new MockScheduleOwner(ownerAccount, 1);
+		AvailableBlock block = AvailableBlockBuilder.createBlock("20110502-1500", "20110502-1530");
+
+		Assert.assertNull(calendarDataDao.getExistingAppointment(owner, block));
+		Assert.assertNull(calendarDataDao.getExistingAppointment(owner, block));
+		Assert.assertEquals(2, searches.get());
+
+		RequestMemo memo = RequestMemo.begin();
+		try {
+			Assert.assertNull(calendarDataDao.getExistingAppointment(owner, block));
+			Assert.assertNull(calendarDataDao.getExistingAppointmentInternal(owner, block.getStartTime(), block.getEndTime()));
+			Assert.assertEquals(3, searches.get());
+			RequestMemo.invalidate(ownerAccount);
+			Assert.assertNull(calendarDataDao.getExistingAppointment(owner, block));
+			Assert.assertEquals(4, searches.get());
+		} finally {
+			memo.end();
+		}
+	}
+
+	/**
+	 * Reflection requests run on the reflection executor; the {@link RequestMemo} of the calling thread
+	 * is invalidated once they complete.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testExecuteReflectionRequestsInvalidatesMemo() throws Exception {
+		CaldavCalendarDataDaoImpl calendarDataDao = new CaldavCalendarDataDaoImpl();
+		calendarDataDao.setReflectionEnabled(true);
+		calendarDataDao.setIncrementalReflection(true);
+		calendarDataDao.setReflectionConcurrency(2);
+		calendarDataDao.afterPropertiesSet();
+		MockCalendarAccount ownerAccount = new MockCalendarAccount();
+		ownerAccount.setUsername("owner");
+		MockScheduleOwner owner = new MockScheduleOwner(ownerAccount, 1);
+		final Thread caller = Thread.currentThread();
+		final AtomicInteger otherThreads = new AtomicInteger();
+		List<Callable<Void>> requests = new ArrayList<Callable<Void>>();
+		for(int i = 0; i < 2; i++) {
+			requests.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					if(Thread.currentThread() != caller) {
+						otherThreads.incrementAndGet();
+					}
+					return null;
+				}
+			});
+		}
+
+		RequestMemo memo = RequestMemo.begin();
+		try {
+			final AtomicInteger loads = new AtomicInteger();
+			RequestMemo.memoize(ownerAccount, "key", () -> loads.incrementAndGet());
+			calendarDataDao.executeReflectionRequests(owner, requests);
+			Assert.assertEquals(2, otherThreads.get());
+			RequestMemo.memoize(ownerAccount, "key", () -> loads.incrementAndGet());
+			Assert.assertEquals(2, loads.get());
+		} finally {
+			memo.end();
+			calendarDataDao.destroy();
+		}
+	}
+
+	/**
+	 * Callers modify the appointment they are given, so each is given a copy of the memoized appointment.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testExistingAppointmentMemoizedCopies() throws Exception {
+		MockCalendarAccount ownerAccount = new MockCalendarAccount();
+		ownerAccount.setUsername("owner");
+		ownerAccount.setEmailAddress("owner@domain.com");
+		ownerAccount.setDisplayName("OWNER OWNER");
+		MockCalendarAccount visitorAccount = new MockCalendarAccount();
+		visitorAccount.setUsername("visitor");
+		visitorAccount.setEmailAddress("visitor@domain.com");
+		visitorAccount.setDisplayName("VISITOR VISITOR");
+		CaldavEventUtilsImpl eventUtils = new CaldavEventUtilsImpl(new NullAffiliationSourceImpl());
+		MockScheduleOwner owner = new MockScheduleOwner(ownerAccount, 1);
+		MockScheduleVisitor visitor = new MockScheduleVisitor(visitorAccount);
+		AvailableBlock block = AvailableBlockBuilder.createBlock("20110502-1500", "20110502-1530");
+		VEvent appointment = eventUtils.constructAvailableAppointment(block, owner, visitor, "description");
+		final CalendarWithURI calendar = new CalendarWithURI(eventUtils.wrapEventInCalendar(appointment), "/ucaldav/user/owner/calendar/a.ics", "1");
+		final AtomicInteger searches = new AtomicInteger();
+		CaldavCalendarDataDaoImpl calendarDataDao = new CaldavCalendarDataDaoImpl() {
+			@Override
+			protected List<CalendarWithURI> getCalendarsInternal(ICalendarAccount calendarAccount, Date startDate, Date endDate, boolean useCache) {
+				searches.incrementAndGet();
+				return Collections.singletonList(calendar);
+			}
+		};
+		calendarDataDao.setEventUtils(eventUtils);
+
+		RequestMemo memo = RequestMemo.begin();
+		try {
+			CalendarWithURI first = calendarDataDao.getExistingAppointmentInternal(owner, block.getStartTime(), block.getEndTime());
+			VEvent event = calendarDataDao.extractSchedulingAssistantAppointment(first);
+			event.getProperties().remove(eventUtils.getAttendeeForUserFromEvent(event, visitorAccount));
+
+			CalendarWithURI second = calendarDataDao.getExistingAppointmentInternal(owner, block.getStartTime(), block.getEndTime());
+			Assert.assertEquals(1, searches.get());
+			Assert.assertNotSame(first.getCalendar(), second.getCalendar());
+			Assert.assertEquals("/ucaldav/user/owner/calendar/a.ics", second.getUri());
+			Assert.assertEquals("1", second.getEtag());
+			Assert.assertNotNull(eventUtils.getAttendeeForUserFromEvent(calendarDataDao.extractSchedulingAssistantAppointment(second), visitorAccount));
+		} finally {
+			memo.end();
+		}
+	}
+
+	/**
+	 * With preemptive authentication enabled, requests carry the admin credentials in the target {@link AuthState}
+	 * of their context, whatever the HttpClient implementation.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testPreemptiveAuthentication() throws Exception {
+		CaldavCalendarDataDaoImpl calendarDataDao = new CaldavCalendarDataDaoImpl();
+		MockCalendarAccount calendarAccount = new MockCalendarAccount();
+		calendarAccount.setUsername("owner");
+		DefaultCaldavDialectImpl dialect = new DefaultCaldavDialectImpl();
+		dialect.setCaldavHost(URI.create("http://localhost:8080/"));
+		calendarDataDao.setCaldavDialect(dialect);
+		AuthScope authScope = new AuthScope("localhost", 8080, AuthScope.ANY_REALM, "basic");
+		DefaultCredentialsProviderFactoryImpl credentialsProviderFactory = new DefaultCredentialsProviderFactoryImpl();
+		credentialsProviderFactory.setCaldavAdminUsername("username");
+		credentialsProviderFactory.setCaldavAdminPassword("password");
+		credentialsProviderFactory.setAuthScope(authScope);
+		calendarDataDao.setCredentialsProviderFactory(credentialsProviderFactory);
+		calendarDataDao.setCaldavAdminAuthScope(authScope);
+		calendarDataDao.setPreemptiveAuthenticationEnabled(true);
+		calendarDataDao.afterPropertiesSet();
+
+		HttpResponse response = mock(HttpResponse.class);
+		StatusLine statusLine = mock(StatusLine.class);
+		when(statusLine.getStatusCode()).thenReturn(204);
+		when(response.getStatusLine()).thenReturn(statusLine);
+		HttpClient httpClient = mock(HttpClient.class);
+		ArgumentCaptor<HttpContext> context = ArgumentCaptor.forClass(HttpContext.class);
+		when(httpClient.execute((HttpHost) eq(null), isA(HttpRequest.class), context.capture())).thenReturn(response);
+		calendarDataDao.setHttpClient(httpClient);
+
+		Assert.assertEquals(204, calendarDataDao.deleteCalendar(new CalendarWithURI(new Calendar(), "/ucaldav/user/owner/calendar/a.ics"), calendarAccount));
+		AuthState authState = HttpClientContext.adapt(context.getValue()).getTargetAuthState();
+		Assert.assertNotNull(authState);
+		Assert.assertTrue(authState.getAuthScheme() instanceof BasicScheme);
+		Assert.assertEquals("username", authState.getCredentials().getUserPrincipal().getName());
+	}
 }
@@ -0,0 +1,123 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.jasig.schedassist.impl.caldav;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.Configurable;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CaldavConnectionManager}.
+ */
+public class CaldavConnectionManagerTest {
+
+	/**
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testLeaseStatistics() throws Exception {
+		CaldavConnectionManager connectionManager = new CaldavConnectionManager(
+				SchemeRegistryProvider.createSocketFactoryRegistry("http", false), 300);
+		connectionManager.setDefaultMaxPerRoute(1);
+		connectionManager.setEvictionIntervalSeconds(0);
+		connectionManager.afterPropertiesSet();
+		try {
+			HttpRoute route = new HttpRoute(new HttpHost("localhost", 8080));
+			HttpClientConnection connection = connectionManager.requestConnection(route, null).get(1, TimeUnit.SECONDS);
+			Assert.assertEquals(1, connectionManager.getLeased());
+			Assert.assertEquals(0, connectionManager.getAvailable());
+			Assert.assertEquals(1, connectionManager.getRouteStatistics().get("http://localhost:8080").getLeased());
+
+			try {
+				connectionManager.requestConnection(route, null).get(10, TimeUnit.MILLISECONDS);
+				Assert.fail("expected ConnectionPoolTimeoutException not thrown");
+			} catch (ConnectionPoolTimeoutException e) {
+				// success
+			}
+			Assert.assertEquals(1, connectionManager.getLeaseTimeouts());
+
+			connectionManager.releaseConnection(connection, null, 30, TimeUnit.SECONDS);
+			Assert.assertEquals(0, connectionManager.getLeased());
+
+			long leases = 0;
+			for(Long count : connectionManager.getLeaseWaitHistogram().values()) {
+				leases += count;
+			}
+			Assert.assertEquals(2, leases);
+		} finally {
+			connectionManager.destroy();
+		}
+	}
+
+	/**
+	 * 
+	 */
+	@Test
+	public void testLeaseWaitHistogram() {
+		CaldavConnectionManager connectionManager = new CaldavConnectionManager(
+				SchemeRegistryProvider.createSocketFactoryRegistry("http", false), 300);
+		connectionManager.recordLeaseWait(0);
+		connectionManager.recordLeaseWait(7);
+		connectionManager.recordLeaseWait(10);
+		connectionManager.recordLeaseWait(60000);
+		Map<String, Long> histogram = connectionManager.getLeaseWaitHistogram();
+		Assert.assertEquals(CaldavConnectionManager.LEASE_WAIT_BUCKETS.length + 1, histogram.size());
+		Assert.assertEquals(Long.valueOf(1), histogram.get("< 1 ms"));
+		Assert.assertEquals(Long.valueOf(1), histogram.get("< 10 ms"));
+		Assert.assertEquals(Long.valueOf(1), histogram.get("< 50 ms"));
+		Assert.assertEquals(Long.valueOf(1), histogram.get(">= 5000 ms"));
+		connectionManager.shutdown();
+	}
+
+	/**
+	 * The clients carry the configured timeouts, and closing one leaves the connection manager running.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testCreateHttpClient() throws Exception {
+		CaldavConnectionManager connectionManager = new CaldavConnectionManager(
+				SchemeRegistryProvider.createSocketFactoryRegistry("http", false), 300);
+		connectionManager.setConnectTimeoutMillis(1000);
+		connectionManager.setSocketTimeoutMillis(2000);
+		connectionManager.setLeaseTimeoutMillis(3000);
+		CloseableHttpClient httpClient = connectionManager.createHttpClient();
+		RequestConfig config = ((Configurable) httpClient).getConfig();
+		Assert.assertEquals(1000, config.getConnectTimeout());
+		Assert.assertEquals(2000, config.getSocketTimeout());
+		Assert.assertEquals(3000, config.getConnectionRequestTimeout());
+
+		httpClient.close();
+		HttpClientConnection connection = connectionManager.requestConnection(new HttpRoute(new HttpHost("localhost", 8080)), null).get(1, TimeUnit.SECONDS);
+		connectionManager.releaseConnection(connection, null, 0, TimeUnit.SECONDS);
+		connectionManager.shutdown();
+	}
+}
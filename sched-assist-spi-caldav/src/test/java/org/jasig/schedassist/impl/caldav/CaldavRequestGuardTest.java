@@ -0,0 +1,284 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.jasig.schedassist.impl.caldav;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.jasig.schedassist.impl.caldav.CaldavRequestGuard.GuardedExecution;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CaldavRequestGuard}.
+ */
+public class CaldavRequestGuardTest {
+
+	private CaldavRequestGuard guard;
+
+	@After
+	public void tearDown() {
+		if(guard != null) {
+			guard.destroy();
+		}
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testCircuitOpensOnFailures() throws Exception {
+		guard = createGuard(4, 50, 60000);
+		Assert.assertEquals("CLOSED", guard.getState());
+		Assert.assertEquals(-1, guard.getFailureRate());
+
+		guard.execute(new HttpGet("http://localhost/a"), respond(200));
+		guard.execute(new HttpGet("http://localhost/a"), respond(503));
+		guard.execute(new HttpGet("http://localhost/a"), respond(207));
+		Assert.assertEquals("CLOSED", guard.getState());
+		try {
+			guard.execute(new HttpGet("http://localhost/a"), fail());
+			Assert.fail("expected IOException");
+		} catch (IOException e) {
+			// success
+		}
+		Assert.assertEquals("OPEN", guard.getState());
+		Assert.assertEquals(1, guard.getCircuitOpenings());
+
+		CountingExecution execution = new CountingExecution(200);
+		try {
+			guard.execute(new HttpPut("http://localhost/a"), execution);
+			Assert.fail("expected CaldavDataAccessException");
+		} catch (CaldavDataAccessException e) {
+			// success
+		}
+		Assert.assertEquals(0, execution.count.get());
+		Assert.assertEquals(1, guard.getCircuitRejections());
+		Assert.assertEquals(0, guard.getActiveWrites());
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testHalfOpen() throws Exception {
+		guard = createGuard(2, 50, 0);
+		guard.setHalfOpenCalls(2);
+		guard.afterPropertiesSet();
+		guard.execute(new HttpGet("http://localhost/a"), respond(500));
+		guard.execute(new HttpGet("http://localhost/a"), respond(500));
+		Assert.assertEquals(1, guard.getCircuitOpenings());
+		Assert.assertEquals("HALF_OPEN", guard.getState());
+
+		// a failed trial opens the circuit again
+		guard.execute(new HttpGet("http://localhost/a"), respond(500));
+		Assert.assertEquals(2, guard.getCircuitOpenings());
+
+		guard.execute(new HttpGet("http://localhost/a"), respond(200));
+		Assert.assertEquals("HALF_OPEN", guard.getState());
+		guard.execute(new HttpGet("http://localhost/a"), respond(200));
+		Assert.assertEquals("CLOSED", guard.getState());
+		Assert.assertEquals(-1, guard.getFailureRate());
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testSlowCallsOpenCircuit() throws Exception {
+		guard = createGuard(2, 100, 60000);
+		guard.setSlowCallThresholdMillis(5);
+		guard.setSlowCallRateThreshold(100);
+		guard.afterPropertiesSet();
+		GuardedExecution slow = new GuardedExecution() {
+			@Override
+			public HttpResponse execute() throws IOException {
+				try {
+					Thread.sleep(20);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+			}
+		};
+		guard.execute(new HttpGet("http://localhost/a"), slow);
+		Assert.assertEquals("CLOSED", guard.getState());
+		guard.execute(new HttpGet("http://localhost/a"), slow);
+		Assert.assertEquals("OPEN", guard.getState());
+	}
+
+	/**
+	 * Reads in flight do not take the slots of writes, and hold their slot until the body is consumed.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testBulkheads() throws Exception {
+		guard = createGuard(10, 50, 60000);
+		guard.setMaxConcurrentReads(1);
+		guard.setMaxConcurrentWrites(1);
+		guard.setBulkheadWaitMillis(0);
+		guard.afterPropertiesSet();
+
+		HttpResponse read = guard.execute(new HttpGet("http://localhost/a"), respondWithBody(207, "<multistatus/>"));
+		Assert.assertEquals(1, guard.getActiveReads());
+		try {
+			guard.execute(new HttpGet("http://localhost/b"), respond(207));
+			Assert.fail("expected CaldavDataAccessException");
+		} catch (CaldavDataAccessException e) {
+			// success
+		}
+		Assert.assertEquals(1, guard.getBulkheadRejections());
+
+		guard.execute(new HttpPut("http://localhost/c"), respond(201));
+		Assert.assertEquals(0, guard.getActiveWrites());
+
+		Assert.assertEquals("<multistatus/>", EntityUtils.toString(read.getEntity()));
+		Assert.assertEquals(0, guard.getActiveReads());
+		guard.execute(new HttpGet("http://localhost/b"), respond(207));
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testDeadlineAbortsRequest() throws Exception {
+		guard = createGuard(10, 50, 60000);
+		guard.setReadDeadlineMillis(50);
+		guard.afterPropertiesSet();
+		final HttpGet request = new HttpGet("http://localhost/a");
+		try {
+			guard.execute(request, new GuardedExecution() {
+				@Override
+				public HttpResponse execute() throws IOException {
+					long giveUp = System.currentTimeMillis() + 5000;
+					while(!request.isAborted() && System.currentTimeMillis() < giveUp) {
+						try {
+							Thread.sleep(5);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					}
+					throw new IOException("aborted");
+				}
+			});
+			Assert.fail("expected IOException");
+		} catch (IOException e) {
+			// success
+		}
+		Assert.assertTrue(request.isAborted());
+		Assert.assertEquals(1, guard.getDeadlinesExceeded());
+		Assert.assertEquals(0, guard.getActiveReads());
+	}
+
+	/**
+	 * 
+	 */
+	@Test
+	public void testIsWrite() {
+		Assert.assertFalse(CaldavRequestGuard.isWrite(new HttpGet("http://localhost/a")));
+		Assert.assertFalse(CaldavRequestGuard.isWrite(new ReportMethod("http://localhost/a")));
+		Assert.assertTrue(CaldavRequestGuard.isWrite(new HttpPut("http://localhost/a")));
+	}
+
+	/**
+	 * 
+	 * @param slidingWindowSize also the minimum calls
+	 * @param failureRateThreshold
+	 * @param openMillis
+	 * @return an initialized guard
+	 */
+	private static CaldavRequestGuard createGuard(int slidingWindowSize, int failureRateThreshold, long openMillis) {
+		CaldavRequestGuard guard = new CaldavRequestGuard();
+		guard.setSlidingWindowSize(slidingWindowSize);
+		guard.setMinimumCalls(slidingWindowSize);
+		guard.setFailureRateThreshold(failureRateThreshold);
+		guard.setOpenMillis(openMillis);
+		guard.afterPropertiesSet();
+		return guard;
+	}
+	/**
+	 * 
+	 * @param statusCode
+	 * @return an execution returning a response with the status code and no body
+	 */
+	private static GuardedExecution respond(final int statusCode) {
+		return new CountingExecution(statusCode);
+	}
+	/**
+	 * 
+	 * @param statusCode
+	 * @param body
+	 * @return an execution returning a response with the status code and a streamed body
+	 */
+	private static GuardedExecution respondWithBody(final int statusCode, final String body) {
+		return new GuardedExecution() {
+			@Override
+			public HttpResponse execute() {
+				BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, statusCode, "");
+				BasicHttpEntity entity = new BasicHttpEntity();
+				InputStream content = new ByteArrayInputStream(body.getBytes());
+				entity.setContent(content);
+				response.setEntity(entity);
+				return response;
+			}
+		};
+	}
+	/**
+	 * 
+	 * @return an execution that fails with an {@link IOException}
+	 */
+	private static GuardedExecution fail() {
+		return new GuardedExecution() {
+			@Override
+			public HttpResponse execute() throws IOException {
+				throw new IOException("connection refused");
+			}
+		};
+	}
+
+	private static class CountingExecution implements GuardedExecution {
+		private final AtomicInteger count = new AtomicInteger();
+		private final int statusCode;
+		CountingExecution(int statusCode) {
+			this.statusCode = statusCode;
+		}
+		@Override
+		public HttpResponse execute() {
+			count.incrementAndGet();
+			return new BasicHttpResponse(HttpVersion.HTTP_1_1, statusCode, "");
+		}
+	}
+}
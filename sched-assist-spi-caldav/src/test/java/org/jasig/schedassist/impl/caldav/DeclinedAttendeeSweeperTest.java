@@ -0,0 +1,140 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.jasig.schedassist.impl.caldav;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+import java.util.Date;
+
+import org.jasig.schedassist.model.mock.MockCalendarAccount;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DeclinedAttendeeSweeper}.
+ */
+public class DeclinedAttendeeSweeperTest {
+
+	/**
+	 * 
+	 */
+	@Test
+	public void testEnqueueAndPurge() {
+		CaldavCalendarDataDaoImpl calendarDataDao = mockCalendarDataDao();
+		DeclinedAttendeeSweeper sweeper = new DeclinedAttendeeSweeper();
+		sweeper.setCalendarDataDao(calendarDataDao);
+		sweeper.setMaxQueueSize(2);
+		sweeper.afterPropertiesSet();
+		try {
+			MockCalendarAccount owner = account("owner");
+			Assert.assertTrue(sweeper.enqueue(owner, "/ucaldav/user/owner/calendar/1.ics"));
+			Assert.assertTrue(sweeper.enqueue(owner, "http://localhost:8080/ucaldav/user/owner/calendar/1.ics"));
+			Assert.assertEquals(1, sweeper.getQueued());
+			Assert.assertTrue(sweeper.enqueue(owner, "/ucaldav/user/owner/calendar/2.ics"));
+			Assert.assertFalse(sweeper.enqueue(owner, "/ucaldav/user/owner/calendar/3.ics"));
+			Assert.assertEquals(1, sweeper.getDropped());
+
+			doThrow(new CaldavDataAccessException("failed")).when(calendarDataDao).purgeDeclinedAttendees(owner, "/ucaldav/user/owner/calendar/2.ics");
+			Assert.assertEquals(1, sweeper.purgeQueued());
+			verify(calendarDataDao, times(1)).purgeDeclinedAttendees(owner, "/ucaldav/user/owner/calendar/1.ics");
+			Assert.assertEquals(0, sweeper.getQueued());
+			Assert.assertEquals(1, sweeper.getSwept());
+			Assert.assertEquals(1, sweeper.getFailures());
+
+			Assert.assertEquals(0, sweeper.purgeQueued());
+		} finally {
+			sweeper.destroy();
+		}
+	}
+
+	/**
+	 * 
+	 */
+	@Test
+	public void testWalkOwners() {
+		CaldavCalendarDataDaoImpl calendarDataDao = mockCalendarDataDao();
+		DeclinedAttendeeSweeper sweeper = new DeclinedAttendeeSweeper();
+		sweeper.setCalendarDataDao(calendarDataDao);
+		sweeper.setOwnersPerSweep(2);
+		sweeper.setMaxOwners(3);
+		sweeper.afterPropertiesSet();
+		try {
+			Assert.assertEquals(0, sweeper.walkOwners());
+			MockCalendarAccount owner1 = account("owner1");
+			MockCalendarAccount owner2 = account("owner2");
+			MockCalendarAccount owner3 = account("owner3");
+			sweeper.registerOwner(owner1);
+			sweeper.registerOwner(owner2);
+			sweeper.registerOwner(owner2);
+			sweeper.registerOwner(owner3);
+			Assert.assertEquals(3, sweeper.getOwners());
+
+			Assert.assertEquals(2, sweeper.walkOwners());
+			verify(calendarDataDao, times(1)).getCalendarsInternal(eq(owner1), any(Date.class), any(Date.class), eq(false));
+			verify(calendarDataDao, times(1)).getCalendarsInternal(eq(owner2), any(Date.class), any(Date.class), eq(false));
+			verify(calendarDataDao, never()).getCalendarsInternal(eq(owner3), any(Date.class), any(Date.class), eq(false));
+
+			// rotation continues with the owner not yet read
+			Assert.assertEquals(2, sweeper.walkOwners());
+			verify(calendarDataDao, times(1)).getCalendarsInternal(eq(owner3), any(Date.class), any(Date.class), eq(false));
+			verify(calendarDataDao, times(2)).getCalendarsInternal(eq(owner1), any(Date.class), any(Date.class), eq(false));
+
+			// the eldest owner is forgotten
+			sweeper.registerOwner(account("owner4"));
+			Assert.assertEquals(3, sweeper.getOwners());
+		} finally {
+			sweeper.destroy();
+		}
+	}
+
+	/**
+	 * 
+	 * @return a mock {@link CaldavCalendarDataDaoImpl} with a {@link DefaultCaldavDialectImpl}
+	 */
+	private CaldavCalendarDataDaoImpl mockCalendarDataDao() {
+		DefaultCaldavDialectImpl dialect = new DefaultCaldavDialectImpl();
+		dialect.setCaldavHost(URI.create("http://localhost:8080"));
+		CaldavCalendarDataDaoImpl calendarDataDao = mock(CaldavCalendarDataDaoImpl.class);
+		when(calendarDataDao.getCaldavDialect()).thenReturn(dialect);
+		return calendarDataDao;
+	}
+	/**
+	 * 
+	 * @param uid
+	 * @return a {@link MockCalendarAccount} with the uid
+	 */
+	private MockCalendarAccount account(String uid) {
+		MockCalendarAccount account = new MockCalendarAccount();
+		account.setUsername(uid);
+		account.setEmailAddress(uid + "@domain.com");
+		account.setDisplayName(uid);
+		account.setAttributeValue("uid", uid);
+		return account;
+	}
+}
@@ -26,6 +26,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.TimeZone;
 
@@ -77,4 +78,36 @@ public class DefaultCaldavDialectImplTest {
 		String requestXml = dialect.generateGetCalendarRequestXML(startDate, endDate);
 		log.info(requestXml);
 	}
+	
+	@Test
+	public void testGenerateSyncCollectionRequestXML() {
+		DefaultCaldavDialectImpl dialect = new DefaultCaldavDialectImpl();
+		Assert.assertFalse(dialect.isSyncCollectionSupported());
+		String initial = dialect.generateSyncCollectionRequestXML(null);
+		Assert.assertTrue(initial.contains("<D:sync-token/>"));
+		Assert.assertTrue(initial.contains("<D:sync-level>1</D:sync-level>"));
+		String subsequent = dialect.generateSyncCollectionRequestXML("http://example.com/sync?a=1&b=2");
+		Assert.assertTrue(subsequent.contains("<D:sync-token>http://example.com/sync?a=1&amp;b=2</D:sync-token>"));
+	}
+	
+	@Test
+	public void testGenerateCalendarMultigetRequestXML() {
+		DefaultCaldavDialectImpl dialect = new DefaultCaldavDialectImpl();
+		String requestXml = dialect.generateCalendarMultigetRequestXML(Arrays.asList("/a.ics", "/b.ics"));
+		Assert.assertTrue(requestXml.contains("<C:calendar-data/>"));
+		Assert.assertTrue(requestXml.contains("<D:href>/a.ics</D:href>"));
+		Assert.assertTrue(requestXml.contains("<D:href>/b.ics</D:href>"));
+	}
+	
+	@Test
+	public void testGenerateFreeBusyQueryRequestXML() throws InputFormatException {
+		Date startDate = CommonDateOperations.parseDatePhrase("20110502");
+		Date endDate = CommonDateOperations.parseDatePhrase("20110509");
+		
+		DefaultCaldavDialectImpl dialect = new DefaultCaldavDialectImpl();
+		Assert.assertFalse(dialect.isFreeBusyQuerySupported());
+		String requestXml = dialect.generateFreeBusyQueryRequestXML(startDate, endDate);
+		Assert.assertTrue(requestXml.contains("<C:free-busy-query xmlns:C=\"urn:ietf:params:xml:ns:caldav\">"));
+		Assert.assertTrue(requestXml.contains("<C:time-range start=\"" + dialect.formatDateTime(startDate) + "\" end=\"" + dialect.formatDateTime(endDate) + "\"/>"));
+	}
 }
@@ -0,0 +1,123 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.jasig.schedassist.impl.caldav;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+
+import net.fortuna.ical4j.model.Calendar;
+
+import org.jasig.schedassist.NullAffiliationSourceImpl;
+import org.jasig.schedassist.model.AvailableBlock;
+import org.jasig.schedassist.model.AvailableBlockBuilder;
+import org.jasig.schedassist.model.AvailableSchedule;
+import org.jasig.schedassist.model.CommonDateOperations;
+import org.jasig.schedassist.model.IEventUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ReflectionDiff}.
+ */
+public class ReflectionDiffTest {
+
+	private final IEventUtils eventUtils = new CaldavEventUtilsImpl(new NullAffiliationSourceImpl());
+
+	/**
+	 * Reflections generated again for the same schedule differ only in UID and timestamps, and need no requests.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testUnchanged() throws Exception {
+		AvailableSchedule schedule = new AvailableSchedule(createBlocks("9:00 AM", "3:00 PM", "MWF"));
+		List<CalendarWithURI> existing = store(eventUtils.convertScheduleForReflection(schedule));
+		Thread.sleep(1000);
+		List<Calendar> desired = eventUtils.convertScheduleForReflection(schedule);
+		Assert.assertNotEquals(eventUtils.extractUid(desired.get(0)), eventUtils.extractUid(existing.get(0).getCalendar()));
+
+		ReflectionDiff diff = new ReflectionDiff(desired, existing, eventUtils);
+		Assert.assertTrue(diff.isEmpty());
+		Assert.assertEquals(1, diff.getUnchanged());
+	}
+
+	/**
+	 * Changed reflections overwrite stored ones, taking their UID; extra stored reflections are deleted
+	 * and extra desired ones created.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testChanged() throws Exception {
+		SortedSet<AvailableBlock> blocks = createBlocks("9:00 AM", "3:00 PM", "MWF");
+		blocks.addAll(createBlocks("4:00 PM", "5:00 PM", "TR"));
+		List<CalendarWithURI> existing = store(eventUtils.convertScheduleForReflection(new AvailableSchedule(blocks)));
+		Assert.assertEquals(2, existing.size());
+
+		// 9-3 unchanged, 4-5 moved to 4-6
+		blocks = createBlocks("9:00 AM", "3:00 PM", "MWF");
+		blocks.addAll(createBlocks("4:00 PM", "6:00 PM", "TR"));
+		ReflectionDiff diff = new ReflectionDiff(eventUtils.convertScheduleForReflection(new AvailableSchedule(blocks)), existing, eventUtils);
+		Assert.assertEquals(1, diff.getUnchanged());
+		Assert.assertEquals(1, diff.getUpdates().size());
+		Assert.assertEquals(0, diff.getCreates().size());
+		Assert.assertEquals(0, diff.getDeletes().size());
+		CalendarWithURI replaced = diff.getUpdates().keySet().iterator().next();
+		Assert.assertEquals(eventUtils.extractUid(replaced.getCalendar()), eventUtils.extractUid(diff.getUpdates().get(replaced)));
+
+		// 4-5 removed
+		diff = new ReflectionDiff(eventUtils.convertScheduleForReflection(new AvailableSchedule(createBlocks("9:00 AM", "3:00 PM", "MWF"))), existing, eventUtils);
+		Assert.assertEquals(1, diff.getUnchanged());
+		Assert.assertEquals(1, diff.getDeletes().size());
+		Assert.assertTrue(diff.getUpdates().isEmpty());
+
+		// nothing stored
+		diff = new ReflectionDiff(eventUtils.convertScheduleForReflection(new AvailableSchedule(blocks)), new ArrayList<CalendarWithURI>(), eventUtils);
+		Assert.assertEquals(2, diff.getCreates().size());
+	}
+
+	/**
+	 * 
+	 * @param startTime
+	 * @param endTime
+	 * @param daysOfWeek
+	 * @return blocks for the week of August 8, 2010
+	 * @throws Exception
+	 */
+	private SortedSet<AvailableBlock> createBlocks(String startTime, String endTime, String daysOfWeek) throws Exception {
+		return AvailableBlockBuilder.createBlocks(startTime, endTime, daysOfWeek,
+				CommonDateOperations.parseDatePhrase("20100808"), CommonDateOperations.parseDatePhrase("20100814"));
+	}
+	/**
+	 * 
+	 * @param calendars
+	 * @return the calendars as if stored and retrieved from the server
+	 */
+	private List<CalendarWithURI> store(List<Calendar> calendars) {
+		List<CalendarWithURI> results = new ArrayList<CalendarWithURI>();
+		for(Calendar calendar : calendars) {
+			String uid = eventUtils.extractUid(calendar).getValue();
+			results.add(new CalendarWithURI(calendar, "/ucaldav/user/owner/calendar/" + uid + ".ics", "\"etag-" + uid + "\""));
+		}
+		return results;
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jasig.schedassist.impl.caldav;
+
+import net.fortuna.ical4j.model.Calendar;
+
+import org.jasig.schedassist.impl.caldav.SyncCollectionCalendarCache.CalendarCollection;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SyncCollectionCalendarCache}.
+ */
+public class SyncCollectionCalendarCacheTest {
+
+	@Test
+	public void testNormalizeHref() {
+		Assert.assertEquals("/ucaldav/user/somebody/calendar/a.ics",
+				SyncCollectionCalendarCache.normalizeHref("http://localhost:8080/ucaldav/user/somebody/calendar/a.ics"));
+		Assert.assertEquals("/ucaldav/user/somebody/calendar/a.ics",
+				SyncCollectionCalendarCache.normalizeHref("/ucaldav/user/somebody/calendar/a.ics"));
+		Assert.assertNull(SyncCollectionCalendarCache.normalizeHref(null));
+	}
+
+	@Test
+	public void testCollection() {
+		SyncCollectionCalendarCache cache = new SyncCollectionCalendarCache(10);
+		CalendarCollection collection = cache.getCollection("http://localhost:8080/ucaldav/user/somebody/calendar/");
+		Assert.assertSame(collection, cache.peekCollection("http://localhost:8080/ucaldav/user/somebody/calendar/"));
+
+		collection.put(new CalendarWithURI(new Calendar(), "http://localhost:8080/ucaldav/user/somebody/calendar/a.ics", "\"1\""));
+		Assert.assertEquals("\"1\"", collection.get("/ucaldav/user/somebody/calendar/a.ics").getEtag());
+		collection.put(new CalendarWithURI(new Calendar(), "/ucaldav/user/somebody/calendar/a.ics", "\"2\""));
+		Assert.assertEquals(1, collection.size());
+		Assert.assertEquals("\"2\"", collection.get("http://localhost:8080/ucaldav/user/somebody/calendar/a.ics").getEtag());
+
+		collection.setSyncToken("token");
+		collection.reset();
+		Assert.assertNull(collection.getSyncToken());
+		Assert.assertEquals(0, collection.size());
+	}
+
+	@Test
+	public void testCopyReplace() {
+		SyncCollectionCalendarCache cache = new SyncCollectionCalendarCache(10);
+		CalendarCollection collection = cache.getCollection("http://localhost:8080/ucaldav/user/somebody/calendar/");
+		collection.put(new CalendarWithURI(new Calendar(), "/ucaldav/user/somebody/calendar/a.ics", "\"1\""));
+
+		CalendarCollection copy = collection.copy();
+		copy.put(new CalendarWithURI(new Calendar(), "/ucaldav/user/somebody/calendar/b.ics", "\"1\""));
+		copy.setSyncToken("token2");
+		Assert.assertEquals(1, collection.size());
+		Assert.assertTrue(collection.replace(copy));
+		Assert.assertEquals(2, collection.size());
+		Assert.assertEquals("token2", collection.getSyncToken());
+
+		// a write to the collection after the copy was made wins
+		copy = collection.copy();
+		copy.remove("/ucaldav/user/somebody/calendar/a.ics");
+		collection.put(new CalendarWithURI(new Calendar(), "/ucaldav/user/somebody/calendar/a.ics", "\"2\""));
+		Assert.assertFalse(collection.replace(copy));
+		Assert.assertEquals("\"2\"", collection.get("/ucaldav/user/somebody/calendar/a.ics").getEtag());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEviction() {
+		SyncCollectionCalendarCache cache = new SyncCollectionCalendarCache(2);
+		cache.getCollection("a");
+		cache.getCollection("b");
+		// touch a, so b is eldest
+		cache.getCollection("a");
+		cache.getCollection("c");
+		Assert.assertEquals(2, cache.getSize());
+		Assert.assertNotNull(cache.peekCollection("a"));
+		Assert.assertNull(cache.peekCollection("b"));
+		Assert.assertNotNull(cache.peekCollection("c"));
+	}
+}
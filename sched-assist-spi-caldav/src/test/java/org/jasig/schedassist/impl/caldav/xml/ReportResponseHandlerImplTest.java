@@ -22,12 +22,17 @@
  */
 package org.jasig.schedassist.impl.caldav.xml;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import net.fortuna.ical4j.model.Calendar;
 import net.fortuna.ical4j.model.ComponentList;
 import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.component.VTimeZone;
 import net.fortuna.ical4j.model.parameter.Cn;
 import net.fortuna.ical4j.model.property.Organizer;
 import net.fortuna.ical4j.model.property.ProdId;
@@ -173,4 +178,158 @@ public class ReportResponseHandlerImplTest {
 			Assert.assertNotNull(withUri.getUri());
 		}
 	}
+	
+	@Test
+	public void testStreamingMultipleCalendarResponse() throws IOException {
+		Resource controlExample = new ClassPathResource("caldav-examples/report-response-multiple-calendars.xml");
+		
+		ReportResponseHandlerImpl handler = new ReportResponseHandlerImpl();
+		final List<String> uris = new ArrayList<String>();
+		int count = handler.extractCalendars(controlExample.getInputStream(), new Consumer<CalendarWithURI>() {
+			@Override
+			public void accept(CalendarWithURI calendar) {
+				Assert.assertNotNull(calendar.getCalendar());
+				uris.add(calendar.getUri());
+			}
+		});
+		Assert.assertEquals(2, count);
+		Assert.assertEquals(2, uris.size());
+		Assert.assertEquals("http://cal.example.com/bernard/work/abcd2.ics", uris.get(0));
+		Assert.assertEquals("http://cal.example.com/bernard/work/abcd3.ics", uris.get(1));
+	}
+	
+	/**
+	 * calendar-data that is escaped rather than in CDATA, interleaved with comments, and large enough
+	 * to be reported by the XML parser in several chunks; unparseable calendar-data is skipped.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testStreamingEscapedCalendarData() throws IOException {
+		StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
+		xml.append("<D:multistatus xmlns:D=\"DAV:\" xmlns:C=\"urn:ietf:params:xml:ns:caldav\">\n");
+		final int calendars = 50;
+		for(int i = 0; i < calendars; i++) {
+			xml.append("<D:response><D:href>/calendars/event").append(i).append(".ics</D:href><D:propstat><D:prop>");
+			xml.append("<D:getetag>\"etag-").append(i).append("\"</D:getetag>");
+			xml.append("<C:calendar-data>BEGIN:VCALENDAR\r\nVERSION:2.0\r\nPRODID:-//test//EN\r\n<!-- comment -->");
+			xml.append("BEGIN:VEVENT\r\nUID:event").append(i).append("\r\nDTSTAMP:20110502T181421Z\r\n");
+			xml.append("DTSTART:20110502T150000Z\r\nDTEND:20110502T160000Z\r\n");
+			xml.append("SUMMARY:lunch &amp; learn &lt;").append(i).append("&gt;\r\n");
+			xml.append("DESCRIPTION:");
+			for(int j = 0; j < 100; j++) {
+				xml.append("a long description ");
+			}
+			xml.append("\r\nEND:VEVENT\r\nEND:VCALENDAR\r\n</C:calendar-data>");
+			xml.append("</D:prop><D:status>HTTP/1.1 200 OK</D:status></D:propstat></D:response>\n");
+			if(i == 10) {
+				xml.append("<D:response><D:href>/calendars/broken.ics</D:href><D:propstat><D:prop>");
+				xml.append("<C:calendar-data>not a calendar</C:calendar-data>");
+				xml.append("</D:prop></D:propstat></D:response>\n");
+			}
+		}
+		xml.append("</D:multistatus>");
+		
+		ReportResponseHandlerImpl handler = new ReportResponseHandlerImpl();
+		List<CalendarWithURI> results = handler.extractCalendars(new ByteArrayInputStream(xml.toString().getBytes(StandardCharsets.UTF_8)));
+		Assert.assertEquals(calendars, results.size());
+		for(int i = 0; i < calendars; i++) {
+			CalendarWithURI withUri = results.get(i);
+			Assert.assertEquals("/calendars/event" + i + ".ics", withUri.getUri());
+			Assert.assertEquals("\"etag-" + i + "\"", withUri.getEtag());
+			VEvent event = (VEvent) withUri.getCalendar().getComponents(VEvent.VEVENT).get(0);
+			Assert.assertEquals("lunch & learn <" + i + ">", event.getSummary().getValue());
+			Assert.assertTrue(event.getDescription().getValue().endsWith("a long description"));
+		}
+	}
+	
+	/**
+	 * Each calendar-data repeats the same VTIMEZONE; only the first is parsed, the others reference it.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testSharedTimeZones() throws IOException {
+		StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
+		xml.append("<D:multistatus xmlns:D=\"DAV:\" xmlns:C=\"urn:ietf:params:xml:ns:caldav\">\n");
+		final int calendars = 3;
+		for(int i = 0; i < calendars; i++) {
+			xml.append("<D:response><D:href>/calendars/event").append(i).append(".ics</D:href><D:propstat><D:prop>");
+			xml.append("<D:getetag>\"etag-").append(i).append("\"</D:getetag>");
+			xml.append("<C:calendar-data>BEGIN:VCALENDAR\r\nVERSION:2.0\r\nPRODID:-//test//EN\r\n");
+			xml.append("BEGIN:VTIMEZONE\r\nTZID:America/Chicago\r\n");
+			xml.append("BEGIN:DAYLIGHT\r\nTZOFFSETFROM:-0600\r\nRRULE:FREQ=YEARLY;BYMONTH=3;BYDAY=2SU\r\n");
+			xml.append("DTSTART:20070311T020000\r\nTZNAME:CDT\r\nTZOFFSETTO:-0500\r\nEND:DAYLIGHT\r\n");
+			xml.append("BEGIN:STANDARD\r\nTZOFFSETFROM:-0500\r\nRRULE:FREQ=YEARLY;BYMONTH=11;BYDAY=1SU\r\n");
+			xml.append("DTSTART:20071104T020000\r\nTZNAME:CST\r\nTZOFFSETTO:-0600\r\nEND:STANDARD\r\n");
+			xml.append("END:VTIMEZONE\r\n");
+			xml.append("BEGIN:VEVENT\r\nUID:event").append(i).append("\r\nDTSTAMP:20110502T181421Z\r\n");
+			xml.append("DTSTART;TZID=America/Chicago:20110502T100000\r\nDTEND;TZID=America/Chicago:20110502T110000\r\n");
+			xml.append("SUMMARY:event ").append(i).append("\r\nEND:VEVENT\r\nEND:VCALENDAR\r\n</C:calendar-data>");
+			xml.append("</D:prop><D:status>HTTP/1.1 200 OK</D:status></D:propstat></D:response>\n");
+		}
+		xml.append("</D:multistatus>");
+		
+		SharedTimeZoneRegistry registry = new SharedTimeZoneRegistry(10);
+		ReportResponseHandlerImpl handler = new ReportResponseHandlerImpl();
+		handler.setTimeZoneRegistry(registry);
+		List<CalendarWithURI> results = handler.extractCalendars(new ByteArrayInputStream(xml.toString().getBytes(StandardCharsets.UTF_8)));
+		Assert.assertEquals(calendars, results.size());
+		Assert.assertEquals(1, registry.getSize());
+		Assert.assertEquals(1, registry.getMisses());
+		Assert.assertEquals(calendars - 1, registry.getHits());
+		
+		VTimeZone shared = (VTimeZone) results.get(0).getCalendar().getComponents(VTimeZone.VTIMEZONE).get(0);
+		for(CalendarWithURI withUri : results) {
+			ComponentList<VTimeZone> timezones = withUri.getCalendar().getComponents(VTimeZone.VTIMEZONE);
+			Assert.assertEquals(1, timezones.size());
+			Assert.assertSame(shared, timezones.get(0));
+			VEvent event = (VEvent) withUri.getCalendar().getComponents(VEvent.VEVENT).get(0);
+			Assert.assertEquals("America/Chicago", event.getStartDate().getTimeZone().getID());
+			// 10:00 CDT
+			Assert.assertEquals(1304348400000L, event.getStartDate().getDate().getTime());
+		}
+	}
+	
+	/**
+	 * Cancelled and transparent events are dropped before parsing, unless they are recurrence overrides;
+	 * calendars left without events are omitted.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testPreScan() throws IOException {
+		String [] events = {
+				"UID:opaque\r\nTRANSP:OPAQUE\r\n",
+				"UID:transparent\r\nTRANSP:TRANS\r\n PARENT\r\n",
+				"UID:cancelled\r\nSTATUS:CANCELLED\r\n",
+				"UID:override\r\nRECURRENCE-ID:20110502T150000Z\r\nSTATUS:CANCELLED\r\n",
+				"UID:alarm\r\nBEGIN:VALARM\r\nACTION:DISPLAY\r\nTRIGGER:-PT15M\r\nDESCRIPTION:TRANSP:TRANSPARENT\r\nEND:VALARM\r\n"
+		};
+		StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
+		xml.append("<D:multistatus xmlns:D=\"DAV:\" xmlns:C=\"urn:ietf:params:xml:ns:caldav\">\n");
+		for(int i = 0; i < events.length; i++) {
+			xml.append("<D:response><D:href>/calendars/event").append(i).append(".ics</D:href><D:propstat><D:prop>");
+			xml.append("<D:getetag>\"etag-").append(i).append("\"</D:getetag>");
+			xml.append("<C:calendar-data>BEGIN:VCALENDAR\r\nVERSION:2.0\r\nPRODID:-//test//EN\r\n");
+			xml.append("BEGIN:VEVENT\r\n").append(events[i]).append("DTSTAMP:20110502T181421Z\r\n");
+			xml.append("DTSTART:20110502T150000Z\r\nDTEND:20110502T160000Z\r\nSUMMARY:event ").append(i).append("\r\n");
+			xml.append("END:VEVENT\r\nEND:VCALENDAR\r\n</C:calendar-data>");
+			xml.append("</D:prop><D:status>HTTP/1.1 200 OK</D:status></D:propstat></D:response>\n");
+		}
+		xml.append("</D:multistatus>");
+		byte [] content = xml.toString().getBytes(StandardCharsets.UTF_8);
+		
+		ReportResponseHandlerImpl handler = new ReportResponseHandlerImpl();
+		Assert.assertEquals(events.length, handler.extractCalendars(new ByteArrayInputStream(content)).size());
+		
+		CalendarDataPreScan preScan = new CalendarDataPreScan();
+		List<CalendarWithURI> results = handler.extractCalendars(new ByteArrayInputStream(content), preScan);
+		Assert.assertEquals(3, results.size());
+		Assert.assertEquals("/calendars/event0.ics", results.get(0).getUri());
+		Assert.assertEquals("/calendars/event3.ics", results.get(1).getUri());
+		Assert.assertEquals("/calendars/event4.ics", results.get(2).getUri());
+		Assert.assertEquals(events.length, preScan.getScannedEvents());
+		Assert.assertEquals(2, preScan.getSkippedEvents());
+	}
 }
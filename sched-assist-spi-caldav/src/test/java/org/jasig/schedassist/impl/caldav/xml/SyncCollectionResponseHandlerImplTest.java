@@ -0,0 +1,59 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jasig.schedassist.impl.caldav.xml;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+
+/**
+ * Tests for {@link SyncCollectionResponseHandlerImpl}.
+ */
+public class SyncCollectionResponseHandlerImplTest {
+
+	@Test
+	public void testExtractChanges() throws IOException {
+		Resource example = new ClassPathResource("caldav-examples/sync-collection-response.xml");
+
+		SyncCollectionResponseHandlerImpl handler = new SyncCollectionResponseHandlerImpl();
+		SyncCollectionResponse response = handler.extractChanges(example.getInputStream());
+
+		Map<String, String> changed = response.getChanged();
+		Assert.assertEquals(2, changed.size());
+		Assert.assertEquals("\"00001-abcd1\"", changed.get("http://cal.example.com/bernard/work/abcd1.ics"));
+		Assert.assertEquals("\"00002-abcd2\"", changed.get("/bernard/work/abcd2.ics"));
+		Assert.assertEquals(1, response.getRemoved().size());
+		Assert.assertEquals("/bernard/work/abcd3.ics", response.getRemoved().get(0));
+		Assert.assertEquals("http://example.com/ns/sync/1234", response.getSyncToken());
+		Assert.assertTrue(response.isTruncated());
+	}
+
+	@Test
+	public void testStatusCode() {
+		Assert.assertEquals(200, SyncCollectionResponseHandlerImpl.statusCode("HTTP/1.1 200 OK"));
+		Assert.assertEquals(404, SyncCollectionResponseHandlerImpl.statusCode(" HTTP/1.1 404 Not Found "));
+		Assert.assertEquals(-1, SyncCollectionResponseHandlerImpl.statusCode(null));
+		Assert.assertEquals(-1, SyncCollectionResponseHandlerImpl.statusCode("HTTP/1.1 OK"));
+	}
+}
@@ -25,6 +25,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.jasig.schedassist.ICalendarAccountDao;
 import org.jasig.schedassist.IDelegateCalendarAccountDao;
+import org.jasig.schedassist.impl.caching.RequestMemo;
 import org.jasig.schedassist.model.ICalendarAccount;
 import org.jasig.schedassist.model.IDelegateCalendarAccount;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -36,6 +37,7 @@ import org.springframework.stereotype.Service;
  * {@link IDelegateCalendarAccountDao}.
  * The wrapped {@link ICalendarAccountDao} is consulted first. if it returns null, 
  * the {@link IDelegateCalendarAccountDao} is called.
+ * Account lookups are memoized for the current {@link RequestMemo}.
  *  
  * @author Nicholas Blair, nblair@doit.wisc.edu
  * @version $Id: CompositeCalendarAccountDaoImpl.java 2032 2010-04-30 12:57:36Z npblair $
@@ -44,6 +46,10 @@ import org.springframework.stereotype.Service;
 @Qualifier("composite")
 public final class CompositeCalendarAccountDaoImpl implements ICalendarAccountDao {
 
+	/**
+	 * {@link RequestMemo} scope of this dao's lookups.
+	 */
+	static final String MEMO_SCOPE = "calendarAccountDao";
 	private Log log = LogFactory.getLog(this.getClass());
 	private ICalendarAccountDao calendarAccountDao;
 	private IDelegateCalendarAccountDao delegateCalendarAccountDao;
@@ -70,20 +76,22 @@ public final class CompositeCalendarAccountDaoImpl implements ICalendarAccountDa
 	 */
 	@Override
 	public ICalendarAccount getCalendarAccount(final String username) {
-		ICalendarAccount person = this.calendarAccountDao.getCalendarAccount(username);
-		if(null == person) {
-			if(log.isDebugEnabled()) {
-				log.debug("getCalendarAccount(String) on user dao returned null, trying delegate");
-			}
-			IDelegateCalendarAccount delegate = this.delegateCalendarAccountDao.getDelegate(username);
-			if(null != delegate) {
+		return RequestMemo.memoize(MEMO_SCOPE, RequestMemo.key("getCalendarAccount", username), () -> {
+			ICalendarAccount person = this.calendarAccountDao.getCalendarAccount(username);
+			if(null == person) {
 				if(log.isDebugEnabled()) {
-					log.debug("getDelegate(String) on resource dao returned non-null, using");
+					log.debug("getCalendarAccount(String) on user dao returned null, trying delegate");
+				}
+				IDelegateCalendarAccount delegate = this.delegateCalendarAccountDao.getDelegate(username);
+				if(null != delegate) {
+					if(log.isDebugEnabled()) {
+						log.debug("getDelegate(String) on resource dao returned non-null, using");
+					}
+					return delegate;
 				}
-				return delegate;
 			}
-		}
-		return person;
+			return person;
+		});
 	}
 
 	/*
@@ -93,20 +101,22 @@ public final class CompositeCalendarAccountDaoImpl implements ICalendarAccountDa
 	@Override
 	public ICalendarAccount getCalendarAccount(final String attributeName,
 			final String attributeValue) {
-		ICalendarAccount person = this.calendarAccountDao.getCalendarAccount(attributeName, attributeValue);
-		if(null == person) {
-			if(log.isDebugEnabled()) {
-				log.debug("getCalendarAccount(String, String) on user dao returned null, trying delegate");
-			}
-			IDelegateCalendarAccount delegate = this.delegateCalendarAccountDao.getDelegate(attributeName, attributeValue);
-			if(null != delegate) {
+		return RequestMemo.memoize(MEMO_SCOPE, RequestMemo.key("getCalendarAccount", attributeName, attributeValue), () -> {
+			ICalendarAccount person = this.calendarAccountDao.getCalendarAccount(attributeName, attributeValue);
+			if(null == person) {
 				if(log.isDebugEnabled()) {
-					log.debug("getDelegate(String, String) on resource dao returned non-null, using");
+					log.debug("getCalendarAccount(String, String) on user dao returned null, trying delegate");
+				}
+				IDelegateCalendarAccount delegate = this.delegateCalendarAccountDao.getDelegate(attributeName, attributeValue);
+				if(null != delegate) {
+					if(log.isDebugEnabled()) {
+						log.debug("getDelegate(String, String) on resource dao returned non-null, using");
+					}
+					return delegate;
 				}
-				return delegate;
 			}
-		}
-		return person;
+			return person;
+		});
 	}
 
 	/*
@@ -116,20 +126,22 @@ public final class CompositeCalendarAccountDaoImpl implements ICalendarAccountDa
 	@Override
 	public ICalendarAccount getCalendarAccountFromUniqueId(
 			final String calendarUniqueId) {
-		ICalendarAccount person = this.calendarAccountDao.getCalendarAccountFromUniqueId(calendarUniqueId);
-		if(null == person) {
-			if(log.isDebugEnabled()) {
-				log.debug("getCalendarAccountFromUniqueId(String) on user dao returned null, trying delegate");
-			}
-			IDelegateCalendarAccount delegate = this.delegateCalendarAccountDao.getDelegateByUniqueId(calendarUniqueId);
-			if(null != delegate) {
+		return RequestMemo.memoize(MEMO_SCOPE, RequestMemo.key("getCalendarAccountFromUniqueId", calendarUniqueId), () -> {
+			ICalendarAccount person = this.calendarAccountDao.getCalendarAccountFromUniqueId(calendarUniqueId);
+			if(null == person) {
 				if(log.isDebugEnabled()) {
-					log.debug("getDelegateByUniqueId(String) on resource dao returned non-null, using");
+					log.debug("getCalendarAccountFromUniqueId(String) on user dao returned null, trying delegate");
+				}
+				IDelegateCalendarAccount delegate = this.delegateCalendarAccountDao.getDelegateByUniqueId(calendarUniqueId);
+				if(null != delegate) {
+					if(log.isDebugEnabled()) {
+						log.debug("getDelegateByUniqueId(String) on resource dao returned non-null, using");
+					}
+					return delegate;
 				}
-				return delegate;
 			}
-		}
-		return person;
+			return person;
+		});
 	}
 
 	/*
@@ -0,0 +1,50 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.jasig.schedassist.impl;
+
+import org.springframework.dao.QueryTimeoutException;
+
+/**
+ * {@link QueryTimeoutException} raised when a calendar or schedule lookup
+ * issued concurrently by {@link SchedulingAssistantServiceImpl} does not complete in time.
+ */
+public class LookupTimeoutException extends QueryTimeoutException {
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = -2925302367478417231L;
+
+	/**
+	 * @param message
+	 */
+	public LookupTimeoutException(String message) {
+		super(message);
+	}
+
+	/**
+	 * @param message
+	 * @param cause
+	 */
+	public LookupTimeoutException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
@@ -20,12 +20,16 @@
 package org.jasig.schedassist.impl;
 
 import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.PeriodList;
 import net.fortuna.ical4j.model.component.VEvent;
 import org.apache.commons.lang.Validate;
 import org.apache.commons.lang.time.DateUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.jasig.schedassist.ConflictExistsException;
+import org.jasig.schedassist.IAppointmentBookingDao;
 import org.jasig.schedassist.ICalendarDataDao;
+import org.jasig.schedassist.IFreeBusyDataDao;
 import org.jasig.schedassist.NoAppointmentExistsException;
 import org.jasig.schedassist.SchedulingAssistantService;
 import org.jasig.schedassist.SchedulingException;
@@ -43,31 +47,61 @@ import org.jasig.schedassist.model.IScheduleVisitor;
 import org.jasig.schedassist.model.IVisibleScheduleBuilder;
 import org.jasig.schedassist.model.VisibleSchedule;
 import org.jasig.schedassist.model.VisibleWindow;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.dao.TransientDataAccessResourceException;
 import org.springframework.stereotype.Service;
 
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Default implementation of {@link SchedulingAssistantService}.
  * 
  * Note that the scheduleAppointment method is synchronized, as there is
  * no guarantees that the {@link CalendarDao} will reject event creation in case of conflict.
+ * If an {@link IAppointmentBookingDao} is available, appointments are booked with it instead: the calendar
+ * system rejects a second appointment for the same block, and the existing appointment and conflicts are
+ * found with one lookup.
+ * 
+ * The owner's (or visitor's) calendar data and the owner's {@link AvailableSchedule} are independent,
+ * so getVisibleSchedule and calculateVisitorConflicts retrieve the calendar data on a bounded
+ * lookup executor while the schedule is retrieved on the calling thread. Lookups that do not
+ * complete within lookupTimeoutMillis fail with a {@link LookupTimeoutException}.
  * 
  * @author Nicholas Blair, nblair@doit.wisc.edu
  * @version $Id: AvailableServiceImpl.java 2891 2010-11-11 16:19:39Z npblair $
  */
 @Service("schedulingAssistantService")
-public final class SchedulingAssistantServiceImpl implements SchedulingAssistantService, ApplicationEventPublisherAware {
+public final class SchedulingAssistantServiceImpl implements SchedulingAssistantService, ApplicationEventPublisherAware, InitializingBean, DisposableBean {
 
 	private ICalendarDataDao calendarDao;
+	private IFreeBusyDataDao freeBusyDataDao;
+	private IAppointmentBookingDao appointmentBookingDao;
 	private AvailableScheduleDao availableScheduleDao;
 	private ApplicationEventPublisher applicationEventPublisher;
 	private IVisibleScheduleBuilder visibleScheduleBuilder;
 	private IEventUtils eventUtils;
+	private ExecutorService lookupExecutor;
+	private boolean ownsLookupExecutor = false;
+	private int lookupThreads = 8;
+	private int lookupQueueSize = 64;
+	private long lookupTimeoutMillis = 15000;
 	private Log LOG = LogFactory.getLog(this.getClass());
 
 	/*
@@ -94,6 +128,25 @@ public final class SchedulingAssistantServiceImpl implements SchedulingAssistant
 	public void setCalendarDataDao(final ICalendarDataDao calendarDataDao) {
 		this.calendarDao = calendarDataDao;
 	}
+	/**
+	 * Optional; if set, visitor conflicts are calculated from the visitor's busy time when available.
+	 * 
+	 * @param freeBusyDataDao the freeBusyDataDao to set
+	 */
+	@Autowired(required=false)
+	public void setFreeBusyDataDao(final IFreeBusyDataDao freeBusyDataDao) {
+		this.freeBusyDataDao = freeBusyDataDao;
+	}
+	/**
+	 * Optional; if set, {@link #scheduleAppointment(IScheduleVisitor, IScheduleOwner, AvailableBlock, String)} looks up the
+	 * existing appointment and conflicts with one call, and creates appointments only if absent.
+	 * 
+	 * @param appointmentBookingDao the appointmentBookingDao to set
+	 */
+	@Autowired(required=false)
+	public void setAppointmentBookingDao(final IAppointmentBookingDao appointmentBookingDao) {
+		this.appointmentBookingDao = appointmentBookingDao;
+	}
 	/**
 	 * @param visibleScheduleBuilder the visibleScheduleBuilder to set
 	 */
@@ -109,6 +162,68 @@ public final class SchedulingAssistantServiceImpl implements SchedulingAssistant
 	public void setEventUtils(IEventUtils eventUtils) {
 		this.eventUtils = eventUtils;
 	}
+	/**
+	 * Optional; by default a pool of lookupThreads threads with a queue of lookupQueueSize is created
+	 * in {@link #afterPropertiesSet()}. If neither happens, lookups run sequentially on the calling thread.
+	 * 
+	 * @param lookupExecutor the {@link ExecutorService} to retrieve calendar data on
+	 */
+	public void setLookupExecutor(ExecutorService lookupExecutor) {
+		this.lookupExecutor = lookupExecutor;
+	}
+	/**
+	 * @param lookupThreads the number of threads in the default lookup executor
+	 */
+	@Value("${service.lookupThreads:8}")
+	public void setLookupThreads(int lookupThreads) {
+		this.lookupThreads = lookupThreads;
+	}
+	/**
+	 * @param lookupQueueSize the number of lookups the default executor queues before running them on the calling thread
+	 */
+	@Value("${service.lookupQueueSize:64}")
+	public void setLookupQueueSize(int lookupQueueSize) {
+		this.lookupQueueSize = lookupQueueSize;
+	}
+	/**
+	 * @param lookupTimeoutMillis how long to wait for a concurrent lookup
+	 */
+	@Value("${service.lookupTimeoutMillis:15000}")
+	public void setLookupTimeoutMillis(long lookupTimeoutMillis) {
+		this.lookupTimeoutMillis = lookupTimeoutMillis;
+	}
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
+	 */
+	@Override
+	public void afterPropertiesSet() {
+		if(this.lookupExecutor == null) {
+			final AtomicInteger threadCount = new AtomicInteger();
+			ThreadFactory threadFactory = new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "schedulingAssistantService-lookup-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			};
+			// when saturated, the caller runs the lookup itself rather than queueing without bound
+			this.lookupExecutor = new ThreadPoolExecutor(lookupThreads, lookupThreads, 60, TimeUnit.SECONDS,
+					new ArrayBlockingQueue<Runnable>(lookupQueueSize), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+			this.ownsLookupExecutor = true;
+		}
+	}
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.beans.factory.DisposableBean#destroy()
+	 */
+	@Override
+	public void destroy() {
+		if(ownsLookupExecutor) {
+			this.lookupExecutor.shutdownNow();
+		}
+	}
 	/*
 	 * (non-Javadoc)
 	 * @see org.jasig.schedassist.SchedulingAssistantService#getExistingAppointment(org.jasig.schedassist.model.AvailableBlock, org.jasig.schedassist.model.IScheduleOwner)
@@ -170,8 +285,22 @@ public final class SchedulingAssistantServiceImpl implements SchedulingAssistant
 			localEnd = windowBoundaries[1];
 		}
 
-		Calendar calendar = calendarDao.getCalendar(owner.getCalendarAccount(), localStart, localEnd);
-		AvailableSchedule schedule = availableScheduleDao.retrieve(owner);
+		final Date calendarStart = localStart;
+		final Date calendarEnd = localEnd;
+		Future<Calendar> calendarLookup = submitLookup(new Callable<Calendar>() {
+			@Override
+			public Calendar call() {
+				return calendarDao.getCalendar(owner.getCalendarAccount(), calendarStart, calendarEnd);
+			}
+		});
+		Calendar calendar;
+		AvailableSchedule schedule;
+		try {
+			schedule = availableScheduleDao.retrieve(owner);
+			calendar = awaitLookup(calendarLookup, "getCalendar for " + owner);
+		} finally {
+			calendarLookup.cancel(true);
+		}
 
 		VisibleSchedule result = this.visibleScheduleBuilder.calculateVisibleSchedule(
 				localStart,
@@ -188,7 +317,7 @@ public final class SchedulingAssistantServiceImpl implements SchedulingAssistant
 	 */
 	@Override
 	public List<AvailableBlock> calculateVisitorConflicts(
-			IScheduleVisitor visitor, IScheduleOwner owner, Date start, Date end) {
+			final IScheduleVisitor visitor, IScheduleOwner owner, Date start, Date end) {
 		
 		Date [] windowBoundaries = calculateOwnerWindowBounds(owner);
 		
@@ -201,24 +330,98 @@ public final class SchedulingAssistantServiceImpl implements SchedulingAssistant
 			localEnd = windowBoundaries[1];
 		}
 		
-		AvailableSchedule availableSchedule = this.availableScheduleDao.retrieve(owner, localStart, localEnd);
-		
-		// get the VISITOR's Calendar data
-		Calendar calendar = calendarDao.getCalendar(visitor.getCalendarAccount(), localStart, localEnd);
+		final Date visitorStart = localStart;
+		final Date visitorEnd = localEnd;
+		Future<VisitorBusyTime> visitorLookup = submitLookup(new Callable<VisitorBusyTime>() {
+			@Override
+			public VisitorBusyTime call() {
+				// only the VISITOR's busy time matters, prefer it to the full Calendar data
+				if(freeBusyDataDao != null) {
+					PeriodList busyPeriods = freeBusyDataDao.getBusyPeriods(visitor.getCalendarAccount(), visitorStart, visitorEnd);
+					if(busyPeriods != null) {
+						return new VisitorBusyTime(busyPeriods, null);
+					}
+				}
+				// get the VISITOR's Calendar data
+				return new VisitorBusyTime(null, calendarDao.getCalendar(visitor.getCalendarAccount(), visitorStart, visitorEnd));
+			}
+		});
+		AvailableSchedule availableSchedule;
+		VisitorBusyTime visitorBusyTime;
+		try {
+			availableSchedule = this.availableScheduleDao.retrieve(owner, localStart, localEnd);
+			visitorBusyTime = awaitLookup(visitorLookup, "visitor calendar for " + visitor);
+		} finally {
+			visitorLookup.cancel(true);
+		}
 		
-		// calculate a VisibleSchedule using the owner's availability but the Visitor's calendar data
-		VisibleSchedule result = this.visibleScheduleBuilder.calculateVisitorConflicts(
-				availableSchedule.getScheduleStartTime(),
-				availableSchedule.getScheduleEndTime(),
-				calendar, 
-				availableSchedule, 
-				owner.getPreferredMeetingDurations(), visitor);
+		VisibleSchedule result;
+		if(visitorBusyTime.busyPeriods != null) {
+			result = this.visibleScheduleBuilder.calculateVisitorConflicts(
+					availableSchedule.getScheduleStartTime(),
+					availableSchedule.getScheduleEndTime(),
+					visitorBusyTime.busyPeriods, 
+					availableSchedule, 
+					owner.getPreferredMeetingDurations());
+		} else {
+			// calculate a VisibleSchedule using the owner's availability but the Visitor's calendar data
+			result = this.visibleScheduleBuilder.calculateVisitorConflicts(
+					availableSchedule.getScheduleStartTime(),
+					availableSchedule.getScheduleEndTime(),
+					visitorBusyTime.calendar, 
+					availableSchedule, 
+					owner.getPreferredMeetingDurations(), visitor);
+		}
 		// return only the conflicts (the busy list)
 		List<AvailableBlock> visitorConflicts = result.getBusyList();
 		return visitorConflicts;
 	}
 
 	
+	/**
+	 * Start the lookup on the lookup executor, or run it on the calling thread if there is none.
+	 * 
+	 * @param lookup
+	 * @return the {@link Future} for the lookup
+	 */
+	protected <T> Future<T> submitLookup(Callable<T> lookup) {
+		FutureTask<T> task = new FutureTask<T>(lookup);
+		if(this.lookupExecutor == null) {
+			task.run();
+		} else {
+			this.lookupExecutor.execute(task);
+		}
+		return task;
+	}
+	/**
+	 * Wait at most lookupTimeoutMillis for the lookup, rethrowing any {@link RuntimeException} 
+	 * it failed with as is.
+	 * 
+	 * @param lookup
+	 * @param description of the lookup, for exception messages
+	 * @return the result of the lookup
+	 * @throws LookupTimeoutException if the lookup did not complete in time
+	 */
+	protected <T> T awaitLookup(Future<T> lookup, String description) {
+		try {
+			return lookup.get(lookupTimeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			LOG.warn(description + " did not complete within " + lookupTimeoutMillis + " ms");
+			throw new LookupTimeoutException(description + " did not complete within " + lookupTimeoutMillis + " ms", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new TransientDataAccessResourceException("interrupted awaiting " + description, e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(description + " failed", cause);
+		}
+	}
+	
 	/**
 	 * 
 	 * @param owner
@@ -295,6 +498,10 @@ public final class SchedulingAssistantServiceImpl implements SchedulingAssistant
 							"requested time is not available in schedule: " + block);
 		}
 
+		if (null != appointmentBookingDao) {
+			return bookAppointment(visitor, owner, block, eventDescription, ownerPersistedBlock);
+		}
+
 		if (ownerPersistedBlock.getVisitorLimit() == 1) {
 			// check to see if there is a conflict
 			calendarDao.checkForConflicts(owner, block);
@@ -329,6 +536,75 @@ public final class SchedulingAssistantServiceImpl implements SchedulingAssistant
 			return event;
 		}
 
+		return joinExistingAppointment(visitor, owner, block, ownerPersistedBlock, existingAppointment);
+	}
+
+	/**
+	 * {@link #scheduleAppointment(IScheduleVisitor, IScheduleOwner, AvailableBlock, String)} with the {@link IAppointmentBookingDao}:
+	 * one lookup for the existing appointment and conflicts, then a create that fails if another visitor
+	 * created the appointment for the block first, in which case the visitor joins it if the owner allows multiple visitors.
+	 * 
+	 * The conflict check applies when the {@link ICalendarDataDao} path would run checkForConflicts: whenever no appointment
+	 * exists for the block, including the first booking of a multiple visitor block. Joining an existing appointment is not
+	 * checked for conflicts. For a single visitor block, an existing appointment is a conflict.
+	 * 
+	 * @param visitor
+	 * @param owner
+	 * @param block
+	 * @param eventDescription
+	 * @param ownerPersistedBlock
+	 * @return the created or joined appointment
+	 * @throws SchedulingException
+	 */
+	private VEvent bookAppointment(final IScheduleVisitor visitor, final IScheduleOwner owner,
+			final AvailableBlock block, final String eventDescription, final AvailableBlock ownerPersistedBlock) throws SchedulingException {
+		final boolean singleVisitor = ownerPersistedBlock.getVisitorLimit() == 1;
+		VEvent existingAppointment =
+						appointmentBookingDao.getExistingAppointmentOrCheckForConflicts(owner, block);
+
+		if (null == existingAppointment) {
+			final VEvent event;
+			try {
+				event = appointmentBookingDao.createAppointmentIfAbsent(
+								visitor, owner, block, eventDescription);
+			} catch (final ConflictExistsException e) {
+				if (singleVisitor) {
+					throw e;
+				}
+				// another visitor created the appointment first
+				existingAppointment = calendarDao.getExistingAppointment(owner, block);
+				if (null == existingAppointment) {
+					throw e;
+				}
+				return joinExistingAppointment(visitor, owner, block, ownerPersistedBlock, existingAppointment);
+			}
+
+			if (null !=  applicationEventPublisher) {
+				applicationEventPublisher.publishEvent(singleVisitor ?
+								new AppointmentCreatedEvent(event, owner, visitor, block, eventDescription) :
+								new AppointmentJoinedEvent(event, owner, visitor, block));
+			}
+			return event;
+		}
+
+		if (singleVisitor) {
+			throw new ConflictExistsException("an appointment already exists for " + block);
+		}
+		return joinExistingAppointment(visitor, owner, block, ownerPersistedBlock, existingAppointment);
+	}
+
+	/**
+	 * 
+	 * @param visitor
+	 * @param owner
+	 * @param block
+	 * @param ownerPersistedBlock
+	 * @param existingAppointment
+	 * @return the joined appointment
+	 * @throws SchedulingException if the visitor limit has been met
+	 */
+	private VEvent joinExistingAppointment(final IScheduleVisitor visitor, final IScheduleOwner owner,
+			final AvailableBlock block, final AvailableBlock ownerPersistedBlock, final VEvent existingAppointment) throws SchedulingException {
 		// try to join if attendee count hasn't been exceeded
 		final int visitorCount =
 						eventUtils.getScheduleVisitorCount(existingAppointment);
@@ -350,5 +626,19 @@ public final class SchedulingAssistantServiceImpl implements SchedulingAssistant
 		return event;
 	}
 	
-	
+	/**
+	 * The visitor's busy time, as busy periods if available, otherwise as calendar data.
+	 */
+	private static final class VisitorBusyTime {
+		private final PeriodList busyPeriods;
+		private final Calendar calendar;
+		/**
+		 * @param busyPeriods
+		 * @param calendar
+		 */
+		VisitorBusyTime(PeriodList busyPeriods, Calendar calendar) {
+			this.busyPeriods = busyPeriods;
+			this.calendar = calendar;
+		}
+	}
 }
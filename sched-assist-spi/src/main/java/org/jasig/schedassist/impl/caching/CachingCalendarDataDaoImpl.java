@@ -0,0 +1,366 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.jasig.schedassist.impl.caching;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.URISyntaxException;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+
+import org.apache.commons.lang.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jasig.schedassist.ConflictExistsException;
+import org.jasig.schedassist.ICalendarDataDao;
+import org.jasig.schedassist.SchedulingException;
+import org.jasig.schedassist.impl.events.AbstractAppointmentEvent;
+import org.jasig.schedassist.impl.events.AutomaticAppointmentCancellationEvent;
+import org.jasig.schedassist.impl.events.AutomaticAttendeeRemovalEvent;
+import org.jasig.schedassist.model.AvailableBlock;
+import org.jasig.schedassist.model.AvailableSchedule;
+import org.jasig.schedassist.model.ICalendarAccount;
+import org.jasig.schedassist.model.IScheduleOwner;
+import org.jasig.schedassist.model.IScheduleVisitor;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+
+/**
+ * {@link ICalendarDataDao} decorator that caches the results of {@link #getCalendar(ICalendarAccount, Date, Date)}
+ * in an {@link Ehcache}, per account and window.
+ * 
+ * Visible schedule windows are relative to the current time, so requested windows are widened to whole multiples of
+ * windowGranularitySeconds before they are retrieved and cached; the returned {@link Calendar} may therefore contain
+ * events outside of the requested window.
+ * The bounds and time to live of the entries are those of the {@link Ehcache}, which should be short;
+ * the entries for an account are removed as soon as an appointment is created, cancelled, joined or left through
+ * this dao, its available schedule is reflected, or an {@link AbstractAppointmentEvent} (or automatic cancellation
+ * or attendee removal) is published for it. The cache holds its own copy of each {@link Calendar}, and every call
+ * returns a separate copy, so callers (including concurrent visible schedule workers) may modify the result.
+ * A {@link Calendar} that cannot be copied is not cached, and is returned as the delegate returned it.
+ * All other methods are passed straight to the delegate.
+ */
+public class CachingCalendarDataDaoImpl implements ICalendarDataDao, ApplicationListener<ApplicationEvent> {
+
+	private final Log LOG = LogFactory.getLog(this.getClass());
+	private final ICalendarDataDao delegate;
+	private final Ehcache cache;
+	// incremented on every invalidation, so retrievals that overlap one are not cached
+	private final AtomicLong invalidations = new AtomicLong();
+	// the cache keys stored for each account, so invalidation does not have to scan the whole cache
+	private final ConcurrentMap<String, Set<CalendarCacheKey>> accountCacheKeys = new ConcurrentHashMap<String, Set<CalendarCacheKey>>();
+	private long windowGranularityMillis = 3600000L;
+
+	/**
+	 * 
+	 * @param delegate the {@link ICalendarDataDao} to cache
+	 * @param cache the {@link Ehcache} to store calendars in
+	 */
+	public CachingCalendarDataDaoImpl(ICalendarDataDao delegate, Ehcache cache) {
+		Validate.notNull(delegate, "delegate cannot be null");
+		Validate.notNull(cache, "cache cannot be null");
+		this.delegate = delegate;
+		this.cache = cache;
+	}
+
+	/**
+	 * @param windowGranularitySeconds requested windows are widened to multiples of this many seconds
+	 */
+	public void setWindowGranularitySeconds(long windowGranularitySeconds) {
+		Validate.isTrue(windowGranularitySeconds > 0, "windowGranularitySeconds must be greater than 0");
+		this.windowGranularityMillis = windowGranularitySeconds * 1000L;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.jasig.schedassist.ICalendarDataDao#getCalendar(org.jasig.schedassist.model.ICalendarAccount, java.util.Date, java.util.Date)
+	 */
+	@Override
+	public Calendar getCalendar(ICalendarAccount calendarAccount,
+			Date startDate, Date endDate) {
+		final Date windowStart = new Date(Math.floorDiv(startDate.getTime(), windowGranularityMillis) * windowGranularityMillis);
+		final Date windowEnd = new Date(-Math.floorDiv(-endDate.getTime(), windowGranularityMillis) * windowGranularityMillis);
+		final CalendarCacheKey key = new CalendarCacheKey(CalendarAccountKeys.of(calendarAccount), windowStart, windowEnd);
+		Element element = cache.get(key);
+		if(element != null) {
+			Calendar copy = copy((Calendar) element.getObjectValue());
+			if(copy != null) {
+				return copy;
+			}
+			cache.remove(key);
+		}
+		final long invalidationsBefore = invalidations.get();
+		Calendar result = delegate.getCalendar(calendarAccount, windowStart, windowEnd);
+		if(result == null) {
+			return null;
+		}
+		// the delegate's instance may be shared with other callers
+		Calendar copy = copy(result);
+		if(copy == null) {
+			return result;
+		}
+		if(invalidations.get() == invalidationsBefore) {
+			Calendar cached = copy(result);
+			if(cached != null) {
+				store(key, cached, invalidationsBefore);
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * Store the calendar and record its key for the account, unless an invalidation has happened since
+	 * invalidationsBefore.
+	 * 
+	 * @param key
+	 * @param calendar
+	 * @param invalidationsBefore
+	 */
+	private void store(CalendarCacheKey key, Calendar calendar, long invalidationsBefore) {
+		Set<CalendarCacheKey> keys = accountCacheKeys.computeIfAbsent(key.accountKey, k -> ConcurrentHashMap.newKeySet());
+		// drop the keys of entries the cache has since expired or evicted
+		keys.removeIf(k -> !cache.isKeyInCache(k));
+		keys.add(key);
+		cache.put(new Element(key, calendar));
+		if(invalidations.get() != invalidationsBefore) {
+			// an invalidation may have missed the key registered above
+			cache.remove(key);
+		}
+	}
+
+	/**
+	 * 
+	 * @param calendar
+	 * @return a deep copy of the calendar, or null if it could not be copied
+	 */
+	private Calendar copy(Calendar calendar) {
+		try {
+			return new Calendar(calendar);
+		} catch (ParseException | IOException | URISyntaxException e) {
+			LOG.warn("failed to copy calendar, not caching", e);
+			return null;
+		}
+	}
+	/*
+	 * (non-Javadoc)
+	 * @see org.jasig.schedassist.ICalendarDataDao#getExistingAppointment(org.jasig.schedassist.model.IScheduleOwner, org.jasig.schedassist.model.AvailableBlock)
+	 */
+	@Override
+	public VEvent getExistingAppointment(IScheduleOwner owner,
+			AvailableBlock block) {
+		return delegate.getExistingAppointment(owner, block);
+	}
+	/*
+	 * (non-Javadoc)
+	 * @see org.jasig.schedassist.ICalendarDataDao#createAppointment(org.jasig.schedassist.model.IScheduleVisitor, org.jasig.schedassist.model.IScheduleOwner, org.jasig.schedassist.model.AvailableBlock, java.lang.String)
+	 */
+	@Override
+	public VEvent createAppointment(IScheduleVisitor visitor,
+			IScheduleOwner owner, AvailableBlock block, String eventDescription) {
+		try {
+			return delegate.createAppointment(visitor, owner, block, eventDescription);
+		} finally {
+			invalidate(owner.getCalendarAccount(), visitor.getCalendarAccount());
+		}
+	}
+	/*
+	 * (non-Javadoc)
+	 * @see org.jasig.schedassist.ICalendarDataDao#cancelAppointment(org.jasig.schedassist.model.IScheduleVisitor, org.jasig.schedassist.model.IScheduleOwner, net.fortuna.ical4j.model.component.VEvent)
+	 */
+	@Override
+	public void cancelAppointment(IScheduleVisitor visitor,
+			IScheduleOwner owner, VEvent event) {
+		try {
+			delegate.cancelAppointment(visitor, owner, event);
+		} finally {
+			invalidate(owner.getCalendarAccount(), visitor.getCalendarAccount());
+		}
+	}
+	/*
+	 * (non-Javadoc)
+	 * @see org.jasig.schedassist.ICalendarDataDao#joinAppointment(org.jasig.schedassist.model.IScheduleVisitor, org.jasig.schedassist.model.IScheduleOwner, net.fortuna.ical4j.model.component.VEvent)
+	 */
+	@Override
+	public VEvent joinAppointment(IScheduleVisitor visitor,
+			IScheduleOwner owner, VEvent appointment)
+			throws SchedulingException {
+		try {
+			return delegate.joinAppointment(visitor, owner, appointment);
+		} finally {
+			invalidate(owner.getCalendarAccount(), visitor.getCalendarAccount());
+		}
+	}
+	/*
+	 * (non-Javadoc)
+	 * @see org.jasig.schedassist.ICalendarDataDao#leaveAppointment(org.jasig.schedassist.model.IScheduleVisitor, org.jasig.schedassist.model.IScheduleOwner, net.fortuna.ical4j.model.component.VEvent)
+	 */
+	@Override
+	public VEvent leaveAppointment(IScheduleVisitor visitor,
+			IScheduleOwner owner, VEvent appointment)
+			throws SchedulingException {
+		try {
+			return delegate.leaveAppointment(visitor, owner, appointment);
+		} finally {
+			invalidate(owner.getCalendarAccount(), visitor.getCalendarAccount());
+		}
+	}
+	/*
+	 * (non-Javadoc)
+	 * @see org.jasig.schedassist.ICalendarDataDao#checkForConflicts(org.jasig.schedassist.model.IScheduleOwner, org.jasig.schedassist.model.AvailableBlock)
+	 */
+	@Override
+	public void checkForConflicts(IScheduleOwner owner, AvailableBlock block)
+			throws ConflictExistsException {
+		delegate.checkForConflicts(owner, block);
+	}
+	/*
+	 * (non-Javadoc)
+	 * @see org.jasig.schedassist.ICalendarDataDao#reflectAvailableSchedule(org.jasig.schedassist.model.IScheduleOwner, org.jasig.schedassist.model.AvailableSchedule)
+	 */
+	@Override
+	public void reflectAvailableSchedule(IScheduleOwner owner,
+			AvailableSchedule schedule) {
+		try {
+			delegate.reflectAvailableSchedule(owner, schedule);
+		} finally {
+			invalidate(owner.getCalendarAccount());
+		}
+	}
+	/*
+	 * (non-Javadoc)
+	 * @see org.jasig.schedassist.ICalendarDataDao#purgeAvailableScheduleReflections(org.jasig.schedassist.model.IScheduleOwner, java.util.Date, java.util.Date)
+	 */
+	@Override
+	public void purgeAvailableScheduleReflections(IScheduleOwner owner,
+			Date startDate, Date endDate) {
+		try {
+			delegate.purgeAvailableScheduleReflections(owner, startDate, endDate);
+		} finally {
+			invalidate(owner.getCalendarAccount());
+		}
+	}
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.context.ApplicationListener#onApplicationEvent(org.springframework.context.ApplicationEvent)
+	 */
+	@Override
+	public void onApplicationEvent(ApplicationEvent event) {
+		if(event instanceof AbstractAppointmentEvent) {
+			AbstractAppointmentEvent appointmentEvent = (AbstractAppointmentEvent) event;
+			if(appointmentEvent.getVisitor() != null) {
+				invalidate(appointmentEvent.getOwner().getCalendarAccount(), appointmentEvent.getVisitor().getCalendarAccount());
+			} else {
+				invalidate(appointmentEvent.getOwner().getCalendarAccount());
+			}
+		} else if (event instanceof AutomaticAppointmentCancellationEvent) {
+			invalidate(((AutomaticAppointmentCancellationEvent) event).getOwner());
+		} else if (event instanceof AutomaticAttendeeRemovalEvent) {
+			invalidate(((AutomaticAttendeeRemovalEvent) event).getOwner());
+		}
+	}
+
+	/**
+	 * Remove all cached calendars for the accounts.
+	 * 
+	 * @param calendarAccounts
+	 */
+	protected void invalidate(ICalendarAccount... calendarAccounts) {
+		invalidations.incrementAndGet();
+		for(ICalendarAccount calendarAccount : calendarAccounts) {
+			final String accountKey = CalendarAccountKeys.of(calendarAccount);
+			int removed = 0;
+			Set<CalendarCacheKey> keys = accountCacheKeys.remove(accountKey);
+			if(keys != null) {
+				for(CalendarCacheKey key : keys) {
+					if(cache.remove(key)) {
+						removed++;
+					}
+				}
+			}
+			if(LOG.isDebugEnabled()) {
+				LOG.debug("removed " + removed + " cached calendars for " + calendarAccount);
+			}
+		}
+	}
+
+	/**
+	 * Cache key for an account's calendar within a window.
+	 */
+	static final class CalendarCacheKey implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private final String accountKey;
+		private final long startTime;
+		private final long endTime;
+
+		/**
+		 * @param accountKey
+		 * @param startDate
+		 * @param endDate
+		 */
+		CalendarCacheKey(String accountKey, Date startDate, Date endDate) {
+			this.accountKey = accountKey;
+			this.startTime = startDate.getTime();
+			this.endTime = endDate.getTime();
+		}
+		/*
+		 * (non-Javadoc)
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode() {
+			int result = accountKey.hashCode();
+			result = 31 * result + (int) (startTime ^ (startTime >>> 32));
+			result = 31 * result + (int) (endTime ^ (endTime >>> 32));
+			return result;
+		}
+		/*
+		 * (non-Javadoc)
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj) {
+				return true;
+			}
+			if(!(obj instanceof CalendarCacheKey)) {
+				return false;
+			}
+			CalendarCacheKey other = (CalendarCacheKey) obj;
+			return startTime == other.startTime && endTime == other.endTime && accountKey.equals(other.accountKey);
+		}
+		/*
+		 * (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "CalendarCacheKey [accountKey=" + accountKey + ", startTime=" + startTime + ", endTime=" + endTime + "]";
+		}
+	}
+}
@@ -0,0 +1,41 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.jasig.schedassist.impl.caching;
+
+import org.jasig.schedassist.model.ICalendarAccount;
+
+/**
+ * Keys the {@link org.jasig.schedassist.ICalendarDataDao} decorators in this package use to identify accounts.
+ */
+final class CalendarAccountKeys {
+
+	private CalendarAccountKeys() {
+	}
+	/**
+	 * 
+	 * @param calendarAccount
+	 * @return the calendar unique id of the account, or the username if it has none
+	 */
+	static String of(ICalendarAccount calendarAccount) {
+		String uniqueId = calendarAccount.getCalendarUniqueId();
+		return uniqueId != null ? uniqueId : calendarAccount.getUsername();
+	}
+}
@@ -0,0 +1,332 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.jasig.schedassist.impl.caching;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.component.VEvent;
+
+import org.apache.commons.lang.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jasig.schedassist.ConflictExistsException;
+import org.jasig.schedassist.ICalendarDataDao;
+import org.jasig.schedassist.SchedulingException;
+import org.jasig.schedassist.model.AvailableBlock;
+import org.jasig.schedassist.model.AvailableSchedule;
+import org.jasig.schedassist.model.ICalendarAccount;
+import org.jasig.schedassist.model.IScheduleOwner;
+import org.jasig.schedassist.model.IScheduleVisitor;
+
+/**
+ * {@link ICalendarDataDao} decorator that coalesces concurrent {@link #getCalendar(ICalendarAccount, Date, Date)}
+ * calls for the same account.
+ * 
+ * The first caller for an account and range retrieves the {@link Calendar} from the delegate; callers that arrive
+ * while that retrieval is in flight, for the same account and a range it contains, wait for it and receive the same
+ * {@link Calendar} (or exception) instead of issuing their own request. The shared {@link Calendar} must be treated as
+ * read only, and may contain events outside of a contained range.
+ * 
+ * Writes through this dao detach the in flight retrievals for the accounts involved, so calls made after a write
+ * never receive a result that was requested before it. All other methods are passed straight to the delegate.
+ */
+public class CoalescingCalendarDataDaoImpl implements ICalendarDataDao {
+
+	private final Log LOG = LogFactory.getLog(this.getClass());
+	private final ICalendarDataDao delegate;
+	private final Map<String, List<InFlightRequest>> inFlight = new HashMap<String, List<InFlightRequest>>();
+	private final AtomicLong requestCount = new AtomicLong();
+	private final AtomicLong deduplicatedCount = new AtomicLong();
+
+	/**
+	 * 
+	 * @param delegate the {@link ICalendarDataDao} to coalesce requests to
+	 */
+	public CoalescingCalendarDataDaoImpl(ICalendarDataDao delegate) {
+		Validate.notNull(delegate, "delegate cannot be null");
+		this.delegate = delegate;
+	}
+	/**
+	 * @return the number of getCalendar calls
+	 */
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+	/**
+	 * @return the number of getCalendar calls that shared another call's retrieval
+	 */
+	public long getDeduplicatedCount() {
+		return deduplicatedCount.get();
+	}
+	/**
+	 * @return the number of retrievals currently in flight that new calls may share
+	 */
+	public int getInFlightCount() {
+		synchronized (inFlight) {
+			int count = 0;
+			for(List<InFlightRequest> requests : inFlight.values()) {
+				count += requests.size();
+			}
+			return count;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.jasig.schedassist.ICalendarDataDao#getCalendar(org.jasig.schedassist.model.ICalendarAccount, java.util.Date, java.util.Date)
+	 */
+	@Override
+	public Calendar getCalendar(ICalendarAccount calendarAccount,
+			Date startDate, Date endDate) {
+		requestCount.incrementAndGet();
+		final String key = CalendarAccountKeys.of(calendarAccount);
+		InFlightRequest request = null;
+		boolean leader = false;
+		synchronized (inFlight) {
+			List<InFlightRequest> requests = inFlight.get(key);
+			if(requests == null) {
+				requests = new ArrayList<InFlightRequest>();
+				inFlight.put(key, requests);
+			} else {
+				for(InFlightRequest candidate : requests) {
+					if(candidate.contains(startDate, endDate)) {
+						request = candidate;
+						break;
+					}
+				}
+			}
+			if(request == null) {
+				request = new InFlightRequest(startDate, endDate);
+				requests.add(request);
+				leader = true;
+			}
+		}
+		if(leader) {
+			return retrieve(calendarAccount, key, request);
+		}
+		deduplicatedCount.incrementAndGet();
+		if(LOG.isDebugEnabled()) {
+			LOG.debug("getCalendar for " + calendarAccount + ", " + startDate + ", " + endDate + " sharing in flight request " + request);
+		}
+		return request.await();
+	}
+	/*
+	 * (non-Javadoc)
+	 * @see org.jasig.schedassist.ICalendarDataDao#getExistingAppointment(org.jasig.schedassist.model.IScheduleOwner, org.jasig.schedassist.model.AvailableBlock)
+	 */
+	@Override
+	public VEvent getExistingAppointment(IScheduleOwner owner,
+			AvailableBlock block) {
+		return delegate.getExistingAppointment(owner, block);
+	}
+	/*
+	 * (non-Javadoc)
+	 * @see org.jasig.schedassist.ICalendarDataDao#createAppointment(org.jasig.schedassist.model.IScheduleVisitor, org.jasig.schedassist.model.IScheduleOwner, org.jasig.schedassist.model.AvailableBlock, java.lang.String)
+	 */
+	@Override
+	public VEvent createAppointment(IScheduleVisitor visitor,
+			IScheduleOwner owner, AvailableBlock block, String eventDescription) {
+		try {
+			return delegate.createAppointment(visitor, owner, block, eventDescription);
+		} finally {
+			detach(owner.getCalendarAccount(), visitor.getCalendarAccount());
+		}
+	}
+	/*
+	 * (non-Javadoc)
+	 * @see org.jasig.schedassist.ICalendarDataDao#cancelAppointment(org.jasig.schedassist.model.IScheduleVisitor, org.jasig.schedassist.model.IScheduleOwner, net.fortuna.ical4j.model.component.VEvent)
+	 */
+	@Override
+	public void cancelAppointment(IScheduleVisitor visitor,
+			IScheduleOwner owner, VEvent event) {
+		try {
+			delegate.cancelAppointment(visitor, owner, event);
+		} finally {
+			detach(owner.getCalendarAccount(), visitor.getCalendarAccount());
+		}
+	}
+	/*
+	 * (non-Javadoc)
+	 * @see org.jasig.schedassist.ICalendarDataDao#joinAppointment(org.jasig.schedassist.model.IScheduleVisitor, org.jasig.schedassist.model.IScheduleOwner, net.fortuna.ical4j.model.component.VEvent)
+	 */
+	@Override
+	public VEvent joinAppointment(IScheduleVisitor visitor,
+			IScheduleOwner owner, VEvent appointment)
+			throws SchedulingException {
+		try {
+			return delegate.joinAppointment(visitor, owner, appointment);
+		} finally {
+			detach(owner.getCalendarAccount(), visitor.getCalendarAccount());
+		}
+	}
+	/*
+	 * (non-Javadoc)
+	 * @see org.jasig.schedassist.ICalendarDataDao#leaveAppointment(org.jasig.schedassist.model.IScheduleVisitor, org.jasig.schedassist.model.IScheduleOwner, net.fortuna.ical4j.model.component.VEvent)
+	 */
+	@Override
+	public VEvent leaveAppointment(IScheduleVisitor visitor,
+			IScheduleOwner owner, VEvent appointment)
+			throws SchedulingException {
+		try {
+			return delegate.leaveAppointment(visitor, owner, appointment);
+		} finally {
+			detach(owner.getCalendarAccount(), visitor.getCalendarAccount());
+		}
+	}
+	/*
+	 * (non-Javadoc)
+	 * @see org.jasig.schedassist.ICalendarDataDao#checkForConflicts(org.jasig.schedassist.model.IScheduleOwner, org.jasig.schedassist.model.AvailableBlock)
+	 */
+	@Override
+	public void checkForConflicts(IScheduleOwner owner, AvailableBlock block)
+			throws ConflictExistsException {
+		delegate.checkForConflicts(owner, block);
+	}
+	/*
+	 * (non-Javadoc)
+	 * @see org.jasig.schedassist.ICalendarDataDao#reflectAvailableSchedule(org.jasig.schedassist.model.IScheduleOwner, org.jasig.schedassist.model.AvailableSchedule)
+	 */
+	@Override
+	public void reflectAvailableSchedule(IScheduleOwner owner,
+			AvailableSchedule schedule) {
+		try {
+			delegate.reflectAvailableSchedule(owner, schedule);
+		} finally {
+			detach(owner.getCalendarAccount());
+		}
+	}
+	/*
+	 * (non-Javadoc)
+	 * @see org.jasig.schedassist.ICalendarDataDao#purgeAvailableScheduleReflections(org.jasig.schedassist.model.IScheduleOwner, java.util.Date, java.util.Date)
+	 */
+	@Override
+	public void purgeAvailableScheduleReflections(IScheduleOwner owner,
+			Date startDate, Date endDate) {
+		try {
+			delegate.purgeAvailableScheduleReflections(owner, startDate, endDate);
+		} finally {
+			detach(owner.getCalendarAccount());
+		}
+	}
+
+	/**
+	 * Retrieve the calendar from the delegate and hand the result to the callers waiting on the request.
+	 * 
+	 * @param calendarAccount
+	 * @param key
+	 * @param request
+	 * @return the calendar
+	 */
+	private Calendar retrieve(ICalendarAccount calendarAccount, String key, InFlightRequest request) {
+		try {
+			Calendar result = delegate.getCalendar(calendarAccount, request.startDate, request.endDate);
+			request.future.complete(result);
+			return result;
+		} catch (RuntimeException e) {
+			request.future.completeExceptionally(e);
+			throw e;
+		} catch (Error e) {
+			request.future.completeExceptionally(e);
+			throw e;
+		} finally {
+			synchronized (inFlight) {
+				List<InFlightRequest> requests = inFlight.get(key);
+				if(requests != null) {
+					requests.remove(request);
+					if(requests.isEmpty()) {
+						inFlight.remove(key);
+					}
+				}
+			}
+		}
+	}
+	/**
+	 * Stop new calls from sharing the retrievals in flight for the accounts; the retrievals themselves continue.
+	 * 
+	 * @param calendarAccounts
+	 */
+	protected void detach(ICalendarAccount... calendarAccounts) {
+		synchronized (inFlight) {
+			for(ICalendarAccount calendarAccount : calendarAccounts) {
+				inFlight.remove(CalendarAccountKeys.of(calendarAccount));
+			}
+		}
+	}
+
+	/**
+	 * A getCalendar retrieval in flight.
+	 */
+	private static final class InFlightRequest {
+		private final Date startDate;
+		private final Date endDate;
+		private final CompletableFuture<Calendar> future = new CompletableFuture<Calendar>();
+
+		/**
+		 * @param startDate
+		 * @param endDate
+		 */
+		InFlightRequest(Date startDate, Date endDate) {
+			this.startDate = startDate;
+			this.endDate = endDate;
+		}
+		/**
+		 * 
+		 * @param start
+		 * @param end
+		 * @return true if this request's range contains the range of the arguments
+		 */
+		boolean contains(Date start, Date end) {
+			return !start.before(startDate) && !end.after(endDate);
+		}
+		/**
+		 * 
+		 * @return the result of the retrieval
+		 */
+		Calendar await() {
+			try {
+				return future.join();
+			} catch (CompletionException e) {
+				Throwable cause = e.getCause();
+				if(cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				} else if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw e;
+			}
+		}
+		/*
+		 * (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "InFlightRequest [startDate=" + startDate + ", endDate=" + endDate + "]";
+		}
+	}
+}
@@ -0,0 +1,183 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.jasig.schedassist.impl.caching;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.jasig.schedassist.model.ICalendarAccount;
+
+/**
+ * Memo of dao lookups for the duration of a single logical operation (typically one web or SOAP request),
+ * bound to the current thread between {@link #begin()} and {@link #end()}.
+ * 
+ * Entries are grouped by scope: the key of an {@link ICalendarAccount} (see {@link #memoize(ICalendarAccount, Object, Supplier)}),
+ * or a dao specific name. A write invalidates the scopes it affects, so later lookups in the same operation see it.
+ * With no memo bound to the thread, lookups are passed straight through, so daos can call {@link #memoize(String, Object, Supplier)}
+ * unconditionally. Memoized values are shared between the callers within the operation.
+ * 
+ * The memo is only visible to the thread that began it. Work the operation hands to other threads,
+ * such as the lookups SchedulingAssistantServiceImpl runs on its lookup executor, is not memoized.
+ */
+public final class RequestMemo {
+
+	private static final ThreadLocal<RequestMemo> CURRENT = new ThreadLocal<RequestMemo>();
+	private static final Object NULL = new Object();
+
+	private final Map<String, Map<Object, Object>> scopes = new HashMap<String, Map<Object, Object>>();
+	private int depth = 0;
+	// incremented on every invalidation, so lookups that overlap one are not memoized
+	private long invalidations = 0;
+	private long hits = 0;
+	private long misses = 0;
+
+	private RequestMemo() {
+	}
+
+	/**
+	 * Bind a new memo to the current thread, or join the memo already bound; every call must be paired with {@link #end()}.
+	 * 
+	 * @return the memo bound to the current thread
+	 */
+	public static RequestMemo begin() {
+		RequestMemo memo = CURRENT.get();
+		if(memo == null) {
+			memo = new RequestMemo();
+			CURRENT.set(memo);
+		}
+		memo.depth++;
+		return memo;
+	}
+	/**
+	 * Leave the memo; the outermost call discards it and unbinds it from the thread.
+	 */
+	public void end() {
+		if(--depth <= 0) {
+			scopes.clear();
+			if(CURRENT.get() == this) {
+				CURRENT.remove();
+			}
+		}
+	}
+	/**
+	 * @return the memo bound to the current thread, or null
+	 */
+	public static RequestMemo current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * 
+	 * @param calendarAccount
+	 * @param key identifies the lookup within the account's scope; must implement equals and hashCode
+	 * @param loader performs the lookup on a miss
+	 * @return the memoized result of the lookup (which may be null)
+	 * @see #memoize(String, Object, Supplier)
+	 */
+	public static <T> T memoize(ICalendarAccount calendarAccount, Object key, Supplier<T> loader) {
+		return memoize(CalendarAccountKeys.of(calendarAccount), key, loader);
+	}
+	/**
+	 * 
+	 * @param scope
+	 * @param key identifies the lookup within the scope; must implement equals and hashCode
+	 * @param loader performs the lookup on a miss
+	 * @return the memoized result of the lookup (which may be null), or the result of the loader if no memo is bound to the thread
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T memoize(String scope, Object key, Supplier<T> loader) {
+		RequestMemo memo = CURRENT.get();
+		if(memo == null) {
+			return loader.get();
+		}
+		Map<Object, Object> entries = memo.scopes.get(scope);
+		if(entries != null) {
+			Object value = entries.get(key);
+			if(value != null) {
+				memo.hits++;
+				return value == NULL ? null : (T) value;
+			}
+		}
+		memo.misses++;
+		final long invalidationsBefore = memo.invalidations;
+		T result = loader.get();
+		if(memo.invalidations != invalidationsBefore) {
+			return result;
+		}
+		entries = memo.scopes.get(scope);
+		if(entries == null) {
+			entries = new HashMap<Object, Object>();
+			memo.scopes.put(scope, entries);
+		}
+		entries.put(key, result == null ? NULL : result);
+		return result;
+	}
+	/**
+	 * Discard the memoized lookups for the accounts, if a memo is bound to the thread.
+	 * 
+	 * @param calendarAccounts
+	 */
+	public static void invalidate(ICalendarAccount... calendarAccounts) {
+		RequestMemo memo = CURRENT.get();
+		if(memo == null) {
+			return;
+		}
+		memo.invalidations++;
+		for(ICalendarAccount calendarAccount : calendarAccounts) {
+			memo.scopes.remove(CalendarAccountKeys.of(calendarAccount));
+		}
+	}
+	/**
+	 * Discard the memoized lookups in the scope, if a memo is bound to the thread.
+	 * 
+	 * @param scope
+	 */
+	public static void invalidate(String scope) {
+		RequestMemo memo = CURRENT.get();
+		if(memo != null) {
+			memo.invalidations++;
+			memo.scopes.remove(scope);
+		}
+	}
+
+	/**
+	 * 
+	 * @param parts
+	 * @return a key made of the parts, for lookups with more than one argument
+	 */
+	public static Object key(Object... parts) {
+		return Arrays.asList(parts);
+	}
+	/**
+	 * @return the number of lookups answered from the memo
+	 */
+	public long getHits() {
+		return hits;
+	}
+	/**
+	 * @return the number of lookups performed
+	 */
+	public long getMisses() {
+		return misses;
+	}
+}
@@ -0,0 +1,218 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jasig.schedassist.impl.owner;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.ObjectUtils;
+import org.jasig.schedassist.model.AvailableBlock;
+
+/**
+ * Minimal set of row changes required to turn the stored rows of the schedules table
+ * for one owner into a target set of (combined) {@link AvailableBlock}s.
+ *
+ * Rows that match a target block exactly are left alone. A stored row that shares its start or
+ * end time with a target block is turned into an update; everything else becomes a delete or an insert.
+ * Changes should be applied in the order deletes, updates, inserts; since the target blocks never overlap
+ * this order cannot violate the (owner_id, start_time, end_time) unique constraint.
+ */
+final class AvailableScheduleDiff {
+
+	private final List<PersistenceAvailableBlock> deletes;
+	private final List<RowUpdate> updates;
+	private final List<PersistenceAvailableBlock> inserts;
+
+	/**
+	 *
+	 * @param deletes
+	 * @param updates
+	 * @param inserts
+	 */
+	private AvailableScheduleDiff(List<PersistenceAvailableBlock> deletes,
+			List<RowUpdate> updates, List<PersistenceAvailableBlock> inserts) {
+		this.deletes = Collections.unmodifiableList(deletes);
+		this.updates = Collections.unmodifiableList(updates);
+		this.inserts = Collections.unmodifiableList(inserts);
+	}
+
+	/**
+	 *
+	 * @param ownerId
+	 * @param storedRows the rows currently stored for the owner
+	 * @param target the combined blocks that should be stored for the owner
+	 * @return the changes needed to go from storedRows to target
+	 */
+	static AvailableScheduleDiff compute(final long ownerId, final Collection<PersistenceAvailableBlock> storedRows,
+			final Collection<AvailableBlock> target) {
+		List<PersistenceAvailableBlock> deletes = new ArrayList<PersistenceAvailableBlock>();
+		List<RowUpdate> updates = new ArrayList<RowUpdate>();
+
+		// index stored rows by start/end; anything beyond the first row for the same times is a stray duplicate
+		Map<RowKey, PersistenceAvailableBlock> unmatched = new LinkedHashMap<RowKey, PersistenceAvailableBlock>();
+		for(PersistenceAvailableBlock row : storedRows) {
+			if(unmatched.put(new RowKey(row.getStartTime(), row.getEndTime()), row) != null) {
+				deletes.add(row);
+			}
+		}
+
+		List<PersistenceAvailableBlock> candidateInserts = new ArrayList<PersistenceAvailableBlock>();
+		for(AvailableBlock block : target) {
+			PersistenceAvailableBlock desired = new PersistenceAvailableBlock(block, ownerId);
+			PersistenceAvailableBlock existing = unmatched.remove(new RowKey(desired.getStartTime(), desired.getEndTime()));
+			if(existing == null) {
+				candidateInserts.add(desired);
+			} else if(!sameAttributes(existing, desired)) {
+				updates.add(new RowUpdate(existing, desired));
+			}
+		}
+
+		// pair up leftover stored rows with new blocks that start or end at the same time
+		Map<Date, PersistenceAvailableBlock> byStart = new HashMap<Date, PersistenceAvailableBlock>();
+		Map<Date, PersistenceAvailableBlock> byEnd = new HashMap<Date, PersistenceAvailableBlock>();
+		for(PersistenceAvailableBlock row : unmatched.values()) {
+			byStart.put(row.getStartTime(), row);
+			byEnd.put(row.getEndTime(), row);
+		}
+		List<PersistenceAvailableBlock> inserts = new ArrayList<PersistenceAvailableBlock>();
+		for(PersistenceAvailableBlock desired : candidateInserts) {
+			PersistenceAvailableBlock existing = byStart.get(desired.getStartTime());
+			if(existing == null) {
+				existing = byEnd.get(desired.getEndTime());
+			}
+			if(existing != null) {
+				byStart.remove(existing.getStartTime());
+				byEnd.remove(existing.getEndTime());
+				unmatched.remove(new RowKey(existing.getStartTime(), existing.getEndTime()));
+				updates.add(new RowUpdate(existing, desired));
+			} else {
+				inserts.add(desired);
+			}
+		}
+		deletes.addAll(unmatched.values());
+		return new AvailableScheduleDiff(deletes, updates, inserts);
+	}
+
+	/**
+	 * @return the rows to delete
+	 */
+	List<PersistenceAvailableBlock> getDeletes() {
+		return deletes;
+	}
+	/**
+	 * @return the rows to update
+	 */
+	List<RowUpdate> getUpdates() {
+		return updates;
+	}
+	/**
+	 * @return the rows to insert
+	 */
+	List<PersistenceAvailableBlock> getInserts() {
+		return inserts;
+	}
+	/**
+	 *
+	 * @return true if the stored rows already match the target
+	 */
+	boolean isEmpty() {
+		return deletes.isEmpty() && updates.isEmpty() && inserts.isEmpty();
+	}
+
+	/**
+	 *
+	 * @param left
+	 * @param right
+	 * @return true if the visitorLimit and meetingLocation fields are equivalent
+	 */
+	static boolean sameAttributes(PersistenceAvailableBlock left, PersistenceAvailableBlock right) {
+		return left.getVisitorLimit() == right.getVisitorLimit() &&
+			ObjectUtils.equals(left.getMeetingLocation(), right.getMeetingLocation());
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "AvailableScheduleDiff [deletes=" + deletes.size() + ", updates=" + updates.size()
+			+ ", inserts=" + inserts.size() + "]";
+	}
+
+	/**
+	 * Replace an existing row (identified by owner, start and end) with new values.
+	 */
+	static final class RowUpdate {
+		private final PersistenceAvailableBlock existing;
+		private final PersistenceAvailableBlock replacement;
+		/**
+		 *
+		 * @param existing
+		 * @param replacement
+		 */
+		RowUpdate(PersistenceAvailableBlock existing, PersistenceAvailableBlock replacement) {
+			this.existing = existing;
+			this.replacement = replacement;
+		}
+		/**
+		 * @return the existing
+		 */
+		PersistenceAvailableBlock getExisting() {
+			return existing;
+		}
+		/**
+		 * @return the replacement
+		 */
+		PersistenceAvailableBlock getReplacement() {
+			return replacement;
+		}
+	}
+
+	/**
+	 * Start/end pair; {@link PersistenceAvailableBlock} does not implement equals.
+	 */
+	private static final class RowKey {
+		private final long start;
+		private final long end;
+		RowKey(Date start, Date end) {
+			this.start = start.getTime();
+			this.end = end.getTime();
+		}
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof RowKey)) {
+				return false;
+			}
+			RowKey rhs = (RowKey) o;
+			return start == rhs.start && end == rhs.end;
+		}
+		@Override
+		public int hashCode() {
+			return (int) (start ^ (start >>> 32)) * 31 + (int) (end ^ (end >>> 32));
+		}
+	}
+
+}
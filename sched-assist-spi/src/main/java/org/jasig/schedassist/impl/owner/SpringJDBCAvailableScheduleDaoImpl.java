@@ -26,6 +26,7 @@ import org.jasig.schedassist.impl.events.AvailableScheduleChangedEvent;
 import org.jasig.schedassist.model.AvailableBlock;
 import org.jasig.schedassist.model.AvailableBlockBuilder;
 import org.jasig.schedassist.model.AvailableSchedule;
+import org.jasig.schedassist.model.AvailableSlotBitmap;
 import org.jasig.schedassist.model.IScheduleOwner;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationEventPublisher;
@@ -38,12 +39,13 @@ import org.springframework.jdbc.core.namedparam.SqlParameterSourceUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.NavigableSet;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -88,9 +90,7 @@ implements AvailableScheduleDao {
 	@Transactional
 	@Override
 	public AvailableSchedule addToSchedule(final IScheduleOwner owner, final AvailableBlock block) {
-		// expand input block and call overloaded version
-		Set<AvailableBlock> blockExpanded = AvailableBlockBuilder.expand(block, 1);
-		return addToSchedule(owner, blockExpanded);
+		return addToSchedule(owner, Collections.singleton(block));
 	}
 
 	/*
@@ -101,25 +101,11 @@ implements AvailableScheduleDao {
 	@Override
 	public AvailableSchedule addToSchedule(final IScheduleOwner owner,
 			final Set<AvailableBlock> blocks) {
-		// retrieve existing schedule
-		AvailableSchedule stored = retrieve(owner);
-
-		// expand it to minimum possible size
-		SortedSet<AvailableBlock> storedExpanded = AvailableBlockBuilder.expand(stored.getAvailableBlocks(), 1);
-		// expand the argument to minimum possible size blocks
-		SortedSet<AvailableBlock> blocksExpanded = AvailableBlockBuilder.expand(blocks, 1);
-
-		// since AvailableBlock equals and hashCode ignore location, call remove first to get
-		// rid of any blocks that have matching times
-		storedExpanded.removeAll(blocksExpanded);
-		// add the new blocks to the expanded set
-		boolean modified = storedExpanded.addAll(blocksExpanded);
-		if(modified) {
-			replaceSchedule(owner, storedExpanded);
-		}
-
-		// retrieve the new complete schedule and return
-		return retrieve(owner);		
+		List<PersistenceAvailableBlock> storedRows = internalRetrieveRows(owner);
+		AvailableSlotBitmap target = toSlotBitmap(storedRows);
+		// minutes covered by the argument take the argument's visitorLimit and meetingLocation
+		target.addAll(blocks);
+		return updateSchedule(owner, storedRows, target);
 	}
 
 	/*
@@ -149,9 +135,7 @@ implements AvailableScheduleDao {
 	@Override
 	public AvailableSchedule removeFromSchedule(final IScheduleOwner owner,
 			final AvailableBlock block) {
-		// expand input block and call overloaded version
-		Set<AvailableBlock> blockExpanded = AvailableBlockBuilder.expand(block, 1);
-		return removeFromSchedule(owner, blockExpanded);
+		return removeFromSchedule(owner, Collections.singleton(block));
 	}
 
 	/*
@@ -162,30 +146,10 @@ implements AvailableScheduleDao {
 	@Override
 	public AvailableSchedule removeFromSchedule(final IScheduleOwner owner,
 			final Set<AvailableBlock> blocksToRemove) {
-		// retrieve existing schedule
-		AvailableSchedule stored = retrieve(owner);
-
-		// expand it to minimum possible size
-		SortedSet<AvailableBlock> expanded = AvailableBlockBuilder.expand(stored.getAvailableBlocks(), 1);
-		// expand the argument to minimum possible size blocks
-		SortedSet<AvailableBlock> blocksToRemoveExpanded = AvailableBlockBuilder.expand(blocksToRemove, 1);
-
-		boolean modified = false;
-		for(AvailableBlock toRemove : blocksToRemoveExpanded) {
-			if(expanded.contains(toRemove)) {
-				// remove the specified block
-				boolean result =  expanded.remove(toRemove);
-				if(result && !modified) {
-					modified = true;
-				}
-			}
-		}
-
-		if(modified) {
-			replaceSchedule(owner, expanded);
-		}
-		// retrieve the new complete schedule and return
-		return retrieve(owner);
+		List<PersistenceAvailableBlock> storedRows = internalRetrieveRows(owner);
+		AvailableSlotBitmap target = toSlotBitmap(storedRows);
+		target.removeAll(blocksToRemove);
+		return updateSchedule(owner, storedRows, target);
 	}
 
 	/*
@@ -424,7 +388,10 @@ implements AvailableScheduleDao {
 	 * 
 	 * @param blocks
 	 */
-	protected void internalStoreBlocks(final Set<PersistenceAvailableBlock> blocks) {
+	protected void internalStoreBlocks(final Collection<PersistenceAvailableBlock> blocks) {
+		if(blocks.isEmpty()) {
+			return;
+		}
 		SqlParameterSource[] batch = SqlParameterSourceUtils.createBatch(blocks.toArray());
 		this.simpleJdbcTemplate.batchUpdate(
 				"insert into schedules (owner_id, start_time, end_time, visitor_limit, meeting_location) values (:ownerId, :startTime, :endTime, :visitorLimit, :meetingLocation)",
@@ -439,14 +406,7 @@ implements AvailableScheduleDao {
 	 * @return 
 	 */
 	protected SortedSet<AvailableBlock> internalRetrieveSchedule(final IScheduleOwner owner) {
-		MapSqlParameterSource params = new MapSqlParameterSource();
-
-		params.addValue("ownerId", owner.getId());
-
-		List<PersistenceAvailableBlock> scheduleRows = this.simpleJdbcTemplate
-		.query("select * from schedules where owner_id = :ownerId",
-				params,
-				new PersistenceAvailableBlockRowMapper());
+		List<PersistenceAvailableBlock> scheduleRows = internalRetrieveRows(owner);
 
 		SortedSet<AvailableBlock> availableBlocks = new TreeSet<AvailableBlock>();
 		for(PersistenceAvailableBlock row : scheduleRows) {
@@ -456,10 +416,28 @@ implements AvailableScheduleDao {
 		return availableBlocks;
 	}
 
+	/**
+	 * Retrieve ALL rows in the schedules table for an owner.
+	 * 
+	 * @param owner
+	 * @return the rows as stored
+	 */
+	protected List<PersistenceAvailableBlock> internalRetrieveRows(final IScheduleOwner owner) {
+		MapSqlParameterSource params = new MapSqlParameterSource();
+
+		params.addValue("ownerId", owner.getId());
+
+		return this.simpleJdbcTemplate
+		.query("select * from schedules where owner_id = :ownerId",
+				params,
+				new PersistenceAvailableBlockRowMapper());
+	}
+
 	/**
 	 * Retrieve the {@link AvailableBlock}s between the specified dates for an owner in a {@link SortedSet}.
 	 * 
-	 * Starts by retrieving all rows for the owner, then calculating the subSet between the start and end dates.
+	 * Only the rows that overlap the window are selected; rows that extend past either end
+	 * of the window are clipped to startDate (inclusive) and endDate (exclusive).
 	 * 
 	 * @param owner
 	 * @param startDate
@@ -467,53 +445,110 @@ implements AvailableScheduleDao {
 	 * @return
 	 */
 	protected SortedSet<AvailableBlock> internalRetrieveSchedule(final IScheduleOwner owner, final Date startDate, final Date endDate) {		
-		TreeSet<AvailableBlock> allStoredBlocks = new TreeSet<AvailableBlock>();
-		allStoredBlocks.addAll(internalRetrieveSchedule(owner));
-		TreeSet<AvailableBlock> expanded = new TreeSet<AvailableBlock>();
-		expanded.addAll(AvailableBlockBuilder.expand(allStoredBlocks, 1));
-
-		// we need the subset of blocks
-		AvailableBlock startBlock = AvailableBlockBuilder.createSmallestAllowedBlock(startDate);
-		AvailableBlock endBlock = AvailableBlockBuilder.createBlockEndsAt(endDate, 1);
-		NavigableSet<AvailableBlock> innerSet = expanded.subSet(startBlock, true,
-				endBlock, true);
-		// combine the inner set before returning
-		SortedSet<AvailableBlock> combinedInnerSet = AvailableBlockBuilder.combine(innerSet);
-		return combinedInnerSet;
+		MapSqlParameterSource params = new MapSqlParameterSource();
+
+		params.addValue("ownerId", owner.getId())
+				.addValue("start", startDate)
+				.addValue("end", endDate);
+
+		List<PersistenceAvailableBlock> scheduleRows = this.simpleJdbcTemplate.query(
+				"select * from schedules " +
+								"where owner_id = :ownerId and " +
+								"end_time > :start and " +
+								"start_time < :end",
+				params,
+				new PersistenceAvailableBlockRowMapper());
+
+		return toSlotBitmap(scheduleRows).subset(startDate, endDate).combine();
 	}
 
 	/**
-	 * Deletes all existing stored blocks and inserts all specified blocks.
+	 * Compares the stored rows with the combined form of the target bitmap and 
+	 * issues only the deletes, updates and inserts needed to make them match.
+	 * Publishes an {@link AvailableScheduleChangedEvent} if any rows changed.
 	 * 
 	 * @param owner
-	 * @param blocks
+	 * @param storedRows the rows currently stored for the owner
+	 * @param target the desired schedule
+	 * @return the owner's new schedule
 	 */
-	private void replaceSchedule(final IScheduleOwner owner, final SortedSet<AvailableBlock> blocks) {
-		LOG.debug("replacing schedule for owner " + owner + "; argument contains " + blocks.size() + " blocks");
-		// delete all old blocks
-		MapSqlParameterSource params = new MapSqlParameterSource();
-
-		params.addValue("ownerId", owner.getId());
-
-		int rowsUpdated = this.simpleJdbcTemplate.update(
-				"delete from schedules where owner_id = :ownerId",
-				params);
-		LOG.debug("deleted " + rowsUpdated + " for owner " + owner.getId());
-
-		// persist the recombined set
-		SortedSet<AvailableBlock> combined = AvailableBlockBuilder.combine(blocks);
-		LOG.debug("combined set for owner contains " + combined.size() + " blocks");
-		Set<PersistenceAvailableBlock> persistenceBlocks = new HashSet<PersistenceAvailableBlock>();
-		for(AvailableBlock newBlock: combined) {
-			PersistenceAvailableBlock p = new PersistenceAvailableBlock(newBlock, owner.getId());
-			persistenceBlocks.add(p);
+	private AvailableSchedule updateSchedule(final IScheduleOwner owner, final List<PersistenceAvailableBlock> storedRows, 
+			final AvailableSlotBitmap target) {
+		SortedSet<AvailableBlock> combined = target.combine();
+		AvailableScheduleDiff diff = AvailableScheduleDiff.compute(owner.getId(), storedRows, combined);
+		if(diff.isEmpty()) {
+			LOG.debug("no changes to schedule for owner " + owner.getId());
+			return new AvailableSchedule(combined);
 		}
-		internalStoreBlocks(persistenceBlocks);
 
-		LOG.warn("schedule replaced for owner " + owner);
+		internalDeleteBlocks(diff.getDeletes());
+		internalUpdateBlocks(diff.getUpdates());
+		internalStoreBlocks(diff.getInserts());
+
+		LOG.warn("schedule updated for owner " + owner + ", " + diff);
 		if(null != applicationEventPublisher) {
-			AvailableScheduleChangedEvent e = new AvailableScheduleChangedEvent(new AvailableSchedule(blocks), owner);
+			AvailableScheduleChangedEvent e = new AvailableScheduleChangedEvent(new AvailableSchedule(target), owner);
 			applicationEventPublisher.publishEvent(e);
 		}
+		return new AvailableSchedule(combined);
+	}
+
+	/**
+	 * Deletes the rows matching owner, start and end time of each argument using
+	 * {@link NamedParameterJdbcTemplate#batchUpdate(String, SqlParameterSource[])}.
+	 * 
+	 * @param rows
+	 */
+	protected void internalDeleteBlocks(final List<PersistenceAvailableBlock> rows) {
+		if(rows.isEmpty()) {
+			return;
+		}
+		SqlParameterSource[] batch = SqlParameterSourceUtils.createBatch(rows.toArray());
+		this.simpleJdbcTemplate.batchUpdate(
+				"delete from schedules where owner_id = :ownerId and start_time = :startTime and end_time = :endTime",
+				batch);
+	}
+
+	/**
+	 * Replaces the existing rows in each argument with the new values using
+	 * {@link NamedParameterJdbcTemplate#batchUpdate(String, SqlParameterSource[])}.
+	 * 
+	 * @param updates
+	 */
+	protected void internalUpdateBlocks(final List<AvailableScheduleDiff.RowUpdate> updates) {
+		if(updates.isEmpty()) {
+			return;
+		}
+		List<SqlParameterSource> batch = new ArrayList<SqlParameterSource>(updates.size());
+		for(AvailableScheduleDiff.RowUpdate update : updates) {
+			PersistenceAvailableBlock existing = update.getExisting();
+			PersistenceAvailableBlock replacement = update.getReplacement();
+			MapSqlParameterSource params = new MapSqlParameterSource();
+			params.addValue("ownerId", existing.getOwnerId())
+				.addValue("existingStartTime", existing.getStartTime())
+				.addValue("existingEndTime", existing.getEndTime())
+				.addValue("startTime", replacement.getStartTime())
+				.addValue("endTime", replacement.getEndTime())
+				.addValue("visitorLimit", replacement.getVisitorLimit())
+				.addValue("meetingLocation", replacement.getMeetingLocation());
+			batch.add(params);
+		}
+		this.simpleJdbcTemplate.batchUpdate(
+				"update schedules set start_time = :startTime, end_time = :endTime, visitor_limit = :visitorLimit, meeting_location = :meetingLocation " +
+				"where owner_id = :ownerId and start_time = :existingStartTime and end_time = :existingEndTime",
+				batch.toArray(new SqlParameterSource[batch.size()]));
+	}
+
+	/**
+	 * 
+	 * @param rows
+	 * @return a new {@link AvailableSlotBitmap} containing the stored rows
+	 */
+	private static AvailableSlotBitmap toSlotBitmap(final List<PersistenceAvailableBlock> rows) {
+		AvailableSlotBitmap bitmap = new AvailableSlotBitmap();
+		for(PersistenceAvailableBlock row : rows) {
+			bitmap.add(AvailableBlockBuilder.createBlock(row.getStartTime(), row.getEndTime(), row.getVisitorLimit(), row.getMeetingLocation()));
+		}
+		return bitmap;
 	}
 }
@@ -24,6 +24,7 @@ import org.apache.commons.lang.Validate;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.jasig.schedassist.ICalendarAccountDao;
+import org.jasig.schedassist.impl.caching.RequestMemo;
 import org.jasig.schedassist.model.Database;
 import org.jasig.schedassist.model.ICalendarAccount;
 import org.jasig.schedassist.model.IScheduleOwner;
@@ -48,6 +49,8 @@ import javax.sql.DataSource;
 /**
  * Spring JDBC backed implementation of {@link OwnerDao}.
  * 
+ * Owner and preference lookups are memoized for the current {@link RequestMemo}, and discarded on any write.
+ * 
  * @author Nicholas Blair, nblair@doit.wisc.edu
  * @version $Id: SpringJDBCOwnerDaoImpl.java 3100 2011-02-28 18:41:40Z npblair $
  */
@@ -55,6 +58,10 @@ import javax.sql.DataSource;
 public class SpringJDBCOwnerDaoImpl implements
 		OwnerDao {
 
+	/**
+	 * {@link RequestMemo} scope of this dao's lookups.
+	 */
+	static final String MEMO_SCOPE = "ownerDao";
 	private final Log LOG = LogFactory.getLog(this.getClass());
 	private JdbcTemplate simpleJdbcTemplate;
 	private DataFieldMaxValueIncrementer ownerIdSequence;
@@ -135,6 +142,7 @@ public class SpringJDBCOwnerDaoImpl implements
 	@Override
 	public void removeAccount(IScheduleOwner owner) {
 		Validate.notNull(owner, "IScheduleOwner argument cannot be null");
+		RequestMemo.invalidate(MEMO_SCOPE);
 		// 1. remove all entries from adhoc authz table
 		this.simpleJdbcTemplate.update("delete from owner_adhoc_authz where owner_username = ?", owner.getCalendarAccount().getUsername());
 		// 2. delete from owners table (will cascade to preferences and schedules)
@@ -150,7 +158,9 @@ public class SpringJDBCOwnerDaoImpl implements
 	@Override
 	public IScheduleOwner locateOwner(final ICalendarAccount calendarAccount) {
 		Validate.notNull(calendarAccount, "ICalendarAccount argument cannot be null");
-		IScheduleOwner owner = internalLookup(calendarAccount);
+		IScheduleOwner owner = RequestMemo.memoize(MEMO_SCOPE, 
+				RequestMemo.key("locateOwner", calendarAccount.getCalendarUniqueId(), calendarAccount.getUsername()),
+				() -> internalLookup(calendarAccount));
 		return owner;
 	}
 
@@ -186,6 +196,17 @@ public class SpringJDBCOwnerDaoImpl implements
 	@Override
 	public Map<Preferences, String> retrievePreferences(final IScheduleOwner owner) {
 		Validate.notNull(owner, "IScheduleOwner argument cannot be null");
+		// callers may modify the result
+		return new HashMap<Preferences, String>(RequestMemo.memoize(MEMO_SCOPE, 
+				RequestMemo.key("retrievePreferences", owner.getId()),
+				() -> internalRetrievePreferences(owner)));
+	}
+	/**
+	 * 
+	 * @param owner
+	 * @return the stored preferences of the owner, with defaults for those not stored
+	 */
+	protected Map<Preferences, String> internalRetrievePreferences(final IScheduleOwner owner) {
 		List<PersistencePreference> stored = this.simpleJdbcTemplate.query(
 				"select * from preferences where owner_id = ?", 
 				new PersistencePreferenceRowMapper(),
@@ -220,6 +241,7 @@ public class SpringJDBCOwnerDaoImpl implements
 	@Override
 	public IScheduleOwner removePreference(IScheduleOwner owner, Preferences preference) {
 		Validate.notNull(owner, "IScheduleOwner argument cannot be null");
+		RequestMemo.invalidate(MEMO_SCOPE);
 		int rowsUpdated = this.simpleJdbcTemplate.update(
 				"delete from preferences where owner_id = ? and preference_key = ?",
 				owner.getId(),
@@ -264,8 +286,10 @@ public class SpringJDBCOwnerDaoImpl implements
 	 */
 	@Transactional
 	@Override
-	public IScheduleOwner locateOwnerByAvailableId(long internalId) {
-		IScheduleOwner result = internalLookup(internalId);
+	public IScheduleOwner locateOwnerByAvailableId(final long internalId) {
+		IScheduleOwner result = RequestMemo.memoize(MEMO_SCOPE, 
+				RequestMemo.key("locateOwnerByAvailableId", internalId),
+				() -> internalLookup(internalId));
 		return result;
 	}
 	
@@ -305,6 +329,7 @@ public class SpringJDBCOwnerDaoImpl implements
 	 * @return the new {@link IScheduleOwner}
 	 */
 	protected IScheduleOwner internalStoreAsOwner(final ICalendarAccount calendarUser) {
+		RequestMemo.invalidate(MEMO_SCOPE);
 		long newOwnerId = ownerIdSequence.nextLongValue();
 		final String visibleIdentifier = getIdentifyingAttribute(calendarUser);
 		int rows = this.simpleJdbcTemplate.update(
@@ -447,6 +472,7 @@ public class SpringJDBCOwnerDaoImpl implements
 	 * @param value
 	 */
 	protected void replacePreference(final IScheduleOwner owner, final Preferences preference, final String value) {
+		RequestMemo.invalidate(MEMO_SCOPE);
 		int rowsUpdated = this.simpleJdbcTemplate.update(
 				"delete from preferences where owner_id = ? and preference_key = ?",
 				owner.getId(),
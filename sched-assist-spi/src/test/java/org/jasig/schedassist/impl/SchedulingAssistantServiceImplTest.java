@@ -20,14 +20,28 @@
 package org.jasig.schedassist.impl;
 
 import java.sql.SQLException;
+import java.util.Date;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import junit.framework.Assert;
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.DateTime;
+import net.fortuna.ical4j.model.Period;
+import net.fortuna.ical4j.model.PeriodList;
 import net.fortuna.ical4j.model.PropertyList;
 import net.fortuna.ical4j.model.component.VEvent;
 import net.fortuna.ical4j.model.property.Attendee;
 
 import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.jasig.schedassist.ConflictExistsException;
+import org.jasig.schedassist.IAppointmentBookingDao;
 import org.jasig.schedassist.ICalendarDataDao;
+import org.jasig.schedassist.IFreeBusyDataDao;
 import org.jasig.schedassist.NullAffiliationSourceImpl;
 import org.jasig.schedassist.SchedulingException;
 import org.jasig.schedassist.impl.owner.AvailableScheduleDao;
@@ -36,9 +50,13 @@ import org.jasig.schedassist.impl.visitor.DefaultScheduleVisitorImpl;
 import org.jasig.schedassist.model.AppointmentRole;
 import org.jasig.schedassist.model.AvailableBlock;
 import org.jasig.schedassist.model.AvailableBlockBuilder;
+import org.jasig.schedassist.model.AvailableSchedule;
 import org.jasig.schedassist.model.CommonDateOperations;
 import org.jasig.schedassist.model.DefaultEventUtilsImpl;
+import org.jasig.schedassist.model.VisibleSchedule;
+import org.jasig.schedassist.model.VisibleScheduleBuilder;
 import org.jasig.schedassist.model.mock.MockCalendarAccount;
+import org.apache.commons.lang.time.DateUtils;
 import org.junit.Test;
 import org.springframework.jdbc.CannotGetJdbcConnectionException;
 
@@ -518,4 +536,250 @@ public class SchedulingAssistantServiceImplTest {
 		
 		EasyMock.verify(mockCalendarDao);
 	}
+	
+	/**
+	 * With an {@link IFreeBusyDataDao} that returns busy periods, the visitor's calendar data is not retrieved.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testCalculateVisitorConflictsBusyPeriods() throws Exception {
+		MockCalendarAccount ownerAccount = new MockCalendarAccount();
+		ownerAccount.setUsername("user1");
+		DefaultScheduleOwnerImpl owner = new DefaultScheduleOwnerImpl(ownerAccount, 1);
+		MockCalendarAccount visitorAccount = new MockCalendarAccount();
+		visitorAccount.setUsername("v1");
+		DefaultScheduleVisitorImpl visitor = new DefaultScheduleVisitorImpl(visitorAccount);
+		
+		Date blockStart = DateUtils.addHours(DateUtils.truncate(DateUtils.addDays(new Date(), 2), java.util.Calendar.DATE), 9);
+		SortedSet<AvailableBlock> blocks = new TreeSet<AvailableBlock>();
+		blocks.add(AvailableBlockBuilder.createBlock(blockStart, DateUtils.addHours(blockStart, 1)));
+		AvailableSchedule schedule = new AvailableSchedule(blocks);
+		PeriodList busyPeriods = new PeriodList(true);
+		busyPeriods.add(new Period(new DateTime(DateUtils.addMinutes(blockStart, 40)), new DateTime(DateUtils.addMinutes(blockStart, 50))));
+		
+		// no expectations: any call to the calendar dao fails the test
+		ICalendarDataDao mockCalendarDao = EasyMock.createMock(ICalendarDataDao.class);
+		IFreeBusyDataDao mockFreeBusyDao = EasyMock.createMock(IFreeBusyDataDao.class);
+		EasyMock.expect(mockFreeBusyDao.getBusyPeriods(EasyMock.eq(visitorAccount), EasyMock.isA(Date.class), EasyMock.isA(Date.class))).andReturn(busyPeriods);
+		AvailableScheduleDao mockScheduleDao = EasyMock.createMock(AvailableScheduleDao.class);
+		EasyMock.expect(mockScheduleDao.retrieve(EasyMock.eq(owner), EasyMock.isA(Date.class), EasyMock.isA(Date.class))).andReturn(schedule);
+		EasyMock.replay(mockCalendarDao, mockFreeBusyDao, mockScheduleDao);
+		
+		SchedulingAssistantServiceImpl serviceImpl = new SchedulingAssistantServiceImpl();
+		serviceImpl.setCalendarDataDao(mockCalendarDao);
+		serviceImpl.setFreeBusyDataDao(mockFreeBusyDao);
+		serviceImpl.setAvailableScheduleDao(mockScheduleDao);
+		serviceImpl.setVisibleScheduleBuilder(new VisibleScheduleBuilder(new DefaultEventUtilsImpl(new NullAffiliationSourceImpl())));
+		
+		List<AvailableBlock> conflicts = serviceImpl.calculateVisitorConflicts(visitor, owner, new Date(), DateUtils.addDays(new Date(), 7));
+		Assert.assertEquals(1, conflicts.size());
+		Assert.assertEquals(DateUtils.addMinutes(blockStart, 30), conflicts.get(0).getStartTime());
+		
+		EasyMock.verify(mockCalendarDao, mockFreeBusyDao, mockScheduleDao);
+	}
+	
+	/**
+	 * The owner's calendar is retrieved on the lookup executor while the schedule is retrieved
+	 * on the calling thread; each lookup waits for the other to start.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testGetVisibleScheduleConcurrentLookups() throws Exception {
+		MockCalendarAccount ownerAccount = new MockCalendarAccount();
+		ownerAccount.setUsername("user1");
+		DefaultScheduleOwnerImpl owner = new DefaultScheduleOwnerImpl(ownerAccount, 1);
+		MockCalendarAccount visitorAccount = new MockCalendarAccount();
+		visitorAccount.setUsername("v1");
+		DefaultScheduleVisitorImpl visitor = new DefaultScheduleVisitorImpl(visitorAccount);
+		
+		final CountDownLatch calendarStarted = new CountDownLatch(1);
+		final CountDownLatch scheduleStarted = new CountDownLatch(1);
+		ICalendarDataDao mockCalendarDao = EasyMock.createMock(ICalendarDataDao.class);
+		EasyMock.expect(mockCalendarDao.getCalendar(EasyMock.eq(ownerAccount), EasyMock.isA(Date.class), EasyMock.isA(Date.class))).andAnswer(new IAnswer<Calendar>() {
+			@Override
+			public Calendar answer() throws Throwable {
+				calendarStarted.countDown();
+				Assert.assertTrue(scheduleStarted.await(5, TimeUnit.SECONDS));
+				return new Calendar();
+			}
+		});
+		AvailableScheduleDao mockScheduleDao = EasyMock.createMock(AvailableScheduleDao.class);
+		EasyMock.expect(mockScheduleDao.retrieve(owner)).andAnswer(new IAnswer<AvailableSchedule>() {
+			@Override
+			public AvailableSchedule answer() throws Throwable {
+				scheduleStarted.countDown();
+				Assert.assertTrue(calendarStarted.await(5, TimeUnit.SECONDS));
+				return new AvailableSchedule(new TreeSet<AvailableBlock>());
+			}
+		});
+		EasyMock.replay(mockCalendarDao, mockScheduleDao);
+		
+		SchedulingAssistantServiceImpl serviceImpl = new SchedulingAssistantServiceImpl();
+		serviceImpl.setCalendarDataDao(mockCalendarDao);
+		serviceImpl.setAvailableScheduleDao(mockScheduleDao);
+		serviceImpl.setVisibleScheduleBuilder(new VisibleScheduleBuilder(new DefaultEventUtilsImpl(new NullAffiliationSourceImpl())));
+		serviceImpl.setLookupThreads(1);
+		serviceImpl.afterPropertiesSet();
+		try {
+			VisibleSchedule schedule = serviceImpl.getVisibleSchedule(visitor, owner);
+			Assert.assertEquals(0, schedule.getSize());
+		} finally {
+			serviceImpl.destroy();
+		}
+		EasyMock.verify(mockCalendarDao, mockScheduleDao);
+	}
+	
+	/**
+	 * A visitor calendar lookup that takes longer than lookupTimeoutMillis fails with a {@link LookupTimeoutException}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testCalculateVisitorConflictsLookupTimeout() throws Exception {
+		MockCalendarAccount ownerAccount = new MockCalendarAccount();
+		ownerAccount.setUsername("user1");
+		DefaultScheduleOwnerImpl owner = new DefaultScheduleOwnerImpl(ownerAccount, 1);
+		MockCalendarAccount visitorAccount = new MockCalendarAccount();
+		visitorAccount.setUsername("v1");
+		DefaultScheduleVisitorImpl visitor = new DefaultScheduleVisitorImpl(visitorAccount);
+		
+		ICalendarDataDao mockCalendarDao = EasyMock.createMock(ICalendarDataDao.class);
+		EasyMock.expect(mockCalendarDao.getCalendar(EasyMock.eq(visitorAccount), EasyMock.isA(Date.class), EasyMock.isA(Date.class))).andAnswer(new IAnswer<Calendar>() {
+			@Override
+			public Calendar answer() throws Throwable {
+				Thread.sleep(5000);
+				return new Calendar();
+			}
+		});
+		AvailableScheduleDao mockScheduleDao = EasyMock.createMock(AvailableScheduleDao.class);
+		EasyMock.expect(mockScheduleDao.retrieve(EasyMock.eq(owner), EasyMock.isA(Date.class), EasyMock.isA(Date.class))).andReturn(new AvailableSchedule(new TreeSet<AvailableBlock>()));
+		EasyMock.replay(mockCalendarDao, mockScheduleDao);
+		
+		SchedulingAssistantServiceImpl serviceImpl = new SchedulingAssistantServiceImpl();
+		serviceImpl.setCalendarDataDao(mockCalendarDao);
+		serviceImpl.setAvailableScheduleDao(mockScheduleDao);
+		serviceImpl.setVisibleScheduleBuilder(new VisibleScheduleBuilder(new DefaultEventUtilsImpl(new NullAffiliationSourceImpl())));
+		serviceImpl.setLookupTimeoutMillis(100);
+		serviceImpl.afterPropertiesSet();
+		try {
+			serviceImpl.calculateVisitorConflicts(visitor, owner, new Date(), DateUtils.addDays(new Date(), 7));
+			Assert.fail("expected LookupTimeoutException not thrown");
+		} catch (LookupTimeoutException e) {
+			// success
+		} finally {
+			serviceImpl.destroy();
+		}
+	}
+	
+	/**
+	 * With an {@link IAppointmentBookingDao}, the single lookup and conditional create replace
+	 * getExistingAppointment, checkForConflicts and createAppointment; a visitor that loses the race to create
+	 * a multiple visitor appointment joins it.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testScheduleAppointmentBookingDao() throws Exception {
+		MockCalendarAccount ownerAccount = new MockCalendarAccount();
+		ownerAccount.setUsername("user1");
+		ownerAccount.setEmailAddress("owner@domain.com");
+		ownerAccount.setDisplayName("OWNER OWNER");
+		DefaultScheduleOwnerImpl owner = new DefaultScheduleOwnerImpl(ownerAccount, 1);
+		
+		MockCalendarAccount visitorAccount = new MockCalendarAccount();
+		visitorAccount.setUsername("v1");
+		visitorAccount.setEmailAddress("v1@doit.wisc.edu");
+		visitorAccount.setDisplayName("VISITOR ONE");
+		DefaultScheduleVisitorImpl visitor = new DefaultScheduleVisitorImpl(visitorAccount);
+		MockCalendarAccount visitor2Account = new MockCalendarAccount();
+		visitor2Account.setUsername("v2");
+		visitor2Account.setEmailAddress("v2@doit.wisc.edu");
+		visitor2Account.setDisplayName("VISITOR TWO");
+		DefaultScheduleVisitorImpl visitor2 = new DefaultScheduleVisitorImpl(visitor2Account);
+		
+		AvailableBlock targetBlock = AvailableBlockBuilder.createBlock("20091111-1330", "20091111-1400", 2);
+		DefaultEventUtilsImpl eventUtils = new DefaultEventUtilsImpl(new NullAffiliationSourceImpl());
+		VEvent existingEvent = eventUtils.constructAvailableAppointment(targetBlock, owner, visitor, "description");
+		VEvent expectedEvent = new VEvent();
+		
+		ICalendarDataDao mockCalendarDao = EasyMock.createMock(ICalendarDataDao.class);
+		EasyMock.expect(mockCalendarDao.getExistingAppointment(owner, targetBlock)).andReturn(existingEvent);
+		EasyMock.expect(mockCalendarDao.joinAppointment(visitor2, owner, existingEvent)).andReturn(expectedEvent);
+		IAppointmentBookingDao mockBookingDao = EasyMock.createMock(IAppointmentBookingDao.class);
+		EasyMock.expect(mockBookingDao.getExistingAppointmentOrCheckForConflicts(owner, targetBlock)).andReturn(null);
+		EasyMock.expect(mockBookingDao.createAppointmentIfAbsent(visitor2, owner, targetBlock, "description")).andThrow(new ConflictExistsException());
+		AvailableScheduleDao mockScheduleDao = EasyMock.createMock(AvailableScheduleDao.class);
+		EasyMock.expect(mockScheduleDao.retrieveTargetBlock(owner, targetBlock.getStartTime())).andReturn(targetBlock);
+		EasyMock.replay(mockCalendarDao, mockBookingDao, mockScheduleDao);
+		
+		SchedulingAssistantServiceImpl serviceImpl = new SchedulingAssistantServiceImpl();
+		serviceImpl.setAvailableScheduleDao(mockScheduleDao);
+		serviceImpl.setCalendarDataDao(mockCalendarDao);
+		serviceImpl.setAppointmentBookingDao(mockBookingDao);
+		serviceImpl.setEventUtils(eventUtils);
+		
+		Assert.assertSame(expectedEvent, serviceImpl.scheduleAppointment(visitor2, owner, targetBlock, "description"));
+		EasyMock.verify(mockCalendarDao, mockBookingDao, mockScheduleDao);
+		
+		// single visitor block with an existing appointment is a conflict
+		AvailableBlock singleBlock = AvailableBlockBuilder.createBlock("20091111-1330", "20091111-1400", 1);
+		EasyMock.reset(mockCalendarDao, mockBookingDao, mockScheduleDao);
+		EasyMock.expect(mockBookingDao.getExistingAppointmentOrCheckForConflicts(owner, singleBlock)).andReturn(existingEvent);
+		EasyMock.expect(mockScheduleDao.retrieveTargetBlock(owner, singleBlock.getStartTime())).andReturn(singleBlock);
+		EasyMock.replay(mockCalendarDao, mockBookingDao, mockScheduleDao);
+		try {
+			serviceImpl.scheduleAppointment(visitor2, owner, singleBlock, "description");
+			Assert.fail("expected ConflictExistsException not thrown");
+		} catch (ConflictExistsException e) {
+			// success
+		}
+		EasyMock.verify(mockCalendarDao, mockBookingDao, mockScheduleDao);
+	}
+	
+	/**
+	 * With an {@link IAppointmentBookingDao}, the first visitor to book a multiple visitor block is checked for
+	 * conflicts, as with {@link ICalendarDataDao#checkForConflicts(org.jasig.schedassist.model.IScheduleOwner, AvailableBlock)}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testScheduleAppointmentBookingDaoMultipleVisitorsConflict() throws Exception {
+		MockCalendarAccount ownerAccount = new MockCalendarAccount();
+		ownerAccount.setUsername("user1");
+		ownerAccount.setEmailAddress("owner@domain.com");
+		ownerAccount.setDisplayName("OWNER OWNER");
+		DefaultScheduleOwnerImpl owner = new DefaultScheduleOwnerImpl(ownerAccount, 1);
+		
+		MockCalendarAccount visitorAccount = new MockCalendarAccount();
+		visitorAccount.setUsername("v1");
+		visitorAccount.setEmailAddress("v1@doit.wisc.edu");
+		visitorAccount.setDisplayName("VISITOR ONE");
+		DefaultScheduleVisitorImpl visitor = new DefaultScheduleVisitorImpl(visitorAccount);
+		
+		AvailableBlock targetBlock = AvailableBlockBuilder.createBlock("20091111-1330", "20091111-1400", 2);
+		
+		ICalendarDataDao mockCalendarDao = EasyMock.createMock(ICalendarDataDao.class);
+		IAppointmentBookingDao mockBookingDao = EasyMock.createMock(IAppointmentBookingDao.class);
+		EasyMock.expect(mockBookingDao.getExistingAppointmentOrCheckForConflicts(owner, targetBlock)).andThrow(new ConflictExistsException());
+		AvailableScheduleDao mockScheduleDao = EasyMock.createMock(AvailableScheduleDao.class);
+		EasyMock.expect(mockScheduleDao.retrieveTargetBlock(owner, targetBlock.getStartTime())).andReturn(targetBlock);
+		EasyMock.replay(mockCalendarDao, mockBookingDao, mockScheduleDao);
+		
+		SchedulingAssistantServiceImpl serviceImpl = new SchedulingAssistantServiceImpl();
+		serviceImpl.setAvailableScheduleDao(mockScheduleDao);
+		serviceImpl.setCalendarDataDao(mockCalendarDao);
+		serviceImpl.setAppointmentBookingDao(mockBookingDao);
+		serviceImpl.setEventUtils(new DefaultEventUtilsImpl(new NullAffiliationSourceImpl()));
+		
+		try {
+			serviceImpl.scheduleAppointment(visitor, owner, targetBlock, "description");
+			Assert.fail("expected ConflictExistsException not thrown");
+		} catch (ConflictExistsException e) {
+			// success
+		}
+		// no appointment is created
+		EasyMock.verify(mockCalendarDao, mockBookingDao, mockScheduleDao);
+	}
 }
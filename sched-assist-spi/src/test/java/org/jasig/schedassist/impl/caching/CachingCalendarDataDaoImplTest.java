@@ -0,0 +1,164 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.jasig.schedassist.impl.caching;
+
+import java.util.Date;
+
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.DateTime;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+
+import org.apache.commons.lang.time.DateUtils;
+import org.easymock.EasyMock;
+import org.jasig.schedassist.ICalendarDataDao;
+import org.jasig.schedassist.impl.events.AppointmentCreatedEvent;
+import org.jasig.schedassist.model.AvailableBlock;
+import org.jasig.schedassist.model.AvailableBlockBuilder;
+import org.jasig.schedassist.model.mock.MockCalendarAccount;
+import org.jasig.schedassist.model.mock.MockScheduleOwner;
+import org.jasig.schedassist.model.mock.MockScheduleVisitor;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CachingCalendarDataDaoImpl}.
+ */
+public class CachingCalendarDataDaoImplTest {
+
+	private CacheManager cacheManager;
+	private Cache cache;
+	
+	/**
+	 * 
+	 */
+	@Before
+	public void setUp() {
+		cacheManager = new CacheManager();
+		cache = new Cache("calendarDataCacheTest", 100, false, false, 60, 0);
+		cacheManager.addCache(cache);
+	}
+	/**
+	 * 
+	 */
+	@After
+	public void tearDown() {
+		cacheManager.shutdown();
+	}
+
+	/**
+	 * Windows within the same hour share a cache entry.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testCacheHit() throws Exception {
+		MockCalendarAccount account = new MockCalendarAccount();
+		account.setUsername("owner1");
+		Date windowStart = DateUtils.truncate(new Date(), java.util.Calendar.HOUR);
+		Date windowEnd = DateUtils.addDays(windowStart, 14);
+		Calendar calendar = new Calendar();
+
+		ICalendarDataDao delegate = EasyMock.createMock(ICalendarDataDao.class);
+		EasyMock.expect(delegate.getCalendar(account, windowStart, windowEnd)).andReturn(calendar).once();
+		EasyMock.replay(delegate);
+		CachingCalendarDataDaoImpl dao = new CachingCalendarDataDaoImpl(delegate, cache);
+
+		Calendar miss = dao.getCalendar(account, DateUtils.addMinutes(windowStart, 5), DateUtils.addMinutes(windowEnd, -5));
+		Assert.assertNotSame(calendar, miss);
+		Assert.assertEquals(calendar, miss);
+		Calendar hit = dao.getCalendar(account, DateUtils.addMinutes(windowStart, 10), DateUtils.addMinutes(windowEnd, -10));
+		Assert.assertNotSame(calendar, hit);
+		Assert.assertEquals(calendar, hit);
+		Assert.assertEquals(1, cache.getSize());
+		EasyMock.verify(delegate);
+	}
+
+	/**
+	 * Modifying a returned calendar does not affect the cached copy or the delegate's calendar.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testCachedCopies() throws Exception {
+		MockCalendarAccount account = new MockCalendarAccount();
+		account.setUsername("owner1");
+		Date windowStart = DateUtils.truncate(new Date(), java.util.Calendar.HOUR);
+		Date windowEnd = DateUtils.addDays(windowStart, 14);
+		Calendar calendar = new Calendar();
+		calendar.getComponents().add(new VEvent(new DateTime(DateUtils.addDays(windowStart, 1)), "event"));
+
+		ICalendarDataDao delegate = EasyMock.createMock(ICalendarDataDao.class);
+		EasyMock.expect(delegate.getCalendar(account, windowStart, windowEnd)).andReturn(calendar).once();
+		EasyMock.replay(delegate);
+		CachingCalendarDataDaoImpl dao = new CachingCalendarDataDaoImpl(delegate, cache);
+
+		dao.getCalendar(account, windowStart, windowEnd).getComponents().clear();
+		// the delegate's instance is left alone
+		Assert.assertEquals(1, calendar.getComponents().size());
+		Calendar first = dao.getCalendar(account, windowStart, windowEnd);
+		Assert.assertEquals(1, first.getComponents().size());
+		first.getComponents().clear();
+		Assert.assertEquals(1, dao.getCalendar(account, windowStart, windowEnd).getComponents().size());
+		EasyMock.verify(delegate);
+	}
+
+	/**
+	 * Writes through the dao and appointment events remove the cached calendars for the accounts involved.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testInvalidation() throws Exception {
+		MockCalendarAccount ownerAccount = new MockCalendarAccount();
+		ownerAccount.setUsername("owner1");
+		MockCalendarAccount otherAccount = new MockCalendarAccount();
+		otherAccount.setUsername("owner2");
+		MockCalendarAccount visitorAccount = new MockCalendarAccount();
+		visitorAccount.setUsername("visitor1");
+		MockScheduleOwner owner = new MockScheduleOwner(ownerAccount, 1);
+		MockScheduleVisitor visitor = new MockScheduleVisitor(visitorAccount);
+		Date windowStart = DateUtils.truncate(new Date(), java.util.Calendar.HOUR);
+		Date windowEnd = DateUtils.addDays(windowStart, 14);
+		AvailableBlock block = AvailableBlockBuilder.createBlock(DateUtils.addDays(windowStart, 1), DateUtils.addHours(DateUtils.addDays(windowStart, 1), 1));
+
+		ICalendarDataDao delegate = EasyMock.createMock(ICalendarDataDao.class);
+		EasyMock.expect(delegate.getCalendar(ownerAccount, windowStart, windowEnd)).andReturn(new Calendar()).times(3);
+		EasyMock.expect(delegate.getCalendar(otherAccount, windowStart, windowEnd)).andReturn(new Calendar()).once();
+		EasyMock.expect(delegate.createAppointment(visitor, owner, block, "description")).andReturn(null);
+		EasyMock.replay(delegate);
+		CachingCalendarDataDaoImpl dao = new CachingCalendarDataDaoImpl(delegate, cache);
+
+		dao.getCalendar(ownerAccount, windowStart, windowEnd);
+		dao.getCalendar(otherAccount, windowStart, windowEnd);
+		dao.createAppointment(visitor, owner, block, "description");
+		Assert.assertEquals(1, cache.getSize());
+		dao.getCalendar(ownerAccount, windowStart, windowEnd);
+		dao.onApplicationEvent(new AppointmentCreatedEvent(new VEvent(), owner, visitor, block, "description"));
+		dao.getCalendar(ownerAccount, windowStart, windowEnd);
+		// other account is still cached
+		dao.getCalendar(otherAccount, windowStart, windowEnd);
+		EasyMock.verify(delegate);
+	}
+}
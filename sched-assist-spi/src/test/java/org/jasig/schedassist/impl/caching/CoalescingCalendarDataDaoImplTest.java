@@ -0,0 +1,168 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.jasig.schedassist.impl.caching;
+
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.component.VEvent;
+
+import org.apache.commons.lang.time.DateUtils;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.jasig.schedassist.ICalendarDataDao;
+import org.jasig.schedassist.impl.ThreadGroupRunner;
+import org.jasig.schedassist.model.mock.MockCalendarAccount;
+import org.jasig.schedassist.model.mock.MockScheduleOwner;
+import org.jasig.schedassist.model.mock.MockScheduleVisitor;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CoalescingCalendarDataDaoImpl}.
+ */
+public class CoalescingCalendarDataDaoImplTest {
+
+	/**
+	 * A call for a contained range while a retrieval is in flight shares its result.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testContainedRangeShared() throws Exception {
+		final MockCalendarAccount account = new MockCalendarAccount();
+		account.setUsername("owner1");
+		final Date start = new Date();
+		final Date end = DateUtils.addDays(start, 14);
+		final Calendar calendar = new Calendar();
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		ICalendarDataDao delegate = EasyMock.createMock(ICalendarDataDao.class);
+		EasyMock.expect(delegate.getCalendar(account, start, end)).andAnswer(new IAnswer<Calendar>() {
+			@Override
+			public Calendar answer() throws Throwable {
+				started.countDown();
+				Assert.assertTrue(release.await(5, TimeUnit.SECONDS));
+				return calendar;
+			}
+		}).once();
+		EasyMock.replay(delegate);
+		final CoalescingCalendarDataDaoImpl dao = new CoalescingCalendarDataDaoImpl(delegate);
+
+		final AtomicReference<Calendar> leaderResult = new AtomicReference<Calendar>();
+		ThreadGroupRunner runner = new ThreadGroupRunner("coalescing-", true);
+		runner.addTask(new Runnable() {
+			@Override
+			public void run() {
+				leaderResult.set(dao.getCalendar(account, start, end));
+			}
+		});
+		runner.start();
+		Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals(1, dao.getInFlightCount());
+
+		final AtomicReference<Calendar> followerResult = new AtomicReference<Calendar>();
+		ThreadGroupRunner followers = new ThreadGroupRunner("coalescing-follower-", true);
+		followers.addTask(new Runnable() {
+			@Override
+			public void run() {
+				followerResult.set(dao.getCalendar(account, DateUtils.addDays(start, 1), DateUtils.addDays(start, 7)));
+			}
+		});
+		followers.start();
+		// wait for the follower to join the in flight request
+		for(int i = 0; i < 500 && dao.getDeduplicatedCount() == 0; i++) {
+			Thread.sleep(10);
+		}
+		release.countDown();
+		runner.join();
+		followers.join();
+
+		Assert.assertSame(calendar, leaderResult.get());
+		Assert.assertSame(calendar, followerResult.get());
+		Assert.assertEquals(2, dao.getRequestCount());
+		Assert.assertEquals(1, dao.getDeduplicatedCount());
+		Assert.assertEquals(0, dao.getInFlightCount());
+		EasyMock.verify(delegate);
+	}
+
+	/**
+	 * Sequential calls, and calls after a write, are not shared.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testSequentialAndAfterWrite() throws Exception {
+		MockCalendarAccount ownerAccount = new MockCalendarAccount();
+		ownerAccount.setUsername("owner1");
+		MockCalendarAccount visitorAccount = new MockCalendarAccount();
+		visitorAccount.setUsername("visitor1");
+		Date start = new Date();
+		Date end = DateUtils.addDays(start, 14);
+
+		ICalendarDataDao delegate = EasyMock.createMock(ICalendarDataDao.class);
+		EasyMock.expect(delegate.getCalendar(ownerAccount, start, end)).andReturn(new Calendar()).times(2);
+		delegate.cancelAppointment(EasyMock.isA(MockScheduleVisitor.class), EasyMock.isA(MockScheduleOwner.class), (VEvent) EasyMock.isNull());
+		EasyMock.expectLastCall();
+		EasyMock.replay(delegate);
+		CoalescingCalendarDataDaoImpl dao = new CoalescingCalendarDataDaoImpl(delegate);
+
+		dao.getCalendar(ownerAccount, start, end);
+		dao.cancelAppointment(new MockScheduleVisitor(visitorAccount), new MockScheduleOwner(ownerAccount, 1), null);
+		dao.getCalendar(ownerAccount, start, end);
+		Assert.assertEquals(2, dao.getRequestCount());
+		Assert.assertEquals(0, dao.getDeduplicatedCount());
+		EasyMock.verify(delegate);
+	}
+
+	/**
+	 * A failed retrieval is not remembered.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testFailure() throws Exception {
+		MockCalendarAccount account = new MockCalendarAccount();
+		account.setUsername("owner1");
+		Date start = new Date();
+		Date end = DateUtils.addDays(start, 14);
+
+		ICalendarDataDao delegate = EasyMock.createMock(ICalendarDataDao.class);
+		EasyMock.expect(delegate.getCalendar(account, start, end)).andThrow(new IllegalStateException("unavailable"));
+		EasyMock.expect(delegate.getCalendar(account, start, end)).andReturn(new Calendar());
+		EasyMock.replay(delegate);
+		CoalescingCalendarDataDaoImpl dao = new CoalescingCalendarDataDaoImpl(delegate);
+
+		try {
+			dao.getCalendar(account, start, end);
+			Assert.fail("expected IllegalStateException not thrown");
+		} catch (IllegalStateException e) {
+			// success
+		}
+		Assert.assertNotNull(dao.getCalendar(account, start, end));
+		Assert.assertEquals(0, dao.getInFlightCount());
+		EasyMock.verify(delegate);
+	}
+}
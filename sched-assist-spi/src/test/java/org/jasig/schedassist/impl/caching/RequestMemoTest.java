@@ -0,0 +1,124 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.jasig.schedassist.impl.caching;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.jasig.schedassist.model.mock.MockCalendarAccount;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link RequestMemo}.
+ */
+public class RequestMemoTest {
+
+	/**
+	 * Without a memo bound to the thread every lookup is performed.
+	 */
+	@Test
+	public void testNoMemo() {
+		Assert.assertNull(RequestMemo.current());
+		AtomicInteger lookups = new AtomicInteger();
+		Supplier<String> loader = () -> "value" + lookups.incrementAndGet();
+		Assert.assertEquals("value1", RequestMemo.memoize("scope", "key", loader));
+		Assert.assertEquals("value2", RequestMemo.memoize("scope", "key", loader));
+		RequestMemo.invalidate("scope");
+	}
+
+	/**
+	 * 
+	 */
+	@Test
+	public void testMemoize() {
+		MockCalendarAccount account = new MockCalendarAccount();
+		account.setUsername("owner1");
+		MockCalendarAccount other = new MockCalendarAccount();
+		other.setUsername("owner2");
+		AtomicInteger lookups = new AtomicInteger();
+		Supplier<String> loader = () -> "value" + lookups.incrementAndGet();
+
+		RequestMemo memo = RequestMemo.begin();
+		try {
+			Assert.assertEquals("value1", RequestMemo.memoize(account, RequestMemo.key("lookup", 1L), loader));
+			Assert.assertEquals("value1", RequestMemo.memoize(account, RequestMemo.key("lookup", 1L), loader));
+			Assert.assertEquals("value2", RequestMemo.memoize(account, RequestMemo.key("lookup", 2L), loader));
+			Assert.assertEquals("value3", RequestMemo.memoize(other, RequestMemo.key("lookup", 1L), loader));
+			// null results are memoized too
+			Assert.assertNull(RequestMemo.memoize("scope", "missing", () -> { lookups.incrementAndGet(); return null; }));
+			Assert.assertNull(RequestMemo.memoize("scope", "missing", () -> { lookups.incrementAndGet(); return null; }));
+			Assert.assertEquals(4, lookups.get());
+			Assert.assertEquals(2, memo.getHits());
+			Assert.assertEquals(4, memo.getMisses());
+
+			RequestMemo.invalidate(account);
+			Assert.assertEquals("value5", RequestMemo.memoize(account, RequestMemo.key("lookup", 1L), loader));
+			Assert.assertEquals("value3", RequestMemo.memoize(other, RequestMemo.key("lookup", 1L), loader));
+		} finally {
+			memo.end();
+		}
+		Assert.assertNull(RequestMemo.current());
+	}
+
+	/**
+	 * A lookup that overlaps a write is not memoized.
+	 */
+	@Test
+	public void testInvalidatedDuringLookup() {
+		AtomicInteger lookups = new AtomicInteger();
+		RequestMemo memo = RequestMemo.begin();
+		try {
+			Supplier<String> writingLoader = () -> {
+				RequestMemo.invalidate("scope");
+				return "value" + lookups.incrementAndGet();
+			};
+			Assert.assertEquals("value1", RequestMemo.memoize("scope", "key", writingLoader));
+			Assert.assertEquals("value2", RequestMemo.memoize("scope", "key", () -> "value" + lookups.incrementAndGet()));
+			Assert.assertEquals("value2", RequestMemo.memoize("scope", "key", () -> "value" + lookups.incrementAndGet()));
+		} finally {
+			memo.end();
+		}
+	}
+
+	/**
+	 * Nested operations share the outermost memo.
+	 */
+	@Test
+	public void testNested() {
+		RequestMemo outer = RequestMemo.begin();
+		try {
+			RequestMemo.memoize("scope", "key", () -> "outer");
+			RequestMemo inner = RequestMemo.begin();
+			try {
+				Assert.assertSame(outer, inner);
+				Assert.assertEquals("outer", RequestMemo.memoize("scope", "key", () -> "inner"));
+			} finally {
+				inner.end();
+			}
+			Assert.assertSame(outer, RequestMemo.current());
+			Assert.assertEquals("outer", RequestMemo.memoize("scope", "key", () -> "inner"));
+		} finally {
+			outer.end();
+		}
+		Assert.assertNull(RequestMemo.current());
+	}
+}
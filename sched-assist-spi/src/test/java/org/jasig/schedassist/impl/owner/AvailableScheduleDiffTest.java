@@ -0,0 +1,155 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.jasig.schedassist.impl.owner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+
+import org.jasig.schedassist.model.AvailableBlock;
+import org.jasig.schedassist.model.AvailableBlockBuilder;
+import org.jasig.schedassist.model.AvailableSlotBitmap;
+import org.jasig.schedassist.model.CommonDateOperations;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link AvailableScheduleDiff}.
+ */
+public class AvailableScheduleDiffTest {
+
+	private static final long OWNER_ID = 1L;
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testNoChanges() throws Exception {
+		SortedSet<AvailableBlock> blocks = semester();
+		AvailableScheduleDiff diff = AvailableScheduleDiff.compute(OWNER_ID, toRows(blocks), blocks);
+		Assert.assertTrue(diff.isEmpty());
+	}
+
+	/**
+	 * Adding 30 minutes to the end of one day of a semester schedule should
+	 * touch exactly one row.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testExtendSingleDay() throws Exception {
+		SortedSet<AvailableBlock> stored = semester();
+		AvailableSlotBitmap target = AvailableSlotBitmap.valueOf(stored);
+		target.add(AvailableBlockBuilder.createBlock("20100915-1100", "20100915-1130"));
+
+		AvailableScheduleDiff diff = AvailableScheduleDiff.compute(OWNER_ID, toRows(stored), target.combine());
+		Assert.assertEquals(0, diff.getDeletes().size());
+		Assert.assertEquals(0, diff.getInserts().size());
+		Assert.assertEquals(1, diff.getUpdates().size());
+		AvailableScheduleDiff.RowUpdate update = diff.getUpdates().get(0);
+		Assert.assertEquals(CommonDateOperations.parseDateTimePhrase("20100915-1100"), update.getExisting().getEndTime());
+		Assert.assertEquals(CommonDateOperations.parseDateTimePhrase("20100915-1130"), update.getReplacement().getEndTime());
+		Assert.assertEquals(update.getExisting().getStartTime(), update.getReplacement().getStartTime());
+	}
+
+	/**
+	 * Removing the middle of a block splits it: one update and one insert.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSplitBlock() throws Exception {
+		SortedSet<AvailableBlock> stored = semester();
+		AvailableSlotBitmap target = AvailableSlotBitmap.valueOf(stored);
+		target.remove(AvailableBlockBuilder.createBlock("20100915-1000", "20100915-1030"));
+
+		AvailableScheduleDiff diff = AvailableScheduleDiff.compute(OWNER_ID, toRows(stored), target.combine());
+		Assert.assertEquals(0, diff.getDeletes().size());
+		Assert.assertEquals(1, diff.getUpdates().size());
+		Assert.assertEquals(1, diff.getInserts().size());
+		Assert.assertEquals(CommonDateOperations.parseDateTimePhrase("20100915-1030"), diff.getInserts().get(0).getStartTime());
+	}
+
+	/**
+	 * Changing only the meeting location of a block is an update in place.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testChangeLocation() throws Exception {
+		SortedSet<AvailableBlock> stored = semester();
+		AvailableSlotBitmap target = AvailableSlotBitmap.valueOf(stored);
+		target.add(AvailableBlockBuilder.createBlock("20100915-0900", "20100915-1100", 1, "Room 101"));
+
+		AvailableScheduleDiff diff = AvailableScheduleDiff.compute(OWNER_ID, toRows(stored), target.combine());
+		Assert.assertEquals(0, diff.getDeletes().size());
+		Assert.assertEquals(0, diff.getInserts().size());
+		Assert.assertEquals(1, diff.getUpdates().size());
+		Assert.assertEquals("Room 101", diff.getUpdates().get(0).getReplacement().getMeetingLocation());
+	}
+
+	/**
+	 * Removing a whole day deletes one row; duplicate stored rows are deleted.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testDeleteDayAndDuplicates() throws Exception {
+		SortedSet<AvailableBlock> stored = semester();
+		List<PersistenceAvailableBlock> rows = toRows(stored);
+		rows.add(new PersistenceAvailableBlock(stored.first(), OWNER_ID));
+
+		AvailableSlotBitmap target = AvailableSlotBitmap.valueOf(stored);
+		target.remove(AvailableBlockBuilder.createBlock("20100915-0000", "20100916-0000"));
+
+		AvailableScheduleDiff diff = AvailableScheduleDiff.compute(OWNER_ID, rows, target.combine());
+		Assert.assertEquals(2, diff.getDeletes().size());
+		Assert.assertEquals(0, diff.getUpdates().size());
+		Assert.assertEquals(0, diff.getInserts().size());
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testEmptyStored() throws Exception {
+		SortedSet<AvailableBlock> blocks = semester();
+		AvailableScheduleDiff diff = AvailableScheduleDiff.compute(OWNER_ID, new ArrayList<PersistenceAvailableBlock>(), blocks);
+		Assert.assertEquals(blocks.size(), diff.getInserts().size());
+		Assert.assertEquals(0, diff.getDeletes().size());
+		Assert.assertEquals(0, diff.getUpdates().size());
+	}
+
+	private SortedSet<AvailableBlock> semester() throws Exception {
+		return AvailableBlockBuilder.createBlocks("9:00 AM", "11:00 AM", "MWF",
+				CommonDateOperations.parseDatePhrase("20100830"),
+				CommonDateOperations.parseDatePhrase("20101217"));
+	}
+
+	private List<PersistenceAvailableBlock> toRows(SortedSet<AvailableBlock> blocks) {
+		List<PersistenceAvailableBlock> rows = new ArrayList<PersistenceAvailableBlock>();
+		for(AvailableBlock block : blocks) {
+			rows.add(new PersistenceAvailableBlock(block, OWNER_ID));
+		}
+		return rows;
+	}
+}
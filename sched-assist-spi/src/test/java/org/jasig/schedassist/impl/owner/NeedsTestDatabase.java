@@ -35,7 +35,7 @@ public abstract class NeedsTestDatabase extends AbstractJUnit4SpringContextTests
 	public void createDatabase() throws Exception {
 		Flyway flyway = new Flyway();
 		flyway.setDataSource((DataSource) this.applicationContext.getBean("dataSource"));
-		flyway.setLocations("db/hsqldb");
+		flyway.setLocations("db/hsqldb", "db/migration");
 		
 		flyway.migrate();
 		afterCreate();
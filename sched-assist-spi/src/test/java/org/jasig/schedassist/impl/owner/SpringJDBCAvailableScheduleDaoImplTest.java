@@ -575,4 +575,78 @@ public class SpringJDBCAvailableScheduleDaoImplTest extends
 		Assert.assertEquals(12, storedAfterRemove.getAvailableBlocks().size());
 	}
 	
+	/**
+	 * Extend, relocate and split blocks in an existing schedule; verify the
+	 * stored rows reflect each incremental change.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testIncrementalChanges() throws Exception {
+		IScheduleOwner owner = sampleOwners[0];
+		SimpleDateFormat dateFormat = CommonDateOperations.getDateFormat();
+		SortedSet<AvailableBlock> blocks = AvailableBlockBuilder.createBlocks("9:00 AM", "11:00 AM", "MWF", 
+				dateFormat.parse("20100830"), dateFormat.parse("20101217"));
+		availableScheduleDao.addToSchedule(owner, blocks);
+		Assert.assertEquals(48, availableScheduleDao.retrieve(owner).getAvailableBlocks().size());
+		
+		// extend one day
+		availableScheduleDao.addToSchedule(owner, AvailableBlockBuilder.createBlock("20100915-1100", "20100915-1130"));
+		// move another day to a different location
+		availableScheduleDao.addToSchedule(owner, AvailableBlockBuilder.createBlock("20100917-0900", "20100917-1100", 1, "Room 101"));
+		// split a third
+		availableScheduleDao.removeFromSchedule(owner, AvailableBlockBuilder.createBlock("20100920-1000", "20100920-1030"));
+		
+		SortedSet<AvailableBlock> stored = availableScheduleDao.retrieve(owner).getAvailableBlocks();
+		Assert.assertEquals(49, stored.size());
+		Assert.assertTrue(stored.contains(AvailableBlockBuilder.createBlock("20100915-0900", "20100915-1130")));
+		Assert.assertFalse(stored.contains(AvailableBlockBuilder.createBlock("20100915-0900", "20100915-1100")));
+		Assert.assertEquals("Room 101", stored.tailSet(AvailableBlockBuilder.createBlock("20100917-0900", "20100917-1100")).first().getMeetingLocation());
+		Assert.assertTrue(stored.contains(AvailableBlockBuilder.createBlock("20100920-0900", "20100920-1000")));
+		Assert.assertTrue(stored.contains(AvailableBlockBuilder.createBlock("20100920-1030", "20100920-1100")));
+		
+		// adding blocks that are already stored changes nothing
+		AvailableSchedule unchanged = availableScheduleDao.addToSchedule(owner, AvailableBlockBuilder.createBlock("20100830-0900", "20100830-1000"));
+		Assert.assertEquals(stored, unchanged.getAvailableBlocks());
+	}
+	
+	/**
+	 * Verify rows that overlap the boundaries of the window passed to
+	 * {@link SpringJDBCAvailableScheduleDaoImpl#retrieve(IScheduleOwner, Date, Date)} are clipped.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testRetrieveWindowClipsBoundaryRows() throws Exception {
+		IScheduleOwner owner = sampleOwners[1];
+		availableScheduleDao.addToSchedule(owner, AvailableBlockBuilder.createBlock("20100913-0900", "20100913-1700"));
+		availableScheduleDao.addToSchedule(owner, AvailableBlockBuilder.createBlock("20100914-2200", "20100915-0200", 2));
+		availableScheduleDao.addToSchedule(owner, AvailableBlockBuilder.createBlock("20100916-0900", "20100916-1700", 1, "Library"));
+		
+		AvailableSchedule window = availableScheduleDao.retrieve(owner, 
+				CommonDateOperations.parseDateTimePhrase("20100913-1200"), 
+				CommonDateOperations.parseDateTimePhrase("20100916-1000"));
+		SortedSet<AvailableBlock> blocks = window.getAvailableBlocks();
+		Assert.assertEquals(3, blocks.size());
+		Assert.assertEquals(AvailableBlockBuilder.createBlock("20100913-1200", "20100913-1700"), blocks.first());
+		Assert.assertTrue(blocks.contains(AvailableBlockBuilder.createBlock("20100914-2200", "20100915-0200")));
+		AvailableBlock last = blocks.last();
+		Assert.assertEquals(AvailableBlockBuilder.createBlock("20100916-0900", "20100916-1000"), last);
+		Assert.assertEquals("Library", last.getMeetingLocation());
+		
+		// window entirely inside one row
+		window = availableScheduleDao.retrieve(owner, 
+				CommonDateOperations.parseDateTimePhrase("20100914-2300"), 
+				CommonDateOperations.parseDateTimePhrase("20100915-0100"));
+		Assert.assertEquals(1, window.getAvailableBlocks().size());
+		Assert.assertEquals(AvailableBlockBuilder.createBlock("20100914-2300", "20100915-0100"), window.getAvailableBlocks().first());
+		Assert.assertEquals(2, window.getAvailableBlocks().first().getVisitorLimit());
+		
+		// window touching but not overlapping rows
+		window = availableScheduleDao.retrieve(owner, 
+				CommonDateOperations.parseDateTimePhrase("20100913-1700"), 
+				CommonDateOperations.parseDateTimePhrase("20100914-2200"));
+		Assert.assertTrue(window.isEmpty());
+	}
+	
 }
@@ -0,0 +1,102 @@
+<%--
+
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+
+--%>
+
+<!DOCTYPE html PUBLIC "-//W3C//DTD XHTML 1.0 Strict//EN" "http://www.w3.org/TR/xhtml1/DTD/xhtml1-strict.dtd">
+<%@ include file="/WEB-INF/jsp/includes.jsp" %>
+<html xmlns="http://www.w3.org/1999/xhtml" lang="en">
+<head>
+<title><spring:message code="application.name.admin"/> - <spring:message code="connection.pool.statistics"/></title>
+<%@ include file="/WEB-INF/jsp/themes/jasig/head-elements.jsp" %>
+</head>
+
+<body>
+<%@ include file="/WEB-INF/jsp/themes/jasig/body-start.jsp" %>
+<%@ include file="/WEB-INF/jsp/login-info.jsp" %>
+<div id="content" class="main col">
+
+<c:choose>
+
+<c:when test="${empty totalStats}">
+<p><spring:message code="no.connection.pool.found"/></p>
+</c:when>
+<c:otherwise>
+<h3><spring:message code="connection.pool.statistics"/></h3>
+
+<table>
+<thead>
+<tr>
+<th><spring:message code="connection.pool.route"/></th>
+<th><spring:message code="connection.pool.leased"/></th>
+<th><spring:message code="connection.pool.pending"/></th>
+<th><spring:message code="connection.pool.available"/></th>
+<th><spring:message code="connection.pool.max"/></th>
+</tr>
+</thead>
+<tbody>
+<tr class="stats-row">
+<td><spring:message code="connection.pool.total"/></td>
+<td>${totalStats.leased}</td>
+<td>${totalStats.pending}</td>
+<td>${totalStats.available}</td>
+<td>${totalStats.max}</td>
+</tr>
+<c:forEach items="${routeStats}" var="route">
+<tr class="stats-row">
+<td>${route.key}</td>
+<td>${route.value.leased}</td>
+<td>${route.value.pending}</td>
+<td>${route.value.available}</td>
+<td>${route.value.max}</td>
+</tr>
+</c:forEach>
+</tbody>
+</table>
+
+<h3><spring:message code="connection.pool.lease.wait"/></h3>
+<table>
+<thead>
+<tr>
+<th><spring:message code="connection.pool.lease.wait.time"/></th>
+<th><spring:message code="connection.pool.leases"/></th>
+</tr>
+</thead>
+<tbody>
+<c:forEach items="${leaseWaitHistogram}" var="bucket">
+<tr class="stats-row">
+<td>${bucket.key}</td>
+<td>${bucket.value}</td>
+</tr>
+</c:forEach>
+<tr class="stats-row">
+<td><spring:message code="connection.pool.lease.timeouts"/></td>
+<td>${leaseTimeouts}</td>
+</tr>
+</tbody>
+</table>
+</c:otherwise>
+</c:choose>
+
+<a href="<c:url value="/admin/index.html"/>">&laquo;<spring:message code="return.to.admin.home"/></a>
+</div> <!--  content -->
+
+<%@ include file="/WEB-INF/jsp/themes/jasig/body-end.jsp" %>
+</body>
+</html>
\ No newline at end of file
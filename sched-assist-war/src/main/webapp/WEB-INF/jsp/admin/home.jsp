@@ -38,6 +38,7 @@
 <li><a href="<c:url value="reflection-service.html"/>"><spring:message code="reflection.service.admin"/></a></li>
 <li><a href="<c:url value="schedule-debug.html"/>"><spring:message code="visible.schedule.debug"/></a></li>
 <li><a href="<c:url value="cache-manager.html"/>"><spring:message code="cache.manager"/></a></li>
+<li><a href="<c:url value="connection-pool.html"/>"><spring:message code="connection.pool.statistics"/></a></li>
 </ul>
 <p>Value of 'org.jasig.schedassist.runScheduledTasks' for this instance: ${runScheduledTasks}</p>
 </div> <!--  content -->
@@ -0,0 +1,68 @@
+/**
+ * Licensed to Jasig under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Jasig licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.jasig.schedassist.web.admin;
+
+import org.jasig.schedassist.impl.caldav.CaldavConnectionManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.ModelMap;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+/**
+ * {@link Controller} displaying the statistics of the {@link CaldavConnectionManager}.
+ */
+@Controller
+@RequestMapping("/admin/connection-pool.html")
+public class ConnectionPoolController {
+
+	private CaldavConnectionManager connectionManager;
+
+	/**
+	 * @param connectionManager the connectionManager to set
+	 */
+	@Autowired(required=false)
+	public void setConnectionManager(CaldavConnectionManager connectionManager) {
+		this.connectionManager = connectionManager;
+	}
+	/**
+	 * @return the connectionManager
+	 */
+	public CaldavConnectionManager getConnectionManager() {
+		return connectionManager;
+	}
+
+	/**
+	 * 
+	 * @param model
+	 * @return the view name
+	 */
+	@RequestMapping(method=RequestMethod.GET)
+	public String getConnectionPoolStatistics(ModelMap model) {
+		if(this.connectionManager != null) {
+			model.addAttribute("totalStats", this.connectionManager.getTotalStats());
+			model.addAttribute("routeStats", this.connectionManager.getRouteStatistics());
+			model.addAttribute("leaseWaitHistogram", this.connectionManager.getLeaseWaitHistogram());
+			model.addAttribute("leaseTimeouts", this.connectionManager.getLeaseTimeouts());
+		}
+		return "admin/connection-pool-statistics";
+	}
+}